@@ -0,0 +1,48 @@
+/*
+ *
+ */
+package ru.ildev.image.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Запускает тесты производительности с профилировщиком сборщика мусора, который выводит скорость выделения памяти
+ * ({@code gc.alloc.rate.norm} в байтах на операцию). Аргументы командной строки передаются JMH, например
+ * {@code ConvolveFilterBenchmark -p size=1920x1080 -p radius=1}. Без аргументов запускаются все тесты.
+ *
+ * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
+ * @version 0.0.0
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    /**
+     * Запускает тесты производительности.
+     *
+     * @param args аргументы командной строки JMH.
+     * @throws RunnerException            если тесты не удалось запустить.
+     * @throws CommandLineOptionException если аргументы командной строки неверны.
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        ChainedOptionsBuilder builder = new OptionsBuilder()
+                .parent(commandLineOptions)
+                .addProfiler(GCProfiler.class);
+        if (commandLineOptions.getIncludes().isEmpty()) {
+            builder.include(BenchmarkRunner.class.getPackage().getName() + ".*");
+        }
+
+        Options options = builder.build();
+        new Runner(options).run();
+    }
+
+}
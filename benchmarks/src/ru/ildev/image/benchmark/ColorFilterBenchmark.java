@@ -0,0 +1,69 @@
+/*
+ *
+ */
+package ru.ildev.image.benchmark;
+
+import org.openjdk.jmh.annotations.Param;
+import ru.ildev.image.filter.BrighterFilter;
+import ru.ildev.image.filter.ClearFilter;
+import ru.ildev.image.filter.ColorMaskFilter;
+import ru.ildev.image.filter.ContrastFilter;
+import ru.ildev.image.filter.DarkerFilter;
+import ru.ildev.image.filter.FillFilter;
+import ru.ildev.image.filter.Filter;
+import ru.ildev.image.filter.GrayFilter;
+import ru.ildev.image.filter.GrayscaleFilter;
+import ru.ildev.image.filter.InvertFilter;
+import ru.ildev.image.filter.NoiseFilter;
+import ru.ildev.image.filter.OpacityFilter;
+import ru.ildev.image.filter.TransferFilter;
+import ru.ildev.math.Noise;
+
+/**
+ * Тест производительности цветовых фильтров.
+ *
+ * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
+ * @version 0.0.0
+ */
+public class ColorFilterBenchmark extends FilterBenchmark {
+
+    /**
+     * Имя фильтра.
+     */
+    @Param({"Brighter", "Clear", "ColorMask", "Contrast", "Darker", "Fill", "Gray", "Grayscale", "Invert", "Noise",
+            "Opacity", "Transfer"})
+    public String name;
+
+    @Override
+    protected Filter createFilter() {
+        switch (this.name) {
+            case "Brighter":
+                return new BrighterFilter(0.7f);
+            case "Clear":
+                return new ClearFilter();
+            case "ColorMask":
+                return new ColorMaskFilter(0xff00ff00);
+            case "Contrast":
+                return new ContrastFilter(1.1f, 1.3f);
+            case "Darker":
+                return new DarkerFilter(0.7f);
+            case "Fill":
+                return new FillFilter(0xff336699);
+            case "Gray":
+                return new GrayFilter();
+            case "Grayscale":
+                return new GrayscaleFilter();
+            case "Invert":
+                return new InvertFilter();
+            case "Noise":
+                return new NoiseFilter(new Noise());
+            case "Opacity":
+                return new OpacityFilter(128);
+            case "Transfer":
+                return new TransferFilter();
+            default:
+                throw new IllegalArgumentException("Illegal filter " + this.name);
+        }
+    }
+
+}
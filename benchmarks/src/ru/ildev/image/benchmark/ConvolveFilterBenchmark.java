@@ -0,0 +1,168 @@
+/*
+ *
+ */
+package ru.ildev.image.benchmark;
+
+import org.openjdk.jmh.annotations.Param;
+import ru.ildev.image.filter.BoxBlurFilter;
+import ru.ildev.image.filter.BuildingFilter;
+import ru.ildev.image.filter.ConvolveFilter;
+import ru.ildev.image.filter.ErosionFilter;
+import ru.ildev.image.filter.Filter;
+import ru.ildev.image.filter.GaussianBlurFilter;
+import ru.ildev.image.filter.GlowFilter;
+import ru.ildev.image.filter.Kernel;
+import ru.ildev.image.filter.MedianFilter;
+import ru.ildev.image.filter.MorphologyFilter;
+import ru.ildev.image.filter.UnsharpFilter;
+
+/**
+ * Тест производительности фильтров свертки. Радиус задает размер ядра {@code 2 * radius + 1}. Фильтры с большим
+ * радиусом на больших изображениях работают долго, поэтому при полном прогоне обычно сужают параметры, например
+ * {@code -p radius=1 -p size=1920x1080}.
+ * <p>
+ * Развернутые циклы для ядер 3x3 и 5x5 (радиусы 1 и 2) сравниваются с общим циклом свертки фильтрами
+ * {@code FloatConvolve} и {@code GenericConvolve}. Для упакованных пикселей эти циклы используются только со
+ * скалярными внутренними циклами, поэтому такое сравнение запускают с параметром
+ * {@code -jvmArgsAppend -Dru.ildev.image.filter.vector=false}.
+ * <p>
+ * Фильтр {@code UntiledConvolve} обходит изображение целыми строками, а не полосами столбцов; разница с
+ * {@code DirectConvolve} заметна на широких изображениях, например {@code -p size=7680x4320}.
+ * <p>
+ * Фильтр {@code Opening} выполняет эрозию и наращивание за один проход; его сравнивают с суммой времени
+ * {@code Erosion} и {@code Building}.
+ *
+ * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
+ * @version 0.0.0
+ */
+public class ConvolveFilterBenchmark extends FilterBenchmark {
+
+    /**
+     * Имя фильтра.
+     */
+    @Param({"Convolve", "DirectConvolve", "UntiledConvolve", "GenericConvolve", "FourierConvolve", "FloatConvolve", "BoxBlur", "GaussianBlur", "RecursiveGaussianBlur", "BoxGaussianBlur", "Glow", "Unsharp", "Median", "Erosion", "Building", "Opening", "Gradient"})
+    public String name;
+    /**
+     * Радиус ядра.
+     */
+    @Param({"1", "2", "4"})
+    public int radius;
+    /**
+     * Действие на краях изображения: {@code CROP}, {@code EXTEND} или {@code WRAP}.
+     */
+    @Param({"CROP", "EXTEND", "WRAP"})
+    public String edgeAction;
+
+    @Override
+    protected Filter createFilter() {
+        int size = 2 * this.radius + 1;
+        int edgeAction = parseEdgeAction(this.edgeAction);
+
+        ConvolveFilter filter;
+        switch (this.name) {
+            case "Convolve":
+                filter = new ConvolveFilter(createSharpenKernel(size, 1.0f));
+                break;
+            case "DirectConvolve":
+                filter = new ConvolveFilter(createSharpenKernel(size, 1.0f));
+                filter.setFourierThreshold(Integer.MAX_VALUE);
+                break;
+            case "UntiledConvolve":
+                filter = new ConvolveFilter(createSharpenKernel(size, 1.0f));
+                filter.setFourierThreshold(Integer.MAX_VALUE);
+                filter.setTileWidth(Integer.MAX_VALUE);
+                break;
+            case "GenericConvolve":
+                filter = new ConvolveFilter(createSharpenKernel(size, 0.5f));
+                filter.setFourierThreshold(Integer.MAX_VALUE);
+                filter.setUnrolled(false);
+                break;
+            case "FourierConvolve":
+                filter = new ConvolveFilter(createSharpenKernel(size, 1.0f));
+                filter.setFourierThreshold(1);
+                break;
+            case "FloatConvolve":
+                filter = new ConvolveFilter(createSharpenKernel(size, 0.5f));
+                filter.setFourierThreshold(Integer.MAX_VALUE);
+                break;
+            case "BoxBlur":
+                filter = new BoxBlurFilter(size, size);
+                break;
+            case "GaussianBlur":
+                filter = new GaussianBlurFilter(this.radius);
+                break;
+            case "RecursiveGaussianBlur":
+                filter = new GaussianBlurFilter(this.radius / 3.0f, edgeAction, GaussianBlurFilter.RECURSIVE_MODE);
+                break;
+            case "BoxGaussianBlur":
+                filter = new GaussianBlurFilter(this.radius / 3.0f, edgeAction, GaussianBlurFilter.BOX_MODE);
+                break;
+            case "Glow":
+                GlowFilter glow = new GlowFilter(0.5f);
+                glow.setRadius(this.radius);
+                filter = glow;
+                break;
+            case "Unsharp":
+                UnsharpFilter unsharp = new UnsharpFilter(0.5f, 2);
+                unsharp.setRadius(this.radius);
+                filter = unsharp;
+                break;
+            case "Median":
+                filter = new MedianFilter(size);
+                break;
+            case "Erosion":
+                filter = new ErosionFilter(size);
+                break;
+            case "Building":
+                filter = new BuildingFilter(size);
+                break;
+            case "Opening":
+                filter = new MorphologyFilter(MorphologyFilter.OPEN, size);
+                break;
+            case "Gradient":
+                filter = new MorphologyFilter(MorphologyFilter.GRADIENT, size);
+                break;
+            default:
+                throw new IllegalArgumentException("Illegal filter " + this.name);
+        }
+        filter.setEdgeAction(edgeAction);
+        return filter;
+    }
+
+    /**
+     * Создает ядро повышения резкости, в котором все элементы отличны от нуля. Ядро с множителем 1 целочисленное, а с
+     * дробным множителем сворачивается с плавающей точкой.
+     *
+     * @param size   размер ядра.
+     * @param factor множитель значений ядра.
+     * @return ядро.
+     */
+    private static Kernel createSharpenKernel(int size, float factor) {
+        float[] matrix = new float[size * size];
+        for (int i = 0; i < matrix.length; i++) {
+            matrix[i] = -factor;
+        }
+        matrix[matrix.length / 2] = matrix.length * factor;
+        return new Kernel(size, size, matrix, factor);
+    }
+
+    /**
+     * Получает действие на краях изображения по имени.
+     *
+     * @param name имя действия.
+     * @return действие на краях изображения.
+     */
+    static int parseEdgeAction(String name) {
+        switch (name) {
+            case "CROP":
+                return ConvolveFilter.CROP_EDGES;
+            case "EXTEND":
+                return ConvolveFilter.EXTEND_EDGES;
+            case "WRAP":
+                return ConvolveFilter.WRAP_EDGES;
+            default:
+                throw new IllegalArgumentException("Illegal edge action " + name);
+        }
+    }
+
+}
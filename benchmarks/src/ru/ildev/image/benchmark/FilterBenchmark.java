@@ -0,0 +1,104 @@
+/*
+ *
+ */
+package ru.ildev.image.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.ildev.image.filter.Filter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Базовый класс тестов производительности фильтров. Тест применяет фильтр к массиву пикселей методом
+ * {@link Filter#apply(int[], int[], int, int)}, поэтому время преобразования изображения в массив не учитывается.
+ * Параметры размера изображения, каналов и многопоточности общие для всех фильтров, остальные параметры задают
+ * наследники.
+ *
+ * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
+ * @version 0.0.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public abstract class FilterBenchmark {
+
+    /**
+     * Размер изображения.
+     */
+    @Param({"256x256", "1024x1024", "1920x1080", "3840x2160", "7680x4320"})
+    public String size;
+    /**
+     * Обрабатываемые каналы: {@code RGBA}, {@code RGB}, {@code R} или {@code MONO}.
+     */
+    @Param({"RGBA", "RGB", "R", "MONO"})
+    public String channels;
+    /**
+     * Флаг многопоточной обработки.
+     */
+    @Param({"false"})
+    public boolean parallel;
+
+    /**
+     * Фильтр.
+     */
+    protected Filter filter;
+    /**
+     * Входной и выходной массивы пикселей.
+     */
+    protected int[] in, out;
+    /**
+     * Размеры изображения.
+     */
+    protected int width, height;
+
+    /**
+     * Создает фильтр по параметрам теста.
+     *
+     * @return фильтр.
+     */
+    protected abstract Filter createFilter();
+
+    /**
+     * Создает фильтр и изображение.
+     */
+    @Setup
+    public void setup() {
+        int[] size = Images.parseSize(this.size);
+        this.width = size[0];
+        this.height = size[1];
+
+        this.filter = this.createFilter();
+        Images.setChannels(this.filter, this.channels);
+        this.filter.setParallel(this.parallel);
+
+        this.in = Images.createPixels(this.width, this.height, this.filter.isMonochrome());
+        this.out = new int[this.width * this.height];
+    }
+
+    /**
+     * Применяет фильтр.
+     *
+     * @param counter счетчик мегапикселей.
+     * @return выходной массив пикселей.
+     */
+    @Benchmark
+    public int[] apply(Megapixels counter) {
+        this.filter.apply(this.in, this.out, this.width, this.height);
+        counter.add((long) this.width * this.height);
+        return this.out;
+    }
+
+}
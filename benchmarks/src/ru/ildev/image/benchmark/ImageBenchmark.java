@@ -0,0 +1,209 @@
+/*
+ *
+ */
+package ru.ildev.image.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.ildev.image.HeightMap;
+import ru.ildev.image.Histogram;
+import ru.ildev.image.NormalMap;
+import ru.ildev.image.filter.BorderFilter;
+import ru.ildev.image.filter.Filter;
+import ru.ildev.image.filter.InvertFilter;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Тест производительности операций над изображениями {@link BufferedImage}: гистограммы, карты высот и нормалей,
+ * рамки и применения фильтра к изображению с преобразованием пикселей. Для применения фильтра используется инверсия,
+ * поэтому время почти целиком уходит на чтение и запись пикселей изображения.
+ * <p>
+ * Тест {@code iterate} применяет инверсию {@value #ITERATIONS} раз подряд методом
+ * {@link Filter#apply(BufferedImage, BufferedImage, int)}, поэтому показывает затраты на передачу пикселей между
+ * итерациями, например {@code -p size=2048x2048 -p type=INT_ARGB}.
+ *
+ * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
+ * @version 0.0.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ImageBenchmark {
+
+    /**
+     * Количество итераций фильтра в тесте {@code iterate}.
+     */
+    private static final int ITERATIONS = 50;
+
+    /**
+     * Размер изображения.
+     */
+    @Param({"256x256", "1024x1024", "1920x1080", "3840x2160", "7680x4320"})
+    public String size;
+    /**
+     * Тип изображения.
+     */
+    @Param({"INT_ARGB", "INT_RGB", "3BYTE_BGR", "4BYTE_ABGR", "BYTE_GRAY"})
+    public String type;
+    /**
+     * Флаг прямого доступа к данным изображения.
+     */
+    @Param({"false", "true"})
+    public boolean directAccess;
+
+    /**
+     * Исходное и конечное изображения.
+     */
+    private BufferedImage src, dst;
+    /**
+     * Пиксели исходного изображения.
+     */
+    private int[] pixels;
+    /**
+     * Размеры изображения.
+     */
+    private int width, height;
+    /**
+     * Фильтры.
+     */
+    private Filter filter, border;
+
+    /**
+     * Создает изображения и фильтры.
+     */
+    @Setup
+    public void setup() {
+        int[] size = Images.parseSize(this.size);
+        this.width = size[0];
+        this.height = size[1];
+
+        int type = Images.parseType(this.type);
+        this.src = Images.createImage(this.width, this.height, type);
+        this.dst = new BufferedImage(this.width, this.height, type);
+        this.pixels = this.src.getRGB(0, 0, this.width, this.height, null, 0, this.width);
+
+        this.filter = new InvertFilter();
+        this.filter.setDirectAccess(this.directAccess);
+        this.border = new BorderFilter(8, 8, 8, 8, Color.BLACK);
+    }
+
+    /**
+     * Применяет фильтр к изображению.
+     *
+     * @param counter счетчик мегапикселей.
+     * @return конечное изображение.
+     */
+    @Benchmark
+    public BufferedImage filter(Megapixels counter) {
+        this.filter.apply(this.src, this.dst);
+        counter.add((long) this.width * this.height);
+        return this.dst;
+    }
+
+    /**
+     * Применяет фильтр к изображению несколько раз подряд.
+     *
+     * @param counter счетчик мегапикселей.
+     * @return конечное изображение.
+     */
+    @Benchmark
+    public BufferedImage iterate(Megapixels counter) {
+        this.filter.apply(this.src, this.dst, ITERATIONS);
+        counter.add((long) this.width * this.height * ITERATIONS);
+        return this.dst;
+    }
+
+    /**
+     * Рисует рамку вокруг изображения.
+     *
+     * @param counter счетчик мегапикселей.
+     * @return конечное изображение.
+     */
+    @Benchmark
+    public BufferedImage border(Megapixels counter) {
+        BufferedImage image = this.border.apply(this.src, null);
+        counter.add((long) this.width * this.height);
+        return image;
+    }
+
+    /**
+     * Строит гистограмму изображения.
+     *
+     * @param counter счетчик мегапикселей.
+     * @return гистограмму.
+     */
+    @Benchmark
+    public Histogram histogramImage(Megapixels counter) {
+        Histogram histogram = new Histogram(this.src, this.width, this.height, 0);
+        counter.add((long) this.width * this.height);
+        return histogram;
+    }
+
+    /**
+     * Строит гистограмму массива пикселей.
+     *
+     * @param counter счетчик мегапикселей.
+     * @return гистограмму.
+     */
+    @Benchmark
+    public Histogram histogramPixels(Megapixels counter) {
+        Histogram histogram = new Histogram(this.pixels, this.width, this.height, 0);
+        counter.add((long) this.width * this.height);
+        return histogram;
+    }
+
+    /**
+     * Строит карту высот.
+     *
+     * @param counter счетчик мегапикселей.
+     * @return карту высот.
+     */
+    @Benchmark
+    public BufferedImage heightMap(Megapixels counter) {
+        BufferedImage image = HeightMap.generate(this.src);
+        counter.add((long) this.width * this.height);
+        return image;
+    }
+
+    /**
+     * Строит карту нормалей.
+     *
+     * @param counter счетчик мегапикселей.
+     * @return карту нормалей.
+     */
+    @Benchmark
+    public BufferedImage normalMap(Megapixels counter) {
+        BufferedImage image = NormalMap.generate(this.src, 2.0f);
+        counter.add((long) this.width * this.height);
+        return image;
+    }
+
+    /**
+     * Применяет карту нормалей к изображению.
+     *
+     * @param counter счетчик мегапикселей.
+     * @return новое изображение.
+     */
+    @Benchmark
+    public BufferedImage normalMapApply(Megapixels counter) {
+        BufferedImage image = NormalMap.apply(this.src, this.src);
+        counter.add((long) this.width * this.height);
+        return image;
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ *
+ */
+package ru.ildev.image.benchmark;
+
+import ru.ildev.image.filter.Filter;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Вспомогательные методы тестов производительности: разбор параметров и создание тестовых изображений. Изображения
+ * заполняются псевдослучайными пикселями с постоянным зерном, поэтому данные одинаковы во всех запусках.
+ *
+ * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
+ * @version 0.0.0
+ */
+final class Images {
+
+    /**
+     * Зерно генератора пикселей.
+     */
+    private static final long SEED = 74L;
+
+    private Images() {
+    }
+
+    /**
+     * Разбирает размер изображения вида {@code "1920x1080"}.
+     *
+     * @param size размер изображения.
+     * @return массив из ширины и высоты изображения.
+     */
+    static int[] parseSize(String size) {
+        int index = size.indexOf('x');
+        if (index < 0) throw new IllegalArgumentException("Illegal size " + size);
+        return new int[]{Integer.parseInt(size.substring(0, index)), Integer.parseInt(size.substring(index + 1))};
+    }
+
+    /**
+     * Устанавливает фильтру обрабатываемые каналы. Поддерживаются значения {@code RGBA}, {@code RGB}, {@code R} и
+     * {@code MONO}.
+     *
+     * @param filter   фильтр.
+     * @param channels обрабатываемые каналы.
+     */
+    static void setChannels(Filter filter, String channels) {
+        switch (channels) {
+            case "RGBA":
+                filter.setChannels(true, true, true, true, false);
+                break;
+            case "RGB":
+                filter.setChannels(true, true, true, false, false);
+                break;
+            case "R":
+                filter.setChannels(true, false, false, false, false);
+                break;
+            case "MONO":
+                filter.setChannels(true, true, true, true, true);
+                break;
+            default:
+                throw new IllegalArgumentException("Illegal channels " + channels);
+        }
+    }
+
+    /**
+     * Создает массив пикселей. В монохромном режиме каждый элемент массива является значением от 0 до 255.
+     *
+     * @param width      ширина изображения.
+     * @param height     высота изображения.
+     * @param monochrome флаг монохромного изображения.
+     * @return массив пикселей.
+     */
+    static int[] createPixels(int width, int height, boolean monochrome) {
+        Random random = new Random(SEED);
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = monochrome ? random.nextInt(256) : random.nextInt();
+        }
+        return pixels;
+    }
+
+    /**
+     * Создает изображение.
+     *
+     * @param width  ширина изображения.
+     * @param height высота изображения.
+     * @param type   тип изображения.
+     * @return изображение.
+     */
+    static BufferedImage createImage(int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        int[] pixels = createPixels(width, height, false);
+        image.setRGB(0, 0, width, height, pixels, 0, width);
+        return image;
+    }
+
+    /**
+     * Получает тип изображения по имени константы {@link BufferedImage}, например {@code INT_ARGB}.
+     *
+     * @param name имя типа без префикса {@code TYPE_}.
+     * @return тип изображения.
+     */
+    static int parseType(String name) {
+        switch (name) {
+            case "INT_ARGB":
+                return BufferedImage.TYPE_INT_ARGB;
+            case "INT_RGB":
+                return BufferedImage.TYPE_INT_RGB;
+            case "INT_ARGB_PRE":
+                return BufferedImage.TYPE_INT_ARGB_PRE;
+            case "3BYTE_BGR":
+                return BufferedImage.TYPE_3BYTE_BGR;
+            case "4BYTE_ABGR":
+                return BufferedImage.TYPE_4BYTE_ABGR;
+            case "BYTE_GRAY":
+                return BufferedImage.TYPE_BYTE_GRAY;
+            default:
+                throw new IllegalArgumentException("Illegal type " + name);
+        }
+    }
+
+}
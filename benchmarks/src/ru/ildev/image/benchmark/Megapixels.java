@@ -0,0 +1,45 @@
+/*
+ *
+ */
+package ru.ildev.image.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Счетчик обработанных мегапикселей. JMH выводит его в режиме {@code Throughput} как скорость в единицах в секунду,
+ * то есть в мегапикселях в секунду, рядом с количеством операций в секунду.
+ *
+ * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
+ * @version 0.0.0
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Megapixels {
+
+    /**
+     * Количество обработанных мегапикселей.
+     */
+    public double megapixels;
+
+    /**
+     * Сбрасывает счетчик перед итерацией.
+     */
+    @Setup(Level.Iteration)
+    public void reset() {
+        this.megapixels = 0;
+    }
+
+    /**
+     * Добавляет обработанные пиксели.
+     *
+     * @param pixels количество пикселей.
+     */
+    void add(long pixels) {
+        this.megapixels += pixels / 1e6;
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ *
+ */
+package ru.ildev.image.benchmark;
+
+import org.openjdk.jmh.annotations.Param;
+import ru.ildev.image.filter.BandFilter;
+import ru.ildev.image.filter.BrighterFilter;
+import ru.ildev.image.filter.CombinedFilter;
+import ru.ildev.image.filter.ContrastFilter;
+import ru.ildev.image.filter.Filter;
+import ru.ildev.image.filter.GaussianBlurFilter;
+import ru.ildev.image.filter.GrayscaleFilter;
+import ru.ildev.image.filter.ImageMaskFilter;
+import ru.ildev.image.filter.InvertFilter;
+import ru.ildev.image.filter.MotionBlurFilter;
+import ru.ildev.image.filter.OpacityFilter;
+import ru.ildev.image.filter.ShadowFilter;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Тест производительности остальных фильтров: матричного, составного, маски, размытия движения и тени. Составной
+ * фильтр проверяется с объединением цветовых фильтров и без него, а также цепочкой из {@value #CHAIN_LENGTH} инверсий
+ * ({@code CombinedChain}), время которой почти целиком уходит на передачу пикселей от одного фильтра к другому.
+ *
+ * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
+ * @version 0.0.0
+ */
+public class MiscFilterBenchmark extends FilterBenchmark {
+
+    /**
+     * Количество фильтров в цепочке {@code CombinedChain}.
+     */
+    private static final int CHAIN_LENGTH = 8;
+
+    /**
+     * Имя фильтра.
+     */
+    @Param({"Band", "Combined", "CombinedUnfused", "CombinedChain", "ImageMask", "MotionBlur", "Shadow"})
+    public String name;
+
+    @Override
+    protected Filter createFilter() {
+        switch (this.name) {
+            case "Band":
+                return new BandFilter(new float[]{
+                        1.0f, 0.0f, 0.0f, 0.0f,
+                        0.0f, 0.393f, 0.769f, 0.189f,
+                        0.0f, 0.349f, 0.686f, 0.168f,
+                        0.0f, 0.272f, 0.534f, 0.131f
+                });
+            case "Combined":
+                return createCombinedFilter(true);
+            case "CombinedUnfused":
+                return createCombinedFilter(false);
+            case "CombinedChain":
+                return createChainFilter();
+            case "ImageMask":
+                return new ImageMaskFilter(Images.createImage(this.width, this.height, BufferedImage.TYPE_INT_ARGB));
+            case "MotionBlur":
+                return new MotionBlurFilter(0.5f, 0.5f, 0.2f, 8.0f, 0.05f, 0.05f);
+            case "Shadow":
+                return new ShadowFilter(4.0f, 4.0f, 3, 0xff000000, 0.5f);
+            default:
+                throw new IllegalArgumentException("Illegal filter " + this.name);
+        }
+    }
+
+    /**
+     * Создает составной фильтр из цветовых фильтров и размытия.
+     *
+     * @param fusion флаг объединения цветовых фильтров.
+     * @return составной фильтр.
+     */
+    private static CombinedFilter createCombinedFilter(boolean fusion) {
+        CombinedFilter filter = new CombinedFilter(new GrayscaleFilter(), new ContrastFilter(1.1f, 1.3f),
+                new BrighterFilter(0.8f), new OpacityFilter(200), new GaussianBlurFilter(2));
+        filter.setFusion(fusion);
+        return filter;
+    }
+
+    /**
+     * Создает составной фильтр из цепочки инверсий. Объединение отключено, чтобы каждая инверсия выполнялась отдельным
+     * проходом.
+     *
+     * @return составной фильтр.
+     */
+    private static CombinedFilter createChainFilter() {
+        CombinedFilter filter = new CombinedFilter();
+        for (int i = 0; i < CHAIN_LENGTH; i++) filter.addFilter(new InvertFilter());
+        filter.setFusion(false);
+        return filter;
+    }
+
+}
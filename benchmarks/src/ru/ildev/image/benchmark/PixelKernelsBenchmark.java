@@ -0,0 +1,88 @@
+/*
+ *
+ */
+package ru.ildev.image.benchmark;
+
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Param;
+import ru.ildev.image.filter.BandFilter;
+import ru.ildev.image.filter.ContrastFilter;
+import ru.ildev.image.filter.ConvolveFilter;
+import ru.ildev.image.filter.Filter;
+import ru.ildev.image.filter.GaussianBlurFilter;
+import ru.ildev.image.filter.GlowFilter;
+import ru.ildev.image.filter.GrayscaleFilter;
+import ru.ildev.image.filter.InvertFilter;
+import ru.ildev.image.filter.Kernel;
+import ru.ildev.image.filter.PixelKernels;
+import ru.ildev.image.filter.ShadowFilter;
+import ru.ildev.image.filter.UnsharpFilter;
+
+/**
+ * Тест производительности скалярной и векторной реализаций внутренних циклов фильтров {@link PixelKernels}. Тест
+ * запускает виртуальную машину с модулем {@code jdk.incubator.vector}, поэтому требует Java 17 или новее и модуля
+ * {@code ImageIL-Simd} в пути классов.
+ *
+ * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
+ * @version 0.0.0
+ */
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g", "--add-modules", "jdk.incubator.vector"})
+public class PixelKernelsBenchmark extends FilterBenchmark {
+
+    /**
+     * Реализация внутренних циклов: {@code scalar} или {@code vector}.
+     */
+    @Param({"scalar", "vector"})
+    public String kernels;
+    /**
+     * Имя фильтра.
+     */
+    @Param({"Invert", "Grayscale", "Contrast", "Band", "Convolve", "Gaussian", "Glow", "Unsharp", "Shadow"})
+    public String name;
+
+    /**
+     * Выбирает реализацию внутренних циклов и создает фильтр и изображение.
+     */
+    @Override
+    public void setup() {
+        if ("vector".equals(this.kernels)) {
+            if (PixelKernels.getVector() == null) throw new IllegalStateException("Vector kernels are not available");
+            PixelKernels.setDefault(PixelKernels.getVector());
+        } else {
+            PixelKernels.setDefault(PixelKernels.SCALAR);
+        }
+        super.setup();
+    }
+
+    @Override
+    protected Filter createFilter() {
+        switch (this.name) {
+            case "Invert":
+                return new InvertFilter();
+            case "Grayscale":
+                return new GrayscaleFilter();
+            case "Contrast":
+                return new ContrastFilter(1.1f, 1.3f);
+            case "Band":
+                return new BandFilter(new float[]{
+                        1.0f, 0.0f, 0.0f, 0.0f,
+                        0.0f, 0.393f, 0.769f, 0.189f,
+                        0.0f, 0.349f, 0.686f, 0.168f,
+                        0.0f, 0.272f, 0.534f, 0.131f
+                });
+            case "Convolve":
+                return new ConvolveFilter(new Kernel(3, 3, new float[]{1, 2, 1, 2, 4, 2, 1, 2, 1}, 16.0f, 0));
+            case "Gaussian":
+                return new GaussianBlurFilter(3);
+            case "Glow":
+                return new GlowFilter(0.5f);
+            case "Unsharp":
+                return new UnsharpFilter(0.5f, 1);
+            case "Shadow":
+                return new ShadowFilter(3.0f, 3.0f, 3, 0xff000000, 0.5f);
+            default:
+                throw new IllegalArgumentException("Illegal filter " + this.name);
+        }
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ *
+ */
+package ru.ildev.image.benchmark;
+
+import org.openjdk.jmh.annotations.Param;
+import ru.ildev.geom.Transform3;
+import ru.ildev.image.filter.BendFilter;
+import ru.ildev.image.filter.Filter;
+import ru.ildev.image.filter.LensFilter;
+import ru.ildev.image.filter.OffsetFilter;
+import ru.ildev.image.filter.ResizeFilter;
+import ru.ildev.image.filter.RotateFilter;
+import ru.ildev.image.filter.ScaleFilter;
+import ru.ildev.image.filter.Transform3DFilter;
+import ru.ildev.image.filter.TransformFilter;
+import ru.ildev.image.filter.TwirlFilter;
+import ru.ildev.image.filter.WaterFilter;
+
+/**
+ * Тест производительности фильтров трансформации.
+ *
+ * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
+ * @version 0.0.0
+ */
+public class TransformFilterBenchmark extends FilterBenchmark {
+
+    /**
+     * Имя фильтра.
+     */
+    @Param({"Transform", "Bend", "Lens", "Offset", "Resize", "Rotate", "Scale", "Twirl", "Water", "Transform3D"})
+    public String name;
+    /**
+     * Интерполяция: {@code NEAREST}, {@code BILINEAR} или {@code BICUBIC}.
+     */
+    @Param({"NEAREST", "BILINEAR", "BICUBIC"})
+    public String interpolation;
+    /**
+     * Действие на краях изображения: {@code CROP}, {@code EXTEND} или {@code WRAP}.
+     */
+    @Param({"CROP", "EXTEND", "WRAP"})
+    public String edgeAction;
+
+    @Override
+    protected Filter createFilter() {
+        TransformFilter filter;
+        switch (this.name) {
+            case "Transform":
+                filter = new TransformFilter();
+                break;
+            case "Bend":
+                filter = new BendFilter();
+                break;
+            case "Lens":
+                filter = new LensFilter();
+                break;
+            case "Offset":
+                filter = new OffsetFilter(10.5f, 7.25f);
+                break;
+            case "Resize":
+                filter = new ResizeFilter(this.width / 2, this.height / 2);
+                break;
+            case "Rotate":
+                filter = new RotateFilter(0.3f);
+                break;
+            case "Scale":
+                filter = new ScaleFilter(1.3f);
+                break;
+            case "Twirl":
+                filter = new TwirlFilter();
+                break;
+            case "Water":
+                filter = new WaterFilter();
+                break;
+            case "Transform3D":
+                filter = new Transform3DFilter(new Transform3());
+                break;
+            default:
+                throw new IllegalArgumentException("Illegal filter " + this.name);
+        }
+        filter.setInterpolation(parseInterpolation(this.interpolation));
+        filter.setEdgeAction(parseEdgeAction(this.edgeAction));
+        return filter;
+    }
+
+    /**
+     * Получает интерполяцию по имени.
+     *
+     * @param name имя интерполяции.
+     * @return интерполяцию.
+     */
+    private static int parseInterpolation(String name) {
+        switch (name) {
+            case "NEAREST":
+                return TransformFilter.NEAREST_NEIGHBOUR_INTERPOLATION;
+            case "BILINEAR":
+                return TransformFilter.BILINEAR_INTERPOLATION;
+            case "BICUBIC":
+                return TransformFilter.BICUBIC_INTERPOLATION;
+            default:
+                throw new IllegalArgumentException("Illegal interpolation " + name);
+        }
+    }
+
+    /**
+     * Получает действие на краях изображения по имени.
+     *
+     * @param name имя действия.
+     * @return действие на краях изображения.
+     */
+    private static int parseEdgeAction(String name) {
+        switch (name) {
+            case "CROP":
+                return TransformFilter.CROP_EDGES;
+            case "EXTEND":
+                return TransformFilter.EXTEND_EDGES;
+            case "WRAP":
+                return TransformFilter.WRAP_EDGES;
+            default:
+                throw new IllegalArgumentException("Illegal edge action " + name);
+        }
+    }
+
+}
@@ -0,0 +1,274 @@
+/*
+ *
+ */
+package ru.ildev.image.filter.simd;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+import ru.ildev.image.filter.PixelKernels;
+
+/**
+ * Реализация внутренних циклов фильтров с помощью Vector API. Каждый метод обрабатывает столько пикселей за раз,
+ * сколько целых чисел помещается в вектор предпочтительного размера, а оставшиеся пиксели обрабатывает скалярным
+ * методом родительского класса. Операции с плавающей точкой выполняются в том же порядке, что и в скалярных методах,
+ * без слияния умножения и сложения, а приведение к {@code int} заменяется точным эквивалентом, поэтому результаты
+ * совпадают побитово.
+ * <p>
+ * Методы, для которых векторная версия оказалась медленнее скалярной, не переопределяются: умножение на матрицу
+ * {@link #band} требует приведения к {@code int} без ограничения значений, а поиск в таблицах {@link #lookup} требует
+ * выборки по индексам.
+ * <p>
+ * Для работы класса виртуальная машина должна быть запущена с параметром {@code --add-modules jdk.incubator.vector}.
+ * Класс загружается методом {@link PixelKernels#getDefault()} по имени.
+ *
+ * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
+ * @version 0.0.0
+ */
+public class VectorPixelKernels extends PixelKernels {
+
+    /**
+     * Вид вектора целых чисел.
+     */
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    /**
+     * Вид вектора чисел с плавающей точкой с тем же количеством элементов.
+     */
+    private static final VectorSpecies<Float> FLOATS = INTS.withLanes(float.class);
+    /**
+     * Вид вектора чисел двойной точности.
+     */
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    /**
+     * Вид вектора целых чисел с тем же количеством элементов, что и вектор чисел двойной точности.
+     */
+    private static final VectorSpecies<Integer> HALF_INTS =
+            VectorSpecies.of(int.class, VectorShape.forBitSize(DOUBLES.vectorBitSize() / 2));
+    /**
+     * Вид вектора чисел с плавающей точкой с тем же количеством элементов, что и вектор чисел двойной точности.
+     */
+    private static final VectorSpecies<Float> HALF_FLOATS = HALF_INTS.withLanes(float.class);
+
+    /**
+     * Число {@code 2^23}. Сумма этого числа и числа от 0 до {@code 2^23} округляется до целого числа, а биты суммы
+     * равны битам числа {@code 2^23} плюс это целое число.
+     */
+    private static final float FLOAT_ROUND = 0x1.0p23f;
+    /**
+     * Число {@code 2^52}, округляющее числа двойной точности.
+     */
+    private static final double DOUBLE_ROUND = 0x1.0p52;
+
+    /**
+     * Конструктор.
+     *
+     * @throws UnsupportedOperationException если вектор содержит меньше двух целых чисел.
+     */
+    public VectorPixelKernels() {
+        if (INTS.length() < 2 || HALF_INTS.length() < 2) {
+            throw new UnsupportedOperationException("Vectors are not supported");
+        }
+    }
+
+    @Override
+    public void mask(int[] in, int[] out, int from, int to, int and, int xor) {
+        int i = from;
+        for (int bound = to - INTS.length(); i <= bound; i += INTS.length()) {
+            IntVector.fromArray(INTS, in, i).and(and).lanewise(VectorOperators.XOR, xor).intoArray(out, i);
+        }
+        super.mask(in, out, i, to, and, xor);
+    }
+
+    @Override
+    public void grayscale(int[] in, int[] out, int from, int to, int channels) {
+        int i = from;
+        for (int bound = to - INTS.length(); i <= bound; i += INTS.length()) {
+            IntVector color = IntVector.fromArray(INTS, in, i);
+            IntVector gray = channel(color, 16).mul(77)
+                    .add(channel(color, 8).mul(151))
+                    .add(channel(color, 0).mul(28))
+                    .lanewise(VectorOperators.ASHR, 8);
+            color.and(~channels).or(gray.mul(0x010101).and(channels)).intoArray(out, i);
+        }
+        super.grayscale(in, out, i, to, channels);
+    }
+
+    @Override
+    public void accumulate(int[] in, int offset, float k, float[] as, float[] rs, float[] gs, float[] bs,
+                           int start, int count) {
+        int n = 0;
+        for (int bound = count - INTS.length(); n <= bound; n += INTS.length()) {
+            IntVector color = IntVector.fromArray(INTS, in, offset + n);
+            if (as != null) accumulate(color, 24, k, as, start + n);
+            if (rs != null) accumulate(color, 16, k, rs, start + n);
+            if (gs != null) accumulate(color, 8, k, gs, start + n);
+            if (bs != null) accumulate(color, 0, k, bs, start + n);
+        }
+        super.accumulate(in, offset + n, k, as, rs, gs, bs, start + n, count - n);
+    }
+
+    @Override
+    public void accumulate(int[] in, int offset, int k, int[] as, int[] rs, int[] gs, int[] bs,
+                           int start, int count) {
+        int n = 0;
+        for (int bound = count - INTS.length(); n <= bound; n += INTS.length()) {
+            IntVector color = IntVector.fromArray(INTS, in, offset + n);
+            if (as != null) accumulate(color, 24, k, as, start + n);
+            if (rs != null) accumulate(color, 16, k, rs, start + n);
+            if (gs != null) accumulate(color, 8, k, gs, start + n);
+            if (bs != null) accumulate(color, 0, k, bs, start + n);
+        }
+        super.accumulate(in, offset + n, k, as, rs, gs, bs, start + n, count - n);
+    }
+
+    @Override
+    public void accumulate(int[] in, int offset, float k, float[] sums, int start, int count) {
+        int n = 0;
+        for (int bound = count - INTS.length(); n <= bound; n += INTS.length()) {
+            FloatVector value = toFloat(IntVector.fromArray(INTS, in, offset + n));
+            FloatVector.fromArray(FLOATS, sums, start + n).add(value.mul(k)).intoArray(sums, start + n);
+        }
+        super.accumulate(in, offset + n, k, sums, start + n, count - n);
+    }
+
+    @Override
+    public void accumulate(float[] in, int offset, float k, float[] sums, int start, int count) {
+        int n = 0;
+        for (int bound = count - FLOATS.length(); n <= bound; n += FLOATS.length()) {
+            FloatVector value = FloatVector.fromArray(FLOATS, in, offset + n);
+            FloatVector.fromArray(FLOATS, sums, start + n).add(value.mul(k)).intoArray(sums, start + n);
+        }
+        super.accumulate(in, offset + n, k, sums, start + n, count - n);
+    }
+
+    @Override
+    public void addScaled(int[] in, int[] addend, int[] out, int from, int to, float factor) {
+        int i = from;
+        for (int bound = to - INTS.length(); i <= bound; i += INTS.length()) {
+            IntVector color1 = IntVector.fromArray(INTS, in, i);
+            IntVector color2 = IntVector.fromArray(INTS, addend, i);
+
+            IntVector result = IntVector.zero(INTS);
+            for (int shift = 0; shift < 32; shift += 8) {
+                FloatVector c1 = toFloat(channel(color1, shift));
+                FloatVector c2 = toFloat(channel(color2, shift));
+                IntVector c = toChannel(c1.add(c2.mul(factor)));
+                result = result.or(c.lanewise(VectorOperators.LSHL, shift));
+            }
+            result.intoArray(out, i);
+        }
+        super.addScaled(in, addend, out, i, to, factor);
+    }
+
+    @Override
+    public void sharpen(int[] in, int[] blurred, int[] out, int from, int to, double factor, int threshold) {
+        int i = from;
+        for (int bound = to - HALF_INTS.length(); i <= bound; i += HALF_INTS.length()) {
+            IntVector color1 = IntVector.fromArray(HALF_INTS, in, i);
+            IntVector color2 = IntVector.fromArray(HALF_INTS, blurred, i);
+
+            IntVector result = IntVector.zero(HALF_INTS);
+            for (int shift = 0; shift < 32; shift += 8) {
+                IntVector c1 = channel(color1, shift);
+                IntVector c2 = channel(color2, shift);
+                IntVector d = c1.sub(c2);
+
+                DoubleVector value = ((DoubleVector) d.convertShape(VectorOperators.I2D, DOUBLES, 0))
+                        .mul(factor)
+                        .add((DoubleVector) c2.convertShape(VectorOperators.I2D, DOUBLES, 0));
+                IntVector sharp = toChannel(value);
+
+                VectorMask<Integer> changed = d.abs().compare(VectorOperators.GE, threshold);
+                result = result.or(c1.blend(sharp, changed).lanewise(VectorOperators.LSHL, shift));
+            }
+            result.intoArray(out, i);
+        }
+        super.sharpen(in, blurred, out, i, to, factor, threshold);
+    }
+
+    /**
+     * Прибавляет к суммам канала пиксели, умноженные на значение матрицы.
+     *
+     * @param color вектор пикселей.
+     * @param shift сдвиг канала.
+     * @param k     значение матрицы.
+     * @param sums  суммы канала.
+     * @param n     индекс первой суммы.
+     */
+    private static void accumulate(IntVector color, int shift, float k, float[] sums, int n) {
+        FloatVector value = toFloat(channel(color, shift));
+        FloatVector.fromArray(FLOATS, sums, n).add(value.mul(k)).intoArray(sums, n);
+    }
+
+    /**
+     * Прибавляет к целым суммам канала пиксели, умноженные на целое значение матрицы.
+     *
+     * @param color вектор пикселей.
+     * @param shift сдвиг канала.
+     * @param k     значение матрицы.
+     * @param sums  суммы канала.
+     * @param n     индекс первой суммы.
+     */
+    private static void accumulate(IntVector color, int shift, int k, int[] sums, int n) {
+        IntVector value = channel(color, shift);
+        IntVector.fromArray(INTS, sums, n).add(value.mul(k)).intoArray(sums, n);
+    }
+
+    /**
+     * Выделяет канал пикселей.
+     *
+     * @param color вектор пикселей.
+     * @param shift сдвиг канала.
+     * @return вектор значений канала от 0 до 255.
+     */
+    private static IntVector channel(IntVector color, int shift) {
+        return color.lanewise(VectorOperators.LSHR, shift).and(0xff);
+    }
+
+    /**
+     * Вычисляет значение канала {@code clamp((int) value)} для каждого элемента вектора. Приведение чисел с плавающей
+     * точкой к целым числам Vector API выполняет без векторных инструкций на многих процессорах, поэтому значение
+     * сначала ограничивается отрезком от 0 до 255, затем округляется вниз сложением и вычитанием {@code 2^23}, а целое
+     * число берется из битов суммы с {@code 2^23}. Для неотрицательных чисел округление вниз совпадает с отбрасыванием
+     * дробной части, а {@code NaN} дает 0, поэтому результат совпадает с приведением типа.
+     *
+     * @param value вектор чисел с плавающей точкой.
+     * @return вектор значений от 0 до 255.
+     */
+    private static IntVector toChannel(FloatVector value) {
+        FloatVector v = value.blend(0.0f, value.test(VectorOperators.IS_NAN)).max(0.0f).min(255.0f);
+        FloatVector floor = v.add(FLOAT_ROUND).sub(FLOAT_ROUND);
+        floor = floor.sub(1.0f, floor.compare(VectorOperators.GT, v));
+        return floor.add(FLOAT_ROUND).reinterpretAsInts().sub(Float.floatToRawIntBits(FLOAT_ROUND));
+    }
+
+    /**
+     * Вычисляет значение канала {@code clamp((int) value)} для каждого элемента вектора чисел двойной точности так же,
+     * как {@link #toChannel(FloatVector)}. Целое значение от 0 до 255 точно преобразуется в число с плавающей точкой.
+     *
+     * @param value вектор чисел двойной точности.
+     * @return вектор значений от 0 до 255.
+     */
+    private static IntVector toChannel(DoubleVector value) {
+        DoubleVector v = value.blend(0.0, value.test(VectorOperators.IS_NAN)).max(0.0).min(255.0);
+        DoubleVector floor = v.add(DOUBLE_ROUND).sub(DOUBLE_ROUND);
+        floor = floor.sub(1.0, floor.compare(VectorOperators.GT, v));
+        FloatVector f = (FloatVector) floor.convertShape(VectorOperators.D2F, HALF_FLOATS, 0);
+        return f.add(FLOAT_ROUND).reinterpretAsInts().sub(Float.floatToRawIntBits(FLOAT_ROUND));
+    }
+
+    /**
+     * Преобразует целые числа в числа с плавающей точкой.
+     *
+     * @param value вектор целых чисел.
+     * @return вектор чисел с плавающей точкой.
+     */
+    private static FloatVector toFloat(IntVector value) {
+        return (FloatVector) value.convert(VectorOperators.I2F, 0);
+    }
+
+}
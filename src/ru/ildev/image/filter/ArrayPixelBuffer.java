@@ -0,0 +1,102 @@
+/*
+ *
+ */
+package ru.ildev.image.filter;
+
+/**
+ * Буфер пикселей, хранящий пиксели в массиве.
+ *
+ * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
+ * @version 0.0.0
+ */
+public class ArrayPixelBuffer implements PixelBuffer {
+
+    /**
+     * Массив пикселей.
+     */
+    private final int[] pixels;
+    /**
+     * Размеры изображения.
+     */
+    private final int width, height;
+
+    /**
+     * Конструктор, создающий массив пикселей.
+     *
+     * @param width  ширина изображения.
+     * @param height высота изображения.
+     */
+    public ArrayPixelBuffer(int width, int height) {
+        this(new int[checkSize(width, height)], width, height);
+    }
+
+    /**
+     * Конструктор.
+     *
+     * @param pixels массив пикселей.
+     * @param width  ширина изображения.
+     * @param height высота изображения.
+     */
+    public ArrayPixelBuffer(int[] pixels, int width, int height) {
+        if (pixels == null) throw new NullPointerException("pixels == null");
+        if (pixels.length < checkSize(width, height)) throw new IllegalArgumentException("Illegal array size");
+
+        this.pixels = pixels;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Получает массив пикселей.
+     *
+     * @return массив пикселей.
+     */
+    public int[] getArray() {
+        return this.pixels;
+    }
+
+    @Override
+    public int getWidth() {
+        return this.width;
+    }
+
+    @Override
+    public int getHeight() {
+        return this.height;
+    }
+
+    @Override
+    public int getPixel(int x, int y) {
+        return this.pixels[x + y * this.width];
+    }
+
+    @Override
+    public void setPixel(int x, int y, int color) {
+        this.pixels[x + y * this.width] = color;
+    }
+
+    @Override
+    public void getPixels(int y, int rows, int[] pixels, int offset) {
+        System.arraycopy(this.pixels, y * this.width, pixels, offset, rows * this.width);
+    }
+
+    @Override
+    public void setPixels(int y, int rows, int[] pixels, int offset) {
+        System.arraycopy(pixels, offset, this.pixels, y * this.width, rows * this.width);
+    }
+
+    /**
+     * Проверяет размеры изображения.
+     *
+     * @param width  ширина изображения.
+     * @param height высота изображения.
+     * @return количество пикселей.
+     */
+    private static int checkSize(int width, int height) {
+        if (width < 0 || height < 0) throw new IllegalArgumentException("width < 0 || height < 0");
+        long size = (long) width * height;
+        if (size > Integer.MAX_VALUE) throw new IllegalArgumentException("Image is too large for an array");
+        return (int) size;
+    }
+
+}
@@ -65,35 +65,22 @@ public class BandFilter extends Filter {
 
     @Override
     public void apply(int[] in, int[] out, int width, int height) {
-        boolean rchannel = this.isRedChannel();
-        boolean gchannel = this.isGreenChannel();
-        boolean bchannel = this.isBlueChannel();
-        boolean achannel = this.isAlphaChannel();
-        boolean monochrome = this.isMonochrome();
-
-        int size = width * height;
-        for (int i = 0; i < size; i++) {
-            if (monochrome) {
-                out[i] = (int) (this.matrix[12] * in[i] + this.matrix[13] * in[i] + this.matrix[14] * in[i] +
-                        this.matrix[15] * in[i]);
-            } else {
-                int a = 0xff & (in[i] >> 24);
-                int r = 0xff & (in[i] >> 16);
-                int g = 0xff & (in[i] >> 8);
-                int b = 0xff & in[i];
+        this.applyRows(in, out, width, height);
+    }
 
-                int ra = achannel ?
-                        (int) (this.matrix[0] * a + this.matrix[1] * r + this.matrix[2] * g + this.matrix[3] * b) : a;
-                int rr = rchannel ?
-                        (int) (this.matrix[4] * a + this.matrix[5] * r + this.matrix[6] * g + this.matrix[7] * b) : r;
-                int rg = gchannel ?
-                        (int) (this.matrix[8] * a + this.matrix[9] * r + this.matrix[10] * g + this.matrix[11] * b) : g;
-                int rb = bchannel ?
-                        (int) (this.matrix[12] * a + this.matrix[13] * r + this.matrix[14] * g + this.matrix[15] * b) :
-                        b;
+    @Override
+    public int getHalo() {
+        return 0;
+    }
 
-                out[i] = (ra << 24) | (rr << 16) | (rg << 8) | rb;
-            }
+    @Override
+    protected void apply(int[] in, int[] out, int width, int height, int fromY, int toY) {
+        PixelKernels kernels = PixelKernels.getDefault();
+        if (this.isMonochrome()) {
+            kernels.band(in, out, fromY * width, toY * width, this.matrix);
+        } else {
+            kernels.band(in, out, fromY * width, toY * width, this.matrix, this.isRedChannel(),
+                    this.isGreenChannel(), this.isBlueChannel(), this.isAlphaChannel());
         }
     }
 
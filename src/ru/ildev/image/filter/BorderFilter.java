@@ -171,8 +171,8 @@ public class BorderFilter extends Filter {
     }
 
     @Override
-    public BufferedImage apply(BufferedImage src, BufferedImage dst,
-                               int x, int y, int width, int height, int iterations) {
+    protected BufferedImage applyImage(BufferedImage src, BufferedImage dst,
+                                       int x, int y, int width, int height, int iterations) {
         if (src == null) throw new NullPointerException("src == null");
         if (dst == null) dst = this.createDestination(src, width, height);
 
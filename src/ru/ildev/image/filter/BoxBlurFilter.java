@@ -3,9 +3,18 @@
  */
 package ru.ildev.image.filter;
 
+import ru.ildev.color.Color;
+import ru.ildev.math.MoreMath;
+
 /**
  * Клас фильтра, обрабатывающий изображение однородной прямоугольной матрицей, т.е. все элементы матрицы имеют
  * одинаковое значение.
+ * <p>
+ * Сумма значений под матрицей вычисляется скользящим окном сначала по строкам, затем по столбцам: при сдвиге окна на
+ * один пиксель из суммы вычитается значение, вышедшее из окна, и прибавляется вошедшее. Поэтому количество операций на
+ * пиксель не зависит от размеров матрицы. Суммы целочисленные и точные, поэтому значение канала может отличаться от
+ * результата обычной свёртки не более чем на единицу, когда сумма оказывается на границе округления. Если ядро фильтра
+ * заменено методом {@link #setKernel(Kernel)}, то выполняется обычная свёртка.
  *
  * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
  * @version 0.0.0
@@ -20,6 +29,10 @@ public class BoxBlurFilter extends ConvolveFilter {
      * Высота матрицы.
      */
     protected int height;
+    /**
+     * Однородное ядро, созданное конструктором.
+     */
+    private final Kernel box;
 
     /**
      * Стандартный конструктор.
@@ -39,13 +52,229 @@ public class BoxBlurFilter extends ConvolveFilter {
      * @param edgeAction действие с краями.
      */
     public BoxBlurFilter(int width, int height, int edgeAction) {
-        int size = width * height;
-        float[] matrix = new float[size];
-        float k = 1.0f / size;
-        for (int i = 0; i < size; i++) matrix[i] = k;
-
-        this.kernel = new Kernel(width, height, matrix, 1.0f, 0);
+        this.width = width;
+        this.height = height;
+        this.box = KernelCache.getDefault().getBox(width, height, false);
+        this.kernel = this.box;
         this.edgeAction = edgeAction;
     }
 
+    @Override
+    protected void apply(int[] in, int[] out, int width, int height, int fromY, int toY) {
+        if (this.kernel != this.box) {
+            super.apply(in, out, width, height, fromY, toY);
+            return;
+        }
+
+        if (this.isMonochrome()) {
+            this.boxBlur(in, out, width, height, new int[]{0}, new int[]{-1}, true, fromY, toY);
+        } else {
+            int channels = 0;
+            if (this.isAlphaChannel()) channels++;
+            if (this.isRedChannel()) channels++;
+            if (this.isGreenChannel()) channels++;
+            if (this.isBlueChannel()) channels++;
+
+            int[] shifts = new int[channels];
+            int[] masks = new int[channels];
+            int c = 0;
+            if (this.isAlphaChannel()) shifts[c++] = 24;
+            if (this.isRedChannel()) shifts[c++] = 16;
+            if (this.isGreenChannel()) shifts[c++] = 8;
+            if (this.isBlueChannel()) shifts[c] = 0;
+            for (int i = 0; i < channels; i++) masks[i] = 0xff;
+
+            this.boxBlur(in, out, width, height, shifts, masks, false, fromY, toY);
+        }
+    }
+
+    @Override
+    public void applyPlane(byte[] in, byte[] out, int width, int height, int channel) {
+        if (this.kernel != this.box) {
+            super.applyPlane(in, out, width, height, channel);
+            return;
+        }
+
+        // Плоскость обрабатывается как монохромное изображение. Значения после размытия лежат в пределах от 0 до 255,
+        // поэтому округление совпадает с округлением при размытии плоскости.
+        int length = width * height;
+        int[] values = new int[length];
+        int[] result = new int[length];
+        for (int i = 0; i < length; i++) values[i] = 0xff & in[i];
+        this.boxBlur(values, result, width, height, new int[]{0}, new int[]{-1}, true, 0, height);
+        for (int i = 0; i < length; i++) out[i] = (byte) result[i];
+    }
+
+    /**
+     * Функция для размытия полосы строк изображения скользящим окном. Суммы строк изображения под окном хранятся в
+     * кольцевом буфере из {@code height} строк: строка с номером {@code n} хранится в ячейке {@code n mod height}.
+     * Строка, выходящая из окна, и строка, входящая в него, отличаются на высоту окна, поэтому занимают одну ячейку.
+     *
+     * @param in         входной массив пикселей.
+     * @param out        выходной массив пикселей.
+     * @param w          ширина изображения.
+     * @param h          высота изображения.
+     * @param shifts     сдвиги обрабатываемых каналов.
+     * @param masks      маски обрабатываемых каналов.
+     * @param monochrome флаг монохромной обработки.
+     * @param fromY      первая строка полосы.
+     * @param toY        строка, следующая за последней строкой полосы.
+     */
+    protected void boxBlur(int[] in, int[] out, int w, int h, int[] shifts, int[] masks, boolean monochrome,
+                           int fromY, int toY) {
+        int kw = this.width;
+        int kh = this.height;
+        int hh = kh / 2;
+        int edgeAction = this.edgeAction;
+        int channels = shifts.length;
+        float k = 1.0f / (kw * kh);
+
+        long[][][] rows = new long[kh][channels][w];
+        long[][] sums = new long[channels][w];
+        int[] values = new int[w];
+
+        // Заполняем окно первой строки полосы.
+        for (int j = 0; j < kh; j++) {
+            int number = fromY - hh + j;
+            if (isTaken(number, h, edgeAction)) {
+                this.loadRow(in, w, h, number, shifts, masks, values, rows[slot(number, kh)]);
+                add(sums, rows[slot(number, kh)], 1);
+            }
+        }
+
+        for (int y = fromY; y < toY; y++) {
+            // При расширении краев вместо строк за пределами изображения берется текущая строка.
+            long[][] current = rows[slot(y, kh)];
+            int missing = edgeAction == EXTEND_EDGES
+                    ? kh - (MoreMath.min(h, y - hh + kh) - MoreMath.max(0, y - hh)) : 0;
+
+            for (int x = 0; x < w; x++) {
+                int index = x + y * w;
+                if (monochrome) {
+                    long sum = sums[0][x] + missing * current[0][x];
+                    out[index] = MoreMath.round(MoreMath.clamp(sum * k, 0.0f, 255.0f));
+                } else {
+                    int color = in[index];
+                    for (int c = 0; c < channels; c++) {
+                        long sum = sums[c][x] + missing * current[c][x];
+                        int value = Color.clamp(MoreMath.round(sum * k));
+                        color = color & ~(0xff << shifts[c]) | value << shifts[c];
+                    }
+                    out[index] = color;
+                }
+            }
+
+            if (y + 1 == toY) break;
+
+            // Сдвигаем окно на одну строку вниз.
+            int leaving = y - hh;
+            int entering = leaving + kh;
+            long[][] row = rows[slot(entering, kh)];
+            if (isTaken(leaving, h, edgeAction)) add(sums, row, -1);
+            if (isTaken(entering, h, edgeAction)) {
+                this.loadRow(in, w, h, entering, shifts, masks, values, row);
+                add(sums, row, 1);
+            }
+        }
+    }
+
+    /**
+     * Вычисляет суммы значений каналов строки изображения под окном скользящим окном.
+     *
+     * @param in     входной массив пикселей.
+     * @param w      ширина изображения.
+     * @param h      высота изображения.
+     * @param number номер строки. При заворачивании краев может выходить за пределы изображения.
+     * @param shifts сдвиги обрабатываемых каналов.
+     * @param masks  маски обрабатываемых каналов.
+     * @param values временный массив значений канала.
+     * @param sums   суммы каналов.
+     */
+    private void loadRow(int[] in, int w, int h, int number, int[] shifts, int[] masks, int[] values,
+                         long[][] sums) {
+        int kw = this.width;
+        int hw = kw / 2;
+        int edgeAction = this.edgeAction;
+        int start = (number % h + h) % h * w;
+
+        for (int c = 0; c < shifts.length; c++) {
+            int shift = shifts[c];
+            int mask = masks[c];
+            for (int x = 0; x < w; x++) values[x] = in[start + x] >> shift & mask;
+
+            long[] line = sums[c];
+            long sum = 0;
+            for (int i = 0; i < kw; i++) sum += tap(values, i - hw, w, edgeAction);
+
+            for (int x = 0; x < w; x++) {
+                // При расширении краев вместо пикселей за пределами изображения берется текущий пиксель.
+                if (edgeAction == EXTEND_EDGES) {
+                    int missing = kw - (MoreMath.min(w, x - hw + kw) - MoreMath.max(0, x - hw));
+                    line[x] = sum + (long) missing * values[x];
+                } else {
+                    line[x] = sum;
+                }
+                sum += tap(values, x - hw + kw, w, edgeAction) - tap(values, x - hw, w, edgeAction);
+            }
+        }
+    }
+
+    /**
+     * Получает значение пикселя строки, попадающего в окно. Пиксели за пределами изображения при расширении краев
+     * учитываются отдельно, поэтому для них, как и при обрезании краев, возвращается 0.
+     *
+     * @param values     значения канала строки.
+     * @param x          x-координата пикселя.
+     * @param w          ширина изображения.
+     * @param edgeAction действие с краями.
+     * @return значение пикселя.
+     */
+    private static int tap(int[] values, int x, int w, int edgeAction) {
+        if (0 <= x && x < w) {
+            return values[x];
+        } else if (edgeAction == WRAP_EDGES) {
+            return values[(x % w + w) % w];
+        } else {
+            return 0;
+        }
+    }
+
+    /**
+     * Проверяет, входит ли строка с указанным номером в сумму окна.
+     *
+     * @param number     номер строки.
+     * @param h          высота изображения.
+     * @param edgeAction действие с краями.
+     * @return {@code true}, если строка входит в сумму.
+     */
+    private static boolean isTaken(int number, int h, int edgeAction) {
+        return 0 <= number && number < h || edgeAction == WRAP_EDGES;
+    }
+
+    /**
+     * Находит ячейку кольцевого буфера для строки.
+     *
+     * @param number номер строки.
+     * @param kh     количество ячеек.
+     * @return индекс ячейки.
+     */
+    private static int slot(int number, int kh) {
+        return (number % kh + kh) % kh;
+    }
+
+    /**
+     * Прибавляет к суммам окна суммы строки.
+     *
+     * @param sums суммы окна.
+     * @param row  суммы строки.
+     * @param sign знак слагаемого.
+     */
+    private static void add(long[][] sums, long[][] row, int sign) {
+        for (int c = 0; c < sums.length; c++) {
+            long[] sum = sums[c];
+            long[] line = row[c];
+            for (int x = 0; x < sum.length; x++) sum[x] += sign * line[x];
+        }
+    }
+
 }
@@ -0,0 +1,224 @@
+/*
+ *
+ */
+package ru.ildev.image.filter;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Пул массивов пикселей. Массивы хранятся в корзинах по размеру: в корзину с номером {@code k} попадают массивы,
+ * длина которых больше {@code 2^(k-1)} и не больше {@code 2^k}. Массив берется методом {@link #lease(int)} и
+ * возвращается в пул методом {@link #release(int[])}. Длина выданного массива может быть больше запрошенной, поэтому
+ * размер изображения нужно брать из параметров, а не из длины массива. Пул потокобезопасен.
+ *
+ * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
+ * @version 0.0.0
+ */
+public final class BufferPool {
+
+    /**
+     * Количество корзин.
+     */
+    private static final int BUCKETS = 32;
+    /**
+     * Максимальное количество массивов в одной корзине.
+     */
+    private static final int BUCKET_CAPACITY = 8;
+
+    /**
+     * Общий пул массивов, используемый фильтрами.
+     */
+    private static final BufferPool DEFAULT = new BufferPool(Runtime.getRuntime().maxMemory() / 8);
+
+    /**
+     * Корзины массивов.
+     */
+    private final ArrayDeque<int[]>[] buckets;
+    /**
+     * Максимальный объем памяти, удерживаемый пулом, в байтах.
+     */
+    private volatile long maxRetainedBytes;
+    /**
+     * Объем памяти, удерживаемый пулом, в байтах.
+     */
+    private final AtomicLong retainedBytes = new AtomicLong();
+    /**
+     * Количество запросов, для которых нашелся массив в пуле.
+     */
+    private final AtomicLong hits = new AtomicLong();
+    /**
+     * Количество запросов, для которых пришлось создать новый массив.
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Конструктор.
+     *
+     * @param maxRetainedBytes максимальный объем памяти, удерживаемый пулом, в байтах.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public BufferPool(long maxRetainedBytes) {
+        if (maxRetainedBytes < 0) throw new IllegalArgumentException("maxRetainedBytes < 0");
+        this.maxRetainedBytes = maxRetainedBytes;
+        this.buckets = new ArrayDeque[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            this.buckets[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * Получает общий пул массивов.
+     *
+     * @return общий пул массивов.
+     */
+    public static BufferPool getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Берет из пула массив, первые {@code size} элементов которого равны нулю.
+     *
+     * @param size необходимая длина массива.
+     * @return массив, длина которого не меньше {@code size}.
+     */
+    public int[] lease(int size) {
+        return this.lease(size, true);
+    }
+
+    /**
+     * Берет из пула массив.
+     *
+     * @param size  необходимая длина массива.
+     * @param clear флаг обнуления первых {@code size} элементов массива. Если массив будет полностью перезаписан, то
+     *              обнулять его не нужно.
+     * @return массив, длина которого не меньше {@code size}.
+     */
+    public int[] lease(int size, boolean clear) {
+        if (size < 0) throw new IllegalArgumentException("size < 0");
+
+        int[] buffer = null;
+        ArrayDeque<int[]> bucket = this.buckets[bucket(size)];
+        synchronized (bucket) {
+            for (Iterator<int[]> it = bucket.iterator(); it.hasNext(); ) {
+                int[] candidate = it.next();
+                if (candidate.length >= size) {
+                    it.remove();
+                    buffer = candidate;
+                    break;
+                }
+            }
+        }
+
+        if (buffer == null) {
+            this.misses.incrementAndGet();
+            // Новый массив уже заполнен нулями.
+            return new int[size];
+        }
+
+        this.hits.incrementAndGet();
+        this.retainedBytes.addAndGet(-4L * buffer.length);
+        if (clear) {
+            Arrays.fill(buffer, 0, size, 0);
+        }
+        return buffer;
+    }
+
+    /**
+     * Возвращает массив в пул. После возврата массив нельзя использовать. Если пул заполнен, то массив отдается
+     * сборщику мусора.
+     *
+     * @param buffer массив или {@code null}.
+     */
+    public void release(int[] buffer) {
+        if (buffer == null || buffer.length == 0) return;
+
+        long bytes = 4L * buffer.length;
+        if (this.retainedBytes.addAndGet(bytes) > this.maxRetainedBytes) {
+            this.retainedBytes.addAndGet(-bytes);
+            return;
+        }
+
+        ArrayDeque<int[]> bucket = this.buckets[bucket(buffer.length)];
+        synchronized (bucket) {
+            if (bucket.size() < BUCKET_CAPACITY) {
+                bucket.addFirst(buffer);
+                return;
+            }
+        }
+        this.retainedBytes.addAndGet(-bytes);
+    }
+
+    /**
+     * Удаляет из пула все массивы.
+     */
+    public void clear() {
+        for (ArrayDeque<int[]> bucket : this.buckets) {
+            synchronized (bucket) {
+                for (int[] buffer : bucket) {
+                    this.retainedBytes.addAndGet(-4L * buffer.length);
+                }
+                bucket.clear();
+            }
+        }
+    }
+
+    /**
+     * Получает количество запросов, для которых нашелся массив в пуле.
+     *
+     * @return количество попаданий.
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * Получает количество запросов, для которых пришлось создать новый массив.
+     *
+     * @return количество промахов.
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * Получает объем памяти, удерживаемый пулом.
+     *
+     * @return объем памяти в байтах.
+     */
+    public long getRetainedBytes() {
+        return this.retainedBytes.get();
+    }
+
+    /**
+     * Получает максимальный объем памяти, удерживаемый пулом.
+     *
+     * @return максимальный объем памяти в байтах.
+     */
+    public long getMaxRetainedBytes() {
+        return this.maxRetainedBytes;
+    }
+
+    /**
+     * Устанавливает максимальный объем памяти, удерживаемый пулом. Уже удерживаемые массивы не удаляются.
+     *
+     * @param maxRetainedBytes максимальный объем памяти в байтах.
+     */
+    public void setMaxRetainedBytes(long maxRetainedBytes) {
+        if (maxRetainedBytes < 0) throw new IllegalArgumentException("maxRetainedBytes < 0");
+        this.maxRetainedBytes = maxRetainedBytes;
+    }
+
+    /**
+     * Находит номер корзины для массива указанной длины.
+     *
+     * @param length длина массива.
+     * @return номер корзины.
+     */
+    private static int bucket(int length) {
+        return length <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(length - 1);
+    }
+
+}
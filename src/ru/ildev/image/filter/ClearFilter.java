@@ -16,4 +16,10 @@ public class ClearFilter extends ColorFilter {
         return 0;
     }
 
+    @Override
+    protected boolean applyPixels(PixelKernels kernels, int[] in, int[] out, int from, int to) {
+        kernels.mask(in, out, from, to, 0, 0);
+        return true;
+    }
+
 }
@@ -12,9 +12,45 @@ package ru.ildev.image.filter;
  */
 public abstract class ColorFilter extends Filter {
 
+    /**
+     * Флаги классов фильтров, для которых метод {@link #applyPixels} можно использовать вместо
+     * {@link #apply(int, int, int)}.
+     */
+    private static final ClassValue<Boolean> PIXEL_KERNELS = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            Class<?> pixels = declaringClass(type, "applyPixels", PixelKernels.class, int[].class, int[].class,
+                    int.class, int.class);
+            Class<?> pixel = declaringClass(type, "apply", int.class, int.class, int.class);
+            return pixels != null && pixel != null && pixel.isAssignableFrom(pixels);
+        }
+    };
+
     @Override
     public void apply(int[] in, int[] out, int width, int height) {
-        for (int y = 0; y < height; y++) {
+        this.prepare();
+        this.applyRows(in, out, width, height);
+    }
+
+    /**
+     * Подготавливает фильтр к обработке изображения. Вызывается перед обработкой каждого изображения, в том числе
+     * когда фильтр объединяется с другими в {@link CombinedFilter}.
+     */
+    protected void prepare() {
+    }
+
+    @Override
+    public int getHalo() {
+        return 0;
+    }
+
+    @Override
+    protected void apply(int[] in, int[] out, int width, int height, int fromY, int toY) {
+        if (this.canApplyPixels() && this.applyPixels(PixelKernels.getDefault(), in, out, fromY * width, toY * width)) {
+            return;
+        }
+
+        for (int y = fromY; y < toY; y++) {
             for (int x = 0; x < width; x++) {
                 int index = x + y * width;
                 out[index] = this.apply(x, y, in[index]);
@@ -22,6 +58,54 @@ public abstract class ColorFilter extends Filter {
         }
     }
 
+    /**
+     * Применяет фильтр к подряд идущим пикселям с помощью внутренних циклов {@link PixelKernels}. Этот метод
+     * переопределяют фильтры, результат которых не зависит от положения пикселя. Если наследник такого фильтра
+     * переопределяет {@link #apply(int, int, int)}, а этот метод - нет, то метод не вызывается, и пиксели
+     * обрабатываются по одному.
+     *
+     * @param kernels внутренние циклы.
+     * @param in      входной массив пикселей.
+     * @param out     выходной массив пикселей.
+     * @param from    первый индекс.
+     * @param to      индекс, следующий за последним.
+     * @return {@code true}, если пиксели обработаны, или {@code false}, если их нужно обработать методом
+     * {@link #apply(int, int, int)}.
+     */
+    protected boolean applyPixels(PixelKernels kernels, int[] in, int[] out, int from, int to) {
+        return false;
+    }
+
+    /**
+     * Проверяет, можно ли обработать пиксели методом {@link #applyPixels}: он должен быть объявлен в том же классе,
+     * что и {@link #apply(int, int, int)}, или в его наследнике.
+     *
+     * @return {@code true}, если метод {@link #applyPixels} можно вызывать.
+     */
+    final boolean canApplyPixels() {
+        return PIXEL_KERNELS.get(this.getClass());
+    }
+
+    /**
+     * Находит класс, в котором объявлен метод, ближайший к указанному классу.
+     *
+     * @param type           класс фильтра.
+     * @param name           имя метода.
+     * @param parameterTypes типы параметров метода.
+     * @return класс, объявивший метод, или {@code null}, если метод не найден.
+     */
+    private static Class<?> declaringClass(Class<?> type, String name, Class<?>... parameterTypes) {
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod(name, parameterTypes);
+                return c;
+            } catch (NoSuchMethodException e) {
+                // Метод объявлен в одном из предков.
+            }
+        }
+        return null;
+    }
+
     /**
      * Применяет фильтр для пикселя изображения.
      *
@@ -49,4 +49,10 @@ public class ColorMaskFilter extends ColorFilter {
         return color & this.mask;
     }
 
+    @Override
+    protected boolean applyPixels(PixelKernels kernels, int[] in, int[] out, int from, int to) {
+        kernels.mask(in, out, from, to, this.mask, 0);
+        return true;
+    }
+
 }
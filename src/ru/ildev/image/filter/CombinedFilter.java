@@ -3,6 +3,8 @@
  */
 package ru.ildev.image.filter;
 
+import ru.ildev.math.MoreMath;
+
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -16,10 +18,28 @@ import java.util.List;
  */
 public class CombinedFilter extends Filter {
 
+    /**
+     * Оценка стоимости одного прохода по изображению в количестве значений матрицы на пиксель: распаковка и упаковка
+     * каналов, округление сумм и запись промежуточного изображения.
+     */
+    private static final int PASS_COST = 12;
+
     /**
      * Список фильтров.
      */
     protected List<Filter> filters = new ArrayList<>();
+    /**
+     * Флаг объединения подряд идущих цветовых фильтров в один проход по изображению.
+     */
+    protected boolean fusion = true;
+    /**
+     * Флаг обработки подряд идущих фильтров плоскостями каналов.
+     */
+    protected boolean planar = false;
+    /**
+     * Флаг замены подряд идущих линейных фильтров свёртки одним фильтром с составным ядром.
+     */
+    protected boolean merging = false;
 
     /**
      * Стандартный конструктор.
@@ -96,21 +116,411 @@ public class CombinedFilter extends Filter {
         this.filters.clear();
     }
 
+    /**
+     * Проверяет, объединяются ли подряд идущие цветовые фильтры в один проход по изображению.
+     *
+     * @return {@code true}, если цветовые фильтры объединяются.
+     */
+    public boolean isFusion() {
+        return this.fusion;
+    }
+
+    /**
+     * Включает или отключает объединение подряд идущих цветовых фильтров ({@link ColorFilter}) в один проход по
+     * изображению. Объединенные фильтры вызываются для каждого пикселя по очереди, а подряд идущие фильтры
+     * {@link TransferFilter} заменяются одним фильтром с составной таблицей. Результат от этого не меняется.
+     *
+     * @param flag флаг.
+     */
+    public void setFusion(boolean flag) {
+        this.fusion = flag;
+    }
+
+    /**
+     * Проверяет, обрабатываются ли подряд идущие фильтры плоскостями каналов.
+     *
+     * @return {@code true}, если фильтры обрабатываются плоскостями каналов.
+     */
+    public boolean isPlanar() {
+        return this.planar;
+    }
+
+    /**
+     * Включает или отключает обработку плоскостями каналов. Если несколько фильтров подряд умеют обрабатывать
+     * плоскости ({@link PlanarFilter}), то пиксели распаковываются в плоскости ({@link PlanarImage}) один раз перед
+     * первым из них и упаковываются один раз после последнего, а каналы, которые фильтр не изменяет, пропускаются.
+     * Результат от этого не меняется.
+     *
+     * @param flag флаг.
+     */
+    public void setPlanar(boolean flag) {
+        this.planar = flag;
+    }
+
+    /**
+     * Проверяет, заменяются ли подряд идущие линейные фильтры свёртки одним фильтром с составным ядром.
+     *
+     * @return {@code true}, если фильтры свёртки объединяются.
+     */
+    public boolean isMerging() {
+        return this.merging;
+    }
+
+    /**
+     * Включает или отключает замену подряд идущих линейных фильтров свёртки ({@link ConvolveFilter#isLinear()}) с
+     * одинаковыми действием с краями и каналами одним фильтром с составным ядром ({@link Kernel#compose(Kernel)}).
+     * Фильтры объединяются, только если составное ядро по оценке количества операций дешевле отдельных проходов,
+     * например размытие 3x3 и повышение резкости 3x3 заменяются одной свёрткой 5x5.
+     * <p>
+     * Результат при этом может немного отличаться, поэтому объединение по умолчанию отключено. Промежуточное
+     * изображение не округляется, и ошибка округления, умноженная на второе ядро, достигает половины суммы модулей
+     * его нормализованной матрицы, например 4 для повышения резкости 3x3. Промежуточные значения не ограничиваются
+     * отрезком от 0 до 255, а у краев шириной в полуразмер ядра действие с краями применяется один раз к исходному
+     * изображению, а не к каждому промежуточному.
+     *
+     * @param flag флаг.
+     */
+    public void setMerging(boolean flag) {
+        this.merging = flag;
+    }
+
+    /**
+     * Включает или отключает многопоточную обработку изображения всем добавленным фильтрам.
+     *
+     * @param flag флаг.
+     */
+    @Override
+    public void setParallel(boolean flag) {
+        super.setParallel(flag);
+        for (Filter filter : this.filters) {
+            filter.setParallel(flag);
+        }
+    }
+
     @Override
     public void apply(int[] in, int[] out, int width, int height) {
-        if (!this.filters.isEmpty()) {
+        List<Filter> stages = this.fusion ? this.fuse() : this.filters;
+        if (this.merging) stages = this.merge(stages);
+
+        boolean metrics = FilterMetrics.isEnabled();
+
+        int count = stages.size();
+        if (count == 1) {
+            applyStage(stages.get(0), in, out, width, height, metrics);
+        } else if (count > 1) {
             int length = width * height;
-            int[] t = new int[length];
+            BufferPool pool = BufferPool.getDefault();
+            int[] t = pool.lease(length);
+
+            try {
+                // Применяем фильтры. Результаты записываются поочередно в выходной и временный массивы, а входной
+                // массив не изменяется, так как он может быть массивом данных изображения.
+                int[] a = in;
+                int[] b = out;
+                for (int i = 0; i < count; ) {
+                    int j = this.planar ? planarRun(stages, i) : i;
+                    if (j - i > 1) {
+                        // Распаковываем пиксели один раз для всех фильтров, обрабатывающих плоскости каналов.
+                        PlanarImage image = PlanarImage.unpack(a, width, height);
+                        for (; i < j; i++) {
+                            applyPlanarStage(stages.get(i), image, metrics);
+                        }
+                        image.getPixels(b);
+                    } else {
+                        applyStage(stages.get(i++), a, b, width, height, metrics);
+                    }
 
-            // Применяем фильтры.
-            for (Filter filter : this.filters) {
-                filter.apply(in, out, width, height);
+                    a = b;
+                    b = b == out ? t : out;
+                }
 
-                System.arraycopy(out, 0, t, 0, length);
-                System.arraycopy(out, 0, in, 0, length);
-                System.arraycopy(t, 0, in, 0, length);
+                // Копируем результат, если он остался во временном массиве.
+                if (a != out) System.arraycopy(a, 0, out, 0, length);
+            } finally {
+                pool.release(t);
             }
         }
     }
 
+    /**
+     * Применяет один этап фильтра.
+     *
+     * @param filter  фильтр этапа.
+     * @param in      входной массив пикселей.
+     * @param out     выходной массив пикселей.
+     * @param width   ширина изображения.
+     * @param height  высота изображения.
+     * @param metrics флаг сбора метрик.
+     */
+    private static void applyStage(Filter filter, int[] in, int[] out, int width, int height, boolean metrics) {
+        if (!metrics) {
+            filter.apply(in, out, width, height);
+            return;
+        }
+
+        FilterMetrics.Probe probe = FilterMetrics.begin(filter);
+        try {
+            filter.apply(in, out, width, height);
+        } finally {
+            probe.end((long) width * height);
+        }
+    }
+
+    /**
+     * Применяет один этап фильтра к плоскостям каналов.
+     *
+     * @param filter  фильтр этапа.
+     * @param image   изображение.
+     * @param metrics флаг сбора метрик.
+     */
+    private static void applyPlanarStage(Filter filter, PlanarImage image, boolean metrics) {
+        if (!metrics) {
+            image.apply((PlanarFilter) filter, filter.isParallel());
+            return;
+        }
+
+        FilterMetrics.Probe probe = FilterMetrics.begin(filter);
+        try {
+            image.apply((PlanarFilter) filter, filter.isParallel());
+        } finally {
+            probe.end((long) image.getWidth() * image.getHeight());
+        }
+    }
+
+    /**
+     * Находит конец последовательности фильтров, обрабатывающих плоскости каналов.
+     *
+     * @param stages список фильтров.
+     * @param from   индекс первого фильтра последовательности.
+     * @return индекс, следующий за последним фильтром последовательности.
+     */
+    private static int planarRun(List<Filter> stages, int from) {
+        int to = from;
+        while (to < stages.size()) {
+            Filter filter = stages.get(to);
+            if (!(filter instanceof PlanarFilter) || !((PlanarFilter) filter).isPlanar()) break;
+            to++;
+        }
+        return to;
+    }
+
+    /**
+     * Составляет список проходов по изображению, объединяя подряд идущие цветовые фильтры.
+     *
+     * @return список фильтров, каждый из которых обрабатывает изображение за один проход.
+     */
+    private List<Filter> fuse() {
+        int count = this.filters.size();
+        List<Filter> stages = new ArrayList<>(count);
+        for (int i = 0; i < count; ) {
+            Filter filter = this.filters.get(i);
+            int j = i + 1;
+            if (filter instanceof ColorFilter) {
+                while (j < count && this.filters.get(j) instanceof ColorFilter) j++;
+            }
+
+            if (j - i == 1) {
+                stages.add(filter);
+            } else {
+                ColorFilter[] run = this.filters.subList(i, j).toArray(new ColorFilter[j - i]);
+                Filter stage = ColorChain.compose(run);
+                if (stage == null) stage = new ColorChain(run);
+                stage.setParallel(this.parallel);
+                if (FilterMetrics.isEnabled()) stage.setName(ColorChain.name(run));
+                stages.add(stage);
+            }
+            i = j;
+        }
+        return stages;
+    }
+
+    /**
+     * Объединяет подряд идущие линейные фильтры свёртки, если составное ядро дешевле отдельных проходов.
+     *
+     * @param stages список проходов по изображению.
+     * @return список проходов с объединенными фильтрами свёртки.
+     */
+    private List<Filter> merge(List<Filter> stages) {
+        List<Filter> result = new ArrayList<>(stages.size());
+        // Последний проход, к которому можно присоединить следующий фильтр свёртки, и его стоимость.
+        ConvolveFilter last = null;
+        int lastCost = 0;
+
+        for (Filter filter : stages) {
+            ConvolveFilter convolve = filter instanceof ConvolveFilter ? (ConvolveFilter) filter : null;
+            if (convolve != null && !convolve.isLinear()) convolve = null;
+
+            if (last != null && convolve != null && isMergeable(last, convolve)) {
+                ConvolveFilter merged = new ConvolveFilter(last.kernel.compose(convolve.kernel), last.edgeAction);
+                merged.setChannels(last.isRedChannel(), last.isGreenChannel(), last.isBlueChannel(),
+                        last.isAlphaChannel(), last.isMonochrome());
+                merged.setSeparable(last.separable);
+                merged.setUnrolled(last.unrolled);
+                merged.setFourierThreshold(last.fourierThreshold);
+                merged.setParallel(this.parallel);
+
+                int cost = cost(merged);
+                if (cost < lastCost + PASS_COST + cost(convolve)) {
+                    if (FilterMetrics.isEnabled()) merged.setName(name(last) + '*' + name(convolve));
+                    result.set(result.size() - 1, merged);
+                    last = merged;
+                    lastCost = cost;
+                    continue;
+                }
+            }
+
+            result.add(filter);
+            last = convolve;
+            lastCost = convolve != null ? cost(convolve) : 0;
+        }
+        return result;
+    }
+
+    /**
+     * Проверяет, можно ли заменить два фильтра свёртки одним. Фильтры должны обрабатывать одни и те же каналы с
+     * одинаковым действием с краями, а смещение цветов первого фильтра должно быть равно нулю, чтобы смещение
+     * составного ядра было точным.
+     *
+     * @param first  первый фильтр.
+     * @param second второй фильтр.
+     * @return {@code true}, если фильтры можно объединить.
+     */
+    private static boolean isMergeable(ConvolveFilter first, ConvolveFilter second) {
+        return first.edgeAction == second.edgeAction && first.kernel.getOffset() == 0
+                && first.isRedChannel() == second.isRedChannel() && first.isGreenChannel() == second.isGreenChannel()
+                && first.isBlueChannel() == second.isBlueChannel() && first.isAlphaChannel() == second.isAlphaChannel()
+                && first.isMonochrome() == second.isMonochrome();
+    }
+
+    /**
+     * Оценивает количество операций на пиксель для фильтра свёртки: {@code kw + kh} для разделимого ядра, иначе
+     * количество ненулевых значений матрицы, но не больше порога свёртки через преобразование Фурье, стоимость
+     * которой от размера ядра почти не зависит.
+     *
+     * @param filter фильтр свёртки.
+     * @return оценку количества операций на пиксель.
+     */
+    private static int cost(ConvolveFilter filter) {
+        Kernel kernel = filter.kernel;
+        if (filter.separable && kernel.isSeparable()) return kernel.getWidth() + kernel.getHeight();
+        return MoreMath.min(kernel.getTapCount(), filter.getFourierThreshold());
+    }
+
+    /**
+     * Получает имя фильтра для метрик: имя фильтра или, если оно не задано, простое имя его класса.
+     *
+     * @param filter фильтр.
+     * @return имя.
+     */
+    private static String name(Filter filter) {
+        return filter.getName() != null ? filter.getName() : filter.getClass().getSimpleName();
+    }
+
+    /**
+     * Цветовой фильтр, последовательно применяющий к каждому пикселю несколько цветовых фильтров за один проход.
+     */
+    private static final class ColorChain extends ColorFilter {
+
+        /**
+         * Объединенные фильтры.
+         */
+        private final ColorFilter[] filters;
+
+        /**
+         * Конструктор.
+         *
+         * @param filters объединяемые фильтры.
+         */
+        ColorChain(ColorFilter[] filters) {
+            this.filters = filters;
+        }
+
+        /**
+         * Составляет один фильтр из подряд идущих фильтров {@link TransferFilter}. Таблицы составного фильтра
+         * получаются последовательной подстановкой таблиц объединяемых фильтров. Для каналов, которые фильтр не
+         * обрабатывает, используется тождественная таблица. Наследник {@link TransferFilter}, переопределивший
+         * обработку пикселя без таблиц, не объединяется.
+         *
+         * @param filters объединяемые фильтры.
+         * @return составной фильтр или {@code null}, если фильтры нельзя заменить одной таблицей.
+         */
+        static TransferFilter compose(ColorFilter[] filters) {
+            boolean monochrome = filters[0].isMonochrome();
+            for (ColorFilter filter : filters) {
+                if (!(filter instanceof TransferFilter) || !filter.canApplyPixels()) return null;
+                if (filter.isMonochrome() != monochrome) return null;
+            }
+
+            int[] rTable = new int[256], gTable = new int[256], bTable = new int[256];
+            for (int i = 0; i < 256; i++) {
+                rTable[i] = gTable[i] = bTable[i] = i;
+            }
+
+            for (ColorFilter filter : filters) {
+                TransferFilter transfer = (TransferFilter) filter;
+                transfer.prepare();
+
+                if (monochrome) {
+                    if (!substitute(bTable, transfer.bTable)) return null;
+                } else {
+                    if (transfer.isRedChannel() && !substitute(rTable, transfer.rTable)) return null;
+                    if (transfer.isGreenChannel() && !substitute(gTable, transfer.gTable)) return null;
+                    if (transfer.isBlueChannel() && !substitute(bTable, transfer.bTable)) return null;
+                }
+            }
+
+            TransferFilter composed = new TransferFilter(rTable, gTable, bTable);
+            composed.setChannels(true, true, true, false, monochrome);
+            return composed;
+        }
+
+        /**
+         * Составляет имя объединенных фильтров для метрик из имен фильтров или, если имя не задано, из простых имен
+         * их классов.
+         *
+         * @param filters объединенные фильтры.
+         * @return имя.
+         */
+        static String name(ColorFilter[] filters) {
+            StringBuilder builder = new StringBuilder();
+            for (ColorFilter filter : filters) {
+                if (builder.length() > 0) builder.append('+');
+                builder.append(filter.getName() != null ? filter.getName() : filter.getClass().getSimpleName());
+            }
+            return builder.toString();
+        }
+
+        /**
+         * Подставляет значения таблицы {@code table} в таблицу {@code result}.
+         *
+         * @param result составная таблица.
+         * @param table  таблица фильтра.
+         * @return {@code false}, если значение таблицы фильтра выходит за пределы от 0 до 255.
+         */
+        private static boolean substitute(int[] result, int[] table) {
+            for (int i = 0; i < 256; i++) {
+                int value = table[result[i]];
+                if (value < 0 || value > 255) return false;
+                result[i] = value;
+            }
+            return true;
+        }
+
+        @Override
+        protected void prepare() {
+            for (ColorFilter filter : this.filters) {
+                filter.prepare();
+            }
+        }
+
+        @Override
+        protected int apply(int x, int y, int color) {
+            for (ColorFilter filter : this.filters) {
+                color = filter.apply(x, y, color);
+            }
+            return color;
+        }
+
+    }
+
 }
@@ -6,6 +6,13 @@ package ru.ildev.image.filter;
 import ru.ildev.color.Color;
 import ru.ildev.math.MoreMath;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
 /**
  * <p> Класс фильтра изображения. Фильтр применяется методом свёртки. Возьмем некоторую квадратную матрицу фильтра (ядро
  * или <code>kernel</code>) с нечетным числом элементов и наложим, например, на красный канал так, чтобы центр матрицы
@@ -71,7 +78,7 @@ import ru.ildev.math.MoreMath;
  * @author Ilyas74
  * @version 1.8.6
  */
-public class ConvolveFilter extends Filter {
+public class ConvolveFilter extends Filter implements PlanarFilter {
 
     /**
      * Обрезание краев. Пиксели матрицы, которые выходят за границы изображения будут пропускаться.
@@ -87,6 +94,51 @@ public class ConvolveFilter extends Filter {
      * изображения с другой стороны.
      */
     public static final int WRAP_EDGES = 2;
+    /**
+     * Площадь матрицы по умолчанию, начиная с которой выполняется свёртка через преобразование Фурье, если внутренние
+     * циклы обычной свёртки скалярные ({@link PixelKernels#SCALAR}).
+     */
+    public static final int FOURIER_THRESHOLD = 81;
+    /**
+     * Площадь матрицы по умолчанию, начиная с которой выполняется свёртка через преобразование Фурье, если внутренние
+     * циклы обычной свёртки векторные ({@link PixelKernels#getVector()}).
+     */
+    public static final int VECTOR_FOURIER_THRESHOLD = 529;
+    /**
+     * Минимальный размер участка изображения, сворачиваемого через преобразование Фурье за один раз.
+     */
+    private static final int FOURIER_TILE = 64;
+    /**
+     * Системное свойство, задающее размер кэша данных первого уровня процессора в байтах. Если свойство не задано, то
+     * размер читается из описания процессора в {@code /sys/devices/system/cpu}, а если его там нет, то равен
+     * {@link #DEFAULT_L1_CACHE_SIZE}.
+     */
+    public static final String L1_CACHE_SIZE_PROPERTY = "ru.ildev.image.filter.l1CacheSize";
+    /**
+     * Системное свойство, задающее размер кэша второго уровня процессора в байтах. Значение по умолчанию определяется
+     * так же, как для {@link #L1_CACHE_SIZE_PROPERTY}, и равно {@link #DEFAULT_L2_CACHE_SIZE}.
+     */
+    public static final String L2_CACHE_SIZE_PROPERTY = "ru.ildev.image.filter.l2CacheSize";
+    /**
+     * Размер кэша данных первого уровня по умолчанию в байтах.
+     */
+    public static final int DEFAULT_L1_CACHE_SIZE = 32 * 1024;
+    /**
+     * Размер кэша второго уровня по умолчанию в байтах.
+     */
+    public static final int DEFAULT_L2_CACHE_SIZE = 256 * 1024;
+    /**
+     * Размер кэша данных первого уровня в байтах.
+     */
+    private static final int L1_CACHE_SIZE = loadCacheSize(1, L1_CACHE_SIZE_PROPERTY, DEFAULT_L1_CACHE_SIZE);
+    /**
+     * Размер кэша второго уровня в байтах.
+     */
+    private static final int L2_CACHE_SIZE = loadCacheSize(2, L2_CACHE_SIZE_PROPERTY, DEFAULT_L2_CACHE_SIZE);
+    /**
+     * Минимальная ширина полосы столбцов при выборе ширины по размеру кэша.
+     */
+    private static final int MIN_TILE_WIDTH = 256;
 
     /**
      * Объект ядра.
@@ -96,6 +148,24 @@ public class ConvolveFilter extends Filter {
      * Действие с краями изображения.
      */
     protected int edgeAction = EXTEND_EDGES;
+    /**
+     * Флаг свёртки разделимых матриц в два прохода.
+     */
+    protected boolean separable = true;
+    /**
+     * Флаг свёртки матриц 3x3 и 5x5 развернутыми циклами.
+     */
+    protected boolean unrolled = true;
+    /**
+     * Площадь матрицы, начиная с которой выполняется свёртка через преобразование Фурье, или 0, если площадь
+     * выбирается по текущей реализации внутренних циклов.
+     */
+    protected int fourierThreshold = 0;
+    /**
+     * Ширина полосы столбцов, обрабатываемой по всем строкам за один раз, или 0, если ширина выбирается по размеру кэша
+     * процессора.
+     */
+    protected int tileWidth = 0;
 
     /**
      * Стандартный конструктор.
@@ -161,13 +231,273 @@ public class ConvolveFilter extends Filter {
         this.edgeAction = edgeAction;
     }
 
+    /**
+     * Проверяет, выполняется ли свёртка с разделимой матрицей ({@link Kernel#isSeparable()}) в два прохода: сначала
+     * по строкам, затем по столбцам. Это уменьшает количество операций на пиксель с {@code kw * kh} до
+     * {@code kw + kh}. Если значения строки и столбца матрицы целые, а суммы меньше {@code 2^24}, то все суммы точны,
+     * и результат совпадает с результатом обычной свёртки. Для дробных значений суммы складываются в другом порядке,
+     * поэтому значение канала может отличаться на единицу, когда сумма оказывается на границе округления.
+     *
+     * @return {@code true}, если разделимые матрицы обрабатываются в два прохода.
+     */
+    public boolean isSeparable() {
+        return this.separable;
+    }
+
+    /**
+     * Устанавливает флаг свёртки разделимых матриц в два прохода.
+     *
+     * @param flag флаг.
+     * @see #isSeparable()
+     */
+    public void setSeparable(boolean flag) {
+        this.separable = flag;
+    }
+
+    /**
+     * Проверяет, выполняется ли свёртка с матрицами 3x3 и 5x5 развернутыми циклами. Такие циклы хранят значения
+     * матрицы и скользящее окно пикселей под ней в локальных переменных и используются для плоскостей каналов, а для
+     * упакованных пикселей - только со скалярными внутренними циклами ({@link PixelKernels#SCALAR}), потому что
+     * векторные проходы по строке быстрее. Результат совпадает с результатом общего цикла свёртки.
+     *
+     * @return {@code true}, если матрицы 3x3 и 5x5 сворачиваются развернутыми циклами.
+     */
+    public boolean isUnrolled() {
+        return this.unrolled;
+    }
+
+    /**
+     * Устанавливает флаг свёртки матриц 3x3 и 5x5 развернутыми циклами.
+     *
+     * @param flag флаг.
+     * @see #isUnrolled()
+     */
+    public void setUnrolled(boolean flag) {
+        this.unrolled = flag;
+    }
+
+    /**
+     * Получает площадь матрицы {@code kw * kh}, начиная с которой неразделимая матрица сворачивается через
+     * преобразование Фурье. Количество операций на пиксель при этом растет как логарифм размеров матрицы, а не как ее
+     * площадь. Суммы вычисляются с двойной точностью, поэтому значение канала может отличаться от результата обычной
+     * свёртки на единицу, когда сумма оказывается на границе округления. По умолчанию площадь равна
+     * {@link #FOURIER_THRESHOLD} для скалярных внутренних циклов и {@link #VECTOR_FOURIER_THRESHOLD} для векторных.
+     * Обычная свёртка обходит только ненулевые значения матрицы, поэтому с порогом сравнивается их количество, которое
+     * для плотной матрицы равно ее площади.
+     *
+     * @return площадь матрицы.
+     */
+    public int getFourierThreshold() {
+        if (this.fourierThreshold > 0) return this.fourierThreshold;
+        return PixelKernels.getDefault() == PixelKernels.SCALAR ? FOURIER_THRESHOLD : VECTOR_FOURIER_THRESHOLD;
+    }
+
+    /**
+     * Устанавливает площадь матрицы, начиная с которой выполняется свёртка через преобразование Фурье. Значение
+     * {@link Integer#MAX_VALUE} отключает такую свёртку, а значение 0 возвращает площадь по умолчанию.
+     *
+     * @param area площадь матрицы.
+     * @throws IllegalArgumentException если площадь отрицательна.
+     * @see #getFourierThreshold()
+     */
+    public void setFourierThreshold(int area) {
+        if (area < 0) throw new IllegalArgumentException("area < 0");
+        this.fourierThreshold = area;
+    }
+
+    /**
+     * Получает ширину полосы столбцов, которую свёртка без разделения матрицы обрабатывает по всем строкам, прежде чем
+     * перейти к следующей полосе. Для каждого значения матрицы внутренний цикл проходит по участку строки изображения
+     * и по суммам каналов, а каждая строка результата читает {@code kh} строк изображения. У широкого изображения
+     * суммы целой строки не помещаются в кэш первого уровня, и каждое значение матрицы заново читает их из кэша
+     * второго уровня. По умолчанию ширина выбирается так, чтобы участок строки и суммы помещались в кэш первого уровня
+     * ({@link #getCacheSize(int)}), а {@code kh} строк полосы занимали не больше половины кэша второго уровня, и
+     * соседние строки результата читали уже загруженные пиксели. Порядок сложения для каждого пикселя не меняется,
+     * поэтому результат не зависит от ширины полосы. Полосы используются для упакованных пикселей; плоскости каналов
+     * занимают вчетверо меньше памяти и обрабатываются целыми строками.
+     *
+     * @return ширина полосы в пикселях.
+     */
+    public int getTileWidth() {
+        return this.tileWidth(this.kernel == null ? 1 : this.kernel.height, 4);
+    }
+
+    /**
+     * Устанавливает ширину полосы столбцов. Значение 0 возвращает ширину по умолчанию, которая вычисляется по размеру
+     * кэша процессора, а значение {@link Integer#MAX_VALUE} отключает деление на полосы.
+     *
+     * @param width ширина полосы в пикселях.
+     * @throws IllegalArgumentException если ширина отрицательна.
+     * @see #getTileWidth()
+     */
+    public void setTileWidth(int width) {
+        if (width < 0) throw new IllegalArgumentException("width < 0");
+        this.tileWidth = width;
+    }
+
+    /**
+     * Получает размер кэша процессора, по которому выбирается ширина полосы столбцов.
+     *
+     * @param level уровень кэша: 1 или 2.
+     * @return размер кэша в байтах.
+     * @throws IllegalArgumentException если уровень не равен 1 или 2.
+     * @see #L1_CACHE_SIZE_PROPERTY
+     * @see #L2_CACHE_SIZE_PROPERTY
+     */
+    public static int getCacheSize(int level) {
+        switch (level) {
+            case 1:
+                return L1_CACHE_SIZE;
+            case 2:
+                return L2_CACHE_SIZE;
+            default:
+                throw new IllegalArgumentException("Illegal cache level " + level);
+        }
+    }
+
+    /**
+     * Находит ширину полосы столбцов для матрицы указанной высоты.
+     *
+     * @param kh       высота матрицы.
+     * @param channels количество массивов сумм.
+     * @return ширина полосы в пикселях.
+     */
+    private int tileWidth(int kh, int channels) {
+        if (this.tileWidth > 0) return this.tileWidth;
+        // Участок строки изображения и суммы каналов.
+        int width = L1_CACHE_SIZE / (4 * (channels + 1));
+        // Строки изображения под матрицей и суммы.
+        width = MoreMath.min(width, L2_CACHE_SIZE / 2 / (4 * (kh + channels)));
+        return MoreMath.max(MIN_TILE_WIDTH, width & ~15);
+    }
+
+    /**
+     * Определяет размер кэша процессора.
+     *
+     * @param level        уровень кэша.
+     * @param property     системное свойство, задающее размер кэша.
+     * @param defaultValue размер кэша, если его не удалось определить.
+     * @return размер кэша в байтах.
+     */
+    private static int loadCacheSize(int level, String property, int defaultValue) {
+        try {
+            String value = System.getProperty(property);
+            if (value != null) {
+                int size = Integer.parseInt(value.trim());
+                if (size > 0) return size;
+            }
+
+            // Описания кэшей процессора лежат в каталогах index0, index1 и т.д.
+            Path caches = Paths.get("/sys/devices/system/cpu/cpu0/cache");
+            for (int i = 0; Files.isDirectory(caches.resolve("index" + i)); i++) {
+                Path cache = caches.resolve("index" + i);
+                if (!String.valueOf(level).equals(read(cache.resolve("level")))) continue;
+                if ("Instruction".equals(read(cache.resolve("type")))) continue;
+
+                String size = read(cache.resolve("size"));
+                if (size.isEmpty()) continue;
+                char unit = Character.toUpperCase(size.charAt(size.length() - 1));
+                if (unit == 'K') return Integer.parseInt(size.substring(0, size.length() - 1)) << 10;
+                if (unit == 'M') return Integer.parseInt(size.substring(0, size.length() - 1)) << 20;
+                return Integer.parseInt(size);
+            }
+        } catch (IOException | NumberFormatException | SecurityException e) {
+            // Размер кэша не удалось определить.
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Читает содержимое короткого текстового файла.
+     *
+     * @param file файл.
+     * @return содержимое файла без пробелов и переводов строк по краям.
+     * @throws IOException если файл не удалось прочитать.
+     */
+    private static String read(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).trim();
+    }
+
+    /**
+     * Проверяет, сворачивается ли текущая матрица через преобразование Фурье.
+     *
+     * @return {@code true}, если матрица сворачивается через преобразование Фурье.
+     */
+    private boolean isFourier() {
+        return this.kernel.getTapCount() >= this.getFourierThreshold();
+    }
+
+    /**
+     * Проверяет, линейный ли фильтр, т.е. равен ли его результат свёртке с ядром {@link #getKernel()} с действием с
+     * краями {@link #getEdgeAction()}. Подряд идущие линейные фильтры можно заменить одним фильтром с составным ядром
+     * ({@link Kernel#compose(Kernel)}).
+     *
+     * @return {@code true}, если фильтр линейный.
+     */
+    public boolean isLinear() {
+        return true;
+    }
+
     @Override
     public void apply(int[] in, int[] out, int width, int height) {
-        this.blur(in, out, width, height, this.kernel.matrix,
-                this.kernel.width, this.kernel.height, this.kernel.divisor,
-                this.kernel.offset, this.edgeAction, this.isRedChannel(),
-                this.isGreenChannel(), this.isBlueChannel(),
-                this.isAlphaChannel(), this.isMonochrome());
+        this.applyRows(in, out, width, height);
+    }
+
+    @Override
+    public int getHalo() {
+        // При заворачивании краев крайние строки читают строки с другой стороны изображения.
+        return this.edgeAction == WRAP_EDGES ? UNBOUNDED_HALO : this.kernel.height / 2;
+    }
+
+    @Override
+    protected void apply(int[] in, int[] out, int width, int height, int fromY, int toY) {
+        if (this.separable && this.kernel.isSeparable()) {
+            this.blurSeparable(in, out, width, height, this.kernel.row, this.kernel.column,
+                    this.kernel.divisor, this.kernel.offset, this.edgeAction, this.isRedChannel(),
+                    this.isGreenChannel(), this.isBlueChannel(),
+                    this.isAlphaChannel(), this.isMonochrome(), fromY, toY);
+        } else if (this.isFourier()) {
+            this.blurFourier(in, out, width, height, this.kernel.matrix,
+                    this.kernel.width, this.kernel.height, this.kernel.divisor,
+                    this.kernel.offset, this.edgeAction, this.isRedChannel(),
+                    this.isGreenChannel(), this.isBlueChannel(),
+                    this.isAlphaChannel(), this.isMonochrome(), fromY, toY);
+        } else if (this.kernel.isInteger() && !this.isMonochrome()) {
+            this.blurInteger(in, out, width, height, this.kernel, this.edgeAction, this.isRedChannel(),
+                    this.isGreenChannel(), this.isBlueChannel(), this.isAlphaChannel(), fromY, toY);
+        } else {
+            this.blur(in, out, width, height, this.kernel.matrix,
+                    this.kernel.width, this.kernel.height, this.kernel.divisor,
+                    this.kernel.offset, this.edgeAction, this.isRedChannel(),
+                    this.isGreenChannel(), this.isBlueChannel(),
+                    this.isAlphaChannel(), this.isMonochrome(), fromY, toY);
+        }
+    }
+
+    @Override
+    public boolean isPlanar() {
+        return !this.isMonochrome();
+    }
+
+    @Override
+    public boolean isPlaneProcessed(int channel) {
+        return PlanarImage.isChannel(this, channel);
+    }
+
+    @Override
+    public void applyPlane(byte[] in, byte[] out, int width, int height, int channel) {
+        if (this.separable && this.kernel.isSeparable()) {
+            this.blurPlaneSeparable(in, out, width, height, this.kernel.row, this.kernel.column,
+                    this.kernel.divisor, this.kernel.offset, this.edgeAction);
+        } else if (this.isFourier()) {
+            this.blurPlaneFourier(in, out, width, height, this.kernel.matrix, this.kernel.width, this.kernel.height,
+                    this.kernel.divisor, this.kernel.offset, this.edgeAction);
+        } else if (this.kernel.isInteger()) {
+            this.blurPlaneInteger(in, out, width, height, this.kernel, this.edgeAction);
+        } else {
+            this.blurPlane(in, out, width, height, this.kernel.matrix, this.kernel.width, this.kernel.height,
+                    this.kernel.divisor, this.kernel.offset, this.edgeAction);
+        }
     }
 
     /**
@@ -193,137 +523,1142 @@ public class ConvolveFilter extends Filter {
                         int kh, float divisor, int offset, int edgeAction,
                         boolean rchannel, boolean gchannel, boolean bchannel,
                         boolean achannel, boolean monochrome) {
+        this.blur(in, out, w, h, m, kw, kh, divisor, offset, edgeAction,
+                rchannel, gchannel, bchannel, achannel, monochrome, 0, h);
+    }
+
+    /**
+     * Функция для размытия полосы строк изображения.
+     *
+     * @param in         входной массив пикселей.
+     * @param out        выходной массив пикселей.
+     * @param w          ширина изображения.
+     * @param h          высота изображения.
+     * @param m          матрица ядра.
+     * @param kw         ширина матрицы.
+     * @param kh         высота матрицы.
+     * @param divisor    делитель матрицы.
+     * @param offset     смещение цветов.
+     * @param edgeAction действие с краями.
+     * @param rchannel   флаг обработки красных компонентов.
+     * @param gchannel   флаг обработки зеленых компонентов.
+     * @param bchannel   флаг обработки синих компонентов.
+     * @param achannel   флаг обработки альфа компонентов.
+     * @param monochrome флаг монохромной обработки.
+     * @param fromY      первая строка полосы.
+     * @param toY        строка, следующая за последней строкой полосы.
+     */
+    protected void blur(int[] in, int[] out, int w, int h, float[] m, int kw,
+                        int kh, float divisor, int offset, int edgeAction,
+                        boolean rchannel, boolean gchannel, boolean bchannel,
+                        boolean achannel, boolean monochrome, int fromY, int toY) {
         int hw = kw / 2;
         int hh = kh / 2;
         float invDiv = divisor <= 0.0f ? 0.0f : 1.0f / divisor;
+        PixelKernels kernels = PixelKernels.getDefault();
+        // Обходятся только ненулевые значения матрицы в порядке обхода по строкам.
+        Kernel kernel = this.kernelOf(m, kw, kh);
+        int[] tapX = kernel.tapX;
+        int[] tapY = kernel.tapY;
+        float[] taps = kernel.taps;
+        int count = taps.length;
+        // Смещения строк изображения под строками матрицы, -1 для пропускаемых строк.
+        int[] rows = new int[kh];
+        // Развернутые циклы для матриц 3x3 и 5x5 быстрее скалярных проходов по строке, но медленнее векторных.
+        boolean window = this.unrolled && kernels == PixelKernels.SCALAR;
+
+        // Внутренние столбцы x0..x1, для которых матрица не выходит за левый и правый края изображения, обрабатываются
+        // участками строки: для каждого значения матрицы суммы всех пикселей участка увеличиваются за один проход.
+        // Порядок сложения для каждого пикселя тот же, что и при обработке по одному пикселю, поэтому результат
+        // совпадает.
+        int x0 = MoreMath.min(hw, w);
+        int x1 = MoreMath.max(x0, w - (kw - 1 - hw));
+        int span = x1 - x0;
+
+        // Внутренние столбцы делятся на полосы шириной tile, и каждая полоса обрабатывается по всем строкам. Строки
+        // изображения под матрицей и суммы одной полосы остаются в кэше процессора между соседними строками.
+        int channels = monochrome ? 1
+                : (achannel ? 1 : 0) + (rchannel ? 1 : 0) + (gchannel ? 1 : 0) + (bchannel ? 1 : 0);
+        int tile = MoreMath.min(span, this.tileWidth(kh, channels));
 
         if (monochrome) {
-            // Проходим по каждому пикселю изображения.
-            for (int y = 0; y < h; y++) {
-                for (int x = 0; x < w; x++) {
-                    float color = 0.0f;
-
-                    // Проходим по каждому пикселю матрицы.
-                    for (int j = 0; j < kh; j++) {
-                        // Находим позиции пикселя матрицы относительно
-                        // изображения по y.
-                        int pixelPosY = y + j - hh;
-
-                        int yOff;
-                        if (0 <= pixelPosY && pixelPosY < h) {
-                            yOff = pixelPosY * w;
-                        } else if (edgeAction == EXTEND_EDGES) {
-                            yOff = y * w;
-                        } else if (edgeAction == WRAP_EDGES) {
-                            yOff = (pixelPosY + h) % h * w;
-                        } else /*
-                                * if(this.edgeAction ==
-                                * ConvolveFilter.CROP_EDGES)
-                                */ {
-                            continue;
-                        }
+            float[] sums = new float[tile];
 
-                        for (int i = 0; i < kw; i++) {
-                            float k = m[i + j * kw];
-                            // Если значение матрицы равно нулю, то проходим
-                            // дальше.
-                            if (k == 0.0f) continue;
-                            // Находим позиции пикселя матрицы относительно
-                            // изображения по x.
-                            int pixelPosX = x + i - hw;
-
-                            int xOff;
-                            if (0 <= pixelPosX && pixelPosX < w) {
-                                xOff = pixelPosX;
-                            } else if (edgeAction == EXTEND_EDGES) {
-                                xOff = x;
-                            } else if (edgeAction == WRAP_EDGES) {
-                                xOff = (pixelPosX + w) % w;
-                            } else /*
-                                    * if(this.edgeAction ==
-                                    * ConvolveFilter.CROP_EDGES)
-                                    */ {
-                                continue;
-                            }
-
-                            // Находим значение RGBA цвета в массиве.
-                            // Cуммируем найденые цвета к результатирующему
-                            // цвету.
-                            color += in[xOff + yOff] * k;
+            for (int tx = x0; tx < x1; tx += tile) {
+                int n = MoreMath.min(tile, x1 - tx);
+
+                // Проходим по каждой строке изображения.
+                for (int y = fromY; y < toY; y++) {
+                    for (int j = 0; j < kh; j++) rows[j] = rowOffset(y, j - hh, w, h, edgeAction);
+
+                    if (window && UnrolledKernels.isUnrolled(kw, kh, rows)) {
+                        UnrolledKernels.convolve(in, rows, tx, n, 0, -1, m, kw, sums);
+                    } else {
+                        Arrays.fill(sums, 0, n, 0.0f);
+
+                        // Проходим по каждому ненулевому значению матрицы.
+                        for (int t = 0; t < count; t++) {
+                            int yOff = rows[tapY[t] + hh];
+                            if (yOff < 0) continue;
+                            kernels.accumulate(in, yOff + tx + tapX[t], taps[t], sums, 0, n);
                         }
                     }
 
-                    // Контролируем переполнения переменных.
-                    // Записываем значения в результирующее изображение.
-                    out[x + y * w] = MoreMath.round(MoreMath.clamp(color * invDiv + offset, 0.0f, 255.0f));
+                    for (int x = tx; x < tx + n; x++) {
+                        // Контролируем переполнения переменных.
+                        out[x + y * w] = MoreMath.round(MoreMath.clamp(sums[x - tx] * invDiv + offset, 0.0f, 255.0f));
+                    }
+                }
+            }
+
+            // Крайние столбцы обрабатываются по одному пикселю.
+            for (int y = fromY; y < toY; y++) {
+                for (int j = 0; j < kh; j++) rows[j] = rowOffset(y, j - hh, w, h, edgeAction);
+
+                for (int x = 0; x < x0; x++) {
+                    out[x + y * w] = this.blurPixel(in, w, rows, hh, kernel, invDiv, offset, edgeAction, x, y);
+                }
+                for (int x = x1; x < w; x++) {
+                    out[x + y * w] = this.blurPixel(in, w, rows, hh, kernel, invDiv, offset, edgeAction, x, y);
                 }
             }
         } else {
-            // Проходим по каждому пикселю изображения.
-            for (int y = 0; y < h; y++) {
-                for (int x = 0; x < w; x++) {
-                    float rs = 0.0f, gs = 0.0f, bs = 0.0f, as = 0.0f;
-
-                    // Проходим по каждому пикселю матрицы.
-                    for (int j = 0; j < kh; j++) {
-                        // Находим позиции пикселя матрицы относительно
-                        // изображения по y.
-                        int pixelPosY = y + j - hh;
-
-                        int yOff;
-                        if (0 <= pixelPosY && pixelPosY < h) {
-                            yOff = pixelPosY * w;
-                        } else if (edgeAction == EXTEND_EDGES) {
-                            yOff = y * w;
-                        } else if (edgeAction == WRAP_EDGES) {
-                            yOff = (pixelPosY + h) % h * w;
-                        } else /* if(this.edgeAction == ConvolveFilter.CROP_EDGES) */ {
-                            continue;
-                        }
+            float[] as = achannel ? new float[tile] : null;
+            float[] rs = rchannel ? new float[tile] : null;
+            float[] gs = gchannel ? new float[tile] : null;
+            float[] bs = bchannel ? new float[tile] : null;
 
-                        for (int i = 0; i < kw; i++) {
-                            float k = this.kernel.matrix[i + j * kw];
-                            // Если значение матрицы равно нулю, то проходим
-                            // дальше.
-                            if (k == 0.0f) continue;
-                            // Находим позиции пикселя матрицы относительно
-                            // изображения по x.
-                            int pixelPosX = x + i - hw;
-
-                            int xOff;
-                            if (0 <= pixelPosX && pixelPosX < w) {
-                                xOff = pixelPosX;
-                            } else if (edgeAction == EXTEND_EDGES) {
-                                xOff = x;
-                            } else if (edgeAction == WRAP_EDGES) {
-                                xOff = (pixelPosX + w) % w;
-                            } else /* if(this.edgeAction == ConvolveFilter.CROP_EDGES) */ {
-                                continue;
-                            }
-
-                            // Находим значение RGBA цвета в массиве.
-                            int rgba = in[xOff + yOff];
-                            // Cуммируем найденые цвета к результатирующему
-                            // цвету.
-                            if (achannel) as += (0xff & rgba >> 24) * k;
-                            if (rchannel) rs += (0xff & rgba >> 16) * k;
-                            if (gchannel) gs += (0xff & rgba >> 8) * k;
-                            if (bchannel) bs += (0xff & rgba) * k;
+            for (int tx = x0; tx < x1; tx += tile) {
+                int n = MoreMath.min(tile, x1 - tx);
+
+                // Проходим по каждой строке изображения.
+                for (int y = fromY; y < toY; y++) {
+                    for (int j = 0; j < kh; j++) rows[j] = rowOffset(y, j - hh, w, h, edgeAction);
+
+                    if (window && UnrolledKernels.isUnrolled(kw, kh, rows)) {
+                        // Матрицы 3x3 и 5x5 сворачиваются развернутыми циклами по каждому каналу.
+                        if (achannel) UnrolledKernels.convolve(in, rows, tx, n, 24, 0xff, m, kw, as);
+                        if (rchannel) UnrolledKernels.convolve(in, rows, tx, n, 16, 0xff, m, kw, rs);
+                        if (gchannel) UnrolledKernels.convolve(in, rows, tx, n, 8, 0xff, m, kw, gs);
+                        if (bchannel) UnrolledKernels.convolve(in, rows, tx, n, 0, 0xff, m, kw, bs);
+                    } else {
+                        if (achannel) Arrays.fill(as, 0, n, 0.0f);
+                        if (rchannel) Arrays.fill(rs, 0, n, 0.0f);
+                        if (gchannel) Arrays.fill(gs, 0, n, 0.0f);
+                        if (bchannel) Arrays.fill(bs, 0, n, 0.0f);
+
+                        // Проходим по каждому ненулевому значению матрицы.
+                        for (int t = 0; t < count; t++) {
+                            int yOff = rows[tapY[t] + hh];
+                            if (yOff < 0) continue;
+                            kernels.accumulate(in, yOff + tx + tapX[t], taps[t], as, rs, gs, bs, 0, n);
                         }
                     }
 
+                    for (int x = tx; x < tx + n; x++) {
+                        int index = x + y * w;
+                        int i = x - tx;
+                        // Контролируем переполнения переменных.
+                        int a = achannel ? Color.clamp(MoreMath.round(as[i] * invDiv + offset))
+                                : 0xff & in[index] >> 24;
+                        int r = rchannel ? Color.clamp(MoreMath.round(rs[i] * invDiv + offset))
+                                : 0xff & in[index] >> 16;
+                        int g = gchannel ? Color.clamp(MoreMath.round(gs[i] * invDiv + offset))
+                                : 0xff & in[index] >> 8;
+                        int b = bchannel ? Color.clamp(MoreMath.round(bs[i] * invDiv + offset))
+                                : 0xff & in[index];
+
+                        // Записываем значения в результирующее изображение.
+                        out[index] = a << 24 | r << 16 | g << 8 | b;
+                    }
+                }
+            }
+
+            // Крайние столбцы обрабатываются по одному пикселю.
+            for (int y = fromY; y < toY; y++) {
+                for (int j = 0; j < kh; j++) rows[j] = rowOffset(y, j - hh, w, h, edgeAction);
+
+                for (int x = 0; x < x0; x++) {
+                    out[x + y * w] = this.blurPixel(in, w, rows, hh, kernel, invDiv, offset, edgeAction,
+                            rchannel, gchannel, bchannel, achannel, x, y);
+                }
+                for (int x = x1; x < w; x++) {
+                    out[x + y * w] = this.blurPixel(in, w, rows, hh, kernel, invDiv, offset, edgeAction,
+                            rchannel, gchannel, bchannel, achannel, x, y);
+                }
+            }
+        }
+    }
+
+    /**
+     * Функция для размытия полосы строк цветного изображения целочисленной матрицей ({@link Kernel#isInteger()}). Суммы
+     * каналов накапливаются в целых числах, а значения каналов берутся из таблицы ядра или вычисляются из сумм так же,
+     * как в методе {@link #blur(int[], int[], int, int, float[], int, int, float, int, int, boolean, boolean, boolean,
+     * boolean, boolean, int, int) blur}. Суммы целочисленной матрицы в числах с плавающей точкой вычисляются точно,
+     * поэтому результаты обоих методов совпадают.
+     *
+     * @param in         входной массив пикселей.
+     * @param out        выходной массив пикселей.
+     * @param w          ширина изображения.
+     * @param h          высота изображения.
+     * @param kernel     целочисленное ядро.
+     * @param edgeAction действие с краями.
+     * @param rchannel   флаг обработки красных компонентов.
+     * @param gchannel   флаг обработки зеленых компонентов.
+     * @param bchannel   флаг обработки синих компонентов.
+     * @param achannel   флаг обработки альфа компонентов.
+     * @param fromY      первая строка полосы.
+     * @param toY        строка, следующая за последней строкой полосы.
+     */
+    protected void blurInteger(int[] in, int[] out, int w, int h, Kernel kernel, int edgeAction,
+                               boolean rchannel, boolean gchannel, boolean bchannel, boolean achannel,
+                               int fromY, int toY) {
+        int kw = kernel.width;
+        int kh = kernel.height;
+        int hw = kw / 2;
+        int hh = kh / 2;
+        int offset = kernel.offset;
+        float invDiv = 1.0f / kernel.divisor;
+        PixelKernels kernels = PixelKernels.getDefault();
+        int[] tapX = kernel.tapX;
+        int[] tapY = kernel.tapY;
+        int[] taps = kernel.integerTaps;
+        int count = taps.length;
+        int[] table = kernel.getChannelTable();
+        int low = kernel.lowSum;
+        // Смещения строк изображения под строками матрицы, -1 для пропускаемых строк.
+        int[] rows = new int[kh];
+
+        int x0 = MoreMath.min(hw, w);
+        int x1 = MoreMath.max(x0, w - (kw - 1 - hw));
+        int span = x1 - x0;
+
+        int channels = (achannel ? 1 : 0) + (rchannel ? 1 : 0) + (gchannel ? 1 : 0) + (bchannel ? 1 : 0);
+        int tile = MoreMath.min(span, this.tileWidth(kh, channels));
+        int[] as = achannel ? new int[tile] : null;
+        int[] rs = rchannel ? new int[tile] : null;
+        int[] gs = gchannel ? new int[tile] : null;
+        int[] bs = bchannel ? new int[tile] : null;
+
+        // Внутренние столбцы обрабатываются полосами шириной tile так же, как в методе blur.
+        for (int tx = x0; tx < x1; tx += tile) {
+            int n = MoreMath.min(tile, x1 - tx);
+
+            // Проходим по каждой строке изображения.
+            for (int y = fromY; y < toY; y++) {
+                for (int j = 0; j < kh; j++) rows[j] = rowOffset(y, j - hh, w, h, edgeAction);
+
+                if (achannel) Arrays.fill(as, 0, n, 0);
+                if (rchannel) Arrays.fill(rs, 0, n, 0);
+                if (gchannel) Arrays.fill(gs, 0, n, 0);
+                if (bchannel) Arrays.fill(bs, 0, n, 0);
+
+                // Проходим по каждому ненулевому значению матрицы.
+                for (int t = 0; t < count; t++) {
+                    int yOff = rows[tapY[t] + hh];
+                    if (yOff < 0) continue;
+                    kernels.accumulate(in, yOff + tx + tapX[t], taps[t], as, rs, gs, bs, 0, n);
+                }
+
+                for (int x = tx; x < tx + n; x++) {
                     int index = x + y * w;
-                    // Контролируем переполнения переменных.
-                    int a = achannel ? Color.clamp(MoreMath.round(as * invDiv + offset)) : 0xff & in[index] >> 24;
-                    int r = rchannel ? Color.clamp(MoreMath.round(rs * invDiv + offset)) : 0xff & in[index] >> 16;
-                    int g = gchannel ? Color.clamp(MoreMath.round(gs * invDiv + offset)) : 0xff & in[index] >> 8;
-                    int b = bchannel ? Color.clamp(MoreMath.round(bs * invDiv + offset)) : 0xff & in[index];
+                    int i = x - tx;
+                    int a = achannel ? channel(as[i], table, low, invDiv, offset) : 0xff & in[index] >> 24;
+                    int r = rchannel ? channel(rs[i], table, low, invDiv, offset) : 0xff & in[index] >> 16;
+                    int g = gchannel ? channel(gs[i], table, low, invDiv, offset) : 0xff & in[index] >> 8;
+                    int b = bchannel ? channel(bs[i], table, low, invDiv, offset) : 0xff & in[index];
 
                     // Записываем значения в результирующее изображение.
                     out[index] = a << 24 | r << 16 | g << 8 | b;
                 }
             }
         }
+
+        // Крайние столбцы обрабатываются по одному пикселю, их суммы тоже точны.
+        for (int y = fromY; y < toY; y++) {
+            for (int j = 0; j < kh; j++) rows[j] = rowOffset(y, j - hh, w, h, edgeAction);
+
+            for (int x = 0; x < x0; x++) {
+                out[x + y * w] = this.blurPixel(in, w, rows, hh, kernel, invDiv, offset, edgeAction,
+                        rchannel, gchannel, bchannel, achannel, x, y);
+            }
+            for (int x = x1; x < w; x++) {
+                out[x + y * w] = this.blurPixel(in, w, rows, hh, kernel, invDiv, offset, edgeAction,
+                        rchannel, gchannel, bchannel, achannel, x, y);
+            }
+        }
+    }
+
+    /**
+     * Функция для размытия полосы строк изображения разделимой матрицей в два прохода. Сначала строки изображения
+     * сворачиваются со строкой матрицы, и результаты хранятся в кольцевом буфере из {@code kh} строк, затем строки
+     * буфера сворачиваются со столбцом матрицы. Края изображения обрабатываются так же, как при обычной свёртке.
+     *
+     * @param in         входной массив пикселей.
+     * @param out        выходной массив пикселей.
+     * @param w          ширина изображения.
+     * @param h          высота изображения.
+     * @param row        строка матрицы.
+     * @param column     столбец матрицы.
+     * @param divisor    делитель матрицы.
+     * @param offset     смещение цветов.
+     * @param edgeAction действие с краями.
+     * @param rchannel   флаг обработки красных компонентов.
+     * @param gchannel   флаг обработки зеленых компонентов.
+     * @param bchannel   флаг обработки синих компонентов.
+     * @param achannel   флаг обработки альфа компонентов.
+     * @param monochrome флаг монохромной обработки.
+     * @param fromY      первая строка полосы.
+     * @param toY        строка, следующая за последней строкой полосы.
+     */
+    protected void blurSeparable(int[] in, int[] out, int w, int h, float[] row, float[] column, float divisor,
+                                 int offset, int edgeAction, boolean rchannel, boolean gchannel, boolean bchannel,
+                                 boolean achannel, boolean monochrome, int fromY, int toY) {
+        int kh = column.length;
+        int hh = kh / 2;
+        float invDiv = divisor <= 0.0f ? 0.0f : 1.0f / divisor;
+        PixelKernels kernels = PixelKernels.getDefault();
+
+        // Суммы и строки буфера хранятся по каналам в порядке a, r, g, b, в монохромном режиме канал один.
+        boolean[] channels = monochrome ? new boolean[]{true} : new boolean[]{achannel, rchannel, gchannel, bchannel};
+        float[][] sums = new float[channels.length][];
+        float[][][] rows = new float[kh][channels.length][];
+        for (int c = 0; c < channels.length; c++) {
+            if (!channels[c]) continue;
+            sums[c] = new float[w];
+            for (int j = 0; j < kh; j++) rows[j][c] = new float[w];
+        }
+        // Номера строк изображения в ячейках буфера. Строка с номером n хранится в ячейке n mod kh.
+        int[] numbers = new int[kh];
+        Arrays.fill(numbers, Integer.MIN_VALUE);
+
+        for (int y = fromY; y < toY; y++) {
+            for (float[] sum : sums) {
+                if (sum != null) Arrays.fill(sum, 0.0f);
+            }
+
+            for (int j = 0; j < kh; j++) {
+                float k = column[j];
+                if (k == 0.0f) continue;
+
+                // Номер строки совпадает с номером строки изображения, а при расширении краев - с текущей строкой.
+                // При заворачивании краев номер может выходить за пределы изображения.
+                int number = y + j - hh;
+                if (number < 0 || number >= h) {
+                    if (edgeAction == EXTEND_EDGES) {
+                        number = y;
+                    } else if (edgeAction != WRAP_EDGES) {
+                        continue;
+                    }
+                }
+
+                int slot = (number % kh + kh) % kh;
+                if (numbers[slot] != number) {
+                    int source = number < 0 || number >= h ? Math.floorMod(number, h) : number;
+                    convolveRow(kernels, in, source * w, w, row, edgeAction, monochrome, rows[slot]);
+                    numbers[slot] = number;
+                }
+
+                for (int c = 0; c < channels.length; c++) {
+                    if (channels[c]) kernels.accumulate(rows[slot][c], 0, k, sums[c], 0, w);
+                }
+            }
+
+            // Контролируем переполнения переменных и записываем значения в результирующее изображение.
+            if (monochrome) {
+                for (int x = 0; x < w; x++) {
+                    out[x + y * w] = MoreMath.round(MoreMath.clamp(sums[0][x] * invDiv + offset, 0.0f, 255.0f));
+                }
+            } else {
+                for (int x = 0; x < w; x++) {
+                    int index = x + y * w;
+                    int a = achannel ? Color.clamp(MoreMath.round(sums[0][x] * invDiv + offset))
+                            : 0xff & in[index] >> 24;
+                    int r = rchannel ? Color.clamp(MoreMath.round(sums[1][x] * invDiv + offset))
+                            : 0xff & in[index] >> 16;
+                    int g = gchannel ? Color.clamp(MoreMath.round(sums[2][x] * invDiv + offset))
+                            : 0xff & in[index] >> 8;
+                    int b = bchannel ? Color.clamp(MoreMath.round(sums[3][x] * invDiv + offset))
+                            : 0xff & in[index];
+
+                    out[index] = a << 24 | r << 16 | g << 8 | b;
+                }
+            }
+        }
+    }
+
+    /**
+     * Сворачивает строку изображения со строкой матрицы.
+     *
+     * @param kernels    внутренние циклы.
+     * @param in         входной массив пикселей.
+     * @param start      индекс начала строки.
+     * @param w          ширина изображения.
+     * @param row        строка матрицы.
+     * @param edgeAction действие с краями.
+     * @param monochrome флаг монохромной обработки.
+     * @param sums       суммы каналов a, r, g, b или одного монохромного канала, {@code null} для необрабатываемых
+     *                   каналов.
+     */
+    private static void convolveRow(PixelKernels kernels, int[] in, int start, int w, float[] row, int edgeAction,
+                                    boolean monochrome, float[][] sums) {
+        int kw = row.length;
+        int hw = kw / 2;
+        int x0 = MoreMath.min(hw, w);
+        int x1 = MoreMath.max(x0, w - (kw - 1 - hw));
+
+        for (float[] sum : sums) {
+            if (sum != null) Arrays.fill(sum, 0.0f);
+        }
+
+        // Внутренние столбцы.
+        for (int i = 0; i < kw && x0 < x1; i++) {
+            float k = row[i];
+            if (k == 0.0f) continue;
+            if (monochrome) {
+                kernels.accumulate(in, start + x0 + i - hw, k, sums[0], x0, x1 - x0);
+            } else {
+                kernels.accumulate(in, start + x0 + i - hw, k, sums[0], sums[1], sums[2], sums[3], x0, x1 - x0);
+            }
+        }
+
+        // Крайние столбцы.
+        for (int x = 0; x < x0; x++) {
+            convolvePixel(in, start, w, row, edgeAction, monochrome, sums, x);
+        }
+        for (int x = x1; x < w; x++) {
+            convolvePixel(in, start, w, row, edgeAction, monochrome, sums, x);
+        }
+    }
+
+    /**
+     * Сворачивает пиксель строки изображения со строкой матрицы.
+     *
+     * @param in         входной массив пикселей.
+     * @param start      индекс начала строки.
+     * @param w          ширина изображения.
+     * @param row        строка матрицы.
+     * @param edgeAction действие с краями.
+     * @param monochrome флаг монохромной обработки.
+     * @param sums       суммы каналов.
+     * @param x          x-координата пикселя.
+     */
+    private static void convolvePixel(int[] in, int start, int w, float[] row, int edgeAction, boolean monochrome,
+                                      float[][] sums, int x) {
+        int hw = row.length / 2;
+        for (int i = 0; i < row.length; i++) {
+            float k = row[i];
+            if (k == 0.0f) continue;
+            int xOff = columnOffset(x, i - hw, w, edgeAction);
+            if (xOff < 0) continue;
+
+            int color = in[start + xOff];
+            if (monochrome) {
+                sums[0][x] += color * k;
+            } else {
+                if (sums[0] != null) sums[0][x] += (0xff & color >> 24) * k;
+                if (sums[1] != null) sums[1][x] += (0xff & color >> 16) * k;
+                if (sums[2] != null) sums[2][x] += (0xff & color >> 8) * k;
+                if (sums[3] != null) sums[3][x] += (0xff & color) * k;
+            }
+        }
+    }
+
+    /**
+     * Функция для размытия полосы строк изображения через преобразование Фурье. Полоса делится на прямоугольные
+     * участки, и каждый участок вместе с окрестностью размером с матрицу сворачивается как произведение спектров
+     * (метод overlap-save): циклическая свёртка блока размером {@code nx * ny} с матрицей дает точную свёртку для
+     * {@code (nx - kw + 1) * (ny - kh + 1)} пикселей участка. Спектр матрицы вычисляется один раз, а каналы
+     * преобразуются парами: первый канал пары записывается в действительную часть блока, второй - в мнимую.
+     * <p>
+     * При заворачивании краев блок берется из изображения по модулю размеров. При обрезании и расширении краев пиксели
+     * за пределами изображения равны нулю, а при расширении краев вклад пропущенных значений матрицы затем
+     * прибавляется к крайним пикселям так же, как при обычной свёртке.
+     *
+     * @param in         входной массив пикселей.
+     * @param out        выходной массив пикселей.
+     * @param w          ширина изображения.
+     * @param h          высота изображения.
+     * @param m          матрица ядра.
+     * @param kw         ширина матрицы.
+     * @param kh         высота матрицы.
+     * @param divisor    делитель матрицы.
+     * @param offset     смещение цветов.
+     * @param edgeAction действие с краями.
+     * @param rchannel   флаг обработки красных компонентов.
+     * @param gchannel   флаг обработки зеленых компонентов.
+     * @param bchannel   флаг обработки синих компонентов.
+     * @param achannel   флаг обработки альфа компонентов.
+     * @param monochrome флаг монохромной обработки.
+     * @param fromY      первая строка полосы.
+     * @param toY        строка, следующая за последней строкой полосы.
+     */
+    protected void blurFourier(int[] in, int[] out, int w, int h, float[] m, int kw, int kh, float divisor,
+                               int offset, int edgeAction, boolean rchannel, boolean gchannel, boolean bchannel,
+                               boolean achannel, boolean monochrome, int fromY, int toY) {
+        int hw = kw / 2;
+        int hh = kh / 2;
+        int rows = toY - fromY;
+        float invDiv = divisor <= 0.0f ? 0.0f : 1.0f / divisor;
+
+        // Каналы хранятся в порядке a, r, g, b, в монохромном режиме канал один и содержит значение целиком.
+        int channels = 0;
+        if (monochrome) {
+            channels = 1;
+        } else {
+            if (achannel) channels++;
+            if (rchannel) channels++;
+            if (gchannel) channels++;
+            if (bchannel) channels++;
+        }
+        int[] shifts = new int[channels];
+        int[] masks = new int[channels];
+        if (monochrome) {
+            masks[0] = -1;
+        } else {
+            int c = 0;
+            if (achannel) shifts[c++] = 24;
+            if (rchannel) shifts[c++] = 16;
+            if (gchannel) shifts[c++] = 8;
+            if (bchannel) shifts[c] = 0;
+            for (int i = 0; i < channels; i++) masks[i] = 0xff;
+        }
+
+        // Размер блока выбирается в несколько раз больше матрицы, чтобы окрестность занимала небольшую часть блока, но
+        // не больше обрабатываемой области вместе с окрестностью.
+        int nx = FourierTransform.nextSize(MoreMath.min(w, MoreMath.max(FOURIER_TILE, 3 * kw)) + kw - 1);
+        int ny = FourierTransform.nextSize(MoreMath.min(rows, MoreMath.max(FOURIER_TILE, 3 * kh)) + kh - 1);
+        int tileX = nx - kw + 1;
+        int tileY = ny - kh + 1;
+        FourierTransform rowTransform = new FourierTransform(nx);
+        FourierTransform columnTransform = new FourierTransform(ny);
+
+        // Матрица записывается в блок с отрицательными смещениями по модулю размеров блока, поэтому значение
+        // циклической свёртки в точке (u, v) равно сумме m(i, j) * b(u + i, v + j).
+        double[] gre = new double[nx * ny];
+        double[] gim = new double[nx * ny];
+        for (int j = 0; j < kh; j++) {
+            for (int i = 0; i < kw; i++) {
+                gre[(nx - i) % nx + (ny - j) % ny * nx] = m[i + j * kw];
+            }
+        }
+        transform(rowTransform, columnTransform, gre, gim, nx, ny, false);
+
+        double[] re = new double[nx * ny];
+        double[] im = new double[nx * ny];
+        double scale = 1.0 / ((double) nx * ny);
+        float[][] sums = new float[channels][rows * w];
+
+        for (int y0 = fromY; y0 < toY; y0 += tileY) {
+            int th = MoreMath.min(tileY, toY - y0);
+            for (int x0 = 0; x0 < w; x0 += tileX) {
+                int tw = MoreMath.min(tileX, w - x0);
+
+                for (int c = 0; c < channels; c += 2) {
+                    boolean pair = c + 1 < channels;
+                    gather(in, w, h, x0 - hw, y0 - hh, nx, ny, shifts[c], masks[c], edgeAction, re);
+                    if (pair) {
+                        gather(in, w, h, x0 - hw, y0 - hh, nx, ny, shifts[c + 1], masks[c + 1], edgeAction, im);
+                    } else {
+                        Arrays.fill(im, 0.0);
+                    }
+
+                    transform(rowTransform, columnTransform, re, im, nx, ny, false);
+                    for (int n = 0; n < re.length; n++) {
+                        double a = re[n], b = im[n];
+                        re[n] = a * gre[n] - b * gim[n];
+                        im[n] = a * gim[n] + b * gre[n];
+                    }
+                    transform(rowTransform, columnTransform, re, im, nx, ny, true);
+
+                    for (int v = 0; v < th; v++) {
+                        int start = x0 + (y0 - fromY + v) * w;
+                        for (int u = 0; u < tw; u++) {
+                            sums[c][start + u] = (float) (re[u + v * nx] * scale);
+                            if (pair) sums[c + 1][start + u] = (float) (im[u + v * nx] * scale);
+                        }
+                    }
+                }
+            }
+        }
+
+        if (edgeAction == EXTEND_EDGES) {
+            for (int c = 0; c < channels; c++) {
+                extendEdges(in, w, h, m, kw, kh, shifts[c], masks[c], fromY, toY, sums[c]);
+            }
+        }
+
+        // Контролируем переполнения переменных и записываем значения в результирующее изображение.
+        for (int y = fromY; y < toY; y++) {
+            for (int x = 0; x < w; x++) {
+                int index = x + y * w;
+                int n = x + (y - fromY) * w;
+                if (monochrome) {
+                    out[index] = MoreMath.round(MoreMath.clamp(sums[0][n] * invDiv + offset, 0.0f, 255.0f));
+                } else {
+                    int color = in[index];
+                    for (int c = 0; c < channels; c++) {
+                        int value = Color.clamp(MoreMath.round(sums[c][n] * invDiv + offset));
+                        color = color & ~(0xff << shifts[c]) | value << shifts[c];
+                    }
+                    out[index] = color;
+                }
+            }
+        }
+    }
+
+    /**
+     * Выполняет двумерное преобразование Фурье блока: сначала по строкам, затем по всем столбцам за один проход.
+     *
+     * @param rows    преобразование строк.
+     * @param columns преобразование столбцов.
+     * @param re      действительные части блока.
+     * @param im      мнимые части блока.
+     * @param nx      ширина блока.
+     * @param ny      высота блока.
+     * @param inverse флаг обратного преобразования.
+     */
+    private static void transform(FourierTransform rows, FourierTransform columns, double[] re, double[] im,
+                                  int nx, int ny, boolean inverse) {
+        for (int v = 0; v < ny; v++) rows.transform(re, im, v * nx, 1, inverse);
+        columns.transform(re, im, nx, inverse);
+    }
+
+    /**
+     * Копирует значения канала прямоугольной области изображения в блок. Пиксели за пределами изображения при
+     * заворачивании краев берутся с другой стороны изображения, а в остальных случаях равны нулю.
+     *
+     * @param in         входной массив пикселей.
+     * @param w          ширина изображения.
+     * @param h          высота изображения.
+     * @param left       x-координата левого верхнего угла области.
+     * @param top        y-координата левого верхнего угла области.
+     * @param nx         ширина блока.
+     * @param ny         высота блока.
+     * @param shift      сдвиг канала.
+     * @param mask       маска канала.
+     * @param edgeAction действие с краями.
+     * @param block      блок.
+     */
+    private static void gather(int[] in, int w, int h, int left, int top, int nx, int ny, int shift, int mask,
+                               int edgeAction, double[] block) {
+        boolean wrap = edgeAction == WRAP_EDGES;
+        for (int v = 0; v < ny; v++) {
+            int y = top + v;
+            if (y < 0 || y >= h) {
+                if (wrap) {
+                    y = (y % h + h) % h;
+                } else {
+                    Arrays.fill(block, v * nx, v * nx + nx, 0.0);
+                    continue;
+                }
+            }
+
+            int start = y * w;
+            for (int u = 0; u < nx; u++) {
+                int x = left + u;
+                if (0 <= x && x < w) {
+                    block[u + v * nx] = in[start + x] >> shift & mask;
+                } else if (wrap) {
+                    block[u + v * nx] = in[start + (x % w + w) % w] >> shift & mask;
+                } else {
+                    block[u + v * nx] = 0.0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Прибавляет к суммам крайних пикселей вклад значений матрицы, выходящих за пределы изображения, при расширении
+     * краев. Если строка матрицы выходит за пределы изображения, то вместо нее берется строка пикселя, а если столбец -
+     * то столбец пикселя.
+     *
+     * @param in    входной массив пикселей.
+     * @param w     ширина изображения.
+     * @param h     высота изображения.
+     * @param m     матрица ядра.
+     * @param kw    ширина матрицы.
+     * @param kh    высота матрицы.
+     * @param shift сдвиг канала.
+     * @param mask  маска канала.
+     * @param fromY первая строка полосы.
+     * @param toY   строка, следующая за последней строкой полосы.
+     * @param sums  суммы канала полосы.
+     */
+    private static void extendEdges(int[] in, int w, int h, float[] m, int kw, int kh, int shift, int mask,
+                                    int fromY, int toY, float[] sums) {
+        int hw = kw / 2;
+        int hh = kh / 2;
+
+        // Строки матрицы за пределами изображения и столбцы в его пределах: суммы этих строк сворачиваются со строкой
+        // пикселя.
+        double[] row = new double[kw];
+        for (int y = fromY; y < toY; y++) {
+            boolean outside = false;
+            Arrays.fill(row, 0.0);
+            for (int j = 0; j < kh; j++) {
+                int pixelPosY = y + j - hh;
+                if (0 <= pixelPosY && pixelPosY < h) continue;
+                outside = true;
+                for (int i = 0; i < kw; i++) row[i] += m[i + j * kw];
+            }
+            if (!outside) continue;
+
+            int start = y * w;
+            for (int x = 0; x < w; x++) {
+                double sum = 0.0;
+                for (int i = 0; i < kw; i++) {
+                    int pixelPosX = x + i - hw;
+                    if (row[i] == 0.0 || pixelPosX < 0 || pixelPosX >= w) continue;
+                    sum += row[i] * (in[start + pixelPosX] >> shift & mask);
+                }
+                sums[x + (y - fromY) * w] += (float) sum;
+            }
+        }
+
+        // Столбцы матрицы за пределами изображения: суммы этих столбцов сворачиваются со столбцом пикселя, а значения,
+        // у которых за пределами изображения и строка, берутся из самого пикселя.
+        int x0 = MoreMath.min(hw, w);
+        int x1 = MoreMath.max(x0, w - (kw - 1 - hw));
+        double[] column = new double[kh];
+        for (int x = 0; x < w; x++) {
+            // Внутренние столбцы пропускаются.
+            if (x == x0) x = x1;
+            if (x >= w) break;
+
+            Arrays.fill(column, 0.0);
+            for (int i = 0; i < kw; i++) {
+                int pixelPosX = x + i - hw;
+                if (0 <= pixelPosX && pixelPosX < w) continue;
+                for (int j = 0; j < kh; j++) column[j] += m[i + j * kw];
+            }
+
+            for (int y = fromY; y < toY; y++) {
+                double sum = 0.0;
+                for (int j = 0; j < kh; j++) {
+                    if (column[j] == 0.0) continue;
+                    int pixelPosY = y + j - hh;
+                    if (pixelPosY < 0 || pixelPosY >= h) pixelPosY = y;
+                    sum += column[j] * (in[x + pixelPosY * w] >> shift & mask);
+                }
+                sums[x + (y - fromY) * w] += (float) sum;
+            }
+        }
+    }
+
+    /**
+     * Находит смещение строки изображения, на которую попадает строка матрицы.
+     *
+     * @param y          y-координата пикселя.
+     * @param dy         смещение строки матрицы относительно пикселя.
+     * @param w          ширина изображения.
+     * @param h          высота изображения.
+     * @param edgeAction действие с краями.
+     * @return индекс начала строки или {@code -1}, если строка пропускается.
+     */
+    private static int rowOffset(int y, int dy, int w, int h, int edgeAction) {
+        int pixelPosY = y + dy;
+
+        if (0 <= pixelPosY && pixelPosY < h) {
+            return pixelPosY * w;
+        } else if (edgeAction == EXTEND_EDGES) {
+            return y * w;
+        } else if (edgeAction == WRAP_EDGES) {
+            return Math.floorMod(pixelPosY, h) * w;
+        } else /* if(this.edgeAction == ConvolveFilter.CROP_EDGES) */ {
+            return -1;
+        }
+    }
+
+    /**
+     * Находит смещение пикселя в строке изображения, на который попадает столбец матрицы.
+     *
+     * @param x          x-координата пикселя.
+     * @param dx         смещение столбца матрицы относительно пикселя.
+     * @param w          ширина изображения.
+     * @param edgeAction действие с краями.
+     * @return смещение пикселя в строке или {@code -1}, если пиксель пропускается.
+     */
+    private static int columnOffset(int x, int dx, int w, int edgeAction) {
+        int pixelPosX = x + dx;
+
+        if (0 <= pixelPosX && pixelPosX < w) {
+            return pixelPosX;
+        } else if (edgeAction == EXTEND_EDGES) {
+            return x;
+        } else if (edgeAction == WRAP_EDGES) {
+            return Math.floorMod(pixelPosX, w);
+        } else /* if(this.edgeAction == ConvolveFilter.CROP_EDGES) */ {
+            return -1;
+        }
+    }
+
+    /**
+     * Получает ядро с указанной матрицей: ядро фильтра, если матрица принадлежит ему, иначе новое ядро. Методы
+     * размытия обходят только ненулевые значения матрицы из списка ядра.
+     *
+     * @param m  матрица ядра.
+     * @param kw ширина матрицы.
+     * @param kh высота матрицы.
+     * @return ядро.
+     */
+    private Kernel kernelOf(float[] m, int kw, int kh) {
+        Kernel kernel = this.kernel;
+        if (kernel != null && kernel.matrix == m && kernel.width == kw && kernel.height == kh) return kernel;
+        return new Kernel(kw, kh, m);
+    }
+
+    /**
+     * Находит значение канала по целой сумме канала: из таблицы ядра, если она есть, иначе так же, как в свертке с
+     * плавающей точкой. Сумма меньше {@code 2^24}, поэтому переводится в число с плавающей точкой точно.
+     *
+     * @param sum    сумма канала.
+     * @param table  таблица значений каналов или {@code null}.
+     * @param low    наименьшая сумма канала.
+     * @param invDiv обратное значение делителя матрицы.
+     * @param offset смещение цветов.
+     * @return значение канала от 0 до 255.
+     */
+    private static int channel(int sum, int[] table, int low, float invDiv, int offset) {
+        if (table != null) return table[sum - low];
+        return Color.clamp(MoreMath.round(sum * invDiv + offset));
+    }
+
+    /**
+     * Размывает один пиксель монохромного изображения.
+     *
+     * @param in         входной массив значений.
+     * @param w          ширина изображения.
+     * @param rows       смещения строк изображения под строками матрицы, -1 для пропускаемых строк.
+     * @param hh         полувысота матрицы.
+     * @param kernel     ядро.
+     * @param invDiv     обратное значение делителя матрицы.
+     * @param offset     смещение цветов.
+     * @param edgeAction действие с краями.
+     * @param x          x-координата пикселя.
+     * @param y          y-координата пикселя.
+     * @return значение пикселя.
+     */
+    private int blurPixel(int[] in, int w, int[] rows, int hh, Kernel kernel, float invDiv, int offset,
+                          int edgeAction, int x, int y) {
+        float color = 0.0f;
+
+        int[] tapX = kernel.tapX;
+        int[] tapY = kernel.tapY;
+        float[] taps = kernel.taps;
+
+        // Проходим по каждому ненулевому значению матрицы.
+        for (int t = 0; t < taps.length; t++) {
+            int yOff = rows[tapY[t] + hh];
+            if (yOff < 0) continue;
+            int xOff = columnOffset(x, tapX[t], w, edgeAction);
+            if (xOff < 0) continue;
+            float k = taps[t];
+
+            color += in[xOff + yOff] * k;
+        }
+
+        return MoreMath.round(MoreMath.clamp(color * invDiv + offset, 0.0f, 255.0f));
+    }
+
+    /**
+     * Размывает один пиксель цветного изображения.
+     *
+     * @param in         входной массив пикселей.
+     * @param w          ширина изображения.
+     * @param rows       смещения строк изображения под строками матрицы, -1 для пропускаемых строк.
+     * @param hh         полувысота матрицы.
+     * @param kernel     ядро.
+     * @param invDiv     обратное значение делителя матрицы.
+     * @param offset     смещение цветов.
+     * @param edgeAction действие с краями.
+     * @param rchannel   флаг обработки красных компонентов.
+     * @param gchannel   флаг обработки зеленых компонентов.
+     * @param bchannel   флаг обработки синих компонентов.
+     * @param achannel   флаг обработки альфа компонентов.
+     * @param x          x-координата пикселя.
+     * @param y          y-координата пикселя.
+     * @return RGBA цвет пикселя.
+     */
+    private int blurPixel(int[] in, int w, int[] rows, int hh, Kernel kernel, float invDiv, int offset,
+                          int edgeAction, boolean rchannel, boolean gchannel, boolean bchannel, boolean achannel,
+                          int x, int y) {
+        float rs = 0.0f, gs = 0.0f, bs = 0.0f, as = 0.0f;
+
+        int[] tapX = kernel.tapX;
+        int[] tapY = kernel.tapY;
+        float[] taps = kernel.taps;
+
+        // Проходим по каждому ненулевому значению матрицы.
+        for (int t = 0; t < taps.length; t++) {
+            int yOff = rows[tapY[t] + hh];
+            if (yOff < 0) continue;
+            int xOff = columnOffset(x, tapX[t], w, edgeAction);
+            if (xOff < 0) continue;
+            float k = taps[t];
+
+            // Находим значение RGBA цвета в массиве и суммируем его к результирующему цвету.
+            int rgba = in[xOff + yOff];
+            if (achannel) as += (0xff & rgba >> 24) * k;
+            if (rchannel) rs += (0xff & rgba >> 16) * k;
+            if (gchannel) gs += (0xff & rgba >> 8) * k;
+            if (bchannel) bs += (0xff & rgba) * k;
+        }
+
+        int index = x + y * w;
+        // Контролируем переполнения переменных.
+        int a = achannel ? Color.clamp(MoreMath.round(as * invDiv + offset)) : 0xff & in[index] >> 24;
+        int r = rchannel ? Color.clamp(MoreMath.round(rs * invDiv + offset)) : 0xff & in[index] >> 16;
+        int g = gchannel ? Color.clamp(MoreMath.round(gs * invDiv + offset)) : 0xff & in[index] >> 8;
+        int b = bchannel ? Color.clamp(MoreMath.round(bs * invDiv + offset)) : 0xff & in[index];
+
+        return a << 24 | r << 16 | g << 8 | b;
+    }
+
+    /**
+     * Функция для размытия плоскости канала. Результат совпадает с результатом размытия канала упакованных пикселей.
+     *
+     * @param in         входная плоскость.
+     * @param out        выходная плоскость.
+     * @param w          ширина изображения.
+     * @param h          высота изображения.
+     * @param m          матрица ядра.
+     * @param kw         ширина матрицы.
+     * @param kh         высота матрицы.
+     * @param divisor    делитель матрицы.
+     * @param offset     смещение цветов.
+     * @param edgeAction действие с краями.
+     */
+    protected void blurPlane(byte[] in, byte[] out, int w, int h, float[] m, int kw, int kh, float divisor,
+                             int offset, int edgeAction) {
+        int hw = kw / 2;
+        int hh = kh / 2;
+        float invDiv = divisor <= 0.0f ? 0.0f : 1.0f / divisor;
+        Kernel kernel = this.kernelOf(m, kw, kh);
+        int[] tapX = kernel.tapX;
+        int[] tapY = kernel.tapY;
+        float[] taps = kernel.taps;
+        int count = taps.length;
+        // Смещения ненулевых значений матрицы в плоскости относительно пикселя.
+        int[] offsets = kernel.tapOffsets(w);
+        // Смещения строк изображения под строками матрицы, -1 для пропускаемых строк.
+        int[] rows = new int[kh];
+
+        // Для внутренних столбцов x0..x1 матрица не выходит за левый и правый края изображения, поэтому столбцы не
+        // проверяются, а действия с краями выполняются только для строк один раз на строку изображения. Если и строки
+        // матрицы не выходят за верхний и нижний края, то значения берутся по готовым смещениям.
+        int x0 = MoreMath.min(hw, w);
+        int x1 = MoreMath.max(x0, w - (kw - 1 - hw));
+        // Суммы внутренних столбцов, сворачиваемых развернутыми циклами.
+        float[] sums = new float[x1 - x0];
+
+        for (int y = 0; y < h; y++) {
+            for (int j = 0; j < kh; j++) rows[j] = rowOffset(y, j - hh, w, h, edgeAction);
+            boolean inner = y >= hh && y + (kh - 1 - hh) < h;
+            // Внутренние столбцы строки с матрицей 3x3 или 5x5 сворачиваются развернутым циклом.
+            boolean unrolled = this.unrolled && x1 > x0 && UnrolledKernels.isUnrolled(kw, kh, rows);
+            if (unrolled) {
+                UnrolledKernels.convolve(in, rows, x0, x1 - x0, m, kw, sums);
+                for (int x = x0; x < x1; x++) {
+                    out[x + y * w] = (byte) Color.clamp(MoreMath.round(sums[x - x0] * invDiv + offset));
+                }
+            }
+
+            for (int x = 0; x < w; x++) {
+                boolean interior = x0 <= x && x < x1;
+                if (unrolled && interior) continue;
+                float sum = 0.0f;
+
+                if (interior && inner) {
+                    int index = x + y * w;
+                    for (int t = 0; t < count; t++) sum += (0xff & in[index + offsets[t]]) * taps[t];
+                } else {
+                    for (int t = 0; t < count; t++) {
+                        int yOff = rows[tapY[t] + hh];
+                        if (yOff < 0) continue;
+                        int xOff = interior ? x + tapX[t] : columnOffset(x, tapX[t], w, edgeAction);
+                        if (xOff < 0) continue;
+
+                        sum += (0xff & in[xOff + yOff]) * taps[t];
+                    }
+                }
+
+                out[x + y * w] = (byte) Color.clamp(MoreMath.round(sum * invDiv + offset));
+            }
+        }
+    }
+
+    /**
+     * Функция для размытия плоскости канала целочисленной матрицей с целыми суммами так же, как в методе
+     * {@link #blurInteger(int[], int[], int, int, Kernel, int, boolean, boolean, boolean, boolean, int, int)
+     * blurInteger}. Результат совпадает с результатом метода {@link #blurPlane(byte[], byte[], int, int, float[], int,
+     * int, float, int, int) blurPlane}.
+     *
+     * @param in         входная плоскость.
+     * @param out        выходная плоскость.
+     * @param w          ширина изображения.
+     * @param h          высота изображения.
+     * @param kernel     целочисленное ядро.
+     * @param edgeAction действие с краями.
+     */
+    protected void blurPlaneInteger(byte[] in, byte[] out, int w, int h, Kernel kernel, int edgeAction) {
+        int kw = kernel.width;
+        int kh = kernel.height;
+        int hw = kw / 2;
+        int hh = kh / 2;
+        int offset = kernel.offset;
+        float invDiv = 1.0f / kernel.divisor;
+        int[] tapX = kernel.tapX;
+        int[] tapY = kernel.tapY;
+        int[] taps = kernel.integerTaps;
+        int count = taps.length;
+        int[] offsets = kernel.tapOffsets(w);
+        int[] table = kernel.getChannelTable();
+        int low = kernel.lowSum;
+        // Смещения строк изображения под строками матрицы, -1 для пропускаемых строк.
+        int[] rows = new int[kh];
+        // Целые значения всей матрицы для развернутых циклов.
+        int[] matrix = new int[kw * kh];
+        for (int i = 0; i < matrix.length; i++) matrix[i] = (int) kernel.matrix[i];
+
+        int x0 = MoreMath.min(hw, w);
+        int x1 = MoreMath.max(x0, w - (kw - 1 - hw));
+        // Суммы внутренних столбцов, сворачиваемых развернутыми циклами.
+        int[] sums = new int[x1 - x0];
+
+        for (int y = 0; y < h; y++) {
+            for (int j = 0; j < kh; j++) rows[j] = rowOffset(y, j - hh, w, h, edgeAction);
+            boolean inner = y >= hh && y + (kh - 1 - hh) < h;
+            boolean unrolled = this.unrolled && x1 > x0 && UnrolledKernels.isUnrolled(kw, kh, rows);
+            if (unrolled) {
+                UnrolledKernels.convolve(in, rows, x0, x1 - x0, matrix, kw, sums);
+                for (int x = x0; x < x1; x++) {
+                    out[x + y * w] = (byte) channel(sums[x - x0], table, low, invDiv, offset);
+                }
+            }
+
+            for (int x = 0; x < w; x++) {
+                boolean interior = x0 <= x && x < x1;
+                if (unrolled && interior) continue;
+                int sum = 0;
+
+                if (interior && inner) {
+                    int index = x + y * w;
+                    for (int t = 0; t < count; t++) sum += (0xff & in[index + offsets[t]]) * taps[t];
+                } else {
+                    for (int t = 0; t < count; t++) {
+                        int yOff = rows[tapY[t] + hh];
+                        if (yOff < 0) continue;
+                        int xOff = interior ? x + tapX[t] : columnOffset(x, tapX[t], w, edgeAction);
+                        if (xOff < 0) continue;
+
+                        sum += (0xff & in[xOff + yOff]) * taps[t];
+                    }
+                }
+
+                out[x + y * w] = (byte) channel(sum, table, low, invDiv, offset);
+            }
+        }
+    }
+
+    /**
+     * Функция для размытия плоскости канала разделимой матрицей в два прохода так же, как в методе
+     * {@link #blurSeparable(int[], int[], int, int, float[], float[], float, int, int, boolean, boolean, boolean,
+     * boolean, boolean, int, int) blurSeparable}.
+     *
+     * @param in         входная плоскость.
+     * @param out        выходная плоскость.
+     * @param w          ширина изображения.
+     * @param h          высота изображения.
+     * @param row        строка матрицы.
+     * @param column     столбец матрицы.
+     * @param divisor    делитель матрицы.
+     * @param offset     смещение цветов.
+     * @param edgeAction действие с краями.
+     */
+    protected void blurPlaneSeparable(byte[] in, byte[] out, int w, int h, float[] row, float[] column,
+                                      float divisor, int offset, int edgeAction) {
+        int kw = row.length;
+        int kh = column.length;
+        int hw = kw / 2;
+        int hh = kh / 2;
+        float invDiv = divisor <= 0.0f ? 0.0f : 1.0f / divisor;
+        PixelKernels kernels = PixelKernels.getDefault();
+
+        float[] sums = new float[w];
+        float[][] rows = new float[kh][w];
+        int[] numbers = new int[kh];
+        Arrays.fill(numbers, Integer.MIN_VALUE);
+
+        for (int y = 0; y < h; y++) {
+            Arrays.fill(sums, 0.0f);
+
+            for (int j = 0; j < kh; j++) {
+                float k = column[j];
+                if (k == 0.0f) continue;
+
+                int number = y + j - hh;
+                if (number < 0 || number >= h) {
+                    if (edgeAction == EXTEND_EDGES) {
+                        number = y;
+                    } else if (edgeAction != WRAP_EDGES) {
+                        continue;
+                    }
+                }
+
+                int slot = (number % kh + kh) % kh;
+                float[] line = rows[slot];
+                if (numbers[slot] != number) {
+                    int start = (number < 0 || number >= h ? Math.floorMod(number, h) : number) * w;
+                    for (int x = 0; x < w; x++) {
+                        float sum = 0.0f;
+                        for (int i = 0; i < kw; i++) {
+                            float ki = row[i];
+                            if (ki == 0.0f) continue;
+                            int xOff = columnOffset(x, i - hw, w, edgeAction);
+                            if (xOff < 0) continue;
+                            sum += (0xff & in[start + xOff]) * ki;
+                        }
+                        line[x] = sum;
+                    }
+                    numbers[slot] = number;
+                }
+
+                kernels.accumulate(line, 0, k, sums, 0, w);
+            }
+
+            for (int x = 0; x < w; x++) {
+                out[x + y * w] = (byte) Color.clamp(MoreMath.round(sums[x] * invDiv + offset));
+            }
+        }
+    }
+
+    /**
+     * Функция для размытия плоскости канала через преобразование Фурье так же, как в методе
+     * {@link #blurFourier(int[], int[], int, int, float[], int, int, float, int, int, boolean, boolean, boolean,
+     * boolean, boolean, int, int) blurFourier}. Плоскость обрабатывается как монохромное изображение, значения после
+     * размытия лежат в пределах от 0 до 255, поэтому округление совпадает с округлением при размытии плоскости.
+     *
+     * @param in         входная плоскость.
+     * @param out        выходная плоскость.
+     * @param w          ширина изображения.
+     * @param h          высота изображения.
+     * @param m          матрица ядра.
+     * @param kw         ширина матрицы.
+     * @param kh         высота матрицы.
+     * @param divisor    делитель матрицы.
+     * @param offset     смещение цветов.
+     * @param edgeAction действие с краями.
+     */
+    protected void blurPlaneFourier(byte[] in, byte[] out, int w, int h, float[] m, int kw, int kh, float divisor,
+                                    int offset, int edgeAction) {
+        int length = w * h;
+        int[] values = new int[length];
+        int[] result = new int[length];
+        for (int i = 0; i < length; i++) values[i] = 0xff & in[i];
+        this.blurFourier(values, result, w, h, m, kw, kh, divisor, offset, edgeAction,
+                false, false, false, false, true, 0, h);
+        for (int i = 0; i < length; i++) out[i] = (byte) result[i];
     }
 
 }
@@ -0,0 +1,127 @@
+/*
+ *
+ */
+package ru.ildev.image.filter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Буфер пикселей, хранящий пиксели вне кучи Java в прямых буферах {@link ByteBuffer}. Размер одного прямого буфера
+ * ограничен {@code 2^31} байтами, поэтому изображение делится на части по целым строкам, и каждая часть хранится в
+ * отдельном буфере. Память буфера освобождается сборщиком мусора вместе с объектом буфера.
+ *
+ * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
+ * @version 0.0.0
+ */
+public class DirectPixelBuffer implements PixelBuffer {
+
+    /**
+     * Максимальный размер одной части в байтах.
+     */
+    private static final int CHUNK_BYTES = 1 << 30;
+
+    /**
+     * Части изображения.
+     */
+    private final IntBuffer[] chunks;
+    /**
+     * Количество строк в одной части.
+     */
+    private final int chunkRows;
+    /**
+     * Размеры изображения.
+     */
+    private final int width, height;
+
+    /**
+     * Конструктор.
+     *
+     * @param width  ширина изображения.
+     * @param height высота изображения.
+     */
+    public DirectPixelBuffer(int width, int height) {
+        if (width <= 0 || height <= 0) throw new IllegalArgumentException("width <= 0 || height <= 0");
+        if (width > CHUNK_BYTES / 4) throw new IllegalArgumentException("width > " + CHUNK_BYTES / 4);
+
+        this.width = width;
+        this.height = height;
+        this.chunkRows = Math.min(height, CHUNK_BYTES / (4 * width));
+
+        int count = (height + this.chunkRows - 1) / this.chunkRows;
+        this.chunks = new IntBuffer[count];
+        for (int i = 0; i < count; i++) {
+            int rows = Math.min(this.chunkRows, height - i * this.chunkRows);
+            this.chunks[i] = ByteBuffer.allocateDirect(4 * rows * width).order(ByteOrder.nativeOrder()).asIntBuffer();
+        }
+    }
+
+    @Override
+    public int getWidth() {
+        return this.width;
+    }
+
+    @Override
+    public int getHeight() {
+        return this.height;
+    }
+
+    @Override
+    public int getPixel(int x, int y) {
+        if (x < 0 || x >= this.width) throw new IndexOutOfBoundsException("x = " + x);
+        return this.chunks[y / this.chunkRows].get(x + y % this.chunkRows * this.width);
+    }
+
+    @Override
+    public void setPixel(int x, int y, int color) {
+        if (x < 0 || x >= this.width) throw new IndexOutOfBoundsException("x = " + x);
+        this.chunks[y / this.chunkRows].put(x + y % this.chunkRows * this.width, color);
+    }
+
+    @Override
+    public void getPixels(int y, int rows, int[] pixels, int offset) {
+        this.checkRows(y, rows);
+        while (rows > 0) {
+            int chunkY = y % this.chunkRows;
+            int n = Math.min(rows, this.chunkRows - chunkY);
+            // Копия буфера нужна, чтобы не менять позицию общего буфера из разных потоков.
+            IntBuffer chunk = this.chunks[y / this.chunkRows].duplicate();
+            chunk.position(chunkY * this.width);
+            chunk.get(pixels, offset, n * this.width);
+
+            y += n;
+            rows -= n;
+            offset += n * this.width;
+        }
+    }
+
+    @Override
+    public void setPixels(int y, int rows, int[] pixels, int offset) {
+        this.checkRows(y, rows);
+        while (rows > 0) {
+            int chunkY = y % this.chunkRows;
+            int n = Math.min(rows, this.chunkRows - chunkY);
+            IntBuffer chunk = this.chunks[y / this.chunkRows].duplicate();
+            chunk.position(chunkY * this.width);
+            chunk.put(pixels, offset, n * this.width);
+
+            y += n;
+            rows -= n;
+            offset += n * this.width;
+        }
+    }
+
+    /**
+     * Проверяет, что строки находятся в пределах изображения.
+     *
+     * @param y    первая строка.
+     * @param rows количество строк.
+     */
+    private void checkRows(int y, int rows) {
+        if (y < 0 || rows < 0 || y + rows > this.height) {
+            throw new IndexOutOfBoundsException("y = " + y + ", rows = " + rows);
+        }
+    }
+
+}
@@ -54,4 +54,10 @@ public class FillFilter extends ColorFilter {
         return this.color;
     }
 
+    @Override
+    protected boolean applyPixels(PixelKernels kernels, int[] in, int[] out, int from, int to) {
+        kernels.mask(in, out, from, to, 0, this.color);
+        return true;
+    }
+
 }
@@ -5,6 +5,7 @@ package ru.ildev.image.filter;
 
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
+import java.util.Arrays;
 
 /**
  * Абстрактный класс фильтра изображения.
@@ -35,10 +36,36 @@ public abstract class Filter {
      */
     public static final int MONOCHROME = 1 << 4;
 
+    /**
+     * Значение радиуса окрестности фильтра, означающее, что фильтр не может обрабатывать изображение полосами строк.
+     */
+    public static final int UNBOUNDED_HALO = -1;
+
+    /**
+     * Количество пикселей в полосе при обработке буфера пикселей.
+     */
+    private static final int STRIP_PIXELS = 1 << 22;
+    /**
+     * Максимальная длина массива.
+     */
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
     /**
      * Флаги обрабатываемых каналов.
      */
     protected int channels = RED_CHANNEL | GREEN_CHANNEL | BLUE_CHANNEL | ALPHA_CHANNEL;
+    /**
+     * Флаг многопоточной обработки изображения полосами строк.
+     */
+    protected boolean parallel = false;
+    /**
+     * Флаг прямого доступа к массивам данных изображений.
+     */
+    protected boolean directAccess = false;
+    /**
+     * Имя фильтра, под которым собираются метрики экземпляра.
+     */
+    protected String name = null;
 
     /**
      * Стандартный конструктор.
@@ -173,6 +200,79 @@ public abstract class Filter {
         this.setMonochrome(monochrome);
     }
 
+    /**
+     * Определяет, включена ли многопоточная обработка изображения.
+     *
+     * @return {@code true}, если включена многопоточная обработка изображения.
+     */
+    public boolean isParallel() {
+        return this.parallel;
+    }
+
+    /**
+     * Включает или отключает многопоточную обработку изображения. Изображение делится на полосы строк, которые
+     * обрабатываются в пуле {@link TileExecutor}. Результат совпадает с результатом однопоточной обработки. Фильтры, у
+     * которых радиус окрестности равен {@link #UNBOUNDED_HALO}, всегда обрабатываются в одном потоке.
+     *
+     * @param flag флаг.
+     */
+    public void setParallel(boolean flag) {
+        this.parallel = flag;
+    }
+
+    /**
+     * Определяет, включен ли прямой доступ к массивам данных изображений.
+     *
+     * @return {@code true}, если включен прямой доступ к массивам данных изображений.
+     */
+    public boolean isDirectAccess() {
+        return this.directAccess;
+    }
+
+    /**
+     * Включает или отключает прямой доступ к массивам данных изображений. Для изображений типов
+     * {@link BufferedImage#TYPE_INT_ARGB} и {@link BufferedImage#TYPE_INT_RGB} фильтр работает с массивом
+     * {@link java.awt.image.DataBufferInt} без копирования, если обрабатываемая область занимает в нем непрерывный
+     * участок, иначе копирует пиксели строками. Прямой доступ отключает аппаратное ускорение отрисовки изображения в
+     * Java2D.
+     *
+     * @param flag флаг.
+     */
+    public void setDirectAccess(boolean flag) {
+        this.directAccess = flag;
+    }
+
+    /**
+     * Получает имя фильтра.
+     *
+     * @return имя фильтра или {@code null}.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Устанавливает имя фильтра. Если имя установлено, то метрики фильтра ({@link FilterMetrics}) собираются не
+     * только по классу фильтра, но и по имени.
+     *
+     * @param name имя фильтра или {@code null}.
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Получает радиус окрестности фильтра по вертикали, т.е. количество строк выше и ниже обрабатываемой строки,
+     * которые фильтр читает из входного массива. Фильтры, которые читают произвольные строки изображения или результат
+     * которых зависит от положения строки в изображении, возвращают {@link #UNBOUNDED_HALO}, так как буфер пикселей
+     * ({@link #apply(PixelBuffer, PixelBuffer)}) обрабатывается полосами в отдельных массивах.
+     *
+     * @return радиус окрестности фильтра или {@link #UNBOUNDED_HALO}.
+     */
+    public int getHalo() {
+        return UNBOUNDED_HALO;
+    }
+
     /**
      * Метод применения фильтра изображению.
      *
@@ -183,6 +283,40 @@ public abstract class Filter {
      */
     public abstract void apply(int[] in, int[] out, int width, int height);
 
+    /**
+     * Метод применения фильтра полосе строк изображения. Входной массив содержит все изображение, а в выходной
+     * записываются только строки от {@code fromY} до {@code toY}. Фильтры, у которых радиус окрестности не равен
+     * {@link #UNBOUNDED_HALO}, должны переопределять этот метод.
+     *
+     * @param in     входной массив пикселей.
+     * @param out    выходной массив пикселей изображения.
+     * @param width  длина изображения.
+     * @param height высота изображения.
+     * @param fromY  первая строка полосы.
+     * @param toY    строка, следующая за последней строкой полосы.
+     */
+    protected void apply(int[] in, int[] out, int width, int height, int fromY, int toY) {
+        if (fromY != 0 || toY != height) throw new UnsupportedOperationException("Filter can not be applied to rows");
+        this.apply(in, out, width, height);
+    }
+
+    /**
+     * Применяет фильтр изображению полосами строк. Если включена многопоточная обработка, то полосы обрабатываются
+     * параллельно, иначе изображение обрабатывается одной полосой.
+     *
+     * @param in     входной массив пикселей.
+     * @param out    выходной массив пикселей изображения.
+     * @param width  длина изображения.
+     * @param height высота изображения.
+     */
+    protected void applyRows(int[] in, int[] out, int width, int height) {
+        if (this.parallel && this.getHalo() != UNBOUNDED_HALO) {
+            TileExecutor.execute(this, in, out, width, height);
+        } else {
+            this.apply(in, out, width, height, 0, height);
+        }
+    }
+
     /**
      * Применяет фильтр изображению.
      *
@@ -247,36 +381,208 @@ public abstract class Filter {
      */
     public BufferedImage apply(BufferedImage src, BufferedImage dst, int x, int y,
                                int width, int height, int iterations) {
+        if (!FilterMetrics.isEnabled()) return this.applyImage(src, dst, x, y, width, height, iterations);
+
+        FilterMetrics.Probe probe = FilterMetrics.begin(this);
+        try {
+            return this.applyImage(src, dst, x, y, width, height, iterations);
+        } finally {
+            probe.end((long) width * height * Math.max(iterations, 0));
+        }
+    }
+
+    /**
+     * Применяет фильтр изображению. Вызывается методом
+     * {@link #apply(BufferedImage, BufferedImage, int, int, int, int, int)}, который собирает метрики фильтра, если
+     * они включены.
+     *
+     * @param src        изображение.
+     * @param dst        конечное изображение.
+     * @param x          x-координата области изображения.
+     * @param y          y-координата области изображения.
+     * @param width      ширина области изображения.
+     * @param height     высота области изображения.
+     * @param iterations количество итераций.
+     * @return {@code dest}.
+     */
+    protected BufferedImage applyImage(BufferedImage src, BufferedImage dst, int x, int y,
+                                       int width, int height, int iterations) {
         if (src == null) throw new NullPointerException("src == null");
         if (iterations <= 0) return dst == null ? this.createDestination(src) : dst;
 
         // Находим размер изображения, т.е. количество пикселей.
         int size = width * height;
+        BufferPool pool = BufferPool.getDefault();
+        if (dst == null) dst = this.createDestination(src, width, height);
 
-        // Создаем входной двухмерный массив.
-        int[] in = this.getRGB(src, x, y, width, height, new int[size]);
-        // Создаем выходной двухмерный массив.
-        int[] out = new int[size];
+        // Фильтр только читает входной массив, поэтому можно использовать массив исходного изображения. В массив
+        // конечного изображения можно писать, только если он не совпадает с входным.
+        int[] srcPixels = null, dstPixels = null;
+        if (this.directAccess) {
+            srcPixels = RasterAccess.getPixels(src, x, y, width, height);
+            dstPixels = RasterAccess.getPixels(dst, x, y, width, height);
+            if (dstPixels != null && dstPixels == srcPixels) dstPixels = null;
+        }
 
-        if (iterations == 1) {
-            // Применяем фильтр.
-            this.apply(in, out, width, height);
-        } else {
-            int[] t = new int[size];
-            for (int i = 0; i < iterations; i++) {
+        int[] in = srcPixels;
+        int[] out = dstPixels;
+        int[] t = null;
+        try {
+            // Берем входной массив из пула и заполняем его пикселями изображения.
+            if (in == null) in = this.getRGB(src, x, y, width, height, pool.lease(size, false));
+            // Берем выходной массив из пула.
+            if (out == null) {
+                out = pool.lease(size);
+            } else {
+                Arrays.fill(out, 0, size, 0);
+            }
+
+            int[] result;
+            if (iterations == 1) {
                 // Применяем фильтр.
                 this.apply(in, out, width, height);
+                result = out;
+            } else {
+                // Итерации записывают результат поочередно в выходной и временный массивы, поэтому пиксели между
+                // итерациями не копируются.
+                t = pool.lease(size);
+                int[] a = in;
+                int[] b = out;
+                for (int i = 0; i < iterations; i++) {
+                    // Применяем фильтр.
+                    this.apply(a, b, width, height);
+
+                    a = b;
+                    b = b == out ? t : out;
+                }
+                result = a;
+            }
+
+            // Заносим результат в конечное изображение.
+            if (result != dstPixels) this.setRGB(dst, x, y, width, height, result);
+        } finally {
+            pool.release(t);
+            if (out != dstPixels) pool.release(out);
+            if (in != srcPixels) pool.release(in);
+        }
+        return dst;
+    }
+
+    /**
+     * Применяет фильтр буферу пикселей. Если радиус окрестности фильтра ограничен ({@link #getHalo()}), то буфер
+     * обрабатывается полосами строк, и в памяти кучи находится только одна полоса с окрестностью, поэтому размер
+     * изображения не ограничен размером массива. Иначе все изображение копируется в массив, и количество его пикселей
+     * не должно превышать {@code 2^31}. Буферы {@code src} и {@code dst} могут совпадать.
+     *
+     * @param src исходный буфер пикселей.
+     * @param dst конечный буфер пикселей.
+     */
+    public void apply(PixelBuffer src, PixelBuffer dst) {
+        if (src == null) throw new NullPointerException("src == null");
+        if (dst == null) throw new NullPointerException("dst == null");
+        if (src.getWidth() != dst.getWidth() || src.getHeight() != dst.getHeight())
+            throw new IllegalArgumentException("src and dst have different sizes");
+
+        if (!FilterMetrics.isEnabled()) {
+            this.applyBuffer(src, dst);
+            return;
+        }
+
+        FilterMetrics.Probe probe = FilterMetrics.begin(this);
+        try {
+            this.applyBuffer(src, dst);
+        } finally {
+            probe.end((long) src.getWidth() * src.getHeight());
+        }
+    }
 
-                System.arraycopy(out, 0, t, 0, size);
-                System.arraycopy(in, 0, out, 0, size);
-                System.arraycopy(t, 0, in, 0, size);
+    /**
+     * Применяет фильтр буферу пикселей.
+     *
+     * @param src исходный буфер пикселей.
+     * @param dst конечный буфер пикселей.
+     */
+    private void applyBuffer(PixelBuffer src, PixelBuffer dst) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        if (width == 0 || height == 0) return;
+
+        int halo = this.getHalo();
+        // Полоса с окрестностью должна помещаться в массив.
+        int stripRows = Math.min(height, Math.max(1, STRIP_PIXELS / width));
+        if (halo != UNBOUNDED_HALO && (long) (stripRows + 2 * halo) * width <= MAX_ARRAY_SIZE) {
+            this.applyStrips(src, dst, width, height, halo, stripRows);
+        } else {
+            long size = (long) width * height;
+            if (size > MAX_ARRAY_SIZE) throw new IllegalArgumentException("Image is too large for an array");
+
+            BufferPool pool = BufferPool.getDefault();
+            int[] in = null, out = null;
+            try {
+                in = pool.lease((int) size, false);
+                src.getPixels(0, height, in, 0);
+                out = pool.lease((int) size);
+                this.apply(in, out, width, height);
+                dst.setPixels(0, height, out, 0);
+            } finally {
+                pool.release(out);
+                pool.release(in);
             }
         }
+    }
 
-        if (dst == null) dst = this.createDestination(src, width, height);
-        // Заносим выходной массив в конечное изображение.
-        this.setRGB(dst, x, y, width, height, out);
-        return dst;
+    /**
+     * Применяет фильтр буферу пикселей полосами строк. Каждая полоса читается в массив вместе со строками
+     * окрестности. Строки окрестности на границе полос, уже прочитанные для предыдущей полосы, переносятся в начало
+     * массива, а не читаются заново, поэтому конечный буфер может совпадать с исходным.
+     *
+     * @param src       исходный буфер пикселей.
+     * @param dst       конечный буфер пикселей.
+     * @param width     ширина изображения.
+     * @param height    высота изображения.
+     * @param halo      радиус окрестности фильтра.
+     * @param stripRows высота полосы.
+     */
+    private void applyStrips(PixelBuffer src, PixelBuffer dst, int width, int height, int halo, int stripRows) {
+        int capacity = (Math.min(height, stripRows + 2 * halo)) * width;
+        BufferPool pool = BufferPool.getDefault();
+        int[] in = null, out = null;
+        try {
+            in = pool.lease(capacity, false);
+            out = pool.lease(capacity, false);
+
+            // Строки исходного изображения, находящиеся в массиве.
+            int inFrom = 0;
+            int inTo = 0;
+            for (int fromY = 0; fromY < height; fromY += stripRows) {
+                int toY = Math.min(fromY + stripRows, height);
+                int newFrom = Math.max(0, fromY - halo);
+                int newTo = Math.min(height, toY + halo);
+
+                // Переносим уже прочитанные строки и дочитываем остальные.
+                int kept = Math.max(0, inTo - newFrom);
+                if (kept > 0) System.arraycopy(in, (newFrom - inFrom) * width, in, 0, kept * width);
+                src.getPixels(newFrom + kept, newTo - newFrom - kept, in, kept * width);
+                inFrom = newFrom;
+                inTo = newTo;
+
+                // Применяем фильтр строкам полосы.
+                int rows = inTo - inFrom;
+                int localFrom = fromY - inFrom;
+                int localTo = toY - inFrom;
+                Arrays.fill(out, localFrom * width, localTo * width, 0);
+                if (this.parallel) {
+                    TileExecutor.execute(this, in, out, width, rows, localFrom, localTo);
+                } else {
+                    this.apply(in, out, width, rows, localFrom, localTo);
+                }
+
+                dst.setPixels(fromY, toY - fromY, out, localFrom * width);
+            }
+        } finally {
+            pool.release(out);
+            pool.release(in);
+        }
     }
 
     /**
@@ -293,7 +599,10 @@ public abstract class Filter {
     protected int[] getRGB(BufferedImage image, int x, int y, int width, int height, int[] pixels) {
         int type = image.getType();
         if (type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB) {
+            if (this.directAccess && RasterAccess.readInts(image, x, y, width, height, pixels)) return pixels;
             return (int[]) image.getRaster().getDataElements(x, y, width, height, pixels);
+        } else if (RasterAccess.readBytes(image, x, y, width, height, pixels)) {
+            return pixels;
         } else {
             return image.getRGB(x, y, width, height, pixels, 0, width);
         }
@@ -313,8 +622,9 @@ public abstract class Filter {
                           int height, int[] pixels) {
         int type = image.getType();
         if (type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB) {
+            if (this.directAccess && RasterAccess.writeInts(image, x, y, width, height, pixels)) return;
             image.getRaster().setDataElements(x, y, width, height, pixels);
-        } else {
+        } else if (!RasterAccess.writeBytes(image, x, y, width, height, pixels)) {
             image.setRGB(x, y, width, height, pixels, 0, width);
         }
     }
@@ -0,0 +1,69 @@
+/*
+ *
+ */
+package ru.ildev.image.filter;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Событие JFR вызова фильтра. Создается только классом {@link FilterMetrics} и только если JFR доступен.
+ *
+ * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
+ * @version 0.0.0
+ */
+@Name("ru.ildev.image.filter.Filter")
+@Label("Filter")
+@Category("ImageIL")
+@Description("Filter application")
+final class FilterEvent extends Event {
+
+    @Label("Filter Class")
+    String filterClass;
+
+    @Label("Filter Name")
+    String filterName;
+
+    @Label("Pixels")
+    long pixels;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocated;
+
+    /**
+     * Начинает событие.
+     *
+     * @return событие или {@code null}, если событие не записывается.
+     */
+    static FilterEvent start() {
+        FilterEvent event = new FilterEvent();
+        if (!event.isEnabled()) return null;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Завершает и записывает событие.
+     *
+     * @param filterClass имя класса фильтра.
+     * @param filterName  имя фильтра.
+     * @param pixels      количество обработанных пикселей.
+     * @param allocated   объем выделенной памяти в байтах.
+     */
+    void finish(String filterClass, String filterName, long pixels, long allocated) {
+        this.end();
+        if (this.shouldCommit()) {
+            this.filterClass = filterClass;
+            this.filterName = filterName;
+            this.pixels = pixels;
+            this.allocated = allocated;
+            this.commit();
+        }
+    }
+
+}
@@ -0,0 +1,332 @@
+/*
+ *
+ */
+package ru.ildev.image.filter;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Метрики времени работы фильтров. Метрики собираются по классу фильтра и по имени экземпляра фильтра
+ * ({@link Filter#setName(String)}): количество вызовов, количество обработанных пикселей, гистограмма задержек и объем
+ * выделенной памяти. Собираются вызовы {@link Filter#apply(java.awt.image.BufferedImage, java.awt.image.BufferedImage,
+ * int, int, int, int, int)} и каждый этап {@link CombinedFilter}.
+ * <p>
+ * По умолчанию сбор метрик отключен, и тогда вызов фильтра проверяет только один volatile флаг. При включении
+ * метрики публикуются в JMX под именем {@link #OBJECT_NAME}, а каждый вызов фильтра записывается событием JFR
+ * {@code ru.ildev.image.filter.Filter}, если JFR доступен и событие включено в записи.
+ * <p>
+ * Выделенная память считается только в потоке, вызвавшем фильтр, поэтому при многопоточной обработке память,
+ * выделенная в пуле потоков, не учитывается.
+ *
+ * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
+ * @version 0.0.0
+ */
+public final class FilterMetrics {
+
+    /**
+     * Имя JMX объекта метрик.
+     */
+    public static final String OBJECT_NAME = "ru.ildev.image.filter:type=FilterMetrics";
+    /**
+     * Количество интервалов гистограммы задержек. Интервал с номером {@code k} содержит задержки от {@code 2^(k-1)}
+     * до {@code 2^k} наносекунд.
+     */
+    public static final int HISTOGRAM_SIZE = 64;
+
+    /**
+     * Флаг сбора метрик.
+     */
+    private static volatile boolean enabled = false;
+    /**
+     * Флаг регистрации JMX объекта.
+     */
+    private static boolean registered = false;
+
+    /**
+     * Метрики по классам фильтров.
+     */
+    private static final Map<String, Stats> CLASS_STATS = new ConcurrentHashMap<>();
+    /**
+     * Метрики по именам фильтров.
+     */
+    private static final Map<String, Stats> NAME_STATS = new ConcurrentHashMap<>();
+
+    /**
+     * Объект потоков, умеющий считать выделенную потоком память, или {@code null}.
+     */
+    private static final ThreadMXBean THREADS = findThreadBean();
+    /**
+     * Флаг доступности JFR.
+     */
+    private static final boolean JFR = isClassAvailable("jdk.jfr.Event");
+
+    private FilterMetrics() {
+    }
+
+    /**
+     * Проверяет, включен ли сбор метрик.
+     *
+     * @return {@code true}, если сбор метрик включен.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Включает или отключает сбор метрик. При первом включении регистрирует JMX объект метрик.
+     *
+     * @param flag флаг.
+     */
+    public static synchronized void setEnabled(boolean flag) {
+        if (flag && !registered) {
+            register();
+            registered = true;
+        }
+        enabled = flag;
+    }
+
+    /**
+     * Получает метрики по классам фильтров.
+     *
+     * @return список метрик.
+     */
+    public static List<FilterStatistics> getClassStatistics() {
+        return snapshot(CLASS_STATS);
+    }
+
+    /**
+     * Получает метрики по именам фильтров.
+     *
+     * @return список метрик.
+     */
+    public static List<FilterStatistics> getNamedStatistics() {
+        return snapshot(NAME_STATS);
+    }
+
+    /**
+     * Удаляет все собранные метрики.
+     */
+    public static void reset() {
+        CLASS_STATS.clear();
+        NAME_STATS.clear();
+    }
+
+    /**
+     * Начинает измерение вызова фильтра.
+     *
+     * @param filter фильтр.
+     * @return объект измерения.
+     */
+    static Probe begin(Filter filter) {
+        return new Probe(filter);
+    }
+
+    /**
+     * Регистрирует JMX объект метрик.
+     */
+    private static void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(new Bean(), new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // Объект уже зарегистрирован другим загрузчиком классов.
+        } catch (JMException e) {
+            throw new IllegalStateException("Can't register " + OBJECT_NAME, e);
+        }
+    }
+
+    /**
+     * Создает снимок метрик.
+     *
+     * @param stats метрики.
+     * @return список метрик.
+     */
+    private static List<FilterStatistics> snapshot(Map<String, Stats> stats) {
+        List<FilterStatistics> list = new ArrayList<>(stats.size());
+        for (Stats value : stats.values()) {
+            list.add(value.snapshot());
+        }
+        return list;
+    }
+
+    /**
+     * Получает метрики по ключу, создавая их при необходимости.
+     *
+     * @param map         таблица метрик.
+     * @param key         ключ.
+     * @param filterClass класс фильтра.
+     * @param name        имя фильтра.
+     * @return метрики.
+     */
+    private static Stats stats(Map<String, Stats> map, String key, String filterClass, String name) {
+        Stats stats = map.get(key);
+        if (stats == null) {
+            Stats created = new Stats(filterClass, name);
+            stats = map.putIfAbsent(key, created);
+            if (stats == null) stats = created;
+        }
+        return stats;
+    }
+
+    /**
+     * Получает объем памяти, выделенной текущим потоком.
+     *
+     * @return объем памяти в байтах или {@code 0}, если он не поддерживается.
+     */
+    private static long allocatedBytes() {
+        if (THREADS == null) return 0;
+        return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Находит объект потоков, умеющий считать выделенную потоком память.
+     *
+     * @return объект потоков или {@code null}.
+     */
+    private static ThreadMXBean findThreadBean() {
+        try {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+                if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                    return bean;
+                }
+            }
+        } catch (LinkageError e) {
+            // Виртуальная машина не поддерживает com.sun.management.
+        }
+        return null;
+    }
+
+    /**
+     * Проверяет, доступен ли класс.
+     *
+     * @param name имя класса.
+     * @return {@code true}, если класс доступен.
+     */
+    private static boolean isClassAvailable(String name) {
+        try {
+            Class.forName(name, false, FilterMetrics.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Измерение одного вызова фильтра.
+     */
+    static final class Probe {
+
+        private final Filter filter;
+        private final long startNanos;
+        private final long startAllocated;
+        private final FilterEvent event;
+
+        Probe(Filter filter) {
+            this.filter = filter;
+            this.event = JFR ? FilterEvent.start() : null;
+            this.startAllocated = allocatedBytes();
+            this.startNanos = System.nanoTime();
+        }
+
+        /**
+         * Завершает измерение.
+         *
+         * @param pixels количество обработанных пикселей.
+         */
+        void end(long pixels) {
+            long nanos = System.nanoTime() - this.startNanos;
+            long allocated = allocatedBytes() - this.startAllocated;
+
+            String filterClass = this.filter.getClass().getName();
+            String name = this.filter.getName();
+            stats(CLASS_STATS, filterClass, filterClass, null).record(pixels, nanos, allocated);
+            if (name != null) stats(NAME_STATS, name, filterClass, name).record(pixels, nanos, allocated);
+
+            if (this.event != null) this.event.finish(filterClass, name, pixels, allocated);
+        }
+
+    }
+
+    /**
+     * Накопленные метрики класса или экземпляра фильтра.
+     */
+    private static final class Stats {
+
+        private final String filterClass;
+        private final String name;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder pixels = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder allocated = new LongAdder();
+        private final AtomicLongArray histogram = new AtomicLongArray(HISTOGRAM_SIZE);
+
+        Stats(String filterClass, String name) {
+            this.filterClass = filterClass;
+            this.name = name;
+        }
+
+        void record(long pixels, long nanos, long allocated) {
+            this.count.increment();
+            this.pixels.add(pixels);
+            this.nanos.add(nanos);
+            this.allocated.add(allocated);
+            this.histogram.incrementAndGet(nanos <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(nanos));
+        }
+
+        FilterStatistics snapshot() {
+            long[] histogram = new long[HISTOGRAM_SIZE];
+            for (int i = 0; i < HISTOGRAM_SIZE; i++) {
+                histogram[i] = this.histogram.get(i);
+            }
+            return new FilterStatistics(this.filterClass, this.name, this.count.sum(), this.pixels.sum(),
+                    this.nanos.sum(), this.allocated.sum(), histogram);
+        }
+
+    }
+
+    /**
+     * JMX объект метрик.
+     */
+    private static final class Bean implements FilterMetricsMXBean {
+
+        @Override
+        public boolean isEnabled() {
+            return FilterMetrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean flag) {
+            FilterMetrics.setEnabled(flag);
+        }
+
+        @Override
+        public List<FilterStatistics> getClassStatistics() {
+            return FilterMetrics.getClassStatistics();
+        }
+
+        @Override
+        public List<FilterStatistics> getNamedStatistics() {
+            return FilterMetrics.getNamedStatistics();
+        }
+
+        @Override
+        public void reset() {
+            FilterMetrics.reset();
+        }
+
+    }
+
+}
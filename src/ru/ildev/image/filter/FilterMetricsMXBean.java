@@ -0,0 +1,49 @@
+/*
+ *
+ */
+package ru.ildev.image.filter;
+
+import java.util.List;
+
+/**
+ * JMX интерфейс метрик фильтров ({@link FilterMetrics}).
+ *
+ * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
+ * @version 0.0.0
+ */
+public interface FilterMetricsMXBean {
+
+    /**
+     * Проверяет, включен ли сбор метрик.
+     *
+     * @return {@code true}, если сбор метрик включен.
+     */
+    boolean isEnabled();
+
+    /**
+     * Включает или отключает сбор метрик.
+     *
+     * @param flag флаг.
+     */
+    void setEnabled(boolean flag);
+
+    /**
+     * Получает метрики по классам фильтров.
+     *
+     * @return список метрик.
+     */
+    List<FilterStatistics> getClassStatistics();
+
+    /**
+     * Получает метрики по именам фильтров.
+     *
+     * @return список метрик.
+     */
+    List<FilterStatistics> getNamedStatistics();
+
+    /**
+     * Удаляет все собранные метрики.
+     */
+    void reset();
+
+}
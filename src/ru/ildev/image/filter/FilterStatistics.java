@@ -0,0 +1,142 @@
+/*
+ *
+ */
+package ru.ildev.image.filter;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Снимок метрик класса или экземпляра фильтра.
+ *
+ * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
+ * @version 0.0.0
+ */
+public final class FilterStatistics {
+
+    /**
+     * Имя класса фильтра.
+     */
+    private final String filterClass;
+    /**
+     * Имя фильтра или {@code null}, если метрики собраны по классу.
+     */
+    private final String name;
+    /**
+     * Количество вызовов.
+     */
+    private final long count;
+    /**
+     * Количество обработанных пикселей.
+     */
+    private final long pixels;
+    /**
+     * Суммарное время работы в наносекундах.
+     */
+    private final long totalNanos;
+    /**
+     * Объем выделенной памяти в байтах.
+     */
+    private final long allocatedBytes;
+    /**
+     * Гистограмма задержек.
+     */
+    private final long[] latencyHistogram;
+
+    /**
+     * Конструктор.
+     *
+     * @param filterClass      имя класса фильтра.
+     * @param name             имя фильтра или {@code null}.
+     * @param count            количество вызовов.
+     * @param pixels           количество обработанных пикселей.
+     * @param totalNanos       суммарное время работы в наносекундах.
+     * @param allocatedBytes   объем выделенной памяти в байтах.
+     * @param latencyHistogram гистограмма задержек.
+     */
+    @ConstructorProperties({"filterClass", "name", "count", "pixels", "totalNanos", "allocatedBytes",
+            "latencyHistogram"})
+    public FilterStatistics(String filterClass, String name, long count, long pixels, long totalNanos,
+                            long allocatedBytes, long[] latencyHistogram) {
+        if (filterClass == null) throw new NullPointerException("filterClass == null");
+        if (latencyHistogram == null) throw new NullPointerException("latencyHistogram == null");
+        this.filterClass = filterClass;
+        this.name = name;
+        this.count = count;
+        this.pixels = pixels;
+        this.totalNanos = totalNanos;
+        this.allocatedBytes = allocatedBytes;
+        this.latencyHistogram = latencyHistogram.clone();
+    }
+
+    /**
+     * Получает имя класса фильтра.
+     *
+     * @return имя класса фильтра.
+     */
+    public String getFilterClass() {
+        return this.filterClass;
+    }
+
+    /**
+     * Получает имя фильтра.
+     *
+     * @return имя фильтра или {@code null}, если метрики собраны по классу.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Получает количество вызовов.
+     *
+     * @return количество вызовов.
+     */
+    public long getCount() {
+        return this.count;
+    }
+
+    /**
+     * Получает количество обработанных пикселей.
+     *
+     * @return количество пикселей.
+     */
+    public long getPixels() {
+        return this.pixels;
+    }
+
+    /**
+     * Получает суммарное время работы.
+     *
+     * @return время в наносекундах.
+     */
+    public long getTotalNanos() {
+        return this.totalNanos;
+    }
+
+    /**
+     * Получает объем памяти, выделенной в потоках, вызвавших фильтр.
+     *
+     * @return объем памяти в байтах.
+     */
+    public long getAllocatedBytes() {
+        return this.allocatedBytes;
+    }
+
+    /**
+     * Получает гистограмму задержек. Элемент с индексом {@code k} равен количеству вызовов, время которых не меньше
+     * {@code 2^(k-1)} и меньше {@code 2^k} наносекунд.
+     *
+     * @return гистограмму задержек.
+     */
+    public long[] getLatencyHistogram() {
+        return this.latencyHistogram.clone();
+    }
+
+    @Override
+    public String toString() {
+        return "FilterStatistics{filterClass=" + this.filterClass + ", name=" + this.name + ", count=" + this.count +
+                ", pixels=" + this.pixels + ", totalNanos=" + this.totalNanos + ", allocatedBytes=" +
+                this.allocatedBytes + "}";
+    }
+
+}
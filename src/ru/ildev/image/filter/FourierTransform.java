@@ -0,0 +1,537 @@
+/*
+ *
+ */
+package ru.ildev.image.filter;
+
+/**
+ * Класс дискретного преобразования Фурье комплексной последовательности фиксированной длины. Преобразование
+ * выполняется алгоритмом Стокхэма со смешанным основанием: длина раскладывается на множители 4, 2, 3, 5 и остальные
+ * простые числа. Для множителей 2, 3, 4 и 5 используются отдельные «бабочки», для остальных множителей - прямое
+ * вычисление суммы, поэтому быстрее всего работают длины вида {@code 2^a * 3^b * 5^c} (см. {@link #nextSize(int)}).
+ * <p>
+ * Два вещественных сигнала одной длины преобразуются за один проход, если записать первый сигнал в действительную
+ * часть, а второй - в мнимую. Свёртка при этом разделяется: после умножения на спектр вещественного ядра и обратного
+ * преобразования действительная часть содержит свёртку первого сигнала, а мнимая - второго.
+ * <p>
+ * Объект хранит временные массивы, поэтому не потокобезопасен.
+ *
+ * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
+ * @version 0.0.0
+ */
+public final class FourierTransform {
+
+    /**
+     * Синус угла 60 градусов.
+     */
+    private static final double SIN_60 = Math.sqrt(3.0) / 2.0;
+    /**
+     * Косинус угла 72 градуса.
+     */
+    private static final double COS_72 = Math.cos(0.4 * Math.PI);
+    /**
+     * Синус угла 72 градуса.
+     */
+    private static final double SIN_72 = Math.sin(0.4 * Math.PI);
+    /**
+     * Косинус угла 144 градуса.
+     */
+    private static final double COS_144 = Math.cos(0.8 * Math.PI);
+    /**
+     * Синус угла 144 градуса.
+     */
+    private static final double SIN_144 = Math.sin(0.8 * Math.PI);
+
+    /**
+     * Длина последовательности.
+     */
+    private final int size;
+    /**
+     * Множители длины в порядке шагов преобразования.
+     */
+    private final int[] factors;
+    /**
+     * Косинусы углов {@code 2 * pi * k / size}.
+     */
+    private final double[] cos;
+    /**
+     * Синусы углов {@code 2 * pi * k / size}.
+     */
+    private final double[] sin;
+    /**
+     * Временные массивы последовательности.
+     */
+    private final double[] re, im, yre, yim;
+    /**
+     * Временные массивы слагаемых «бабочки».
+     */
+    private final double[] tre, tim;
+    /**
+     * Временные массивы преобразования нескольких последовательностей.
+     */
+    private double[] batchRe, batchIm;
+
+    /**
+     * Конструктор.
+     *
+     * @param size длина последовательности.
+     * @throws IllegalArgumentException если длина меньше единицы.
+     */
+    public FourierTransform(int size) {
+        if (size < 1) throw new IllegalArgumentException("size < 1");
+
+        this.size = size;
+        this.factors = factorize(size);
+        this.cos = new double[size];
+        this.sin = new double[size];
+        for (int k = 0; k < size; k++) {
+            double angle = 2.0 * Math.PI * k / size;
+            this.cos[k] = Math.cos(angle);
+            this.sin[k] = Math.sin(angle);
+        }
+        this.re = new double[size];
+        this.im = new double[size];
+        this.yre = new double[size];
+        this.yim = new double[size];
+
+        int max = 1;
+        for (int factor : this.factors) max = Math.max(max, factor);
+        this.tre = new double[max];
+        this.tim = new double[max];
+    }
+
+    /**
+     * Получает длину последовательности.
+     *
+     * @return длину последовательности.
+     */
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Находит наименьшую длину вида {@code 2^a * 3^b * 5^c}, которая не меньше указанной.
+     *
+     * @param n минимальная длина.
+     * @return длину для быстрого преобразования.
+     */
+    public static int nextSize(int n) {
+        if (n <= 1) return 1;
+
+        int best = Integer.MAX_VALUE;
+        for (long p5 = 1; p5 < best; p5 *= 5) {
+            for (long p35 = p5; p35 < best; p35 *= 3) {
+                long size = p35;
+                while (size < n) size *= 2;
+                if (size < best) best = (int) size;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Выполняет преобразование на месте. Элементы последовательности берутся из массивов с шагом {@code stride},
+     * начиная с индекса {@code offset}, поэтому так же можно преобразовать столбец двумерного массива. Прямое
+     * преобразование вычисляет суммы {@code X[k] = sum x[n] * exp(-2 * pi * i * k * n / size)}, обратное - те же суммы
+     * с положительным показателем экспоненты. Результат обратного преобразования не делится на длину.
+     *
+     * @param re      действительные части.
+     * @param im      мнимые части.
+     * @param offset  индекс первого элемента.
+     * @param stride  шаг между элементами.
+     * @param inverse флаг обратного преобразования.
+     */
+    public void transform(double[] re, double[] im, int offset, int stride, boolean inverse) {
+        if (re == null) throw new NullPointerException("re == null");
+        if (im == null) throw new NullPointerException("im == null");
+
+        int size = this.size;
+        double sign = inverse ? 1.0 : -1.0;
+        double[] xre = this.re, xim = this.im;
+        double[] yre = this.yre, yim = this.yim;
+        for (int k = 0; k < size; k++) {
+            xre[k] = re[offset + k * stride];
+            xim[k] = im[offset + k * stride];
+        }
+
+        // Алгоритм Стокхэма: на каждом шаге последовательность длины n делится на p частей длины m = n / p, и
+        // результат записывается в другой массив уже в нужном порядке, поэтому перестановка индексов не нужна.
+        int n = size;
+        int s = 1;
+        for (int p : this.factors) {
+            int m = n / p;
+            this.butterflies(xre, xim, yre, yim, n, m, s, p, sign);
+
+            double[] t = xre;
+            xre = yre;
+            yre = t;
+            t = xim;
+            xim = yim;
+            yim = t;
+            n = m;
+            s *= p;
+        }
+
+        for (int k = 0; k < size; k++) {
+            re[offset + k * stride] = xre[k];
+            im[offset + k * stride] = xim[k];
+        }
+    }
+
+    /**
+     * Выполняет преобразование на месте для {@code count} последовательностей, элементы которых чередуются: элемент
+     * {@code k} последовательности {@code b} хранится в ячейке {@code b + k * count}. Так преобразуются все столбцы
+     * двумерного массива шириной {@code count} за один проход: внутренние циклы обходят строки массива подряд.
+     *
+     * @param re      действительные части.
+     * @param im      мнимые части.
+     * @param count   количество последовательностей.
+     * @param inverse флаг обратного преобразования.
+     * @see #transform(double[], double[], int, int, boolean)
+     */
+    public void transform(double[] re, double[] im, int count, boolean inverse) {
+        if (re == null) throw new NullPointerException("re == null");
+        if (im == null) throw new NullPointerException("im == null");
+        if (count < 1) throw new IllegalArgumentException("count < 1");
+
+        int length = this.size * count;
+        if (this.batchRe == null || this.batchRe.length < length) {
+            this.batchRe = new double[length];
+            this.batchIm = new double[length];
+        }
+
+        double sign = inverse ? 1.0 : -1.0;
+        double[] xre = re, xim = im;
+        double[] yre = this.batchRe, yim = this.batchIm;
+
+        // Последовательности обрабатываются как одна последовательность, у которой каждый элемент - строка из count
+        // чисел, поэтому количество подпоследовательностей на каждом шаге умножается на count.
+        int n = this.size;
+        int s = count;
+        for (int p : this.factors) {
+            int m = n / p;
+            this.butterflies(xre, xim, yre, yim, n, m, s, p, sign);
+
+            double[] t = xre;
+            xre = yre;
+            yre = t;
+            t = xim;
+            xim = yim;
+            yim = t;
+            n = m;
+            s *= p;
+        }
+
+        if (xre != re) {
+            System.arraycopy(xre, 0, re, 0, length);
+            System.arraycopy(xim, 0, im, 0, length);
+        }
+    }
+
+    /**
+     * Выполняет один шаг алгоритма Стокхэма: для каждой пары {@code q < m}, {@code k < s} вычисляет преобразование
+     * длины {@code p} элементов {@code x[k + s * (q + r * m)]} и записывает его значения, умноженные на
+     * {@code exp(sign * 2 * pi * i * j * q / n)}, в элементы {@code y[k + s * (p * q + j)]}. Показатель {@code j * q}
+     * меньше {@code n}, поэтому множители берутся из таблицы длины {@code size} с шагом {@code size / n}.
+     *
+     * @param xre  действительные части входной последовательности.
+     * @param xim  мнимые части входной последовательности.
+     * @param yre  действительные части результата.
+     * @param yim  мнимые части результата.
+     * @param n    длина преобразуемых подпоследовательностей.
+     * @param m    длина частей.
+     * @param s    количество подпоследовательностей.
+     * @param p    множитель.
+     * @param sign знак показателя экспоненты.
+     */
+    private void butterflies(double[] xre, double[] xim, double[] yre, double[] yim, int n, int m, int s, int p,
+                             double sign) {
+        int step = this.size / n;
+        switch (p) {
+            case 2:
+                this.radix2(xre, xim, yre, yim, m, s, step, sign);
+                break;
+            case 3:
+                this.radix3(xre, xim, yre, yim, m, s, step, sign);
+                break;
+            case 4:
+                this.radix4(xre, xim, yre, yim, m, s, step, sign);
+                break;
+            case 5:
+                this.radix5(xre, xim, yre, yim, m, s, step, sign);
+                break;
+            default:
+                this.radix(xre, xim, yre, yim, m, s, p, step, sign);
+                break;
+        }
+    }
+
+    /**
+     * Выполняет шаг алгоритма с множителем 2.
+     *
+     * @param xre  действительные части входной последовательности.
+     * @param xim  мнимые части входной последовательности.
+     * @param yre  действительные части результата.
+     * @param yim  мнимые части результата.
+     * @param m    длина частей.
+     * @param s    количество подпоследовательностей.
+     * @param step шаг таблицы множителей.
+     * @param sign знак показателя экспоненты.
+     */
+    private void radix2(double[] xre, double[] xim, double[] yre, double[] yim, int m, int s, int step, double sign) {
+        double[] cos = this.cos;
+        double[] sin = this.sin;
+        int sm = s * m;
+
+        for (int q = 0; q < m; q++) {
+            double c1 = cos[q * step], s1 = sign * sin[q * step];
+
+            for (int k = 0, in = s * q, out = 2 * s * q; k < s; k++, in++, out++) {
+                double are = xre[in], aim = xim[in];
+                double bre = xre[in + sm], bim = xim[in + sm];
+                double dre = are - bre, dim = aim - bim;
+
+                yre[out] = are + bre;
+                yim[out] = aim + bim;
+                yre[out + s] = dre * c1 - dim * s1;
+                yim[out + s] = dre * s1 + dim * c1;
+            }
+        }
+    }
+
+    /**
+     * Выполняет шаг алгоритма с множителем 3.
+     *
+     * @param xre  действительные части входной последовательности.
+     * @param xim  мнимые части входной последовательности.
+     * @param yre  действительные части результата.
+     * @param yim  мнимые части результата.
+     * @param m    длина частей.
+     * @param s    количество подпоследовательностей.
+     * @param step шаг таблицы множителей.
+     * @param sign знак показателя экспоненты.
+     */
+    private void radix3(double[] xre, double[] xim, double[] yre, double[] yim, int m, int s, int step, double sign) {
+        double[] cos = this.cos;
+        double[] sin = this.sin;
+        int sm = s * m;
+        double sin60 = sign * SIN_60;
+
+        for (int q = 0; q < m; q++) {
+            double c1 = cos[q * step], s1 = sign * sin[q * step];
+            double c2 = cos[2 * q * step], s2 = sign * sin[2 * q * step];
+
+            for (int k = 0, in = s * q, out = 3 * s * q; k < s; k++, in++, out++) {
+                double t0re = xre[in], t0im = xim[in];
+                double t1re = xre[in + sm], t1im = xim[in + sm];
+                double t2re = xre[in + 2 * sm], t2im = xim[in + 2 * sm];
+
+                double are = t1re + t2re, aim = t1im + t2im;
+                double bre = t0re - 0.5 * are, bim = t0im - 0.5 * aim;
+                // Разность (t1 - t2), умноженная на мнимую часть exp(sign * 2 * pi * i / 3).
+                double dre = -sin60 * (t1im - t2im), dim = sin60 * (t1re - t2re);
+
+                yre[out] = t0re + are;
+                yim[out] = t0im + aim;
+                double vre = bre + dre, vim = bim + dim;
+                yre[out + s] = vre * c1 - vim * s1;
+                yim[out + s] = vre * s1 + vim * c1;
+                vre = bre - dre;
+                vim = bim - dim;
+                yre[out + 2 * s] = vre * c2 - vim * s2;
+                yim[out + 2 * s] = vre * s2 + vim * c2;
+            }
+        }
+    }
+
+    /**
+     * Выполняет шаг алгоритма с множителем 4.
+     *
+     * @param xre  действительные части входной последовательности.
+     * @param xim  мнимые части входной последовательности.
+     * @param yre  действительные части результата.
+     * @param yim  мнимые части результата.
+     * @param m    длина частей.
+     * @param s    количество подпоследовательностей.
+     * @param step шаг таблицы множителей.
+     * @param sign знак показателя экспоненты.
+     */
+    private void radix4(double[] xre, double[] xim, double[] yre, double[] yim, int m, int s, int step, double sign) {
+        double[] cos = this.cos;
+        double[] sin = this.sin;
+        int sm = s * m;
+
+        for (int q = 0; q < m; q++) {
+            double c1 = cos[q * step], s1 = sign * sin[q * step];
+            double c2 = cos[2 * q * step], s2 = sign * sin[2 * q * step];
+            double c3 = cos[3 * q * step], s3 = sign * sin[3 * q * step];
+
+            for (int k = 0, in = s * q, out = 4 * s * q; k < s; k++, in++, out++) {
+                double t0re = xre[in], t0im = xim[in];
+                double t1re = xre[in + sm], t1im = xim[in + sm];
+                double t2re = xre[in + 2 * sm], t2im = xim[in + 2 * sm];
+                double t3re = xre[in + 3 * sm], t3im = xim[in + 3 * sm];
+
+                double are = t0re + t2re, aim = t0im + t2im;
+                double bre = t0re - t2re, bim = t0im - t2im;
+                double cre = t1re + t3re, cim = t1im + t3im;
+                // Разность (t1 - t3), умноженная на exp(sign * pi * i / 2) = sign * i.
+                double dre = -sign * (t1im - t3im), dim = sign * (t1re - t3re);
+
+                yre[out] = are + cre;
+                yim[out] = aim + cim;
+                double vre = bre + dre, vim = bim + dim;
+                yre[out + s] = vre * c1 - vim * s1;
+                yim[out + s] = vre * s1 + vim * c1;
+                vre = are - cre;
+                vim = aim - cim;
+                yre[out + 2 * s] = vre * c2 - vim * s2;
+                yim[out + 2 * s] = vre * s2 + vim * c2;
+                vre = bre - dre;
+                vim = bim - dim;
+                yre[out + 3 * s] = vre * c3 - vim * s3;
+                yim[out + 3 * s] = vre * s3 + vim * c3;
+            }
+        }
+    }
+
+    /**
+     * Выполняет шаг алгоритма с множителем 5.
+     *
+     * @param xre  действительные части входной последовательности.
+     * @param xim  мнимые части входной последовательности.
+     * @param yre  действительные части результата.
+     * @param yim  мнимые части результата.
+     * @param m    длина частей.
+     * @param s    количество подпоследовательностей.
+     * @param step шаг таблицы множителей.
+     * @param sign знак показателя экспоненты.
+     */
+    private void radix5(double[] xre, double[] xim, double[] yre, double[] yim, int m, int s, int step, double sign) {
+        double[] cos = this.cos;
+        double[] sin = this.sin;
+        int sm = s * m;
+        double sin72 = sign * SIN_72;
+        double sin144 = sign * SIN_144;
+
+        for (int q = 0; q < m; q++) {
+            double c1 = cos[q * step], s1 = sign * sin[q * step];
+            double c2 = cos[2 * q * step], s2 = sign * sin[2 * q * step];
+            double c3 = cos[3 * q * step], s3 = sign * sin[3 * q * step];
+            double c4 = cos[4 * q * step], s4 = sign * sin[4 * q * step];
+
+            for (int k = 0, in = s * q, out = 5 * s * q; k < s; k++, in++, out++) {
+                double t0re = xre[in], t0im = xim[in];
+                double t1re = xre[in + sm], t1im = xim[in + sm];
+                double t2re = xre[in + 2 * sm], t2im = xim[in + 2 * sm];
+                double t3re = xre[in + 3 * sm], t3im = xim[in + 3 * sm];
+                double t4re = xre[in + 4 * sm], t4im = xim[in + 4 * sm];
+
+                double a1re = t1re + t4re, a1im = t1im + t4im;
+                double b1re = t1re - t4re, b1im = t1im - t4im;
+                double a2re = t2re + t3re, a2im = t2im + t3im;
+                double b2re = t2re - t3re, b2im = t2im - t3im;
+
+                double r1re = t0re + COS_72 * a1re + COS_144 * a2re;
+                double r1im = t0im + COS_72 * a1im + COS_144 * a2im;
+                double r2re = t0re + COS_144 * a1re + COS_72 * a2re;
+                double r2im = t0im + COS_144 * a1im + COS_72 * a2im;
+                // Мнимые части сумм, умноженные на sign * i.
+                double i1re = -(sin72 * b1im + sin144 * b2im), i1im = sin72 * b1re + sin144 * b2re;
+                double i2re = -(sin144 * b1im - sin72 * b2im), i2im = sin144 * b1re - sin72 * b2re;
+
+                yre[out] = t0re + a1re + a2re;
+                yim[out] = t0im + a1im + a2im;
+                double vre = r1re + i1re, vim = r1im + i1im;
+                yre[out + s] = vre * c1 - vim * s1;
+                yim[out + s] = vre * s1 + vim * c1;
+                vre = r2re + i2re;
+                vim = r2im + i2im;
+                yre[out + 2 * s] = vre * c2 - vim * s2;
+                yim[out + 2 * s] = vre * s2 + vim * c2;
+                vre = r2re - i2re;
+                vim = r2im - i2im;
+                yre[out + 3 * s] = vre * c3 - vim * s3;
+                yim[out + 3 * s] = vre * s3 + vim * c3;
+                vre = r1re - i1re;
+                vim = r1im - i1im;
+                yre[out + 4 * s] = vre * c4 - vim * s4;
+                yim[out + 4 * s] = vre * s4 + vim * c4;
+            }
+        }
+    }
+
+    /**
+     * Выполняет шаг алгоритма с произвольным множителем прямым вычислением сумм.
+     *
+     * @param xre  действительные части входной последовательности.
+     * @param xim  мнимые части входной последовательности.
+     * @param yre  действительные части результата.
+     * @param yim  мнимые части результата.
+     * @param m    длина частей.
+     * @param s    количество подпоследовательностей.
+     * @param p    множитель.
+     * @param step шаг таблицы множителей.
+     * @param sign знак показателя экспоненты.
+     */
+    private void radix(double[] xre, double[] xim, double[] yre, double[] yim, int m, int s, int p, int step,
+                       double sign) {
+        double[] cos = this.cos;
+        double[] sin = this.sin;
+        double[] tre = this.tre;
+        double[] tim = this.tim;
+        int sm = s * m;
+        int pStep = this.size / p;
+
+        for (int q = 0; q < m; q++) {
+            for (int k = 0, in = s * q, out = p * s * q; k < s; k++, in++, out++) {
+                for (int r = 0; r < p; r++) {
+                    tre[r] = xre[in + r * sm];
+                    tim[r] = xim[in + r * sm];
+                }
+                for (int j = 0; j < p; j++) {
+                    // Показатель r * j берется по модулю p без деления.
+                    double sre = 0.0, sim = 0.0;
+                    for (int r = 0, e = 0; r < p; r++) {
+                        double c = cos[e * pStep];
+                        double si = sign * sin[e * pStep];
+                        sre += tre[r] * c - tim[r] * si;
+                        sim += tre[r] * si + tim[r] * c;
+                        e += j;
+                        if (e >= p) e -= p;
+                    }
+                    int e = j * q * step;
+                    double c = cos[e];
+                    double si = sign * sin[e];
+                    yre[out + j * s] = sre * c - sim * si;
+                    yim[out + j * s] = sre * si + sim * c;
+                }
+            }
+        }
+    }
+
+    /**
+     * Раскладывает длину на множители.
+     *
+     * @param n длина.
+     * @return множители.
+     */
+    private static int[] factorize(int n) {
+        int[] factors = new int[32];
+        int count = 0;
+        while (n % 4 == 0) {
+            factors[count++] = 4;
+            n /= 4;
+        }
+        for (int p = 2; n > 1; p++) {
+            while (n % p == 0) {
+                factors[count++] = p;
+                n /= p;
+            }
+        }
+
+        int[] result = new int[count];
+        System.arraycopy(factors, 0, result, 0, count);
+        return result;
+    }
+
+}
@@ -3,23 +3,100 @@
  */
 package ru.ildev.image.filter;
 
+import ru.ildev.color.Color;
 import ru.ildev.math.MoreMath;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * Класс фильтра размытия по Гауссу.
+ * <p>
+ * В режиме {@link #CONVOLVE_MODE} изображение сворачивается с матрицей размером {@code 2 * radius}, поэтому
+ * количество операций на пиксель растет с радиусом. В режиме {@link #RECURSIVE_MODE} используется рекурсивный фильтр
+ * Янга, ван Влита и ван Гинкеля (I. T. Young, L. J. van Vliet, M. van Ginkel, "Recursive Gabor filtering", 2002):
+ * строки и столбцы обрабатываются рекурсивным фильтром третьего порядка в прямом и обратном направлениях, и количество
+ * операций на пиксель не зависит от стандартного отклонения. Масштаб полюсов фильтра подбирается так, чтобы дисперсия
+ * импульсного отклика точно равнялась {@code sigma^2}.
+ * <p>
+ * Рекурсивный фильтр приближает функцию Гаусса с центром в пикселе. Наибольшее отличие импульсного отклика от функции
+ * Гаусса составляет около 3,5% от ее максимума при стандартном отклонении 1, 2% при 2 и 1% при 10 и более. На
+ * изображениях 256x256 из шума, клеток и блоков 8x8 значение канала отличается от свёртки с точной центрированной
+ * матрицей Гаусса в среднем не более чем на 0,85 и не более чем на 4 при стандартном отклонении от 1,5 до 20; при
+ * стандартном отклонении 1 на шуме - в среднем на 1,1 и не более чем на 6. Матрица режима {@link #CONVOLVE_MODE}
+ * смещена на половину пикселя, поэтому от нее результаты отличаются сильнее на резких перепадах яркости.
+ * <p>
+ * Рекурсивный фильтр обрабатывает края, продолжая строки и столбцы за пределы изображения: нулями при обрезании
+ * краев, крайним пикселем при расширении краев и пикселями с другой стороны при заворачивании краев.
+ * <p>
+ * В режиме {@link #BOX_MODE} изображение три раза подряд размывается однородной матрицей скользящим окном, как в
+ * {@link BoxBlurFilter}, сначала по столбцам, затем по строкам. Столбцы размываются в целых числах без деления на
+ * ширину окна, поэтому результат не зависит от разбиения изображения на полосы. Ширины матриц подбираются так, чтобы
+ * дисперсия результата была близка к {@code sigma^2} (W. M. Wells, "Efficient synthesis of Gaussian filters by cascaded
+ * uniform filters", 1986). Импульсный отклик - кусочно-квадратичная функция, а ширины матриц - нечетные числа, поэтому
+ * режим предназначен для эффектов, таких как свечение и тени, где точность не важна. На тех же изображениях при
+ * стандартном отклонении от 2 до 20 значение канала отличается от свёртки с точной матрицей в среднем не более чем на
+ * 1,1 и не более чем на 12. Количество операций на пиксель не зависит от стандартного отклонения.
+ * <p>
+ * Приближения неточны при малом стандартном отклонении, поэтому при отклонении меньше 1 для режима
+ * {@link #RECURSIVE_MODE} и меньше 2 для режима {@link #BOX_MODE} выполняется свёртка с матрицей.
+ * <p>
+ * В режиме {@link #CONVOLVE_MODE} матрица по умолчанию разделима: она составляется из нормированной строки значений
+ * функции Гаусса одной переменной и сворачивается в два прохода, по строкам и по столбцам. Значения такой матрицы
+ * отличаются от значений матрицы ранних версий, которая вычислялась по функции Гаусса двух переменных, в последнем
+ * знаке, поэтому значение канала может отличаться от прежнего на 1. После {@code setSeparable(false)} используется
+ * прежняя матрица и двумерный цикл свёртки, и результат совпадает с прежним, если свёртка не выполняется через
+ * преобразование Фурье.
  *
  * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
  * @version 0.2.0
  */
 public class GaussianBlurFilter extends ConvolveFilter {
 
+    /**
+     * Свёртка с матрицей.
+     */
+    public static final int CONVOLVE_MODE = 0;
+    /**
+     * Рекурсивный фильтр.
+     */
+    public static final int RECURSIVE_MODE = 1;
+    /**
+     * Приближение тремя однородными размытиями.
+     */
+    public static final int BOX_MODE = 2;
+
+    /**
+     * Наименьшее стандартное отклонение рекурсивного фильтра.
+     */
+    private static final float MIN_RECURSIVE_SIGMA = 1.0f;
+    /**
+     * Наименьшее стандартное отклонение приближения однородными размытиями. При меньших отклонениях ширины размытий
+     * слишком малы, чтобы подобрать дисперсию.
+     */
+    private static final float MIN_BOX_SIGMA = 2.0f;
+    /**
+     * Количество однородных размытий.
+     */
+    private static final int BOX_PASSES = 3;
+    /**
+     * Полюса рекурсивного фильтра для масштаба 1: комплексный полюс и действительный полюс.
+     */
+    private static final double POLE_RE = 1.41650, POLE_IM = 1.00829, POLE_REAL = 1.86543;
+    /**
+     * Количество стандартных отклонений, на которое строки продолжаются за края изображения.
+     */
+    private static final float PADDING = 10.0f;
+
     /**
      * Радиус размытия.
      */
     protected int radius;
+    /**
+     * Стандартное отклонение.
+     */
+    protected float sigma;
+    /**
+     * Режим размытия.
+     */
+    protected int mode = CONVOLVE_MODE;
 
     /**
      * Стандартный конструктор.
@@ -38,8 +115,22 @@ public class GaussianBlurFilter extends ConvolveFilter {
      */
     public GaussianBlurFilter(int radius, int edgeAction) {
         this.radius = radius;
-        this.kernel = makeKernel(radius);
+        this.sigma = radius / 3.0f;
+        this.updateKernel();
+        this.edgeAction = edgeAction;
+    }
+
+    /**
+     * Конструктор, устанавливающий стандартное отклонение.
+     *
+     * @param sigma      стандартное отклонение.
+     * @param edgeAction действие с краями.
+     * @param mode       режим размытия.
+     */
+    public GaussianBlurFilter(float sigma, int edgeAction, int mode) {
+        this.setSigma(sigma);
         this.edgeAction = edgeAction;
+        this.setMode(mode);
     }
 
     /**
@@ -59,87 +150,700 @@ public class GaussianBlurFilter extends ConvolveFilter {
     public void setRadius(int radius) {
         assert radius > 0 : "radius <= 0";
         this.radius = radius;
-        this.kernel = makeKernel(radius);
+        this.sigma = radius / 3.0f;
+        this.updateKernel();
     }
-/*
+
+    /**
+     * Устанавливает флаг свёртки в два прохода. Без него используется матрица, вычисленная по функции Гаусса двух
+     * переменных.
+     *
+     * @param flag флаг.
+     */
+    @Override
+    public void setSeparable(boolean flag) {
+        super.setSeparable(flag);
+        this.updateKernel();
+    }
+
+    /**
+     * Получает стандартное отклонение.
+     *
+     * @return стандартное отклонение.
+     */
+    public float getSigma() {
+        return this.sigma;
+    }
+
+    /**
+     * Устанавливает стандартное отклонение. Радиус размытия становится равным {@code ceil(3 * sigma)}.
+     *
+     * @param sigma стандартное отклонение.
+     */
+    public void setSigma(float sigma) {
+        if (!(sigma > 0.0f)) throw new IllegalArgumentException("sigma <= 0");
+        this.sigma = sigma;
+        this.radius = radiusOf(sigma);
+        this.updateKernel();
+    }
+
+    /**
+     * Получает режим размытия.
+     *
+     * @return режим размытия.
+     */
+    public int getMode() {
+        return this.mode;
+    }
+
+    /**
+     * Устанавливает режим размытия: {@link #CONVOLVE_MODE}, {@link #RECURSIVE_MODE} или {@link #BOX_MODE}.
+     *
+     * @param mode режим размытия.
+     */
+    public void setMode(int mode) {
+        if (mode != CONVOLVE_MODE && mode != RECURSIVE_MODE && mode != BOX_MODE) {
+            throw new IllegalArgumentException("Illegal mode " + mode);
+        }
+        this.mode = mode;
+    }
+
+    /**
+     * Фильтр линейный только в режиме свёртки с матрицей, приближенные режимы дают другой результат.
+     *
+     * @return {@code true}, если размытие выполняется свёрткой с матрицей.
+     */
+    @Override
+    public boolean isLinear() {
+        return this.getEffectiveMode() == CONVOLVE_MODE;
+    }
+
+    @Override
+    public int getHalo() {
+        int mode = this.getEffectiveMode();
+        if (mode == RECURSIVE_MODE) {
+            // Рекурсивный фильтр проходит столбцы изображения целиком.
+            return UNBOUNDED_HALO;
+        } else if (mode == BOX_MODE && this.edgeAction != WRAP_EDGES) {
+            int halo = 0;
+            for (int size : boxSizes(this.sigma)) halo += size / 2;
+            return halo;
+        } else {
+            return super.getHalo();
+        }
+    }
+
     @Override
-    public void apply(int[] in, int[] out, int width, int height) {
-        int[] tmp = new int[width * height];
+    protected void apply(int[] in, int[] out, int width, int height, int fromY, int toY) {
+        int mode = this.getEffectiveMode();
+        if (mode == BOX_MODE) {
+            this.boxBlur(in, out, width, height, fromY, toY);
+            return;
+        } else if (mode != RECURSIVE_MODE) {
+            super.apply(in, out, width, height, fromY, toY);
+            return;
+        }
 
-        int kw = this.kernel.width;
-        int kh = this.kernel.height;
+        if (this.isMonochrome()) {
+            double[][] plane = new double[height][width];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) plane[y][x] = in[x + y * width];
+            }
+            gaussian(plane, width, height, this.sigma, this.edgeAction);
+            for (int y = fromY; y < toY; y++) {
+                for (int x = 0; x < width; x++) {
+                    out[x + y * width] = MoreMath.round(MoreMath.clamp((float) plane[y][x], 0.0f, 255.0f));
+                }
+            }
+            return;
+        }
 
-        float[] kernelH = new float[kw];
-        float[] kernelV = new float[kh];
+        System.arraycopy(in, fromY * width, out, fromY * width, (toY - fromY) * width);
+        boolean[] channels = {this.isAlphaChannel(), this.isRedChannel(), this.isGreenChannel(), this.isBlueChannel()};
+        double[][] plane = new double[height][width];
+        for (int c = 0; c < channels.length; c++) {
+            if (!channels[c]) continue;
+            int shift = 24 - 8 * c;
 
-        for(int x = 0; x < kw; x++) {
-            kernelH[x] = this.kernel.matrix[x + kh/2*kw];
-            for(int y = 0; y < kh; y++) {
-                kernelH[x] += this.kernel.matrix[x + y * kw];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) plane[y][x] = 0xff & in[x + y * width] >> shift;
+            }
+            gaussian(plane, width, height, this.sigma, this.edgeAction);
+            for (int y = fromY; y < toY; y++) {
+                for (int x = 0; x < width; x++) {
+                    int index = x + y * width;
+                    int value = Color.clamp(MoreMath.round((float) plane[y][x]));
+                    out[index] = out[index] & ~(0xff << shift) | value << shift;
+                }
             }
         }
+    }
 
-        for(int y = 0; y < kh; y++) {
-            kernelV[y] = this.kernel.matrix[kw/2 + y * kw];
-            for(int x = 0; x < kw; x++) {
-                kernelV[y] += this.kernel.matrix[x + y * kw];
+    @Override
+    public void applyPlane(byte[] in, byte[] out, int width, int height, int channel) {
+        int mode = this.getEffectiveMode();
+        if (mode == BOX_MODE) {
+            int[] sizes = boxSizes(this.sigma);
+            long scale = 1;
+            for (int size : sizes) scale *= size;
+            long[] plane = new long[width * height];
+            for (int i = 0; i < plane.length; i++) plane[i] = 0xff & in[i];
+            plane = boxes(plane, new long[plane.length], width, height, 0, sizes, this.edgeAction, 0, height);
+            float[] line = new float[width];
+            float[] buffer = new float[width];
+            for (int y = 0; y < height; y++) {
+                float[] row = boxRow(plane, y * width, 1.0 / scale, line, buffer, width, sizes, this.edgeAction);
+                for (int x = 0; x < width; x++) out[x + y * width] = (byte) Color.clamp(MoreMath.round(row[x]));
             }
+            return;
+        } else if (mode != RECURSIVE_MODE) {
+            super.applyPlane(in, out, width, height, channel);
+            return;
         }
 
-        this.blur(in, tmp, width, height, kernelV, 1, kh, 1.0f, 0, this.edgeAction, this.isRedChannel(), this.isGreenChannel(), this.isBlueChannel(), this.isAlphaChannel(), this.isMonochrome());
-        this.blur(tmp, out, width, height, kernelH, kw, 1, 1.0f, 0, this.edgeAction, this.isRedChannel(), this.isGreenChannel(), this.isBlueChannel(), this.isAlphaChannel(), this.isMonochrome());
+        double[][] plane = new double[height][width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) plane[y][x] = 0xff & in[x + y * width];
+        }
+        gaussian(plane, width, height, this.sigma, this.edgeAction);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                out[x + y * width] = (byte) Color.clamp(MoreMath.round((float) plane[y][x]));
+            }
+        }
     }
-*/
 
     /**
-     * Таблица ядер.
+     * Получает режим, в котором выполняется размытие. Приближенные режимы при малом стандартном отклонении
+     * заменяются свёрткой с матрицей.
+     *
+     * @return режим размытия.
      */
-    private static final Map<Integer, Kernel> KERNELS = new HashMap<>();
+    private int getEffectiveMode() {
+        if (this.mode == RECURSIVE_MODE && this.sigma < MIN_RECURSIVE_SIGMA) return CONVOLVE_MODE;
+        if (this.mode == BOX_MODE && this.sigma < MIN_BOX_SIGMA) return CONVOLVE_MODE;
+        return this.mode;
+    }
 
     /**
-     * Создает ядро фильтра размытия по Гауссу.
+     * Размывает полосу строк изображения тремя однородными размытиями. Каналы обрабатываются по очереди: сначала
+     * столбцы размываются в целых числах ({@link #boxes(long[], long[], int, int, int, int[], int, int, int)}), затем
+     * строки - в числах с плавающей точкой ({@link #boxRow(long[], int, double, float[], float[], int, int[], int)}).
+     * Плоскости содержат только строки полосы и ее окрестности.
      *
-     * @param radius радиус размытия.
-     * @return ядро фильтра.
+     * @param in     входной массив пикселей.
+     * @param out    выходной массив пикселей.
+     * @param width  ширина изображения.
+     * @param height высота изображения.
+     * @param fromY  первая строка полосы.
+     * @param toY    строка, следующая за последней строкой полосы.
      */
-    public static Kernel makeKernel(int radius) {
-        assert radius > 0 : "radius <= 0";
+    private void boxBlur(int[] in, int[] out, int width, int height, int fromY, int toY) {
+        int[] sizes = boxSizes(this.sigma);
+        int edgeAction = this.edgeAction;
+        int halo = 0;
+        long scale = 1;
+        for (int size : sizes) {
+            halo += size / 2;
+            scale *= size;
+        }
+        double k = 1.0 / scale;
+        // При заворачивании краев окна столбцов читают строки с другой стороны изображения.
+        int y0 = edgeAction == WRAP_EDGES ? 0 : MoreMath.max(0, fromY - halo);
+        int y1 = edgeAction == WRAP_EDGES ? height : MoreMath.min(height, toY + halo);
+        int offset = y0 * width;
+
+        long[] plane = new long[(y1 - y0) * width];
+        long[] tmp = new long[plane.length];
+        float[] line = new float[width];
+        float[] buffer = new float[width];
+
+        if (this.isMonochrome()) {
+            for (int i = 0; i < plane.length; i++) plane[i] = in[offset + i];
+            long[] result = boxes(plane, tmp, width, height, y0, sizes, edgeAction, fromY, toY);
+            for (int y = fromY; y < toY; y++) {
+                float[] row = boxRow(result, y * width - offset, k, line, buffer, width, sizes, edgeAction);
+                for (int x = 0; x < width; x++) {
+                    out[x + y * width] = MoreMath.round(MoreMath.clamp(row[x], 0.0f, 255.0f));
+                }
+            }
+            return;
+        }
+
+        System.arraycopy(in, fromY * width, out, fromY * width, (toY - fromY) * width);
+        boolean[] channels = {this.isAlphaChannel(), this.isRedChannel(), this.isGreenChannel(), this.isBlueChannel()};
+        for (int c = 0; c < channels.length; c++) {
+            if (!channels[c]) continue;
+            int shift = 24 - 8 * c;
+
+            for (int i = 0; i < plane.length; i++) plane[i] = 0xff & in[offset + i] >> shift;
+            long[] result = boxes(plane, tmp, width, height, y0, sizes, edgeAction, fromY, toY);
+            for (int y = fromY; y < toY; y++) {
+                float[] row = boxRow(result, y * width - offset, k, line, buffer, width, sizes, edgeAction);
+                for (int x = 0; x < width; x++) {
+                    int index = x + y * width;
+                    int value = Color.clamp(MoreMath.round(row[x]));
+                    out[index] = out[index] & ~(0xff << shift) | value << shift;
+                }
+            }
+        }
+    }
+
+    /**
+     * Размывает столбцы плоскости последовательными однородными размытиями. Каждое размытие обрабатывает строки
+     * полосы вместе с окрестностью, которую читают следующие размытия. Значения не делятся на ширину окна, поэтому
+     * остаются целыми, а суммы окон вычисляются точно. Благодаря этому значение строки не зависит от того, с какой
+     * строки начинается полоса, и результат не зависит от разбиения изображения на полосы.
+     *
+     * @param plane      плоскость целых значений канала. Содержит строки полосы и ее окрестности, начиная со строки
+     *                   {@code y0}.
+     * @param tmp        временная плоскость того же размера.
+     * @param w          ширина изображения.
+     * @param h          высота изображения.
+     * @param y0         номер первой строки плоскости в изображении.
+     * @param sizes      нечетные ширины размытий.
+     * @param edgeAction действие с краями.
+     * @param fromY      первая строка полосы.
+     * @param toY        строка, следующая за последней строкой полосы.
+     * @return плоскость с результатом, умноженным на произведение ширин размытий: {@code plane} или {@code tmp}.
+     */
+    private static long[] boxes(long[] plane, long[] tmp, int w, int h, int y0, int[] sizes, int edgeAction,
+                                int fromY, int toY) {
+        int halo = 0;
+        for (int size : sizes) halo += size / 2;
+
+        long[] source = plane, target = tmp;
+        for (int size : sizes) {
+            halo -= size / 2;
+            if (edgeAction == WRAP_EDGES) {
+                boxColumns(source, target, w, h, y0, size, edgeAction, 0, h);
+            } else {
+                boxColumns(source, target, w, h, y0, size, edgeAction,
+                        MoreMath.max(0, fromY - halo), MoreMath.min(h, toY + halo));
+            }
+            long[] swap = source;
+            source = target;
+            target = swap;
+        }
+        return source;
+    }
+
+    /**
+     * Размывает строку плоскости последовательными однородными размытиями.
+     *
+     * @param plane      плоскость после размытия столбцов.
+     * @param index      индекс первого значения строки в плоскости.
+     * @param k          величина, обратная произведению ширин размытий.
+     * @param line       временная строка.
+     * @param buffer     временная строка.
+     * @param w          ширина изображения.
+     * @param sizes      нечетные ширины размытий.
+     * @param edgeAction действие с краями.
+     * @return строка с результатом: {@code line} или {@code buffer}.
+     */
+    private static float[] boxRow(long[] plane, int index, double k, float[] line, float[] buffer, int w,
+                                  int[] sizes, int edgeAction) {
+        for (int x = 0; x < w; x++) line[x] = (float) (plane[index + x] * k);
+        for (int size : sizes) {
+            boxLine(line, buffer, w, size, edgeAction);
+            float[] swap = line;
+            line = buffer;
+            buffer = swap;
+        }
+        return line;
+    }
+
+    /**
+     * Размывает строку однородной матрицей скользящим окном.
+     *
+     * @param in         входная строка.
+     * @param out        выходная строка.
+     * @param w          длина строки.
+     * @param size       нечетная ширина матрицы.
+     * @param edgeAction действие с краями.
+     */
+    private static void boxLine(float[] in, float[] out, int w, int size, int edgeAction) {
+        int r = size / 2;
+        float k = 1.0f / size;
+
+        float sum = 0.0f;
+        for (int i = -r; i <= r; i++) sum += tap(in, i, w, edgeAction);
+
+        // Для внутренних пикселей окно и значения, входящие в него и выходящие из него, находятся внутри строки.
+        int x0 = MoreMath.min(r, w);
+        int x1 = MoreMath.max(x0, w - r - 1);
+        for (int x = 0; x < x0; x++) {
+            out[x] = (sum + missing(x, r, w, edgeAction) * in[x]) * k;
+            sum += tap(in, x + r + 1, w, edgeAction) - tap(in, x - r, w, edgeAction);
+        }
+        for (int x = x0; x < x1; x++) {
+            out[x] = sum * k;
+            sum += in[x + r + 1] - in[x - r];
+        }
+        for (int x = x1; x < w; x++) {
+            out[x] = (sum + missing(x, r, w, edgeAction) * in[x]) * k;
+            sum += tap(in, x + r + 1, w, edgeAction) - tap(in, x - r, w, edgeAction);
+        }
+    }
+
+    /**
+     * Размывает столбцы плоскости однородной матрицей скользящим окном без деления на высоту матрицы. Суммы окна
+     * хранятся для всех столбцов сразу, и на каждом шаге к ним прибавляется строка, входящая в окно, и вычитается
+     * строка, выходящая из него.
+     *
+     * @param in         входная плоскость.
+     * @param out        выходная плоскость.
+     * @param w          ширина изображения.
+     * @param h          высота изображения.
+     * @param y0         номер первой строки плоскостей в изображении.
+     * @param size       нечетная высота матрицы.
+     * @param edgeAction действие с краями.
+     * @param fromY      первая обрабатываемая строка.
+     * @param toY        строка, следующая за последней обрабатываемой строкой.
+     */
+    private static void boxColumns(long[] in, long[] out, int w, int h, int y0, int size, int edgeAction,
+                                   int fromY, int toY) {
+        int r = size / 2;
+
+        long[] sums = new long[w];
+        for (int i = fromY - r; i <= fromY + r; i++) {
+            int y = edgeRow(i, h, edgeAction);
+            if (y < 0) continue;
+            int offset = (y - y0) * w;
+            for (int x = 0; x < w; x++) sums[x] += in[offset + x];
+        }
+
+        for (int y = fromY; y < toY; y++) {
+            // Окно сдвигается перед строкой, поэтому не читаются строки за последним окном, которых нет в плоскости.
+            if (y > fromY) {
+                int entering = edgeRow(y + r, h, edgeAction);
+                int leaving = edgeRow(y - r - 1, h, edgeAction);
+                if (entering >= 0) {
+                    int offset = (entering - y0) * w;
+                    for (int x = 0; x < w; x++) sums[x] += in[offset + x];
+                }
+                if (leaving >= 0) {
+                    int offset = (leaving - y0) * w;
+                    for (int x = 0; x < w; x++) sums[x] -= in[offset + x];
+                }
+            }
+
+            int index = (y - y0) * w;
+            int missing = missing(y, r, h, edgeAction);
+            if (missing == 0) {
+                System.arraycopy(sums, 0, out, index, w);
+            } else {
+                for (int x = 0; x < w; x++) out[index + x] = sums[x] + missing * in[index + x];
+            }
+        }
+    }
 
-        if (KERNELS.containsKey(radius)) {
-            return KERNELS.get(radius);
+    /**
+     * Получает значение строки, попадающее в окно. Значения за пределами строки при расширении краев учитываются
+     * отдельно ({@link #missing(int, int, int, int)}), поэтому для них, как и при обрезании краев, возвращается 0.
+     *
+     * @param line       строка.
+     * @param i          индекс.
+     * @param w          длина строки.
+     * @param edgeAction действие с краями.
+     * @return значение.
+     */
+    private static float tap(float[] line, int i, int w, int edgeAction) {
+        if (0 <= i && i < w) {
+            return line[i];
+        } else if (edgeAction == WRAP_EDGES) {
+            return line[(i % w + w) % w];
+        } else {
+            return 0.0f;
+        }
+    }
+
+    /**
+     * Находит строку плоскости, попадающую в окно.
+     *
+     * @param i          номер строки.
+     * @param h          высота изображения.
+     * @param edgeAction действие с краями.
+     * @return номер строки или {@code -1}, если строка не входит в сумму окна.
+     */
+    private static int edgeRow(int i, int h, int edgeAction) {
+        if (0 <= i && i < h) {
+            return i;
+        } else if (edgeAction == WRAP_EDGES) {
+            return (i % h + h) % h;
         } else {
-            float sigma = radius / 3.0f;
-            float sigma22 = 2.0f * sigma * sigma;
-            float sigmaRoot = 1.0f / MoreMath.sqrt(sigma22 * MoreMath.PI);
-
-            float div = 0.0f;
-            int r2 = radius * 2;
-            int length = r2 * r2;
-            float[] matrix = new float[length];
-
-            for (int x = 0; x < r2; x++) {
-                for (int y = 0; y < r2; y++) {
-                    int u = x - radius;
-                    int v = y - radius;
-
-                    //              1         ( -u^2+v^2    )
-                    // Gauss = ------------*e^(-------------)
-                    //         2*PI*sigma^2   (2*sigma*sigma)
-                    float k = MoreMath.exp(-(u * u + v * v) / sigma22) * sigmaRoot;
-                    matrix[y * r2 + x] = k;
-                    div += k;
+            return -1;
+        }
+    }
+
+    /**
+     * Находит количество значений окна за пределами строки, которые при расширении краев заменяются центральным
+     * значением, как в {@link BoxBlurFilter}.
+     *
+     * @param x          индекс центра окна.
+     * @param r          радиус окна.
+     * @param w          длина строки.
+     * @param edgeAction действие с краями.
+     * @return количество значений.
+     */
+    private static int missing(int x, int r, int w, int edgeAction) {
+        if (edgeAction != EXTEND_EDGES) return 0;
+        return 2 * r + 1 - (MoreMath.min(w, x + r + 1) - MoreMath.max(0, x - r));
+    }
+
+    /**
+     * Находит нечетные ширины однородных размытий, последовательное применение которых приближает размытие по Гауссу.
+     * Дисперсия однородного размытия шириной {@code w} равна {@code (w^2 - 1) / 12}, а дисперсии последовательных
+     * размытий складываются. Сначала берется наибольшая нечетная ширина {@code wl}, при которой сумма дисперсий не
+     * превышает {@code sigma^2}, затем часть размытий расширяется до {@code wl + 2} так, чтобы сумма была ближе всего к
+     * {@code sigma^2}.
+     *
+     * @param sigma стандартное отклонение.
+     * @return ширины размытий.
+     */
+    private static int[] boxSizes(float sigma) {
+        int n = BOX_PASSES;
+        double variance = 12.0 * sigma * sigma;
+        int wl = (int) Math.floor(Math.sqrt(variance / n + 1.0));
+        if (wl % 2 == 0) wl--;
+        int m = (int) Math.round((variance - n * wl * wl - 4.0 * n * wl - 3.0 * n) / (-4.0 * wl - 4.0));
+
+        int[] sizes = new int[n];
+        for (int i = 0; i < n; i++) sizes[i] = i < m ? wl : wl + 2;
+        return sizes;
+    }
+
+    /**
+     * Размывает плоскость значений рекурсивным фильтром сначала по строкам, затем по столбцам.
+     *
+     * @param plane      строки значений.
+     * @param w          ширина изображения.
+     * @param h          высота изображения.
+     * @param sigma      стандартное отклонение.
+     * @param edgeAction действие с краями.
+     */
+    protected static void gaussian(double[][] plane, int w, int h, float sigma, int edgeAction) {
+        double[] c = coefficients(sigma);
+        int p = padding(sigma);
+
+        // Строка: три начальных значения, p значений перед строкой, строка, p значений после строки и три начальных
+        // значения обратного прохода.
+        double[] line = new double[w + 2 * p + 6];
+        for (int y = 0; y < h; y++) {
+            double[] row = plane[y];
+            for (int i = -p; i < w + p; i++) {
+                line[i + p + 3] = row[edgeIndex(i, w, edgeAction)] * edgeFactor(i, w, edgeAction);
+            }
+            filter(line, c);
+            System.arraycopy(line, p + 3, row, 0, w);
+        }
+
+        // Столбцы обрабатываются строками: каждый шаг рекурсии выполняется для всех столбцов сразу.
+        double[][] rows = new double[h + 2 * p + 6][];
+        for (int i = 0; i < rows.length; i++) {
+            int y = i - p - 3;
+            if (0 <= y && y < h) {
+                rows[i] = plane[y];
+            } else {
+                rows[i] = new double[w];
+                if (-p <= y && y < h + p) {
+                    double[] source = plane[edgeIndex(y, h, edgeAction)];
+                    double factor = edgeFactor(y, h, edgeAction);
+                    for (int x = 0; x < w; x++) rows[i][x] = source[x] * factor;
                 }
             }
+        }
+        filter(rows, c);
+    }
+
+    /**
+     * Выполняет прямой и обратный проходы рекурсивного фильтра по строке. Первые и последние три элемента строки
+     * заполняются начальными значениями проходов.
+     *
+     * @param line строка.
+     * @param c    коэффициенты фильтра.
+     */
+    private static void filter(double[] line, double[] c) {
+        double b = c[0], a1 = c[1], a2 = c[2], a3 = c[3];
+        int end = line.length - 3;
+
+        // Начальные значения соответствуют постоянному продолжению строки.
+        line[0] = line[1] = line[2] = line[3];
+        for (int i = 3; i < end; i++) {
+            line[i] = b * line[i] + a1 * line[i - 1] + a2 * line[i - 2] + a3 * line[i - 3];
+        }
+        line[end] = line[end + 1] = line[end + 2] = line[end - 1];
+        for (int i = end - 1; i >= 3; i--) {
+            line[i] = b * line[i] + a1 * line[i + 1] + a2 * line[i + 2] + a3 * line[i + 3];
+        }
+    }
+
+    /**
+     * Выполняет прямой и обратный проходы рекурсивного фильтра по столбцам. Первые и последние три строки
+     * заполняются начальными значениями проходов.
+     *
+     * @param rows строки.
+     * @param c    коэффициенты фильтра.
+     */
+    private static void filter(double[][] rows, double[] c) {
+        double b = c[0], a1 = c[1], a2 = c[2], a3 = c[3];
+        int end = rows.length - 3;
+        int w = rows[0].length;
+
+        for (int i = 0; i < 3; i++) System.arraycopy(rows[3], 0, rows[i], 0, w);
+        for (int i = 3; i < end; i++) {
+            double[] r0 = rows[i], r1 = rows[i - 1], r2 = rows[i - 2], r3 = rows[i - 3];
+            for (int x = 0; x < w; x++) r0[x] = b * r0[x] + a1 * r1[x] + a2 * r2[x] + a3 * r3[x];
+        }
+        for (int i = end; i < rows.length; i++) System.arraycopy(rows[end - 1], 0, rows[i], 0, w);
+        for (int i = end - 1; i >= 3; i--) {
+            double[] r0 = rows[i], r1 = rows[i + 1], r2 = rows[i + 2], r3 = rows[i + 3];
+            for (int x = 0; x < w; x++) r0[x] = b * r0[x] + a1 * r1[x] + a2 * r2[x] + a3 * r3[x];
+        }
+    }
 
-            div = div <= 0.0f ? 1.0f : 1.0f / div;
-            for (int i = 0; i < length; i++) {
-                matrix[i] *= div;
+    /**
+     * Вычисляет коэффициенты рекурсивного фильтра. Передаточная функция прямого прохода равна
+     * {@code B / ((1 - p1 z^-1) (1 - p2 z^-1) (1 - p3 z^-1))}, где {@code pk = 1 / dk^(1/q)}, а {@code dk} - полюса
+     * Янга, ван Влита и ван Гинкеля. Дисперсия импульсного отклика прямого и обратного проходов равна
+     * {@code 2 * sum(pk / (1 - pk)^2)}, и масштаб {@code q} подбирается делением отрезка пополам так, чтобы она была
+     * равна {@code sigma^2}.
+     *
+     * @param sigma стандартное отклонение.
+     * @return коэффициенты {@code B, a1, a2, a3} рекурсии {@code y[n] = B x[n] + a1 y[n-1] + a2 y[n-2] + a3 y[n-3]}.
+     */
+    private static double[] coefficients(double sigma) {
+        double low = 0.0, high = 10.0 * sigma + 10.0;
+        for (int i = 0; i < 100; i++) {
+            double q = 0.5 * (low + high);
+            if (variance(poles(q)) < sigma * sigma) {
+                low = q;
+            } else {
+                high = q;
             }
+        }
+
+        double[] p = poles(0.5 * (low + high));
+        double re = p[0], im = p[1], p3 = p[2];
+        double norm = re * re + im * im;
+        double a1 = 2.0 * re + p3;
+        double a2 = -(norm + 2.0 * re * p3);
+        double a3 = norm * p3;
+        return new double[]{1.0 - a1 - a2 - a3, a1, a2, a3};
+    }
+
+    /**
+     * Находит полюса рекурсивного фильтра для масштаба {@code q}.
+     *
+     * @param q масштаб.
+     * @return действительную и мнимую части комплексного полюса {@code p1} и действительный полюс {@code p3}.
+     * Полюс {@code p2} сопряжен полюсу {@code p1}.
+     */
+    private static double[] poles(double q) {
+        double modulus = Math.pow(Math.hypot(POLE_RE, POLE_IM), 1.0 / q);
+        double argument = Math.atan2(POLE_IM, POLE_RE) / q;
+        return new double[]{
+                Math.cos(argument) / modulus,
+                -Math.sin(argument) / modulus,
+                Math.pow(POLE_REAL, -1.0 / q)
+        };
+    }
+
+    /**
+     * Вычисляет дисперсию импульсного отклика прямого и обратного проходов рекурсивного фильтра.
+     *
+     * @param p полюса фильтра.
+     * @return дисперсию.
+     */
+    private static double variance(double[] p) {
+        double re = p[0], im = p[1], p3 = p[2];
+        // p1 / (1 - p1)^2 для комплексного полюса, сопряженный полюс дает ту же действительную часть.
+        double sre = (1.0 - re) * (1.0 - re) - im * im;
+        double sim = -2.0 * (1.0 - re) * im;
+        double complex = (re * sre + im * sim) / (sre * sre + sim * sim);
+        return 2.0 * (2.0 * complex + p3 / ((1.0 - p3) * (1.0 - p3)));
+    }
+
+    /**
+     * Находит количество значений, которыми строка продолжается за края изображения. Отклик рекурсивного фильтра на
+     * значения за этим пределом меньше {@code 2^-20}.
+     *
+     * @param sigma стандартное отклонение.
+     * @return количество значений.
+     */
+    private static int padding(float sigma) {
+        return (int) Math.ceil(PADDING * sigma) + 4;
+    }
 
-            Kernel kernel = new Kernel(r2, r2, matrix, 1.0f, 0);
-            KERNELS.put(radius, kernel);
-            return kernel;
+    /**
+     * Находит индекс значения, которым строка продолжается за край изображения.
+     *
+     * @param i          индекс.
+     * @param n          длина строки.
+     * @param edgeAction действие с краями.
+     * @return индекс значения в строке.
+     */
+    private static int edgeIndex(int i, int n, int edgeAction) {
+        if (0 <= i && i < n) {
+            return i;
+        } else if (edgeAction == WRAP_EDGES) {
+            return (i % n + n) % n;
+        } else {
+            return i < 0 ? 0 : n - 1;
         }
     }
 
+    /**
+     * Находит множитель значения, которым строка продолжается за край изображения: 0 при обрезании краев, иначе 1.
+     *
+     * @param i          индекс.
+     * @param n          длина строки.
+     * @param edgeAction действие с краями.
+     * @return множитель значения.
+     */
+    private static double edgeFactor(int i, int n, int edgeAction) {
+        return (0 <= i && i < n) || edgeAction != CROP_EDGES ? 1.0 : 0.0;
+    }
+
+    /**
+     * Находит радиус размытия для стандартного отклонения.
+     *
+     * @param sigma стандартное отклонение.
+     * @return радиус размытия.
+     */
+    private static int radiusOf(float sigma) {
+        return MoreMath.max(1, (int) Math.ceil(3.0f * sigma));
+    }
+
+    /**
+     * Берет из общего кэша ядро для текущих радиуса и стандартного отклонения: разделимое или, если свёртка в два
+     * прохода отключена, вычисленное по функции Гаусса двух переменных.
+     */
+    private void updateKernel() {
+        this.kernel = KernelCache.getDefault().getGaussian(this.radius, this.sigma, this.separable);
+    }
+
+    /**
+     * Создает разделимое ядро фильтра размытия по Гауссу со стандартным отклонением {@code radius / 3}. Ядро берется
+     * из общего кэша ядер.
+     *
+     * @param radius радиус размытия.
+     * @return ядро фильтра.
+     */
+    public static Kernel makeKernel(int radius) {
+        assert radius > 0 : "radius <= 0";
+
+        return KernelCache.getDefault().getGaussian(radius, radius / 3.0f);
+    }
+
+    /**
+     * Создает разделимое ядро фильтра размытия по Гауссу с радиусом {@code ceil(3 * sigma)}. Ядро берется из общего
+     * кэша ядер.
+     *
+     * @param sigma стандартное отклонение.
+     * @return ядро фильтра.
+     */
+    public static Kernel makeKernel(float sigma) {
+        return KernelCache.getDefault().getGaussian(radiusOf(sigma), sigma);
+    }
 }
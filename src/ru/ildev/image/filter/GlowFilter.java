@@ -46,9 +46,9 @@ public class GlowFilter extends GaussianBlurFilter {
     }
 
     @Override
-    public void apply(int[] in, int[] out, int width, int height) {
-        int[] out2 = new int[width * height];
-        super.apply(in, out2, width, height);
+    protected void apply(int[] in, int[] out, int width, int height, int fromY, int toY) {
+        // Размытое изображение записывается сразу в выходной массив и затем смешивается с исходным.
+        super.apply(in, out, width, height, fromY, toY);
 
         boolean rchannel = this.isRedChannel();
         boolean gchannel = this.isGreenChannel();
@@ -59,43 +59,55 @@ public class GlowFilter extends GaussianBlurFilter {
         if (monochrome) {
             float a = 1.0f * this.amount;
 
-            for (int y = 0; y < height; y++) {
+            for (int y = fromY; y < toY; y++) {
                 for (int x = 0; x < width; x++) {
                     int index = x + y * width;
                     int color1 = in[index];
-                    int color2 = out2[index];
+                    int color2 = out[index];
 
                     out[index] = MoreMath.clamp((int) (color1 + a * color2), 0, 255);
                 }
             }
         } else {
-            float a = 4.0f * this.amount;
-
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
-                    int index = x + y * width;
-
-                    int rgb1 = in[index];
-                    int a1 = 0xff & (rgb1 >> 24);
-                    int r1 = 0xff & (rgb1 >> 16);
-                    int g1 = 0xff & (rgb1 >> 8);
-                    int b1 = 0xff & rgb1;
+            PixelKernels.getDefault().addScaled(in, out, out, fromY * width, toY * width, 4.0f * this.amount);
+        }
+    }
 
-                    int rgb2 = out2[index];
-                    int a2 = 0xff & (rgb2 >> 24);
-                    int r2 = 0xff & (rgb2 >> 16);
-                    int g2 = 0xff & (rgb2 >> 8);
-                    int b2 = 0xff & rgb2;
+    /**
+     * Свечение смешивает все каналы, в том числе каналы, которые не размываются.
+     *
+     * @param channel канал.
+     * @return {@code true}.
+     */
+    @Override
+    public boolean isPlaneProcessed(int channel) {
+        return true;
+    }
 
-                    a1 = MoreMath.clamp((int) (a1 + a * a2), 0, 255);
-                    r1 = MoreMath.clamp((int) (r1 + a * r2), 0, 255);
-                    g1 = MoreMath.clamp((int) (g1 + a * g2), 0, 255);
-                    b1 = MoreMath.clamp((int) (b1 + a * b2), 0, 255);
+    @Override
+    public void applyPlane(byte[] in, byte[] out, int width, int height, int channel) {
+        // Неразмытый канал смешивается сам с собой.
+        if (PlanarImage.isChannel(this, channel)) {
+            super.applyPlane(in, out, width, height, channel);
+        } else {
+            System.arraycopy(in, 0, out, 0, width * height);
+        }
 
-                    out[index] = (a1 << 24) | (r1 << 16) | (g1 << 8) | b1;
-                }
-            }
+        float a = 4.0f * this.amount;
+        int size = width * height;
+        for (int i = 0; i < size; i++) {
+            out[i] = (byte) MoreMath.clamp((int) ((0xff & in[i]) + a * (0xff & out[i])), 0, 255);
         }
     }
 
+    /**
+     * Результат смешивается с исходным изображением, поэтому фильтр не сводится к свёртке с ядром.
+     *
+     * @return {@code false}.
+     */
+    @Override
+    public boolean isLinear() {
+        return false;
+    }
+
 }
@@ -41,4 +41,15 @@ public class GrayscaleFilter extends ColorFilter {
             return a | (r << 16) | (g << 8) | b;
         }
     }
+
+    @Override
+    protected boolean applyPixels(PixelKernels kernels, int[] in, int[] out, int from, int to) {
+        if (this.isMonochrome()) {
+            kernels.mask(in, out, from, to, 0xffffffff, 0);
+        } else {
+            kernels.grayscale(in, out, from, to, (this.isRedChannel() ? 0xff0000 : 0) |
+                    (this.isGreenChannel() ? 0xff00 : 0) | (this.isBlueChannel() ? 0xff : 0));
+        }
+        return true;
+    }
 }
@@ -27,4 +27,18 @@ public class InvertFilter extends ColorFilter {
         }
     }
 
+    @Override
+    protected boolean applyPixels(PixelKernels kernels, int[] in, int[] out, int from, int to) {
+        if (this.isMonochrome()) {
+            kernels.mask(in, out, from, to, 0xff, 0xff);
+        } else {
+            // Для значения канала от 0 до 255 выражение 255 - c равно c ^ 255.
+            int xor = (this.isRedChannel() ? 0xff0000 : 0) |
+                    (this.isGreenChannel() ? 0xff00 : 0) |
+                    (this.isBlueChannel() ? 0xff : 0);
+            kernels.mask(in, out, from, to, 0xffffffff, xor);
+        }
+        return true;
+    }
+
 }
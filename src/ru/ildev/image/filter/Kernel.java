@@ -3,14 +3,32 @@
  */
 package ru.ildev.image.filter;
 
+import ru.ildev.color.Color;
+import ru.ildev.math.MoreMath;
+
 /**
  * Класс ядра свертки фильтра изображения.
+ * <p>
+ * Ядро неизменяемо: конструкторы копируют переданные массивы, а методы, возвращающие массивы, возвращают их копии.
+ * Ненулевые значения, строка и столбец разделимой матрицы вычисляются при создании ядра и используются фильтрами
+ * вместо матрицы, поэтому одно ядро можно безопасно использовать в нескольких фильтрах, как это делает
+ * {@link KernelCache}.
  *
  * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
  * @version 0.0.0
  */
 public class Kernel {
 
+    /**
+     * Наибольшая сумма модулей целых значений матрицы, при которой суммы каналов вычисляются в числах с плавающей
+     * точкой точно: произведения и суммы не превосходят {@code 255 * 65793 < 2^24}.
+     */
+    private static final int MAX_INTEGER_WEIGHT = 65793;
+    /**
+     * Наибольшая длина таблицы значений каналов.
+     */
+    private static final int MAX_TABLE_LENGTH = 1 << 16;
+
     /**
      * Ширина матрицы.
      */
@@ -41,6 +59,35 @@ public class Kernel {
      * Смещение цвета. К каждому результатирующему цвета прибавляется это значение.
      */
     protected int offset = 0;
+    /**
+     * Строка и столбец разделимой матрицы или {@code null}, если матрица не разделима. Значение матрицы равно
+     * {@code column[y] * row[x]}.
+     */
+    protected float[] row = null, column = null;
+    /**
+     * Смещения ненулевых значений матрицы относительно ее центра по осям Ox и Oy в порядке обхода матрицы по строкам.
+     */
+    protected int[] tapX, tapY;
+    /**
+     * Ненулевые значения матрицы в том же порядке.
+     */
+    protected float[] taps;
+    /**
+     * Смещения ненулевых значений матрицы в массиве пикселей для последней запрошенной ширины изображения.
+     */
+    private volatile Offsets offsets = null;
+    /**
+     * Ненулевые значения матрицы в виде целых чисел или {@code null}, если матрица не целочисленная.
+     */
+    protected int[] integerTaps = null;
+    /**
+     * Наименьшая и наибольшая суммы канала целочисленной матрицы.
+     */
+    protected int lowSum, highSum;
+    /**
+     * Таблица значений каналов для сумм от {@link #lowSum} до {@link #highSum}.
+     */
+    private volatile int[] table = null;
 
     /**
      * Конструктор, устанавливающий матрицу и ее размеры.
@@ -86,6 +133,117 @@ public class Kernel {
         if (matrix.length != length) throw new IllegalStateException("matrix.length != length");
         this.matrix = new float[length];
         System.arraycopy(matrix, 0, this.matrix, 0, length);
+        this.separate();
+        this.compile();
+    }
+
+    /**
+     * Конструктор разделимой матрицы, устанавливающий ее строку и столбец. Значение матрицы равно
+     * {@code column[y] * row[x]}.
+     *
+     * @param row     строка матрицы.
+     * @param column  столбец матрицы.
+     * @param divisor делитель.
+     * @param offset  смещение.
+     */
+    public Kernel(float[] row, float[] column, float divisor, int offset) {
+        if (row == null) throw new NullPointerException("row == null");
+        if (column == null) throw new NullPointerException("column == null");
+        if (row.length == 0 || column.length == 0) throw new IllegalArgumentException("Empty row or column");
+
+        this.width = row.length;
+        this.height = column.length;
+        this.divisor = divisor <= 0.0f ? 1.0f : divisor;
+        this.offset = offset;
+
+        this.matrix = new float[this.width * this.height];
+        for (int y = 0; y < this.height; y++) {
+            for (int x = 0; x < this.width; x++) {
+                this.matrix[x + y * this.width] = column[y] * row[x];
+            }
+        }
+        if (this.width > 1 && this.height > 1) {
+            this.row = row.clone();
+            this.column = column.clone();
+        }
+        this.compile();
+    }
+
+    /**
+     * Составляет список ненулевых значений матрицы. Фильтры обходят этот список вместо всей матрицы, поэтому время
+     * обработки разреженных матриц, например матрицы диагонального разбиения или размытия в движении, пропорционально
+     * количеству ненулевых значений, а не площади матрицы. Порядок значений совпадает с порядком обхода матрицы по
+     * строкам, поэтому суммы складываются в том же порядке.
+     */
+    private void compile() {
+        int count = 0;
+        for (float k : this.matrix) {
+            if (k != 0.0f) count++;
+        }
+
+        this.tapX = new int[count];
+        this.tapY = new int[count];
+        this.taps = new float[count];
+        int hw = this.width / 2;
+        int hh = this.height / 2;
+        int n = 0;
+        for (int y = 0; y < this.height; y++) {
+            for (int x = 0; x < this.width; x++) {
+                float k = this.matrix[x + y * this.width];
+                if (k == 0.0f) continue;
+                this.tapX[n] = x - hw;
+                this.tapY[n] = y - hh;
+                this.taps[n++] = k;
+            }
+        }
+
+        // Матрица целочисленная, если все ее значения целые, а суммы каналов не теряют точности.
+        int[] integerTaps = new int[count];
+        long positive = 0, negative = 0;
+        for (n = 0; n < count; n++) {
+            float k = this.taps[n];
+            if (k != (int) k || Math.abs(k) > MAX_INTEGER_WEIGHT) return;
+            integerTaps[n] = (int) k;
+            if (k > 0.0f) positive += (int) k;
+            else negative -= (int) k;
+        }
+        if (positive + negative > MAX_INTEGER_WEIGHT) return;
+
+        this.integerTaps = integerTaps;
+        this.lowSum = (int) (-255 * negative);
+        this.highSum = (int) (255 * positive);
+    }
+
+    /**
+     * Раскладывает матрицу на строку и столбец, если она разделима, т.е. ее ранг равен единице. Матрица считается
+     * разделимой, только если произведения найденных строки и столбца точно равны значениям матрицы. Матрицы из одной
+     * строки или одного столбца не раскладываются, потому что свёртка с ними не ускоряется.
+     */
+    private void separate() {
+        if (this.width < 2 || this.height < 2) return;
+
+        // Опорный элемент - первый ненулевой элемент матрицы.
+        int pivot = 0;
+        while (pivot < this.matrix.length && this.matrix[pivot] == 0.0f) pivot++;
+        if (pivot == this.matrix.length) return;
+
+        int pivotX = pivot % this.width;
+        int pivotY = pivot / this.width;
+        float[] row = new float[this.width];
+        float[] column = new float[this.height];
+        System.arraycopy(this.matrix, pivotY * this.width, row, 0, this.width);
+        for (int y = 0; y < this.height; y++) {
+            column[y] = this.matrix[pivotX + y * this.width] / this.matrix[pivot];
+        }
+
+        for (int y = 0; y < this.height; y++) {
+            for (int x = 0; x < this.width; x++) {
+                if (column[y] * row[x] != this.matrix[x + y * this.width]) return;
+            }
+        }
+
+        this.row = row;
+        this.column = column;
     }
 
     /**
@@ -107,12 +265,301 @@ public class Kernel {
     }
 
     /**
-     * Получает матрицу.
+     * Получает копию матрицы.
      *
      * @return матрицу.
      */
     public float[] getMatrix() {
-        return this.matrix;
+        return this.matrix.clone();
+    }
+
+    /**
+     * Проверяет, разделима ли матрица, т.е. равна ли она произведению столбца на строку.
+     *
+     * @return {@code true}, если матрица разделима.
+     */
+    public boolean isSeparable() {
+        return this.row != null;
+    }
+
+    /**
+     * Получает копию строки разделимой матрицы.
+     *
+     * @return строку матрицы или {@code null}, если матрица не разделима.
+     */
+    public float[] getRow() {
+        return this.row == null ? null : this.row.clone();
+    }
+
+    /**
+     * Получает копию столбца разделимой матрицы.
+     *
+     * @return столбец матрицы или {@code null}, если матрица не разделима.
+     */
+    public float[] getColumn() {
+        return this.column == null ? null : this.column.clone();
+    }
+
+    /**
+     * Получает количество ненулевых значений матрицы.
+     *
+     * @return количество ненулевых значений.
+     */
+    public int getTapCount() {
+        return this.taps.length;
+    }
+
+    /**
+     * Получает смещения ненулевых значений матрицы относительно ее центра {@code (width / 2, height / 2)} по оси Ox в
+     * порядке обхода матрицы по строкам.
+     *
+     * @return смещения по оси Ox.
+     */
+    public int[] getTapX() {
+        return this.tapX.clone();
+    }
+
+    /**
+     * Получает смещения ненулевых значений матрицы относительно ее центра по оси Oy.
+     *
+     * @return смещения по оси Oy.
+     * @see #getTapX()
+     */
+    public int[] getTapY() {
+        return this.tapY.clone();
+    }
+
+    /**
+     * Получает ненулевые значения матрицы в порядке обхода матрицы по строкам.
+     *
+     * @return ненулевые значения матрицы.
+     * @see #getTapX()
+     */
+    public float[] getTaps() {
+        return this.taps.clone();
+    }
+
+    /**
+     * Получает смещения ненулевых значений матрицы в массиве пикселей изображения указанной ширины:
+     * {@code tapX[n] + tapY[n] * width}.
+     *
+     * @param width ширина изображения.
+     * @return смещения ненулевых значений.
+     */
+    public int[] getTapOffsets(int width) {
+        return this.tapOffsets(width).clone();
+    }
+
+    /**
+     * Получает смещения ненулевых значений матрицы без копирования; фильтры их только читают. Смещения для последней
+     * запрошенной ширины сохраняются, поэтому при обработке изображения одного размера они вычисляются один раз.
+     *
+     * @param width ширина изображения.
+     * @return смещения ненулевых значений.
+     * @see #getTapOffsets(int)
+     */
+    int[] tapOffsets(int width) {
+        Offsets offsets = this.offsets;
+        if (offsets == null || offsets.width != width) {
+            int[] values = new int[this.taps.length];
+            for (int n = 0; n < values.length; n++) values[n] = this.tapX[n] + this.tapY[n] * width;
+            offsets = new Offsets(width, values);
+            this.offsets = offsets;
+        }
+        return offsets.values;
+    }
+
+    /**
+     * Проверяет, целочисленная ли матрица, т.е. целые ли все ее значения. Суммы каналов для такой матрицы можно
+     * накапливать в целых числах: если сумма модулей значений не превосходит 65793, то те же суммы в числах с плавающей
+     * точкой вычисляются точно, и результаты совпадают.
+     *
+     * @return {@code true}, если матрица целочисленная.
+     */
+    public boolean isInteger() {
+        return this.integerTaps != null;
+    }
+
+    /**
+     * Получает ненулевые значения целочисленной матрицы в порядке обхода матрицы по строкам.
+     *
+     * @return значения матрицы или {@code null}, если матрица не целочисленная.
+     * @see #isInteger()
+     */
+    public int[] getIntegerTaps() {
+        return this.integerTaps == null ? null : this.integerTaps.clone();
+    }
+
+    /**
+     * Получает таблицу значений каналов целочисленной матрицы: элемент {@code sum - lowSum} равен значению канала,
+     * которое получается из суммы {@code sum} делением на делитель, прибавлением смещения, округлением и ограничением
+     * так же, как в свертке с плавающей точкой.
+     *
+     * @return таблицу или {@code null}, если матрица не целочисленная или таблица слишком велика.
+     */
+    protected int[] getChannelTable() {
+        int[] table = this.table;
+        if (table == null && this.integerTaps != null && this.highSum - this.lowSum < MAX_TABLE_LENGTH) {
+            float invDiv = 1.0f / this.divisor;
+            table = new int[this.highSum - this.lowSum + 1];
+            for (int n = 0; n < table.length; n++) {
+                table[n] = Color.clamp(MoreMath.round((float) (n + this.lowSum) * invDiv + this.offset));
+            }
+            this.table = table;
+        }
+        return table;
+    }
+
+    /**
+     * Составляет ядро, свёртка с которым равна свёртке с этим ядром и затем с ядром {@code kernel} без округления и
+     * ограничения промежуточных значений. Матрица составного ядра равна свёртке матриц, делитель - произведению
+     * делителей, а смещение цветов - смещению второго ядра плюс смещение первого ядра, умноженное на сумму
+     * нормализованной матрицы второго ядра, округленному до целого. Составное ядро разделимых ядер тоже разделимо.
+     *
+     * @param kernel второе ядро.
+     * @return составное ядро.
+     */
+    public Kernel compose(Kernel kernel) {
+        if (kernel == null) throw new NullPointerException("kernel == null");
+
+        float divisor = this.divisor * kernel.divisor;
+        int offset = MoreMath.round(this.offset * kernel.sum() / kernel.divisor + kernel.offset);
+        if (this.isSeparable() && kernel.isSeparable()) {
+            return new Kernel(convolve(this.row, kernel.row), convolve(this.column, kernel.column), divisor, offset);
+        }
+
+        // Смещение значения матрицы составного ядра равно сумме смещений значений матриц, поэтому индекс значения
+        // равен сумме индексов.
+        int width = size(this.width / 2 + kernel.width / 2,
+                this.width - 1 - this.width / 2 + kernel.width - 1 - kernel.width / 2);
+        int height = size(this.height / 2 + kernel.height / 2,
+                this.height - 1 - this.height / 2 + kernel.height - 1 - kernel.height / 2);
+        float[] matrix = new float[width * height];
+        for (int t = 0; t < this.taps.length; t++) {
+            int x = this.tapX[t] + this.width / 2;
+            int y = this.tapY[t] + this.height / 2;
+            for (int n = 0; n < kernel.taps.length; n++) {
+                int i = x + kernel.tapX[n] + kernel.width / 2;
+                int j = y + kernel.tapY[n] + kernel.height / 2;
+                matrix[i + j * width] += this.taps[t] * kernel.taps[n];
+            }
+        }
+        return new Kernel(width, height, matrix, divisor, offset);
+    }
+
+    /**
+     * Создает ядро, значения матрицы которого умножены на множитель. Делитель и смещение цветов не меняются.
+     *
+     * @param factor множитель.
+     * @return новое ядро.
+     */
+    public Kernel scale(float factor) {
+        if (this.isSeparable()) {
+            float[] row = new float[this.width];
+            for (int x = 0; x < this.width; x++) row[x] = this.row[x] * factor;
+            return new Kernel(row, this.column, this.divisor, this.offset);
+        }
+
+        float[] matrix = new float[this.matrix.length];
+        for (int i = 0; i < matrix.length; i++) matrix[i] = this.matrix[i] * factor;
+        return new Kernel(this.width, this.height, matrix, this.divisor, this.offset);
+    }
+
+    /**
+     * Создает ядро, свёртка с которым равна сумме свёрток с этим ядром и с ядром {@code kernel}. Матрицы
+     * складываются, совместив их центры. Если делители ядер равны, то делитель сохраняется, иначе матрицы делятся на
+     * свои делители, а делитель суммы равен 1. Смещения цветов складываются.
+     *
+     * @param kernel второе ядро.
+     * @return сумма ядер.
+     */
+    public Kernel add(Kernel kernel) {
+        if (kernel == null) throw new NullPointerException("kernel == null");
+
+        int left = MoreMath.max(this.width / 2, kernel.width / 2);
+        int top = MoreMath.max(this.height / 2, kernel.height / 2);
+        int width = size(left, MoreMath.max(this.width - 1 - this.width / 2, kernel.width - 1 - kernel.width / 2));
+        int height = size(top, MoreMath.max(this.height - 1 - this.height / 2,
+                kernel.height - 1 - kernel.height / 2));
+
+        boolean common = this.divisor == kernel.divisor;
+        float[] matrix = new float[width * height];
+        this.addTo(matrix, width, left, top, common ? 1.0f : 1.0f / this.divisor);
+        kernel.addTo(matrix, width, left, top, common ? 1.0f : 1.0f / kernel.divisor);
+        return new Kernel(width, height, matrix, common ? this.divisor : 1.0f, this.offset + kernel.offset);
+    }
+
+    /**
+     * Создает нормализованное ядро, делитель которого равен сумме значений матрицы, так что сумма нормализованной
+     * матрицы равна 1 и ядро сохраняет среднюю яркость. Если сумма отрицательна, то знаки значений матрицы меняются,
+     * потому что делитель должен быть положительным. Если сумма равна нулю, как у матриц выделения краев, то делитель
+     * равен 1.
+     *
+     * @return нормализованное ядро.
+     */
+    public Kernel normalize() {
+        float sum = this.sum();
+        if (sum == 0.0f) sum = 1.0f;
+        Kernel kernel = sum < 0.0f ? this.scale(-1.0f) : this;
+        float divisor = Math.abs(sum);
+
+        if (kernel.isSeparable()) return new Kernel(kernel.row, kernel.column, divisor, this.offset);
+        return new Kernel(this.width, this.height, kernel.matrix, divisor, this.offset);
+    }
+
+    /**
+     * Находит сумму значений матрицы.
+     *
+     * @return сумму значений матрицы.
+     */
+    private float sum() {
+        float sum = 0.0f;
+        for (float k : this.taps) sum += k;
+        return sum;
+    }
+
+    /**
+     * Прибавляет значения матрицы, умноженные на множитель, к большей матрице с тем же центром.
+     *
+     * @param matrix большая матрица.
+     * @param width  ширина большой матрицы.
+     * @param left   x-координата центра большой матрицы.
+     * @param top    y-координата центра большой матрицы.
+     * @param factor множитель.
+     */
+    private void addTo(float[] matrix, int width, int left, int top, float factor) {
+        for (int t = 0; t < this.taps.length; t++) {
+            matrix[left + this.tapX[t] + (top + this.tapY[t]) * width] += this.taps[t] * factor;
+        }
+    }
+
+    /**
+     * Сворачивает строки или столбцы разделимых матриц.
+     *
+     * @param a первая строка.
+     * @param b вторая строка.
+     * @return свёртку строк.
+     */
+    private static float[] convolve(float[] a, float[] b) {
+        float[] result = new float[size(a.length / 2 + b.length / 2,
+                a.length - 1 - a.length / 2 + b.length - 1 - b.length / 2)];
+        for (int i = 0; i < a.length; i++) {
+            for (int j = 0; j < b.length; j++) result[i + j] += a[i] * b[j];
+        }
+        return result;
+    }
+
+    /**
+     * Находит размер матрицы, центр которой {@code size / 2} стоит на {@code before} значений правее первого значения,
+     * а за центром помещается не меньше {@code after} значений. У матрицы четного размера за центром на одно значение
+     * меньше, чем перед ним, поэтому при {@code after < before} размер четный, а иначе нечетный.
+     *
+     * @param before смещение первого значения от центра.
+     * @param after  смещение последнего значения от центра.
+     * @return размер матрицы.
+     */
+    private static int size(int before, int after) {
+        return before + MoreMath.max(after, before - 1) + 1;
     }
 
     /**
@@ -133,4 +580,32 @@ public class Kernel {
         return this.offset;
     }
 
+    /**
+     * Смещения ненулевых значений матрицы для ширины изображения. Ширина и смещения хранятся в одном объекте, чтобы
+     * потоки видели их согласованными.
+     */
+    private static final class Offsets {
+
+        /**
+         * Ширина изображения.
+         */
+        final int width;
+        /**
+         * Смещения ненулевых значений.
+         */
+        final int[] values;
+
+        /**
+         * Конструктор.
+         *
+         * @param width  ширина изображения.
+         * @param values смещения ненулевых значений.
+         */
+        Offsets(int width, int[] values) {
+            this.width = width;
+            this.values = values;
+        }
+
+    }
+
 }
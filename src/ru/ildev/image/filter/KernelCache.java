@@ -0,0 +1,435 @@
+/*
+ *
+ */
+package ru.ildev.image.filter;
+
+import ru.ildev.math.MoreMath;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кэш ядер, создаваемых фильтрами по параметрам. Ядро определяется типом, размером, параметром (стандартным
+ * отклонением для ядра Гаусса) и флагом разделимости: разделимое ядро создается из строки и столбца, а неразделимое -
+ * из матрицы целиком. Количество ядер в кэше ограничено; при переполнении удаляется ядро, которое дольше всех не
+ * запрашивалось. Кэш потокобезопасен.
+ * <p>
+ * Ядра из кэша общие для всех фильтров, поэтому их нельзя изменять.
+ *
+ * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
+ * @version 0.0.0
+ */
+public final class KernelCache {
+
+    /**
+     * Тип ядра размытия по Гауссу.
+     */
+    private static final int GAUSSIAN = 0;
+    /**
+     * Тип однородного ядра, сумма элементов которого равна единице.
+     */
+    private static final int BOX = 1;
+    /**
+     * Тип ядра из единиц, которое задает прямоугольную окрестность для медианного фильтра и фильтров эрозии и
+     * наращивания.
+     */
+    private static final int ONES = 2;
+
+    /**
+     * Максимальное количество ядер в общем кэше.
+     */
+    private static final int DEFAULT_MAX_SIZE = 64;
+
+    /**
+     * Общий кэш ядер, используемый фильтрами.
+     */
+    private static final KernelCache DEFAULT = new KernelCache(DEFAULT_MAX_SIZE);
+
+    /**
+     * Ядра в порядке обращения к ним: первым идет ядро, которое дольше всех не запрашивалось.
+     */
+    private final LinkedHashMap<Key, Kernel> kernels;
+    /**
+     * Максимальное количество ядер в кэше.
+     */
+    private volatile int maxSize;
+    /**
+     * Количество запросов, для которых ядро нашлось в кэше.
+     */
+    private final AtomicLong hits = new AtomicLong();
+    /**
+     * Количество запросов, для которых пришлось создать новое ядро.
+     */
+    private final AtomicLong misses = new AtomicLong();
+    /**
+     * Количество ядер, удаленных из-за переполнения кэша.
+     */
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Конструктор.
+     *
+     * @param maxSize максимальное количество ядер в кэше.
+     */
+    public KernelCache(int maxSize) {
+        if (maxSize < 0) throw new IllegalArgumentException("maxSize < 0");
+        this.maxSize = maxSize;
+        this.kernels = new LinkedHashMap<Key, Kernel>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Kernel> eldest) {
+                if (this.size() <= KernelCache.this.maxSize) return false;
+                KernelCache.this.evictions.incrementAndGet();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Получает общий кэш ядер.
+     *
+     * @return общий кэш ядер.
+     */
+    public static KernelCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Получает разделимое ядро размытия по Гауссу.
+     *
+     * @param radius радиус размытия. Ширина и высота ядра равны {@code 2 * radius}.
+     * @param sigma  стандартное отклонение.
+     * @return ядро.
+     */
+    public Kernel getGaussian(int radius, float sigma) {
+        return this.getGaussian(radius, sigma, true);
+    }
+
+    /**
+     * Получает ядро размытия по Гауссу. Разделимое ядро составляется из нормированной строки значений функции Гаусса
+     * одной переменной. Неразделимое ядро вычисляется по функции Гаусса двух переменных и нормируется целиком, как
+     * в ранних версиях фильтра размытия; из-за округления его значения могут отличаться от произведений строки и
+     * столбца в последнем знаке, поэтому оно сворачивается общим двумерным циклом.
+     *
+     * @param radius    радиус размытия. Ширина и высота ядра равны {@code 2 * radius}.
+     * @param sigma     стандартное отклонение.
+     * @param separable флаг создания ядра из строки и столбца.
+     * @return ядро.
+     */
+    public Kernel getGaussian(int radius, float sigma, boolean separable) {
+        if (radius <= 0) throw new IllegalArgumentException("radius <= 0");
+        return this.get(new Key(GAUSSIAN, 2 * radius, 2 * radius, sigma, separable));
+    }
+
+    /**
+     * Получает однородное ядро, все элементы которого равны {@code 1 / (width * height)}.
+     *
+     * @param width     ширина ядра.
+     * @param height    высота ядра.
+     * @param separable флаг создания ядра из строки и столбца.
+     * @return ядро.
+     */
+    public Kernel getBox(int width, int height, boolean separable) {
+        if (width <= 0) throw new IllegalArgumentException("width <= 0");
+        if (height <= 0) throw new IllegalArgumentException("height <= 0");
+        return this.get(new Key(BOX, width, height, 0.0f, separable));
+    }
+
+    /**
+     * Получает ядро, все элементы которого равны единице.
+     *
+     * @param width     ширина ядра.
+     * @param height    высота ядра.
+     * @param separable флаг создания ядра из строки и столбца.
+     * @return ядро.
+     */
+    public Kernel getOnes(int width, int height, boolean separable) {
+        if (width <= 0) throw new IllegalArgumentException("width <= 0");
+        if (height <= 0) throw new IllegalArgumentException("height <= 0");
+        return this.get(new Key(ONES, width, height, 0.0f, separable));
+    }
+
+    /**
+     * Удаляет из кэша все ядра.
+     */
+    public void clear() {
+        synchronized (this.kernels) {
+            this.kernels.clear();
+        }
+    }
+
+    /**
+     * Получает количество ядер в кэше.
+     *
+     * @return количество ядер.
+     */
+    public int size() {
+        synchronized (this.kernels) {
+            return this.kernels.size();
+        }
+    }
+
+    /**
+     * Получает количество запросов, для которых ядро нашлось в кэше.
+     *
+     * @return количество попаданий.
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * Получает количество запросов, для которых пришлось создать новое ядро.
+     *
+     * @return количество промахов.
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * Получает количество ядер, удаленных из кэша из-за его переполнения.
+     *
+     * @return количество удаленных ядер.
+     */
+    public long getEvictions() {
+        return this.evictions.get();
+    }
+
+    /**
+     * Получает максимальное количество ядер в кэше.
+     *
+     * @return максимальное количество ядер.
+     */
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * Устанавливает максимальное количество ядер в кэше. Лишние ядра удаляются сразу.
+     *
+     * @param maxSize максимальное количество ядер.
+     */
+    public void setMaxSize(int maxSize) {
+        if (maxSize < 0) throw new IllegalArgumentException("maxSize < 0");
+        synchronized (this.kernels) {
+            this.maxSize = maxSize;
+            Iterator<Key> it = this.kernels.keySet().iterator();
+            while (this.kernels.size() > maxSize) {
+                it.next();
+                it.remove();
+                this.evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Получает ядро из кэша или создает его. Ядро создается вне блокировки, чтобы долгое создание большого ядра не
+     * задерживало другие потоки. Если два потока одновременно создали одно и то же ядро, то оба получат ядро, которое
+     * попало в кэш первым.
+     *
+     * @param key ключ ядра.
+     * @return ядро.
+     */
+    private Kernel get(Key key) {
+        Kernel kernel;
+        synchronized (this.kernels) {
+            kernel = this.kernels.get(key);
+        }
+        if (kernel != null) {
+            this.hits.incrementAndGet();
+            return kernel;
+        }
+
+        this.misses.incrementAndGet();
+        kernel = create(key);
+        synchronized (this.kernels) {
+            Kernel cached = this.kernels.get(key);
+            if (cached != null) return cached;
+            this.kernels.put(key, kernel);
+        }
+        return kernel;
+    }
+
+    /**
+     * Создает ядро по ключу.
+     *
+     * @param key ключ ядра.
+     * @return ядро.
+     */
+    private static Kernel create(Key key) {
+        float[] row = new float[key.width];
+        float[] column = new float[key.height];
+        switch (key.type) {
+            case GAUSSIAN:
+                if (!key.separable) {
+                    return new Kernel(key.width, key.height, gaussian(key.width, key.parameter), 1.0f, 0);
+                }
+                // Функция Гаусса двух переменных равна произведению функций одной переменной, поэтому матрица
+                // составляется из строки и столбца.
+                gaussian(row, key.parameter);
+                System.arraycopy(row, 0, column, 0, column.length);
+                break;
+            case BOX:
+                if (key.separable) {
+                    fill(row, 1.0f / key.width);
+                    fill(column, 1.0f / key.height);
+                } else {
+                    // Все элементы матрицы равны одному числу, а не произведению долей строки и столбца.
+                    fill(row, 1.0f / (key.width * key.height));
+                    fill(column, 1.0f);
+                }
+                break;
+            case ONES:
+                fill(row, 1.0f);
+                fill(column, 1.0f);
+                break;
+            default:
+                throw new IllegalArgumentException("Illegal kernel type " + key.type);
+        }
+
+        if (key.separable) return new Kernel(row, column, 1.0f, 0);
+
+        float[] matrix = new float[key.width * key.height];
+        for (int y = 0; y < key.height; y++) {
+            for (int x = 0; x < key.width; x++) {
+                matrix[x + y * key.width] = column[y] * row[x];
+            }
+        }
+        return new Kernel(key.width, key.height, matrix, 1.0f, 0);
+    }
+
+    /**
+     * Заполняет строку нормированными значениями функции Гаусса.
+     *
+     * @param vector строка длиной {@code 2 * radius}.
+     * @param sigma  стандартное отклонение.
+     */
+    private static void gaussian(float[] vector, float sigma) {
+        float sigma22 = 2.0f * sigma * sigma;
+        int radius = vector.length / 2;
+
+        float div = 0.0f;
+        for (int x = 0; x < vector.length; x++) {
+            int u = x - radius;
+
+            //                1            (    -u^2     )
+            // Gauss = ----------------*e^(-------------)
+            //         sqrt(2*PI)*sigma    (2*sigma*sigma)
+            // Постоянный множитель сокращается при нормировании.
+            float k = MoreMath.exp(-(u * u) / sigma22);
+            vector[x] = k;
+            div += k;
+        }
+
+        div = div <= 0.0f ? 1.0f : 1.0f / div;
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= div;
+        }
+    }
+
+    /**
+     * Вычисляет матрицу значений функции Гаусса двух переменных, нормированную так, чтобы сумма ее элементов была
+     * равна единице.
+     *
+     * @param size  ширина и высота матрицы {@code 2 * radius}.
+     * @param sigma стандартное отклонение.
+     * @return матрица.
+     */
+    private static float[] gaussian(int size, float sigma) {
+        float sigma22 = 2.0f * sigma * sigma;
+        float sigmaRoot = 1.0f / MoreMath.sqrt(sigma22 * MoreMath.PI);
+        int radius = size / 2;
+
+        // Значения и их сумма вычисляются в том же порядке, что и раньше, чтобы матрица совпадала до последнего знака.
+        float div = 0.0f;
+        float[] matrix = new float[size * size];
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                int u = x - radius;
+                int v = y - radius;
+
+                //              1         ( -u^2+v^2    )
+                // Gauss = ------------*e^(-------------)
+                //         2*PI*sigma^2   (2*sigma*sigma)
+                float k = MoreMath.exp(-(u * u + v * v) / sigma22) * sigmaRoot;
+                matrix[y * size + x] = k;
+                div += k;
+            }
+        }
+
+        div = div <= 0.0f ? 1.0f : 1.0f / div;
+        for (int i = 0; i < matrix.length; i++) {
+            matrix[i] *= div;
+        }
+        return matrix;
+    }
+
+    /**
+     * Заполняет массив одним значением.
+     *
+     * @param vector массив.
+     * @param value  значение.
+     */
+    private static void fill(float[] vector, float value) {
+        for (int i = 0; i < vector.length; i++) vector[i] = value;
+    }
+
+    /**
+     * Ключ ядра в кэше.
+     */
+    private static final class Key {
+
+        /**
+         * Тип ядра.
+         */
+        final int type;
+        /**
+         * Ширина ядра.
+         */
+        final int width;
+        /**
+         * Высота ядра.
+         */
+        final int height;
+        /**
+         * Параметр ядра.
+         */
+        final float parameter;
+        /**
+         * Флаг разделимого ядра.
+         */
+        final boolean separable;
+
+        Key(int type, int width, int height, float parameter, boolean separable) {
+            this.type = type;
+            this.width = width;
+            this.height = height;
+            this.parameter = parameter;
+            this.separable = separable;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            Key key = (Key) o;
+            return this.type == key.type && this.width == key.width && this.height == key.height
+                    && Float.floatToIntBits(this.parameter) == Float.floatToIntBits(key.parameter)
+                    && this.separable == key.separable;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = this.type;
+            result = 31 * result + this.width;
+            result = 31 * result + this.height;
+            result = 31 * result + Float.floatToIntBits(this.parameter);
+            result = 31 * result + (this.separable ? 1 : 0);
+            return result;
+        }
+    }
+
+}
@@ -3,6 +3,8 @@
  */
 package ru.ildev.image.filter;
 
+import ru.ildev.math.MoreMath;
+
 import java.util.Arrays;
 
 /**
@@ -11,6 +13,10 @@ import java.util.Arrays;
  * пиксели, которые попадают в матрицу, сортируются, и выбирается средние значение из отсортированного массива. Это
  * значение и является выходным для текущего пикселя. Медианный фильтр обычно используется для уменьшения шума или
  * "сглаживания" изображения.
+ * <p>
+ * Для прямоугольной матрицы без нулевых значений окрестность не сортируется: медиана находится по гистограмме
+ * скользящего окна, которая при сдвиге на пиксель меняется на два столбца. Для остальных матриц медиана выбирается из
+ * окрестности на месте, без полной сортировки. Результат в обоих случаях такой же, как после сортировки.
  *
  * @author Ilyas74
  * @version 0.1.1
@@ -35,11 +41,7 @@ public class MedianFilter extends ConvolveFilter {
     public MedianFilter(int size, int edgeAction) {
         assert (size > 0) : "size <= 0";
 
-        int length = size * size;
-        float[] matrix = new float[length];
-        for (int i = 0; i < length; i++) matrix[i] = 1;
-
-        this.kernel = new Kernel(size, size, matrix, 1.0f, 0);
+        this.kernel = KernelCache.getDefault().getOnes(size, size, false);
         this.edgeAction = edgeAction;
     }
 
@@ -65,12 +67,11 @@ public class MedianFilter extends ConvolveFilter {
     }
 
     @Override
-    public void apply(int[] in, int[] out, int width, int height) {
+    protected void apply(int[] in, int[] out, int width, int height, int fromY, int toY) {
         int w = this.kernel.width;
         int h = this.kernel.height;
-        int hw = w / 2;
-        int hh = h / 2;
         int size = w * h;
+        int median = w / 2 + h / 2 * w;
 
         boolean rchannel = this.isRedChannel();
         boolean gchannel = this.isGreenChannel();
@@ -78,131 +79,246 @@ public class MedianFilter extends ConvolveFilter {
         boolean achannel = this.isAlphaChannel();
         boolean monochrome = this.isMonochrome();
 
+        // Прямоугольная матрица без нулей обрабатывается гистограммами. В монохромном режиме значения пикселей
+        // попадают в гистограмму только если лежат в диапазоне от 0 до 255.
+        if (this.isRectangular()
+                && (!monochrome || isByteRange(in, width, height, h, this.edgeAction, fromY, toY))) {
+            // Каналы, которые не обрабатываются, остаются как во входном изображении.
+            System.arraycopy(in, fromY * width, out, fromY * width, (toY - fromY) * width);
+            if (monochrome || achannel) this.median(in, out, width, height, monochrome ? 0 : 24, fromY, toY);
+            if (!monochrome && rchannel) this.median(in, out, width, height, 16, fromY, toY);
+            if (!monochrome && gchannel) this.median(in, out, width, height, 8, fromY, toY);
+            if (!monochrome && bchannel) this.median(in, out, width, height, 0, fromY, toY);
+            return;
+        }
+
+        int[] values = new int[size];
         if (monochrome) {
             // Проходим по каждому пикселю изображения.
-            for (int y = 0; y < height; y++) {
+            for (int y = fromY; y < toY; y++) {
                 for (int x = 0; x < width; x++) {
-                    int[] a = new int[size];
-                    int index = 0;
-
-                    // Проходим по каждому пикселю матрицы.
-                    for (int j = 0; j < h; j++) {
-                        // Находим позиции пикселя матрицы относительно изображения по y.
-                        int pixelPosY = y + (j - hh);
-
-                        int yOff;
-                        if (0 <= pixelPosY && pixelPosY < height) {
-                            yOff = pixelPosY * width;
-                        } else if (this.edgeAction == ConvolveFilter.EXTEND_EDGES) {
-                            yOff = y * width;
-                        } else if (this.edgeAction == ConvolveFilter.WRAP_EDGES) {
-                            yOff = ((pixelPosY + height) % height) * width;
-                        } else {
-                            continue;
-                        }
-
-                        for (int i = 0; i < w; i++) {
-                            float k = this.kernel.matrix[i + j * w];
-                            // Если значение матрицы равно нулю, то проходим дальше.
-                            if (k == 0.0f) continue;
-
-                            // Находим позиции пикселя матрицы относительно изображения по x.
-                            int pixelPosX = x + (i - hw);
-
-                            int xOff;
-                            if (0 <= pixelPosX && pixelPosX < width) {
-                                xOff = pixelPosX;
-                            } else if (this.edgeAction == ConvolveFilter.EXTEND_EDGES) {
-                                xOff = x;
-                            } else if (this.edgeAction == ConvolveFilter.WRAP_EDGES) {
-                                xOff = (x + width) % width;
-                            } else {
-                                continue;
-                            }
-
-                            // Находим значение RGBA цвета в массиве.
-                            a[index++] = in[xOff + yOff];
-                        }
-                    }
+                    int count = Neighborhood.gather(in, width, height, this.kernel, this.edgeAction, x, y, values);
+                    // Пропущенные пиксели окрестности равны нулю.
+                    Arrays.fill(values, count, size, 0);
 
-                    Arrays.sort(a);
-                    out[x + y * width] = a[hw + hh * w];
+                    out[x + y * width] = Neighborhood.select(values, size, median);
                 }
             }
         } else {
+            int[] aa = achannel ? new int[size] : null;
+            int[] ar = rchannel ? new int[size] : null;
+            int[] ag = gchannel ? new int[size] : null;
+            int[] ab = bchannel ? new int[size] : null;
+
             // Проходим по каждому пикселю изображения.
-            for (int y = 0; y < height; y++) {
+            for (int y = fromY; y < toY; y++) {
                 for (int x = 0; x < width; x++) {
-                    int index = 0;
-                    int[] aa = new int[size];
-                    int[] ar = new int[size];
-                    int[] ag = new int[size];
-                    int[] ab = new int[size];
-
-                    // Проходим по каждому пикселю матрицы.
-                    for (int j = 0; j < h; j++) {
-                        // Находим позиции пикселя матрицы относительно изображения по y.
-                        int pixelPosY = y + (j - hh);
-
-                        int yOff;
-                        if (0 <= pixelPosY && pixelPosY < height) {
-                            yOff = pixelPosY * width;
-                        } else if (this.edgeAction == ConvolveFilter.EXTEND_EDGES) {
-                            yOff = y * width;
-                        } else if (this.edgeAction == ConvolveFilter.WRAP_EDGES) {
-                            yOff = ((pixelPosY + height) % height) * width;
-                        } else {
-                            continue;
-                        }
-
-                        for (int i = 0; i < w; i++) {
-                            float k = this.kernel.matrix[i + j * w];
-                            // Если значение матрицы равно нулю, то проходим дальше.
-                            if (k == 0.0f) continue;
-
-                            // Находим позиции пикселя матрицы относительно изображения по x.
-                            int pixelPosX = x + (i - hw);
-
-                            int xOff;
-                            if (0 <= pixelPosX && pixelPosX < width) {
-                                xOff = pixelPosX;
-                            } else if (this.edgeAction == ConvolveFilter.EXTEND_EDGES) {
-                                xOff = x;
-                            } else if (this.edgeAction == ConvolveFilter.WRAP_EDGES) {
-                                xOff = (x + width) % width;
-                            } else {
-                                continue;
-                            }
-
-                            // Находим значение RGBA цвета в массиве.
-                            int rgba = in[xOff + yOff];
-
-                            if (achannel) aa[index] = 0xff & (rgba >> 24);
-                            if (rchannel) ar[index] = 0xff & (rgba >> 16);
-                            if (gchannel) ag[index] = 0xff & (rgba >> 8);
-                            if (bchannel) ab[index] = 0xff & rgba;
-
-                            index++;
-                        }
+                    int count = Neighborhood.gather(in, width, height, this.kernel, this.edgeAction, x, y, values);
+                    if (achannel) Neighborhood.channel(values, count, 24, aa);
+                    if (rchannel) Neighborhood.channel(values, count, 16, ar);
+                    if (gchannel) Neighborhood.channel(values, count, 8, ag);
+                    if (bchannel) Neighborhood.channel(values, count, 0, ab);
+
+                    int index = x + y * width;
+                    int a = achannel ? Neighborhood.select(aa, size, median) : 0xff & (in[index] >> 24);
+                    int r = rchannel ? Neighborhood.select(ar, size, median) : 0xff & (in[index] >> 16);
+                    int g = gchannel ? Neighborhood.select(ag, size, median) : 0xff & (in[index] >> 8);
+                    int b = bchannel ? Neighborhood.select(ab, size, median) : 0xff & in[index];
+
+                    out[index] = (a << 24) | (r << 16) | (g << 8) | b;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void applyPlane(byte[] in, byte[] out, int width, int height, int channel) {
+        int w = this.kernel.width;
+        int h = this.kernel.height;
+        int size = w * h;
+        int median = w / 2 + h / 2 * w;
+
+        if (this.isRectangular()) {
+            this.median(in, out, width, height);
+            return;
+        }
+
+        int[] a = new int[size];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int count = Neighborhood.gather(in, width, height, this.kernel, this.edgeAction, x, y, a);
+                // Пропущенные за краем изображения значения равны нулю, как и в упакованных пикселях.
+                Arrays.fill(a, count, size, 0);
+
+                out[x + y * width] = (byte) Neighborhood.select(a, size, median);
+            }
+        }
+    }
+
+    /**
+     * Проверяет, все ли значения матрицы отличны от нуля. Окрестность такой матрицы - прямоугольник, и при сдвиге на
+     * один пиксель вправо из нее уходит один столбец изображения и приходит другой.
+     *
+     * @return {@code true}, если матрица прямоугольная.
+     */
+    private boolean isRectangular() {
+        return this.kernel.getTapCount() == this.kernel.width * this.kernel.height;
+    }
+
+    /**
+     * Находит медианы одного канала полосы строк прямоугольной окрестности скользящей гистограммой
+     * ({@link SlidingHistogram}). Для каждой строки гистограмма заполняется заново на левом краю, затем окно
+     * сдвигается вправо: значения уходящего столбца удаляются, значения приходящего добавляются, и на пиксель
+     * приходится {@code 2 * kh} изменений гистограммы вместо сортировки {@code kw * kh} значений. На краях окно
+     * собирается заново так же, как в {@link Neighborhood#gather(int[], int, int, Kernel, int, int, int, int[])
+     * gather}, а пропущенные пиксели окрестности считаются нулями.
+     *
+     * @param in     входной массив пикселей.
+     * @param out    выходной массив пикселей, в котором заменяется канал.
+     * @param width  ширина изображения.
+     * @param height высота изображения.
+     * @param shift  сдвиг канала.
+     * @param fromY  первая строка полосы.
+     * @param toY    строка, следующая за последней строкой полосы.
+     */
+    private void median(int[] in, int[] out, int width, int height, int shift, int fromY, int toY) {
+        int kw = this.kernel.width;
+        int kh = this.kernel.height;
+        int hw = kw / 2;
+        int hh = kh / 2;
+        int right = kw - 1 - hw;
+        int edgeAction = this.edgeAction;
+        int keep = ~(0xff << shift);
+        SlidingHistogram histogram = new SlidingHistogram(hw + hh * kw);
+        // Смещения строк изображения под строками матрицы, -1 для пропускаемых строк.
+        int[] rows = new int[kh];
+
+        for (int y = fromY; y < toY; y++) {
+            int used = 0;
+            for (int j = 0; j < kh; j++) {
+                rows[j] = Neighborhood.rowOffset(y, j - hh, width, height, edgeAction);
+                if (rows[j] >= 0) rows[used++] = rows[j];
+            }
+
+            boolean sliding = false;
+            for (int x = 0; x < width; x++) {
+                boolean interior = x >= hw && x + right < width;
+                if (interior && sliding) {
+                    int leaving = x - 1 - hw;
+                    int entering = x + right;
+                    for (int j = 0; j < used; j++) {
+                        histogram.remove(0xff & in[rows[j] + leaving] >> shift);
+                        histogram.add(0xff & in[rows[j] + entering] >> shift);
                     }
+                } else {
+                    histogram.clear();
+                    int count = 0;
+                    for (int i = 0; i < kw; i++) {
+                        int xOff = Neighborhood.columnOffset(x, i - hw, width, edgeAction);
+                        if (xOff < 0) continue;
+                        for (int j = 0; j < used; j++) histogram.add(0xff & in[rows[j] + xOff] >> shift);
+                        count += used;
+                    }
+                    histogram.add(0, kw * kh - count);
+                }
+                sliding = interior;
 
-                    if (achannel) Arrays.sort(aa);
-                    if (rchannel) Arrays.sort(ar);
-                    if (gchannel) Arrays.sort(ag);
-                    if (bchannel) Arrays.sort(ab);
+                int index = x + y * width;
+                out[index] = out[index] & keep | histogram.get() << shift;
+            }
+        }
+    }
 
-                    index = x + y * width;
-                    int index2 = hw + hh * w;
+    /**
+     * Находит медианы плоскости канала прямоугольной окрестности скользящей гистограммой так же, как
+     * {@link #median(int[], int[], int, int, int, int, int)}.
+     *
+     * @param in     входная плоскость.
+     * @param out    выходная плоскость.
+     * @param width  ширина изображения.
+     * @param height высота изображения.
+     */
+    private void median(byte[] in, byte[] out, int width, int height) {
+        int kw = this.kernel.width;
+        int kh = this.kernel.height;
+        int hw = kw / 2;
+        int hh = kh / 2;
+        int right = kw - 1 - hw;
+        int edgeAction = this.edgeAction;
+        SlidingHistogram histogram = new SlidingHistogram(hw + hh * kw);
+        int[] rows = new int[kh];
 
-                    int a = achannel ? aa[index2] : 0xff & (in[index] >> 24);
-                    int r = rchannel ? ar[index2] : 0xff & (in[index] >> 16);
-                    int g = gchannel ? ag[index2] : 0xff & (in[index] >> 8);
-                    int b = bchannel ? ab[index2] : 0xff & in[index];
+        for (int y = 0; y < height; y++) {
+            int used = 0;
+            for (int j = 0; j < kh; j++) {
+                rows[j] = Neighborhood.rowOffset(y, j - hh, width, height, edgeAction);
+                if (rows[j] >= 0) rows[used++] = rows[j];
+            }
 
-                    out[index] = (a << 24) | (r << 16) | (g << 8) | b;
+            boolean sliding = false;
+            for (int x = 0; x < width; x++) {
+                boolean interior = x >= hw && x + right < width;
+                if (interior && sliding) {
+                    int leaving = x - 1 - hw;
+                    int entering = x + right;
+                    for (int j = 0; j < used; j++) {
+                        histogram.remove(0xff & in[rows[j] + leaving]);
+                        histogram.add(0xff & in[rows[j] + entering]);
+                    }
+                } else {
+                    histogram.clear();
+                    int count = 0;
+                    for (int i = 0; i < kw; i++) {
+                        int xOff = Neighborhood.columnOffset(x, i - hw, width, edgeAction);
+                        if (xOff < 0) continue;
+                        for (int j = 0; j < used; j++) histogram.add(0xff & in[rows[j] + xOff]);
+                        count += used;
+                    }
+                    histogram.add(0, kw * kh - count);
                 }
+                sliding = interior;
+
+                out[x + y * width] = (byte) histogram.get();
             }
         }
     }
 
+    /**
+     * Проверяет, лежат ли в диапазоне от 0 до 255 все пиксели строк, которые читает полоса строк.
+     *
+     * @param in         входной массив пикселей.
+     * @param width      ширина изображения.
+     * @param height     высота изображения.
+     * @param kh         высота матрицы.
+     * @param edgeAction действие с краями.
+     * @param fromY      первая строка полосы.
+     * @param toY        строка, следующая за последней строкой полосы.
+     * @return {@code true}, если все пиксели лежат в диапазоне.
+     */
+    private static boolean isByteRange(int[] in, int width, int height, int kh, int edgeAction, int fromY, int toY) {
+        int top = fromY - kh / 2;
+        int bottom = toY + (kh - 1 - kh / 2);
+        // При заворачивании краев крайние строки читают строки с другой стороны изображения.
+        if (edgeAction == ConvolveFilter.WRAP_EDGES && (top < 0 || bottom > height)) {
+            top = 0;
+            bottom = height;
+        }
+
+        int end = MoreMath.min(height, bottom) * width;
+        for (int i = MoreMath.max(0, top) * width; i < end; i++) {
+            if ((in[i] & ~0xff) != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Медиана окрестности не является линейной функцией пикселей.
+     *
+     * @return {@code false}.
+     */
+    @Override
+    public boolean isLinear() {
+        return false;
+    }
+
 }
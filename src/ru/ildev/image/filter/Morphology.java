@@ -0,0 +1,470 @@
+/*
+ *
+ */
+package ru.ildev.image.filter;
+
+import ru.ildev.math.MoreMath;
+
+import java.util.Arrays;
+
+/**
+ * Минимум и максимум окрестности для фильтров эрозии и наращивания. Окрестность задается ненулевыми значениями
+ * матрицы, и каждая строка матрицы раскладывается на отрезки из подряд идущих ненулевых значений. Минимум по отрезку
+ * для всех пикселей строки изображения находится алгоритмом ван Херка - Гила - Вермана: строка делится на блоки длины
+ * отрезка, в каждом блоке считаются минимумы от начала блока и до конца блока, и минимум по любому отрезку равен
+ * минимуму из двух таких значений. На пиксель приходится около трех сравнений независимо от длины отрезка.
+ * <p>
+ * Для прямоугольной матрицы без нулей минимумы строк так же сворачиваются по столбцам, а для остальных матриц минимум
+ * пикселя равен минимуму из минимумов отрезков всех строк матрицы.
+ * <p>
+ * Края обрабатываются так же, как в {@link Neighborhood}, а пропущенные пиксели окрестности и нулевые значения матрицы
+ * считаются нулями, как и в массиве окрестности, дополненном нулями до размера матрицы. Максимум находится как минимум
+ * инвертированных значений.
+ *
+ * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
+ * @version 0.0.0
+ */
+final class Morphology {
+
+    private Morphology() {
+    }
+
+    /**
+     * Находит минимум или максимум окрестности для одного канала полосы строк.
+     *
+     * @param in         входной массив пикселей.
+     * @param out        выходной массив пикселей, в котором заменяется канал.
+     * @param width      ширина изображения.
+     * @param height     высота изображения.
+     * @param kernel     матрица, ненулевые значения которой задают окрестность.
+     * @param edgeAction действие с краями.
+     * @param maximum    флаг поиска максимума вместо минимума.
+     * @param shift      сдвиг канала.
+     * @param mask       маска канала: {@code 0xff} для канала упакованного пикселя или {@code -1} для монохромных
+     *                   значений.
+     * @param fromY      первая строка полосы.
+     * @param toY        строка, следующая за последней строкой полосы.
+     */
+    static void apply(int[] in, int[] out, int width, int height, Kernel kernel, int edgeAction, boolean maximum,
+                      int shift, int mask, int fromY, int toY) {
+        apply(in, null, out, 0, height, width, height, kernel, edgeAction, maximum, shift, mask, fromY, toY);
+    }
+
+    /**
+     * Находит минимум или максимум окрестности для одного канала полосы строк, когда входные строки хранятся не
+     * подряд, а результат записывается в буфер из нескольких строк. Так фильтр морфологии передает промежуточный
+     * результат от одной операции к другой через кольцевой буфер строк.
+     *
+     * @param in         массив входных строк.
+     * @param slots      номера строк массива {@code in} для строк изображения или {@code null}, если массив содержит
+     *                   изображение целиком. Читаются только строки, которые попадают в окрестность строк полосы.
+     * @param out        выходной массив строк, в котором заменяется канал.
+     * @param base       строка изображения, которая записывается в первую строку выходного массива.
+     * @param rows       количество строк выходного массива: строка {@code y} записывается в строку
+     *                   {@code (y - base) % rows}.
+     * @param width      ширина изображения.
+     * @param height     высота изображения.
+     * @param kernel     матрица, ненулевые значения которой задают окрестность.
+     * @param edgeAction действие с краями.
+     * @param maximum    флаг поиска максимума вместо минимума.
+     * @param shift      сдвиг канала.
+     * @param mask       маска канала.
+     * @param fromY      первая строка полосы.
+     * @param toY        строка, следующая за последней строкой полосы.
+     */
+    static void apply(int[] in, int[] slots, int[] out, int base, int rows, int width, int height, Kernel kernel,
+                      int edgeAction, boolean maximum, int shift, int mask, int fromY, int toY) {
+        Row row = new Row(in, slots, width, edgeAction, maximum ? -1 : 0, shift, mask, base, rows);
+        if (kernel.getTapCount() == kernel.width * kernel.height) {
+            rectangle(row, out, height, kernel.width, kernel.height, fromY, toY);
+        } else {
+            lines(row, out, height, kernel, fromY, toY);
+        }
+    }
+
+    /**
+     * Находит минимумы прямоугольной окрестности. Минимумы строк изображения сворачиваются по столбцам тем же
+     * алгоритмом: строки изображения делятся на блоки по {@code kh} строк, для блока, в котором начинается окно,
+     * хранятся минимумы до конца блока, а для следующего блока - минимумы от его начала. Строки, окно которых выходит
+     * за верхний или нижний край изображения, обрабатываются напрямую.
+     *
+     * @param row    строки изображения.
+     * @param out    выходной массив пикселей.
+     * @param height высота изображения.
+     * @param kw     ширина матрицы.
+     * @param kh     высота матрицы.
+     * @param fromY  первая строка полосы.
+     * @param toY    строка, следующая за последней строкой полосы.
+     */
+    private static void rectangle(Row row, int[] out, int height, int kw, int kh, int fromY, int toY) {
+        int width = row.width;
+        int hw = kw / 2;
+        int hh = kh / 2;
+        int y0 = MoreMath.max(fromY, hh);
+        int y1 = MoreMath.max(y0, MoreMath.min(toY, height - (kh - 1 - hh)));
+
+        // Строки у краев изображения.
+        int[] line = new int[width];
+        int[] keys = new int[width];
+        for (int y = fromY; y < toY; y++) {
+            if (y == y0) y = y1;
+            if (y >= toY) break;
+
+            Arrays.fill(keys, Integer.MAX_VALUE);
+            for (int j = 0; j < kh; j++) {
+                int yOff = Neighborhood.rowOffset(y, j - hh, width, height, row.edgeAction);
+                if (yOff < 0) {
+                    min(keys, row.zero);
+                } else {
+                    row.line(yOff, -hw, kw, line, 0);
+                    min(keys, line, 0);
+                }
+            }
+            row.store(keys, out, y);
+        }
+        if (y0 >= y1) return;
+
+        // Минимумы строк блока окна до конца блока и строк следующего блока от его начала.
+        int[] current = new int[kh * width];
+        int[] next = new int[kh * width];
+        int[] prefix = new int[kh * width];
+        int block = -1;
+        for (int y = y0; y < y1; y++) {
+            int first = y - hh;
+            int last = first + kh - 1;
+            int b = first / kh;
+            int start = b * kh;
+
+            if (b != block) {
+                if (block >= 0 && block == b - 1) {
+                    int[] t = current;
+                    current = next;
+                    next = t;
+                } else {
+                    lines(row, start, MoreMath.min(start + kh, height), -hw, kw, current);
+                }
+                lines(row, start + kh, MoreMath.min(start + 2 * kh, height), -hw, kw, next);
+
+                for (int r = MoreMath.min(start + kh, height) - 2; r >= start; r--) {
+                    min(current, (r - start) * width, current, (r + 1 - start) * width, width);
+                }
+                int count = MoreMath.max(0, MoreMath.min(start + 2 * kh, height) - start - kh);
+                if (count > 0) System.arraycopy(next, 0, prefix, 0, width);
+                for (int r = 1; r < count; r++) {
+                    System.arraycopy(next, r * width, prefix, r * width, width);
+                    min(prefix, r * width, prefix, (r - 1) * width, width);
+                }
+                block = b;
+            }
+
+            int offset = (first - start) * width;
+            if (last < start + kh) {
+                System.arraycopy(current, offset, keys, 0, width);
+            } else {
+                int end = (last - start - kh) * width;
+                for (int x = 0; x < width; x++) {
+                    int a = current[offset + x];
+                    int c = prefix[end + x];
+                    keys[x] = a < c ? a : c;
+                }
+            }
+            row.store(keys, out, y);
+        }
+    }
+
+    /**
+     * Находит минимумы окрестности, заданной отрезками строк матрицы. Минимумы отрезков для строк изображения хранятся
+     * в кольцевом буфере, и каждая строка изображения обрабатывается один раз для каждого отрезка, пока окно не уйдет
+     * от нее.
+     *
+     * @param row    строки изображения.
+     * @param out    выходной массив пикселей.
+     * @param height высота изображения.
+     * @param kernel матрица.
+     * @param fromY  первая строка полосы.
+     * @param toY    строка, следующая за последней строкой полосы.
+     */
+    private static void lines(Row row, int[] out, int height, Kernel kernel, int fromY, int toY) {
+        int width = row.width;
+        int kw = kernel.width;
+        int kh = kernel.height;
+        int hw = kw / 2;
+        int hh = kh / 2;
+        float[] matrix = kernel.matrix;
+
+        // Отрезки строк матрицы: строка, начало и длина. Отрезки с одинаковым началом и длиной в разных строках
+        // матрицы используют одни и те же минимумы.
+        int[] segmentRow = new int[kw * kh];
+        int[] segmentLine = new int[kw * kh];
+        int[] lineStart = new int[kw * kh];
+        int[] lineLength = new int[kw * kh];
+        int segments = 0;
+        int lines = 0;
+        for (int j = 0; j < kh; j++) {
+            for (int i = 0; i < kw; i++) {
+                if (matrix[i + j * kw] == 0.0f) continue;
+                int length = 1;
+                while (i + length < kw && matrix[i + length + j * kw] != 0.0f) length++;
+
+                int line = 0;
+                while (line < lines && (lineStart[line] != i - hw || lineLength[line] != length)) line++;
+                if (line == lines) {
+                    lineStart[lines] = i - hw;
+                    lineLength[lines] = length;
+                    lines++;
+                }
+                segmentRow[segments] = j - hh;
+                segmentLine[segments] = line;
+                segments++;
+                i += length;
+            }
+        }
+
+        // Нулевые значения матрицы дополняют окрестность нулями.
+        boolean padded = kernel.getTapCount() < kw * kh;
+        int[][] cache = new int[lines][kh * width];
+        int[][] cached = new int[lines][kh];
+        for (int[] rows : cached) Arrays.fill(rows, -1);
+
+        int[] keys = new int[width];
+        for (int y = fromY; y < toY; y++) {
+            Arrays.fill(keys, padded ? row.zero : Integer.MAX_VALUE);
+            for (int s = 0; s < segments; s++) {
+                int yOff = Neighborhood.rowOffset(y, segmentRow[s], width, height, row.edgeAction);
+                if (yOff < 0) {
+                    min(keys, row.zero);
+                    continue;
+                }
+
+                int line = segmentLine[s];
+                int r = yOff / width;
+                int slot = r % kh;
+                if (cached[line][slot] != r) {
+                    row.line(yOff, lineStart[line], lineLength[line], cache[line], slot * width);
+                    cached[line][slot] = r;
+                }
+                min(keys, cache[line], slot * width);
+            }
+            row.store(keys, out, y);
+        }
+    }
+
+    /**
+     * Находит минимумы горизонтального отрезка для нескольких подряд идущих строк изображения.
+     *
+     * @param row    строки изображения.
+     * @param from   первая строка.
+     * @param to     строка, следующая за последней.
+     * @param start  смещение начала отрезка относительно пикселя.
+     * @param length длина отрезка.
+     * @param dst    массив минимумов, строки которого идут подряд.
+     */
+    private static void lines(Row row, int from, int to, int start, int length, int[] dst) {
+        for (int r = from; r < to; r++) {
+            row.line(r * row.width, start, length, dst, (r - from) * row.width);
+        }
+    }
+
+    /**
+     * Заменяет элементы массива минимумами из них и значения.
+     *
+     * @param keys  массив.
+     * @param value значение.
+     */
+    private static void min(int[] keys, int value) {
+        for (int x = 0; x < keys.length; x++) {
+            if (value < keys[x]) keys[x] = value;
+        }
+    }
+
+    /**
+     * Заменяет элементы массива минимумами из них и элементов другого массива.
+     *
+     * @param keys   массив.
+     * @param src    другой массив.
+     * @param offset индекс первого элемента в другом массиве.
+     */
+    private static void min(int[] keys, int[] src, int offset) {
+        min(keys, 0, src, offset, keys.length);
+    }
+
+    /**
+     * Заменяет элементы участка массива минимумами из них и элементов участка другого массива.
+     *
+     * @param dst       массив.
+     * @param dstOffset индекс первого элемента массива.
+     * @param src       другой массив.
+     * @param srcOffset индекс первого элемента другого массива.
+     * @param count     количество элементов.
+     */
+    private static void min(int[] dst, int dstOffset, int[] src, int srcOffset, int count) {
+        for (int i = 0; i < count; i++) {
+            int value = src[srcOffset + i];
+            if (value < dst[dstOffset + i]) dst[dstOffset + i] = value;
+        }
+    }
+
+    /**
+     * Строки канала изображения в виде ключей, минимум которых соответствует минимуму или максимуму значений.
+     */
+    private static final class Row {
+
+        /**
+         * Входной массив пикселей.
+         */
+        final int[] in;
+        /**
+         * Ширина изображения.
+         */
+        final int width;
+        /**
+         * Действие с краями.
+         */
+        final int edgeAction;
+        /**
+         * Маска, инвертирующая значения при поиске максимума: {@code 0} или {@code -1}.
+         */
+        final int flip;
+        /**
+         * Сдвиг канала.
+         */
+        final int shift;
+        /**
+         * Маска канала.
+         */
+        final int mask;
+        /**
+         * Ключ нулевого значения.
+         */
+        final int zero;
+        /**
+         * Номера строк входного массива для строк изображения или {@code null}.
+         */
+        private final int[] slots;
+        /**
+         * Строка изображения, которая записывается в первую строку выходного массива.
+         */
+        private final int base;
+        /**
+         * Количество строк выходного массива.
+         */
+        private final int rows;
+        /**
+         * Минимумы от начала блока.
+         */
+        private final int[] prefix;
+        /**
+         * Минимумы до конца блока.
+         */
+        private final int[] suffix;
+
+        Row(int[] in, int[] slots, int width, int edgeAction, int flip, int shift, int mask, int base, int rows) {
+            this.in = in;
+            this.slots = slots;
+            this.base = base;
+            this.rows = rows;
+            this.width = width;
+            this.edgeAction = edgeAction;
+            this.flip = flip;
+            this.shift = shift;
+            this.mask = mask;
+            this.zero = flip;
+            this.prefix = new int[width];
+            this.suffix = new int[width];
+        }
+
+        /**
+         * Получает ключ пикселя.
+         *
+         * @param index индекс пикселя.
+         * @return ключ.
+         */
+        int key(int index) {
+            return (this.in[index] >> this.shift & this.mask) ^ this.flip;
+        }
+
+        /**
+         * Находит минимумы отрезка {@code x + start .. x + start + length - 1} для всех пикселей строки.
+         *
+         * @param yOff      индекс начала строки изображения, как если бы массив содержал изображение целиком.
+         * @param start     смещение начала отрезка относительно пикселя.
+         * @param length    длина отрезка.
+         * @param dst       массив минимумов.
+         * @param dstOffset индекс минимума первого пикселя строки.
+         */
+        void line(int yOff, int start, int length, int[] dst, int dstOffset) {
+            int width = this.width;
+            int[] prefix = this.prefix;
+            int[] suffix = this.suffix;
+            if (this.slots != null) yOff = this.slots[yOff / width] * width;
+
+            // Строка делится на блоки длины отрезка.
+            for (int from = 0; from < width; from += length) {
+                int to = MoreMath.min(from + length, width);
+
+                int min = Integer.MAX_VALUE;
+                for (int x = from; x < to; x++) {
+                    int key = this.key(yOff + x);
+                    if (key < min) min = key;
+                    prefix[x] = min;
+                    suffix[x] = key;
+                }
+                for (int x = to - 2; x >= from; x--) {
+                    if (suffix[x + 1] < suffix[x]) suffix[x] = suffix[x + 1];
+                }
+            }
+
+            // Пиксели, отрезок которых лежит внутри строки.
+            int x0 = MoreMath.min(width, MoreMath.max(0, -start));
+            int x1 = MoreMath.max(x0, MoreMath.min(width, width - (start + length - 1)));
+            for (int x = x0; x < x1; x++) {
+                int a = suffix[x + start];
+                int b = prefix[x + start + length - 1];
+                dst[dstOffset + x] = a < b ? a : b;
+            }
+
+            // Крайние пиксели обрабатываются по одному.
+            for (int x = 0; x < x0; x++) {
+                dst[dstOffset + x] = this.edge(yOff, start, length, x);
+            }
+            for (int x = x1; x < width; x++) {
+                dst[dstOffset + x] = this.edge(yOff, start, length, x);
+            }
+        }
+
+        /**
+         * Находит минимум отрезка для пикселя, отрезок которого выходит за край строки.
+         *
+         * @param yOff   индекс начала строки во входном массиве.
+         * @param start  смещение начала отрезка относительно пикселя.
+         * @param length длина отрезка.
+         * @param x      x-координата пикселя.
+         * @return минимум.
+         */
+        private int edge(int yOff, int start, int length, int x) {
+            int min = Integer.MAX_VALUE;
+            for (int i = 0; i < length; i++) {
+                int xOff = Neighborhood.columnOffset(x, start + i, this.width, this.edgeAction);
+                int key = xOff < 0 ? this.zero : this.key(yOff + xOff);
+                if (key < min) min = key;
+            }
+            return min;
+        }
+
+        /**
+         * Записывает значения канала строки результата.
+         *
+         * @param keys ключи строки.
+         * @param out  выходной массив пикселей.
+         * @param y    y-координата строки.
+         */
+        void store(int[] keys, int[] out, int y) {
+            int keep = ~(this.mask << this.shift);
+            int index = (y - this.base) % this.rows * this.width;
+            for (int x = 0; x < this.width; x++, index++) {
+                out[index] = out[index] & keep | ((keys[x] ^ this.flip) & this.mask) << this.shift;
+            }
+        }
+    }
+
+}
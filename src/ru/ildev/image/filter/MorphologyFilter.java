@@ -0,0 +1,328 @@
+/*
+ *
+ */
+package ru.ildev.image.filter;
+
+import ru.ildev.color.Color;
+import ru.ildev.math.MoreMath;
+
+/**
+ * Фильтр морфологических операций, составленных из эрозии ({@link ErosionFilter}) и наращивания
+ * ({@link BuildingFilter}) с одной и той же матрицей: размыкания, замыкания, морфологического градиента и
+ * преобразований "цилиндр" (top-hat). Результат совпадает с результатом цепочки фильтров эрозии и наращивания,
+ * например, размыкание - с наращиванием результата эрозии.
+ * <p>
+ * Промежуточный результат первой операции не хранится целиком: он вычисляется порциями строк в кольцевой буфер, из
+ * которого вторая операция берет строки окрестности, а для каждого канала изображение проходится один раз. При
+ * заворачивании краев крайним строкам нужны строки с другой стороны изображения, они вычисляются заранее и хранятся в
+ * том же буфере.
+ * <p>
+ * Разности в градиенте и преобразованиях "цилиндр" ограничиваются для каналов диапазоном от 0 до 255, а в
+ * монохромном режиме не ограничиваются.
+ *
+ * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
+ * @version 0.0.0
+ */
+public class MorphologyFilter extends ConvolveFilter {
+
+    /**
+     * Размыкание: наращивание результата эрозии. Удаляет светлые детали, меньшие матрицы.
+     */
+    public static final int OPEN = 0;
+    /**
+     * Замыкание: эрозия результата наращивания. Заполняет темные детали, меньшие матрицы.
+     */
+    public static final int CLOSE = 1;
+    /**
+     * Морфологический градиент: разность результатов наращивания и эрозии. Выделяет границы объектов.
+     */
+    public static final int GRADIENT = 2;
+    /**
+     * Преобразование "белый цилиндр": разность изображения и результата размыкания. Оставляет светлые детали,
+     * меньшие матрицы.
+     */
+    public static final int WHITE_TOP_HAT = 3;
+    /**
+     * Преобразование "черный цилиндр": разность результата замыкания и изображения. Оставляет темные детали, меньшие
+     * матрицы.
+     */
+    public static final int BLACK_TOP_HAT = 4;
+
+    /**
+     * Наименьшее количество строк результата, вычисляемых за один проход по кольцевому буферу. Каждый проход заново
+     * находит минимумы строк у концов порции, поэтому порция должна быть намного выше матрицы.
+     */
+    private static final int CHUNK = 256;
+
+    /**
+     * Операция.
+     */
+    protected int operation = OPEN;
+
+    /**
+     * Стандартный конструктор.
+     *
+     * @param operation операция.
+     * @param size      размер матрицы, т.е длина стороны прямоугольника матрицы.
+     */
+    public MorphologyFilter(int operation, int size) {
+        this(operation, size, ConvolveFilter.EXTEND_EDGES);
+    }
+
+    /**
+     * Стандартный конструктор.
+     *
+     * @param operation  операция.
+     * @param size       размер матрицы, т.е длина стороны прямоугольника матрицы.
+     * @param edgeAction действие с краями.
+     */
+    public MorphologyFilter(int operation, int size, int edgeAction) {
+        assert (size > 0) : "size <= 0";
+
+        this.setOperation(operation);
+        this.kernel = KernelCache.getDefault().getOnes(size, size, false);
+        this.edgeAction = edgeAction;
+    }
+
+    /**
+     * Конструктор, устанавливающий матрицу. Элемент, значение которого не равно нулю, значит, что данный пиксель будет
+     * рассматриваться.
+     *
+     * @param operation операция.
+     * @param kernel    матрица.
+     */
+    public MorphologyFilter(int operation, Kernel kernel) {
+        this(operation, kernel, ConvolveFilter.EXTEND_EDGES);
+    }
+
+    /**
+     * Конструктор, устанавливающий матрицу. Элемент, значение которого не равно нулю, значит, что данный пиксель будет
+     * рассматриваться.
+     *
+     * @param operation  операция.
+     * @param kernel     матрица.
+     * @param edgeAction действие с краями.
+     */
+    public MorphologyFilter(int operation, Kernel kernel, int edgeAction) {
+        super(kernel, edgeAction);
+        this.setOperation(operation);
+    }
+
+    /**
+     * Получает операцию.
+     *
+     * @return операция.
+     */
+    public int getOperation() {
+        return this.operation;
+    }
+
+    /**
+     * Устанавливает операцию: {@link #OPEN}, {@link #CLOSE}, {@link #GRADIENT}, {@link #WHITE_TOP_HAT} или
+     * {@link #BLACK_TOP_HAT}.
+     *
+     * @param operation операция.
+     */
+    public void setOperation(int operation) {
+        if (operation < OPEN || operation > BLACK_TOP_HAT) {
+            throw new IllegalArgumentException("Illegal operation " + operation);
+        }
+        this.operation = operation;
+    }
+
+    @Override
+    public int getHalo() {
+        // Вторая операция читает строки промежуточного результата, которые сами зависят от соседних строк.
+        return this.edgeAction == WRAP_EDGES ? UNBOUNDED_HALO : 2 * (this.kernel.height / 2);
+    }
+
+    @Override
+    protected void apply(int[] in, int[] out, int width, int height, int fromY, int toY) {
+        // Каналы, которые не обрабатываются, остаются как во входном изображении.
+        System.arraycopy(in, fromY * width, out, fromY * width, (toY - fromY) * width);
+
+        if (this.isMonochrome()) {
+            this.apply(in, out, width, height, 0, -1, fromY, toY);
+        } else {
+            if (this.isAlphaChannel()) this.apply(in, out, width, height, 24, 0xff, fromY, toY);
+            if (this.isRedChannel()) this.apply(in, out, width, height, 16, 0xff, fromY, toY);
+            if (this.isGreenChannel()) this.apply(in, out, width, height, 8, 0xff, fromY, toY);
+            if (this.isBlueChannel()) this.apply(in, out, width, height, 0, 0xff, fromY, toY);
+        }
+    }
+
+    /**
+     * Выполняет операцию для одного канала полосы строк.
+     *
+     * @param in     входной массив пикселей.
+     * @param out    выходной массив пикселей.
+     * @param width  ширина изображения.
+     * @param height высота изображения.
+     * @param shift  сдвиг канала.
+     * @param mask   маска канала: {@code 0xff} для канала упакованного пикселя или {@code -1} для монохромных
+     *               значений.
+     * @param fromY  первая строка полосы.
+     * @param toY    строка, следующая за последней строкой полосы.
+     */
+    private void apply(int[] in, int[] out, int width, int height, int shift, int mask, int fromY, int toY) {
+        Kernel kernel = this.kernel;
+        int edgeAction = this.edgeAction;
+        int kh = kernel.height;
+        int hh = kh / 2;
+        int bottom = kh - 1 - hh;
+        int chunk = MoreMath.max(CHUNK, 16 * kh);
+        int operation = this.operation;
+
+        if (operation == GRADIENT) {
+            // Обе операции применяются к самому изображению, промежуточный результат не нужен.
+            int[] dilated = new int[chunk * width];
+            int[] eroded = new int[chunk * width];
+            for (int y = fromY; y < toY; y += chunk) {
+                int end = MoreMath.min(y + chunk, toY);
+                Morphology.apply(in, null, dilated, y, chunk, width, height, kernel, edgeAction, true,
+                        shift, mask, y, end);
+                Morphology.apply(in, null, eroded, y, chunk, width, height, kernel, edgeAction, false,
+                        shift, mask, y, end);
+                store(dilated, eroded, out, width, y, end, shift, mask);
+            }
+            return;
+        }
+
+        // Размыкание начинается с эрозии, замыкание - с наращивания.
+        boolean dilateFirst = operation == CLOSE || operation == BLACK_TOP_HAT;
+
+        // Кольцевой буфер вмещает окрестности всех строк порции. За ним хранятся строки с другой стороны
+        // изображения, которые читают крайние строки при заворачивании краев.
+        int ring = chunk + kh - 1;
+        boolean[] wrapped = new boolean[height];
+        int edges = 0;
+        if (edgeAction == WRAP_EDGES) {
+            for (int y = fromY; y < toY; y++) {
+                for (int j = 0; j < kh; j++) {
+                    int pixelPosY = y + j - hh;
+                    if (0 <= pixelPosY && pixelPosY < height) continue;
+                    int r = Neighborhood.rowOffset(y, j - hh, width, height, edgeAction) / width;
+                    if (!wrapped[r]) edges++;
+                    wrapped[r] = true;
+                }
+            }
+        }
+
+        int[] rows = new int[(ring + edges) * width];
+        int[] slots = new int[height];
+        int[] edgeSlots = new int[height];
+
+        // Строки с другой стороны изображения вычисляются один раз подряд идущими участками.
+        int slot = ring;
+        for (int r = 0; r < height; ) {
+            if (!wrapped[r]) {
+                r++;
+                continue;
+            }
+            int end = r;
+            while (end < height && wrapped[end]) {
+                edgeSlots[end] = slot + end - r;
+                end++;
+            }
+            Morphology.apply(in, null, rows, r - slot, Integer.MAX_VALUE, width, height, kernel, edgeAction,
+                    dilateFirst, shift, mask, r, end);
+            slot += end - r;
+            r = end;
+        }
+
+        int[] result = operation == OPEN || operation == CLOSE ? null : new int[chunk * width];
+        int next = MoreMath.max(0, fromY - hh);
+        for (int y = fromY; y < toY; y += chunk) {
+            int end = MoreMath.min(y + chunk, toY);
+            int first = MoreMath.max(0, y - hh);
+            int last = MoreMath.min(height, end + bottom);
+
+            // Досчитываем строки промежуточного результата, которые нужны порции.
+            if (next < last) {
+                Morphology.apply(in, null, rows, 0, ring, width, height, kernel, edgeAction, dilateFirst,
+                        shift, mask, next, last);
+                next = last;
+            }
+            for (int r = 0; r < height; r++) {
+                if (wrapped[r]) slots[r] = edgeSlots[r];
+            }
+            for (int r = first; r < last; r++) slots[r] = r % ring;
+
+            if (result == null) {
+                Morphology.apply(rows, slots, out, 0, height, width, height, kernel, edgeAction, !dilateFirst,
+                        shift, mask, y, end);
+            } else {
+                Morphology.apply(rows, slots, result, y, chunk, width, height, kernel, edgeAction, !dilateFirst,
+                        shift, mask, y, end);
+                if (operation == WHITE_TOP_HAT) {
+                    store(in, y * width, result, 0, out, width, y, end, shift, mask);
+                } else {
+                    store(result, 0, in, y * width, out, width, y, end, shift, mask);
+                }
+            }
+        }
+    }
+
+    /**
+     * Записывает в канал результата разность каналов двух буферов строк.
+     *
+     * @param a     уменьшаемое: буфер строк порции.
+     * @param b     вычитаемое: буфер строк порции.
+     * @param out   выходной массив пикселей.
+     * @param width ширина изображения.
+     * @param fromY первая строка порции.
+     * @param toY   строка, следующая за последней строкой порции.
+     * @param shift сдвиг канала.
+     * @param mask  маска канала.
+     */
+    private static void store(int[] a, int[] b, int[] out, int width, int fromY, int toY, int shift, int mask) {
+        store(a, 0, b, 0, out, width, fromY, toY, shift, mask);
+    }
+
+    /**
+     * Записывает в канал результата разность каналов двух массивов.
+     *
+     * @param a       уменьшаемое.
+     * @param aOffset индекс первого пикселя порции в уменьшаемом.
+     * @param b       вычитаемое.
+     * @param bOffset индекс первого пикселя порции в вычитаемом.
+     * @param out     выходной массив пикселей.
+     * @param width   ширина изображения.
+     * @param fromY   первая строка порции.
+     * @param toY     строка, следующая за последней строкой порции.
+     * @param shift   сдвиг канала.
+     * @param mask    маска канала.
+     */
+    private static void store(int[] a, int aOffset, int[] b, int bOffset, int[] out, int width, int fromY, int toY,
+                              int shift, int mask) {
+        int keep = ~(mask << shift);
+        int count = (toY - fromY) * width;
+        int index = fromY * width;
+        for (int i = 0; i < count; i++, index++) {
+            int value = (a[aOffset + i] >> shift & mask) - (b[bOffset + i] >> shift & mask);
+            if (mask != -1) value = Color.clamp(value);
+            out[index] = out[index] & keep | (value & mask) << shift;
+        }
+    }
+
+    /**
+     * Фильтр не обрабатывает плоскости каналов.
+     *
+     * @return {@code false}.
+     */
+    @Override
+    public boolean isPlanar() {
+        return false;
+    }
+
+    /**
+     * Минимум и максимум окрестности нелинейны, поэтому нелинейны и составленные из них операции.
+     *
+     * @return {@code false}.
+     */
+    @Override
+    public boolean isLinear() {
+        return false;
+    }
+
+}
@@ -0,0 +1,230 @@
+/*
+ *
+ */
+package ru.ildev.image.filter;
+
+import java.util.Arrays;
+
+/**
+ * Класс сбора окрестности пикселя для фильтров, которые выбирают значение из окрестности: медианного фильтра, фильтров
+ * эрозии и наращивания. В окрестность попадают пиксели под ненулевыми значениями матрицы в порядке обхода матрицы по
+ * строкам.
+ * <p>
+ * Если матрица, наложенная на пиксель, целиком лежит внутри изображения, то пиксели окрестности берутся без проверок
+ * границ и действий с краями. Такие пиксели составляют почти всё изображение, а проверки выполняются только для
+ * пикселей в полосе шириной в полуразмер матрицы вдоль краев. На краях пиксели обрабатываются так же, как раньше в
+ * каждом из фильтров: строка за пределами изображения при расширении краев заменяется строкой пикселя, а при
+ * заворачивании - строкой с другой стороны изображения; столбец за пределами изображения и при расширении, и при
+ * заворачивании краев заменяется столбцом пикселя; при обрезании краев пиксели пропускаются.
+ *
+ * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
+ * @version 0.0.0
+ */
+final class Neighborhood {
+
+    private Neighborhood() {
+    }
+
+    /**
+     * Собирает пиксели окрестности в массив.
+     *
+     * @param in         входной массив пикселей.
+     * @param width      ширина изображения.
+     * @param height     высота изображения.
+     * @param kernel     матрица.
+     * @param edgeAction действие с краями.
+     * @param x          x-координата пикселя.
+     * @param y          y-координата пикселя.
+     * @param values     массив пикселей окрестности.
+     * @return количество собранных пикселей.
+     */
+    static int gather(int[] in, int width, int height, Kernel kernel, int edgeAction, int x, int y, int[] values) {
+        int w = kernel.width;
+        int h = kernel.height;
+        int[] tapX = kernel.tapX;
+        int[] tapY = kernel.tapY;
+        int taps = tapX.length;
+
+        if (isInterior(width, height, w, h, x, y)) {
+            int[] offsets = kernel.tapOffsets(width);
+            int index = x + y * width;
+            for (int n = 0; n < taps; n++) values[n] = in[index + offsets[n]];
+            return taps;
+        }
+
+        int count = 0;
+        for (int n = 0; n < taps; n++) {
+            int yOff = rowOffset(y, tapY[n], width, height, edgeAction);
+            if (yOff < 0) continue;
+            int xOff = columnOffset(x, tapX[n], width, edgeAction);
+            if (xOff < 0) continue;
+
+            values[count++] = in[xOff + yOff];
+        }
+        return count;
+    }
+
+    /**
+     * Собирает значения окрестности плоскости канала в массив.
+     *
+     * @param in         входная плоскость.
+     * @param width      ширина изображения.
+     * @param height     высота изображения.
+     * @param kernel     матрица.
+     * @param edgeAction действие с краями.
+     * @param x          x-координата пикселя.
+     * @param y          y-координата пикселя.
+     * @param values     массив значений окрестности от 0 до 255.
+     * @return количество собранных значений.
+     */
+    static int gather(byte[] in, int width, int height, Kernel kernel, int edgeAction, int x, int y, int[] values) {
+        int w = kernel.width;
+        int h = kernel.height;
+        int[] tapX = kernel.tapX;
+        int[] tapY = kernel.tapY;
+        int taps = tapX.length;
+
+        if (isInterior(width, height, w, h, x, y)) {
+            int[] offsets = kernel.tapOffsets(width);
+            int index = x + y * width;
+            for (int n = 0; n < taps; n++) values[n] = 0xff & in[index + offsets[n]];
+            return taps;
+        }
+
+        int count = 0;
+        for (int n = 0; n < taps; n++) {
+            int yOff = rowOffset(y, tapY[n], width, height, edgeAction);
+            if (yOff < 0) continue;
+            int xOff = columnOffset(x, tapX[n], width, edgeAction);
+            if (xOff < 0) continue;
+
+            values[count++] = 0xff & in[xOff + yOff];
+        }
+        return count;
+    }
+
+    /**
+     * Выделяет канал из пикселей окрестности. Значения после собранных пикселей равны нулю, как если бы массив канала
+     * был создан заново.
+     *
+     * @param values  пиксели окрестности.
+     * @param count   количество собранных пикселей.
+     * @param shift   сдвиг канала.
+     * @param channel массив значений канала.
+     */
+    static void channel(int[] values, int count, int shift, int[] channel) {
+        for (int n = 0; n < count; n++) channel[n] = 0xff & values[n] >> shift;
+        Arrays.fill(channel, count, channel.length, 0);
+    }
+
+    /**
+     * Находит значение с указанным номером в отсортированном массиве, не сортируя массив целиком и не выделяя память.
+     * Элементы массива переставляются так, что на месте {@code k} оказывается то же значение, что и после сортировки
+     * (алгоритм Хоара). Результат совпадает с {@code values[k]} после {@link Arrays#sort(int[], int, int)}.
+     *
+     * @param values массив значений.
+     * @param count  количество значений.
+     * @param k      номер значения, начиная с нуля.
+     * @return значение.
+     */
+    static int select(int[] values, int count, int k) {
+        int left = 0;
+        int right = count - 1;
+        while (left < right) {
+            // Опорное значение - медиана трех значений, что защищает от медленной работы на упорядоченных данных.
+            int middle = (left + right) >>> 1;
+            int a = values[left];
+            int b = values[middle];
+            int c = values[right];
+            int pivot = a < b ? (b < c ? b : (a < c ? c : a)) : (a < c ? a : (b < c ? c : b));
+
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (values[i] < pivot) i++;
+                while (values[j] > pivot) j--;
+                if (i <= j) {
+                    int t = values[i];
+                    values[i] = values[j];
+                    values[j] = t;
+                    i++;
+                    j--;
+                }
+            }
+
+            // Значения left..j не больше опорного, i..right - не меньше, а между ними равны опорному.
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return values[k];
+            }
+        }
+        return values[k];
+    }
+
+    /**
+     * Проверяет, лежит ли матрица, наложенная на пиксель, целиком внутри изображения.
+     *
+     * @param width  ширина изображения.
+     * @param height высота изображения.
+     * @param w      ширина матрицы.
+     * @param h      высота матрицы.
+     * @param x      x-координата пикселя.
+     * @param y      y-координата пикселя.
+     * @return {@code true}, если матрица лежит внутри изображения.
+     */
+    private static boolean isInterior(int width, int height, int w, int h, int x, int y) {
+        int hw = w / 2;
+        int hh = h / 2;
+        return x >= hw && x + (w - 1 - hw) < width && y >= hh && y + (h - 1 - hh) < height;
+    }
+
+    /**
+     * Находит смещение строки изображения, на которую попадает строка матрицы.
+     *
+     * @param y          y-координата пикселя.
+     * @param dy         смещение строки матрицы относительно пикселя.
+     * @param width      ширина изображения.
+     * @param height     высота изображения.
+     * @param edgeAction действие с краями.
+     * @return индекс начала строки или {@code -1}, если строка пропускается.
+     */
+    static int rowOffset(int y, int dy, int width, int height, int edgeAction) {
+        int pixelPosY = y + dy;
+
+        if (0 <= pixelPosY && pixelPosY < height) {
+            return pixelPosY * width;
+        } else if (edgeAction == ConvolveFilter.EXTEND_EDGES) {
+            return y * width;
+        } else if (edgeAction == ConvolveFilter.WRAP_EDGES) {
+            // Матрица может быть выше изображения, тогда строка уходит за край больше чем на высоту изображения.
+            return Math.floorMod(pixelPosY, height) * width;
+        } else {
+            return -1;
+        }
+    }
+
+    /**
+     * Находит смещение пикселя в строке изображения, на который попадает столбец матрицы.
+     *
+     * @param x          x-координата пикселя.
+     * @param dx         смещение столбца матрицы относительно пикселя.
+     * @param width      ширина изображения.
+     * @param edgeAction действие с краями.
+     * @return смещение пикселя в строке или {@code -1}, если пиксель пропускается.
+     */
+    static int columnOffset(int x, int dx, int width, int edgeAction) {
+        int pixelPosX = x + dx;
+
+        if (0 <= pixelPosX && pixelPosX < width) {
+            return pixelPosX;
+        } else if (edgeAction == ConvolveFilter.EXTEND_EDGES || edgeAction == ConvolveFilter.WRAP_EDGES) {
+            return x;
+        } else {
+            return -1;
+        }
+    }
+
+}
@@ -81,6 +81,17 @@ public class NoiseFilter extends ColorFilter {
         this.z = z;
     }
 
+    /**
+     * Шум зависит от положения пикселя в изображении, поэтому изображение нельзя обрабатывать полосами в отдельных
+     * массивах.
+     *
+     * @return {@link #UNBOUNDED_HALO}.
+     */
+    @Override
+    public int getHalo() {
+        return UNBOUNDED_HALO;
+    }
+
     @Override
     protected int apply(int x, int y, int color) {
         int a = 255;
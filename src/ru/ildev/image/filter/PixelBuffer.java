@@ -0,0 +1,70 @@
+/*
+ *
+ */
+package ru.ildev.image.filter;
+
+/**
+ * Буфер пикселей изображения. Пиксели хранятся по строкам в формате ARGB, как в массивах, с которыми работают фильтры.
+ * В отличие от массива, количество пикселей буфера может быть больше {@code 2^31}, поэтому буфер подходит для очень
+ * больших изображений. Фильтр применяется к буферу методом {@link Filter#apply(PixelBuffer, PixelBuffer)}.
+ *
+ * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
+ * @version 0.0.0
+ * @see ArrayPixelBuffer
+ * @see DirectPixelBuffer
+ */
+public interface PixelBuffer {
+
+    /**
+     * Получает ширину изображения.
+     *
+     * @return ширину изображения.
+     */
+    int getWidth();
+
+    /**
+     * Получает высоту изображения.
+     *
+     * @return высоту изображения.
+     */
+    int getHeight();
+
+    /**
+     * Получает цвет пикселя.
+     *
+     * @param x x-координата пикселя.
+     * @param y y-координата пикселя.
+     * @return цвет пикселя.
+     */
+    int getPixel(int x, int y);
+
+    /**
+     * Устанавливает цвет пикселя.
+     *
+     * @param x     x-координата пикселя.
+     * @param y     y-координата пикселя.
+     * @param color цвет пикселя.
+     */
+    void setPixel(int x, int y, int color);
+
+    /**
+     * Копирует строки изображения в массив.
+     *
+     * @param y      первая строка.
+     * @param rows   количество строк.
+     * @param pixels массив пикселей.
+     * @param offset индекс массива, с которого записываются пиксели.
+     */
+    void getPixels(int y, int rows, int[] pixels, int offset);
+
+    /**
+     * Копирует строки изображения из массива.
+     *
+     * @param y      первая строка.
+     * @param rows   количество строк.
+     * @param pixels массив пикселей.
+     * @param offset индекс массива, с которого читаются пиксели.
+     */
+    void setPixels(int y, int rows, int[] pixels, int offset);
+
+}
@@ -0,0 +1,374 @@
+/*
+ *
+ */
+package ru.ildev.image.filter;
+
+/**
+ * Внутренние циклы фильтров, обрабатывающие подряд идущие пиксели. Методы этого класса выполняют вычисления скалярно,
+ * пиксель за пикселем. Модуль {@code ImageIL-Simd} содержит наследника этого класса, выполняющего те же вычисления с
+ * помощью Vector API ({@code jdk.incubator.vector}). Векторная реализация выбирается при загрузке класса, если модуль
+ * находится в пути классов, виртуальная машина запущена с параметром {@code --add-modules jdk.incubator.vector} и
+ * системное свойство {@link #VECTOR_PROPERTY} не равно {@code false}. Иначе используется скалярная реализация
+ * {@link #SCALAR}.
+ * <p>
+ * Результаты всех реализаций совпадают побитово: векторные вычисления выполняют те же операции с плавающей точкой и в
+ * том же порядке, что и скалярные. Поэтому округление результатов свёртки, которое зависит от
+ * {@link ru.ildev.math.MoreMath#round(float)}, остается в фильтрах, а эти методы только накапливают суммы.
+ * <p>
+ * Во всех методах пиксели упакованы в формате ARGB, а диапазон {@code from..to} задает индексы обрабатываемых
+ * элементов массивов.
+ *
+ * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
+ * @version 0.0.0
+ */
+public class PixelKernels {
+
+    /**
+     * Системное свойство, запрещающее векторную реализацию, если его значение равно {@code false}.
+     */
+    public static final String VECTOR_PROPERTY = "ru.ildev.image.filter.vector";
+    /**
+     * Имя класса векторной реализации.
+     */
+    private static final String VECTOR_CLASS = "ru.ildev.image.filter.simd.VectorPixelKernels";
+
+    /**
+     * Скалярная реализация.
+     */
+    public static final PixelKernels SCALAR = new PixelKernels();
+    /**
+     * Векторная реализация или {@code null}, если она недоступна.
+     */
+    private static final PixelKernels VECTOR = loadVector();
+
+    /**
+     * Реализация, используемая фильтрами.
+     */
+    private static volatile PixelKernels defaultKernels = VECTOR != null ? VECTOR : SCALAR;
+
+    /**
+     * Конструктор.
+     */
+    protected PixelKernels() {
+    }
+
+    /**
+     * Получает реализацию, используемую фильтрами.
+     *
+     * @return реализация.
+     */
+    public static PixelKernels getDefault() {
+        return defaultKernels;
+    }
+
+    /**
+     * Устанавливает реализацию, используемую фильтрами.
+     *
+     * @param kernels реализация.
+     */
+    public static void setDefault(PixelKernels kernels) {
+        if (kernels == null) throw new NullPointerException("kernels == null");
+        defaultKernels = kernels;
+    }
+
+    /**
+     * Получает векторную реализацию.
+     *
+     * @return векторная реализация или {@code null}, если она недоступна.
+     */
+    public static PixelKernels getVector() {
+        return VECTOR;
+    }
+
+    /**
+     * Загружает векторную реализацию.
+     *
+     * @return векторная реализация или {@code null}, если она недоступна.
+     */
+    private static PixelKernels loadVector() {
+        if ("false".equalsIgnoreCase(System.getProperty(VECTOR_PROPERTY))) return null;
+        try {
+            Class<?> type = Class.forName(VECTOR_CLASS, true, PixelKernels.class.getClassLoader());
+            return (PixelKernels) type.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | UnsupportedOperationException e) {
+            // Модуль отсутствует, модуль jdk.incubator.vector не подключен или процессор не поддерживает векторы.
+            return null;
+        }
+    }
+
+    /**
+     * Вычисляет {@code out[i] = (in[i] & and) ^ xor}.
+     *
+     * @param in   входной массив пикселей.
+     * @param out  выходной массив пикселей.
+     * @param from первый индекс.
+     * @param to   индекс, следующий за последним.
+     * @param and  маска, накладываемая на пиксель.
+     * @param xor  маска, инвертирующая биты пикселя.
+     */
+    public void mask(int[] in, int[] out, int from, int to, int and, int xor) {
+        for (int i = from; i < to; i++) {
+            out[i] = (in[i] & and) ^ xor;
+        }
+    }
+
+    /**
+     * Заменяет выбранные каналы пикселей яркостью {@code (77 * r + 151 * g + 28 * b) >> 8}.
+     *
+     * @param in       входной массив пикселей.
+     * @param out      выходной массив пикселей.
+     * @param from     первый индекс.
+     * @param to       индекс, следующий за последним.
+     * @param channels маска заменяемых каналов, например {@code 0x00ff0000} для красного канала.
+     */
+    public void grayscale(int[] in, int[] out, int from, int to, int channels) {
+        for (int i = from; i < to; i++) {
+            int color = in[i];
+            int gray = ((0xff & (color >> 16)) * 77 + (0xff & (color >> 8)) * 151 + (0xff & color) * 28) >> 8;
+            out[i] = (color & ~channels) | (gray * 0x010101 & channels);
+        }
+    }
+
+    /**
+     * Заменяет красный, зеленый и синий каналы пикселей значениями из таблиц. Результат собирается выражением
+     * {@code a | (r << 16) | (g << 8) | b} без ограничения значений таблиц.
+     *
+     * @param in     входной массив пикселей.
+     * @param out    выходной массив пикселей.
+     * @param from   первый индекс.
+     * @param to     индекс, следующий за последним.
+     * @param rTable таблица красного канала или {@code null}, если канал не меняется.
+     * @param gTable таблица зеленого канала или {@code null}, если канал не меняется.
+     * @param bTable таблица синего канала или {@code null}, если канал не меняется.
+     */
+    public void lookup(int[] in, int[] out, int from, int to, int[] rTable, int[] gTable, int[] bTable) {
+        for (int i = from; i < to; i++) {
+            int color = in[i];
+            int r = 0xff & (color >> 16);
+            int g = 0xff & (color >> 8);
+            int b = 0xff & color;
+
+            if (rTable != null) r = rTable[r];
+            if (gTable != null) g = gTable[g];
+            if (bTable != null) b = bTable[b];
+
+            out[i] = (0xff000000 & color) | (r << 16) | (g << 8) | b;
+        }
+    }
+
+    /**
+     * Умножает цвета пикселей на матрицу {@link BandFilter}. Результат канала приводится к {@code int} без
+     * ограничения.
+     *
+     * @param in       входной массив пикселей.
+     * @param out      выходной массив пикселей.
+     * @param from     первый индекс.
+     * @param to       индекс, следующий за последним.
+     * @param m        матрица, размер равен 16.
+     * @param rchannel флаг обработки красных компонентов.
+     * @param gchannel флаг обработки зеленых компонентов.
+     * @param bchannel флаг обработки синих компонентов.
+     * @param achannel флаг обработки альфа компонентов.
+     */
+    public void band(int[] in, int[] out, int from, int to, float[] m,
+                     boolean rchannel, boolean gchannel, boolean bchannel, boolean achannel) {
+        for (int i = from; i < to; i++) {
+            int a = 0xff & (in[i] >> 24);
+            int r = 0xff & (in[i] >> 16);
+            int g = 0xff & (in[i] >> 8);
+            int b = 0xff & in[i];
+
+            int ra = achannel ? (int) (m[0] * a + m[1] * r + m[2] * g + m[3] * b) : a;
+            int rr = rchannel ? (int) (m[4] * a + m[5] * r + m[6] * g + m[7] * b) : r;
+            int rg = gchannel ? (int) (m[8] * a + m[9] * r + m[10] * g + m[11] * b) : g;
+            int rb = bchannel ? (int) (m[12] * a + m[13] * r + m[14] * g + m[15] * b) : b;
+
+            out[i] = (ra << 24) | (rr << 16) | (rg << 8) | rb;
+        }
+    }
+
+    /**
+     * Умножает значения монохромного изображения на последнюю строку матрицы {@link BandFilter}.
+     *
+     * @param in   входной массив значений.
+     * @param out  выходной массив значений.
+     * @param from первый индекс.
+     * @param to   индекс, следующий за последним.
+     * @param m    матрица, размер равен 16.
+     */
+    public void band(int[] in, int[] out, int from, int to, float[] m) {
+        for (int i = from; i < to; i++) {
+            out[i] = (int) (m[12] * in[i] + m[13] * in[i] + m[14] * in[i] + m[15] * in[i]);
+        }
+    }
+
+    /**
+     * Прибавляет к суммам каналов {@code count} пикселей, начиная с {@code in[offset]}, умноженных на значение
+     * матрицы: {@code as[start + n] += (0xff & in[offset + n] >> 24) * k} и так же для остальных каналов.
+     *
+     * @param in     входной массив пикселей.
+     * @param offset индекс первого пикселя.
+     * @param k      значение матрицы.
+     * @param as     суммы альфа канала или {@code null}, если канал не обрабатывается.
+     * @param rs     суммы красного канала или {@code null}, если канал не обрабатывается.
+     * @param gs     суммы зеленого канала или {@code null}, если канал не обрабатывается.
+     * @param bs     суммы синего канала или {@code null}, если канал не обрабатывается.
+     * @param start  индекс первой суммы.
+     * @param count  количество пикселей.
+     */
+    public void accumulate(int[] in, int offset, float k, float[] as, float[] rs, float[] gs, float[] bs,
+                           int start, int count) {
+        if (as != null) {
+            for (int n = 0; n < count; n++) as[start + n] += (0xff & in[offset + n] >> 24) * k;
+        }
+        if (rs != null) {
+            for (int n = 0; n < count; n++) rs[start + n] += (0xff & in[offset + n] >> 16) * k;
+        }
+        if (gs != null) {
+            for (int n = 0; n < count; n++) gs[start + n] += (0xff & in[offset + n] >> 8) * k;
+        }
+        if (bs != null) {
+            for (int n = 0; n < count; n++) bs[start + n] += (0xff & in[offset + n]) * k;
+        }
+    }
+
+    /**
+     * Прибавляет к целым суммам каналов {@code count} пикселей, начиная с {@code in[offset]}, умноженных на целое
+     * значение матрицы: {@code as[start + n] += (0xff & in[offset + n] >> 24) * k} и так же для остальных каналов.
+     *
+     * @param in     входной массив пикселей.
+     * @param offset индекс первого пикселя.
+     * @param k      значение матрицы.
+     * @param as     суммы альфа канала или {@code null}, если канал не обрабатывается.
+     * @param rs     суммы красного канала или {@code null}, если канал не обрабатывается.
+     * @param gs     суммы зеленого канала или {@code null}, если канал не обрабатывается.
+     * @param bs     суммы синего канала или {@code null}, если канал не обрабатывается.
+     * @param start  индекс первой суммы.
+     * @param count  количество пикселей.
+     */
+    public void accumulate(int[] in, int offset, int k, int[] as, int[] rs, int[] gs, int[] bs,
+                           int start, int count) {
+        if (as != null) {
+            for (int n = 0; n < count; n++) as[start + n] += (0xff & in[offset + n] >> 24) * k;
+        }
+        if (rs != null) {
+            for (int n = 0; n < count; n++) rs[start + n] += (0xff & in[offset + n] >> 16) * k;
+        }
+        if (gs != null) {
+            for (int n = 0; n < count; n++) gs[start + n] += (0xff & in[offset + n] >> 8) * k;
+        }
+        if (bs != null) {
+            for (int n = 0; n < count; n++) bs[start + n] += (0xff & in[offset + n]) * k;
+        }
+    }
+
+    /**
+     * Прибавляет к суммам {@code count} значений монохромного изображения, начиная с {@code in[offset]}, умноженных на
+     * значение матрицы.
+     *
+     * @param in     входной массив значений.
+     * @param offset индекс первого значения.
+     * @param k      значение матрицы.
+     * @param sums   суммы.
+     * @param start  индекс первой суммы.
+     * @param count  количество значений.
+     */
+    public void accumulate(int[] in, int offset, float k, float[] sums, int start, int count) {
+        for (int n = 0; n < count; n++) {
+            sums[start + n] += in[offset + n] * k;
+        }
+    }
+
+    /**
+     * Прибавляет к суммам {@code count} чисел, начиная с {@code in[offset]}, умноженных на значение матрицы:
+     * {@code sums[start + n] += in[offset + n] * k}.
+     *
+     * @param in     входной массив чисел.
+     * @param offset индекс первого числа.
+     * @param k      значение матрицы.
+     * @param sums   суммы.
+     * @param start  индекс первой суммы.
+     * @param count  количество чисел.
+     */
+    public void accumulate(float[] in, int offset, float k, float[] sums, int start, int count) {
+        for (int n = 0; n < count; n++) {
+            sums[start + n] += in[offset + n] * k;
+        }
+    }
+
+    /**
+     * Прибавляет к каналам пикселей каналы других пикселей, умноженные на множитель:
+     * {@code clamp((int) (c1 + factor * c2), 0, 255)}.
+     *
+     * @param in     входной массив пикселей.
+     * @param addend массив прибавляемых пикселей.
+     * @param out    выходной массив пикселей, может совпадать с одним из входных.
+     * @param from   первый индекс.
+     * @param to     индекс, следующий за последним.
+     * @param factor множитель.
+     */
+    public void addScaled(int[] in, int[] addend, int[] out, int from, int to, float factor) {
+        for (int i = from; i < to; i++) {
+            int rgb1 = in[i];
+            int rgb2 = addend[i];
+
+            int a = clamp((int) ((0xff & (rgb1 >> 24)) + factor * (0xff & (rgb2 >> 24))));
+            int r = clamp((int) ((0xff & (rgb1 >> 16)) + factor * (0xff & (rgb2 >> 16))));
+            int g = clamp((int) ((0xff & (rgb1 >> 8)) + factor * (0xff & (rgb2 >> 8))));
+            int b = clamp((int) ((0xff & rgb1) + factor * (0xff & rgb2)));
+
+            out[i] = (a << 24) | (r << 16) | (g << 8) | b;
+        }
+    }
+
+    /**
+     * Увеличивает резкость пикселей по размытым пикселям. Канал, отличающийся от размытого не меньше чем на порог,
+     * вычисляется как {@code clamp((int) (factor * (c1 - c2) + c2))}, остальные каналы не меняются.
+     *
+     * @param in        входной массив пикселей.
+     * @param blurred   массив размытых пикселей.
+     * @param out       выходной массив пикселей, может совпадать с одним из входных.
+     * @param from      первый индекс.
+     * @param to        индекс, следующий за последним.
+     * @param factor    множитель разности.
+     * @param threshold порог.
+     */
+    public void sharpen(int[] in, int[] blurred, int[] out, int from, int to, double factor, int threshold) {
+        for (int i = from; i < to; i++) {
+            int rgb1 = in[i];
+            int rgb2 = blurred[i];
+
+            int a = sharpen(0xff & (rgb1 >> 24), 0xff & (rgb2 >> 24), factor, threshold);
+            int r = sharpen(0xff & (rgb1 >> 16), 0xff & (rgb2 >> 16), factor, threshold);
+            int g = sharpen(0xff & (rgb1 >> 8), 0xff & (rgb2 >> 8), factor, threshold);
+            int b = sharpen(0xff & rgb1, 0xff & rgb2, factor, threshold);
+
+            out[i] = (a << 24) | (r << 16) | (g << 8) | b;
+        }
+    }
+
+    /**
+     * Увеличивает резкость канала.
+     *
+     * @param c1        значение канала.
+     * @param c2        размытое значение канала.
+     * @param factor    множитель разности.
+     * @param threshold порог.
+     * @return значение канала.
+     */
+    private static int sharpen(int c1, int c2, double factor, int threshold) {
+        int d = c1 - c2;
+        return (d < 0 ? -d : d) >= threshold ? clamp((int) (factor * d + c2)) : c1;
+    }
+
+    /**
+     * Ограничивает значение канала отрезком от 0 до 255.
+     *
+     * @param value значение.
+     * @return ограниченное значение.
+     */
+    protected static int clamp(int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+
+}
@@ -0,0 +1,44 @@
+/*
+ *
+ */
+package ru.ildev.image.filter;
+
+/**
+ * Интерфейс фильтра, который умеет обрабатывать изображение по плоскостям каналов ({@link PlanarImage}). Каналы
+ * обрабатываются независимо друг от друга, и результат обработки плоскостей совпадает с результатом обработки
+ * упакованных ARGB пикселей.
+ *
+ * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
+ * @version 0.0.0
+ */
+public interface PlanarFilter {
+
+    /**
+     * Проверяет, может ли фильтр с текущими параметрами обрабатывать плоскости каналов. Монохромная обработка
+     * плоскостями не поддерживается.
+     *
+     * @return {@code true}, если фильтр может обрабатывать плоскости.
+     */
+    boolean isPlanar();
+
+    /**
+     * Проверяет, изменяет ли фильтр плоскость канала. Необработанные плоскости не копируются.
+     *
+     * @param channel канал: {@link PlanarImage#ALPHA}, {@link PlanarImage#RED}, {@link PlanarImage#GREEN} или
+     *                {@link PlanarImage#BLUE}.
+     * @return {@code true}, если фильтр изменяет плоскость канала.
+     */
+    boolean isPlaneProcessed(int channel);
+
+    /**
+     * Применяет фильтр плоскости канала.
+     *
+     * @param in      входная плоскость.
+     * @param out     выходная плоскость.
+     * @param width   ширина изображения.
+     * @param height  высота изображения.
+     * @param channel канал.
+     */
+    void applyPlane(byte[] in, byte[] out, int width, int height, int channel);
+
+}
@@ -0,0 +1,244 @@
+/*
+ *
+ */
+package ru.ildev.image.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Изображение, каналы которого хранятся в отдельных плоскостях байтов. Пиксели распаковываются из ARGB один раз,
+ * затем к плоскостям применяются фильтры {@link PlanarFilter}, и в конце пиксели упаковываются обратно. Для каждого
+ * канала хранится запасная плоскость: фильтр пишет в нее результат, после чего плоскости меняются местами, поэтому
+ * каналы, которые фильтр не изменяет, не копируются.
+ *
+ * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
+ * @version 0.0.0
+ */
+public class PlanarImage {
+
+    /**
+     * Альфа канал.
+     */
+    public static final int ALPHA = 0;
+    /**
+     * Красный канал.
+     */
+    public static final int RED = 1;
+    /**
+     * Зеленый канал.
+     */
+    public static final int GREEN = 2;
+    /**
+     * Синий канал.
+     */
+    public static final int BLUE = 3;
+    /**
+     * Количество каналов.
+     */
+    public static final int CHANNELS = 4;
+
+    /**
+     * Размеры изображения.
+     */
+    private final int width, height;
+    /**
+     * Плоскости каналов.
+     */
+    private final byte[][] planes = new byte[CHANNELS][];
+    /**
+     * Запасные плоскости каналов.
+     */
+    private final byte[][] spares = new byte[CHANNELS][];
+
+    /**
+     * Конструктор.
+     *
+     * @param width  ширина изображения.
+     * @param height высота изображения.
+     */
+    public PlanarImage(int width, int height) {
+        if (width < 0 || height < 0) throw new IllegalArgumentException("width < 0 || height < 0");
+        this.width = width;
+        this.height = height;
+        for (int c = 0; c < CHANNELS; c++) {
+            this.planes[c] = new byte[width * height];
+        }
+    }
+
+    /**
+     * Создает изображение из массива ARGB пикселей.
+     *
+     * @param pixels массив пикселей.
+     * @param width  ширина изображения.
+     * @param height высота изображения.
+     * @return изображение.
+     */
+    public static PlanarImage unpack(int[] pixels, int width, int height) {
+        PlanarImage image = new PlanarImage(width, height);
+        image.setPixels(pixels);
+        return image;
+    }
+
+    /**
+     * Получает ширину изображения.
+     *
+     * @return ширину изображения.
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Получает высоту изображения.
+     *
+     * @return высоту изображения.
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Получает плоскость канала.
+     *
+     * @param channel канал.
+     * @return плоскость канала.
+     */
+    public byte[] getPlane(int channel) {
+        return this.planes[channel];
+    }
+
+    /**
+     * Распаковывает ARGB пиксели в плоскости каналов.
+     *
+     * @param pixels массив пикселей.
+     */
+    public void setPixels(int[] pixels) {
+        if (pixels == null) throw new NullPointerException("pixels == null");
+        byte[] a = this.planes[ALPHA];
+        byte[] r = this.planes[RED];
+        byte[] g = this.planes[GREEN];
+        byte[] b = this.planes[BLUE];
+
+        int size = this.width * this.height;
+        for (int i = 0; i < size; i++) {
+            int rgba = pixels[i];
+            a[i] = (byte) (rgba >> 24);
+            r[i] = (byte) (rgba >> 16);
+            g[i] = (byte) (rgba >> 8);
+            b[i] = (byte) rgba;
+        }
+    }
+
+    /**
+     * Упаковывает плоскости каналов в ARGB пиксели.
+     *
+     * @param pixels массив пикселей.
+     */
+    public void getPixels(int[] pixels) {
+        if (pixels == null) throw new NullPointerException("pixels == null");
+        byte[] a = this.planes[ALPHA];
+        byte[] r = this.planes[RED];
+        byte[] g = this.planes[GREEN];
+        byte[] b = this.planes[BLUE];
+
+        int size = this.width * this.height;
+        for (int i = 0; i < size; i++) {
+            pixels[i] = (a[i] & 0xff) << 24 | (r[i] & 0xff) << 16 | (g[i] & 0xff) << 8 | (b[i] & 0xff);
+        }
+    }
+
+    /**
+     * Применяет фильтр к плоскостям изображения.
+     *
+     * @param filter фильтр.
+     */
+    public void apply(PlanarFilter filter) {
+        this.apply(filter, false);
+    }
+
+    /**
+     * Применяет фильтр к плоскостям изображения. При многопоточной обработке каналы обрабатываются параллельно в
+     * пуле потоков {@link TileExecutor#getPool()}.
+     *
+     * @param filter   фильтр.
+     * @param parallel флаг многопоточной обработки.
+     */
+    public void apply(PlanarFilter filter, boolean parallel) {
+        if (filter == null) throw new NullPointerException("filter == null");
+        if (!filter.isPlanar()) throw new IllegalArgumentException("Filter can't process planes");
+
+        List<Plane> tasks = new ArrayList<>(CHANNELS);
+        for (int c = 0; c < CHANNELS; c++) {
+            if (!filter.isPlaneProcessed(c)) continue;
+            if (this.spares[c] == null) this.spares[c] = new byte[this.width * this.height];
+            tasks.add(new Plane(filter, c));
+        }
+
+        if (parallel && tasks.size() > 1) {
+            TileExecutor.getPool().invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        } else {
+            for (Plane task : tasks) {
+                task.compute();
+            }
+        }
+
+        // Результат записан в запасные плоскости.
+        for (Plane task : tasks) {
+            byte[] plane = this.planes[task.channel];
+            this.planes[task.channel] = this.spares[task.channel];
+            this.spares[task.channel] = plane;
+        }
+    }
+
+    /**
+     * Проверяет, включена ли у фильтра обработка канала.
+     *
+     * @param filter  фильтр.
+     * @param channel канал.
+     * @return {@code true}, если обработка канала включена.
+     */
+    static boolean isChannel(Filter filter, int channel) {
+        switch (channel) {
+            case ALPHA:
+                return filter.isAlphaChannel();
+            case RED:
+                return filter.isRedChannel();
+            case GREEN:
+                return filter.isGreenChannel();
+            case BLUE:
+                return filter.isBlueChannel();
+            default:
+                throw new IllegalArgumentException("Illegal channel " + channel);
+        }
+    }
+
+    /**
+     * Задача обработки плоскости канала.
+     */
+    private final class Plane extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final PlanarFilter filter;
+        private final int channel;
+
+        Plane(PlanarFilter filter, int channel) {
+            this.filter = filter;
+            this.channel = channel;
+        }
+
+        @Override
+        protected void compute() {
+            this.filter.applyPlane(planes[this.channel], spares[this.channel], width, height, this.channel);
+        }
+
+    }
+
+}
@@ -0,0 +1,334 @@
+/*
+ *
+ */
+package ru.ildev.image.filter;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Класс прямого доступа к массивам данных растров изображений. Для изображений типов
+ * {@link BufferedImage#TYPE_INT_ARGB} и {@link BufferedImage#TYPE_INT_RGB} пиксели копируются строками из массива
+ * {@link DataBufferInt}, а для типов {@link BufferedImage#TYPE_3BYTE_BGR}, {@link BufferedImage#TYPE_4BYTE_ABGR} и
+ * {@link BufferedImage#TYPE_BYTE_GRAY} преобразуются напрямую из массива {@link DataBufferByte}. Результат совпадает с
+ * результатом методов {@link WritableRaster#getDataElements(int, int, int, int, Object)} и
+ * {@link BufferedImage#getRGB(int, int, int, int, int[], int, int)} соответственно.
+ * <p>
+ * Получение массива данных растра отключает аппаратное ускорение отрисовки изображения в Java2D.
+ *
+ * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
+ * @version 0.0.0
+ */
+final class RasterAccess {
+
+    private RasterAccess() {
+    }
+
+    /**
+     * Определяет, хранятся ли пиксели изображения в массиве {@code int[]} по одному пикселю на элемент.
+     *
+     * @param image изображение.
+     * @return {@code true}, если пиксели хранятся в массиве {@code int[]}.
+     */
+    static boolean isIntPacked(BufferedImage image) {
+        int type = image.getType();
+        if (type != BufferedImage.TYPE_INT_ARGB && type != BufferedImage.TYPE_INT_RGB) return false;
+
+        WritableRaster raster = image.getRaster();
+        return raster.getSampleModel() instanceof SinglePixelPackedSampleModel
+                && raster.getDataBuffer() instanceof DataBufferInt
+                && raster.getDataBuffer().getNumBanks() == 1;
+    }
+
+    /**
+     * Получает массив данных изображения, если область изображения занимает в нем непрерывный участок, начинающийся с
+     * нулевого элемента. Такой массив можно использовать вместо копии пикселей области.
+     *
+     * @param image  изображение.
+     * @param x      x-координата области изображения.
+     * @param y      y-координата области изображения.
+     * @param width  ширина области изображения.
+     * @param height высота области изображения.
+     * @return массив данных изображения или {@code null}.
+     */
+    static int[] getPixels(BufferedImage image, int x, int y, int width, int height) {
+        if (!isIntPacked(image)) return null;
+
+        WritableRaster raster = image.getRaster();
+        SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+        if (sm.getScanlineStride() != width) return null;
+        if (intOffset(raster, sm, x, y) != 0) return null;
+        return ((DataBufferInt) raster.getDataBuffer()).getData();
+    }
+
+    /**
+     * Копирует пиксели области изображения типа {@code int[]} в массив.
+     *
+     * @param image  изображение.
+     * @param x      x-координата области изображения.
+     * @param y      y-координата области изображения.
+     * @param width  ширина области изображения.
+     * @param height высота области изображения.
+     * @param pixels массив пикселей.
+     * @return {@code true}, если пиксели скопированы.
+     */
+    static boolean readInts(BufferedImage image, int x, int y, int width, int height, int[] pixels) {
+        if (!isIntPacked(image)) return false;
+        checkBounds(image, x, y, width, height);
+
+        WritableRaster raster = image.getRaster();
+        SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+        int[] data = ((DataBufferInt) raster.getDataBuffer()).getData();
+        int stride = sm.getScanlineStride();
+        int offset = intOffset(raster, sm, x, y);
+
+        for (int j = 0; j < height; j++) {
+            System.arraycopy(data, offset + j * stride, pixels, j * width, width);
+        }
+        return true;
+    }
+
+    /**
+     * Копирует пиксели из массива в область изображения типа {@code int[]}.
+     *
+     * @param image  изображение.
+     * @param x      x-координата области изображения.
+     * @param y      y-координата области изображения.
+     * @param width  ширина области изображения.
+     * @param height высота области изображения.
+     * @param pixels массив пикселей.
+     * @return {@code true}, если пиксели скопированы.
+     */
+    static boolean writeInts(BufferedImage image, int x, int y, int width, int height, int[] pixels) {
+        if (!isIntPacked(image)) return false;
+        checkBounds(image, x, y, width, height);
+
+        WritableRaster raster = image.getRaster();
+        SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+        int[] data = ((DataBufferInt) raster.getDataBuffer()).getData();
+        int stride = sm.getScanlineStride();
+        int offset = intOffset(raster, sm, x, y);
+
+        if (data == pixels && offset == 0 && stride == width) return true;
+        for (int j = 0; j < height; j++) {
+            System.arraycopy(pixels, j * width, data, offset + j * stride, width);
+        }
+        return true;
+    }
+
+    /**
+     * Преобразует пиксели области изображения с байтовым растром в цвета ARGB.
+     *
+     * @param image  изображение.
+     * @param x      x-координата области изображения.
+     * @param y      y-координата области изображения.
+     * @param width  ширина области изображения.
+     * @param height высота области изображения.
+     * @param pixels массив пикселей.
+     * @return {@code true}, если тип изображения поддерживается и пиксели преобразованы.
+     */
+    static boolean readBytes(BufferedImage image, int x, int y, int width, int height, int[] pixels) {
+        int type = image.getType();
+        if (!isBytePacked(image)) return false;
+        checkBounds(image, x, y, width, height);
+
+        WritableRaster raster = image.getRaster();
+        PixelInterleavedSampleModel sm = (PixelInterleavedSampleModel) raster.getSampleModel();
+        byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+        int stride = sm.getScanlineStride();
+        int pixelStride = sm.getPixelStride();
+        int[] bands = sm.getBandOffsets();
+        int offset = byteOffset(raster, sm, x, y);
+
+        if (type == BufferedImage.TYPE_3BYTE_BGR) {
+            int ro = bands[0], go = bands[1], bo = bands[2];
+            for (int j = 0; j < height; j++) {
+                int i = offset + j * stride;
+                int index = j * width;
+                for (int k = 0; k < width; k++, i += pixelStride) {
+                    pixels[index++] = 0xff000000 | (0xff & data[i + ro]) << 16 | (0xff & data[i + go]) << 8
+                            | (0xff & data[i + bo]);
+                }
+            }
+        } else if (type == BufferedImage.TYPE_4BYTE_ABGR) {
+            int ro = bands[0], go = bands[1], bo = bands[2], ao = bands[3];
+            for (int j = 0; j < height; j++) {
+                int i = offset + j * stride;
+                int index = j * width;
+                for (int k = 0; k < width; k++, i += pixelStride) {
+                    pixels[index++] = (0xff & data[i + ao]) << 24 | (0xff & data[i + ro]) << 16
+                            | (0xff & data[i + go]) << 8 | (0xff & data[i + bo]);
+                }
+            }
+        } else /* if(type == BufferedImage.TYPE_BYTE_GRAY) */ {
+            // Серый цвет хранится в линейном цветовом пространстве, поэтому преобразуем его цветовой моделью.
+            int[] table = grayToRGB(image.getColorModel());
+            int go = bands[0];
+            for (int j = 0; j < height; j++) {
+                int i = offset + j * stride;
+                int index = j * width;
+                for (int k = 0; k < width; k++, i += pixelStride) {
+                    pixels[index++] = table[0xff & data[i + go]];
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Преобразует цвета ARGB из массива в пиксели области изображения с байтовым растром.
+     *
+     * @param image  изображение.
+     * @param x      x-координата области изображения.
+     * @param y      y-координата области изображения.
+     * @param width  ширина области изображения.
+     * @param height высота области изображения.
+     * @param pixels массив пикселей.
+     * @return {@code true}, если тип изображения поддерживается и пиксели преобразованы.
+     */
+    static boolean writeBytes(BufferedImage image, int x, int y, int width, int height, int[] pixels) {
+        int type = image.getType();
+        if (!isBytePacked(image)) return false;
+        checkBounds(image, x, y, width, height);
+
+        WritableRaster raster = image.getRaster();
+        PixelInterleavedSampleModel sm = (PixelInterleavedSampleModel) raster.getSampleModel();
+        byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+        int stride = sm.getScanlineStride();
+        int pixelStride = sm.getPixelStride();
+        int[] bands = sm.getBandOffsets();
+        int offset = byteOffset(raster, sm, x, y);
+
+        if (type == BufferedImage.TYPE_3BYTE_BGR) {
+            int ro = bands[0], go = bands[1], bo = bands[2];
+            for (int j = 0; j < height; j++) {
+                int i = offset + j * stride;
+                int index = j * width;
+                for (int k = 0; k < width; k++, i += pixelStride) {
+                    int rgb = pixels[index++];
+                    data[i + ro] = (byte) (rgb >> 16);
+                    data[i + go] = (byte) (rgb >> 8);
+                    data[i + bo] = (byte) rgb;
+                }
+            }
+        } else if (type == BufferedImage.TYPE_4BYTE_ABGR) {
+            int ro = bands[0], go = bands[1], bo = bands[2], ao = bands[3];
+            for (int j = 0; j < height; j++) {
+                int i = offset + j * stride;
+                int index = j * width;
+                for (int k = 0; k < width; k++, i += pixelStride) {
+                    int argb = pixels[index++];
+                    data[i + ao] = (byte) (argb >> 24);
+                    data[i + ro] = (byte) (argb >> 16);
+                    data[i + go] = (byte) (argb >> 8);
+                    data[i + bo] = (byte) argb;
+                }
+            }
+        } else /* if(type == BufferedImage.TYPE_BYTE_GRAY) */ {
+            // Серые цвета, т.е. r == g == b, преобразуются по таблице, остальные цветовой моделью.
+            ColorModel cm = image.getColorModel();
+            byte[] table = rgbToGray(cm);
+            byte[] element = new byte[1];
+            int lastRGB = 0;
+            byte lastGray = table[0];
+            int go = bands[0];
+            for (int j = 0; j < height; j++) {
+                int i = offset + j * stride;
+                int index = j * width;
+                for (int k = 0; k < width; k++, i += pixelStride) {
+                    int rgb = 0xffffff & pixels[index++];
+                    int b = 0xff & rgb;
+                    byte gray;
+                    if (rgb == (b << 16 | b << 8 | b)) {
+                        gray = table[b];
+                    } else if (rgb == lastRGB) {
+                        gray = lastGray;
+                    } else {
+                        gray = ((byte[]) cm.getDataElements(0xff000000 | rgb, element))[0];
+                        lastRGB = rgb;
+                        lastGray = gray;
+                    }
+                    data[i + go] = gray;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Определяет, хранятся ли пиксели изображения в байтовом растре поддерживаемого типа.
+     *
+     * @param image изображение.
+     * @return {@code true}, если тип изображения поддерживается.
+     */
+    private static boolean isBytePacked(BufferedImage image) {
+        int type = image.getType();
+        if (type != BufferedImage.TYPE_3BYTE_BGR && type != BufferedImage.TYPE_4BYTE_ABGR
+                && type != BufferedImage.TYPE_BYTE_GRAY) return false;
+
+        WritableRaster raster = image.getRaster();
+        return raster.getSampleModel() instanceof PixelInterleavedSampleModel
+                && raster.getDataBuffer() instanceof DataBufferByte
+                && raster.getDataBuffer().getNumBanks() == 1;
+    }
+
+    /**
+     * Находит индекс пикселя в массиве данных растра {@code int[]}.
+     */
+    private static int intOffset(WritableRaster raster, SinglePixelPackedSampleModel sm, int x, int y) {
+        DataBuffer db = raster.getDataBuffer();
+        return db.getOffset() + sm.getOffset(x - raster.getSampleModelTranslateX(),
+                y - raster.getSampleModelTranslateY());
+    }
+
+    /**
+     * Находит индекс первого байта пикселя в массиве данных байтового растра.
+     */
+    private static int byteOffset(WritableRaster raster, PixelInterleavedSampleModel sm, int x, int y) {
+        DataBuffer db = raster.getDataBuffer();
+        return db.getOffset() + (y - raster.getSampleModelTranslateY()) * sm.getScanlineStride()
+                + (x - raster.getSampleModelTranslateX()) * sm.getPixelStride();
+    }
+
+    /**
+     * Проверяет, что область находится внутри изображения.
+     */
+    private static void checkBounds(BufferedImage image, int x, int y, int width, int height) {
+        if (x < 0 || y < 0 || width < 0 || height < 0
+                || x + width > image.getWidth() || y + height > image.getHeight()) {
+            throw new ArrayIndexOutOfBoundsException("Coordinate out of bounds!");
+        }
+    }
+
+    /**
+     * Создает таблицу преобразования серого цвета в цвет ARGB.
+     */
+    private static int[] grayToRGB(ColorModel cm) {
+        int[] table = new int[256];
+        byte[] element = new byte[1];
+        for (int i = 0; i < 256; i++) {
+            element[0] = (byte) i;
+            table[i] = cm.getRGB(element);
+        }
+        return table;
+    }
+
+    /**
+     * Создает таблицу преобразования серых цветов ARGB, т.е. цветов с равными компонентами, в значение серого цвета.
+     */
+    private static byte[] rgbToGray(ColorModel cm) {
+        byte[] table = new byte[256];
+        byte[] element = new byte[1];
+        for (int i = 0; i < 256; i++) {
+            table[i] = ((byte[]) cm.getDataElements(0xff000000 | i << 16 | i << 8 | i, element))[0];
+        }
+        return table;
+    }
+
+}
@@ -3,8 +3,6 @@
  */
 package ru.ildev.image.filter;
 
-import ru.ildev.color.Color;
-
 /**
  * Класс фильтра, добавляющего тени непрозрачным частям изображений.
  *
@@ -25,6 +23,10 @@ public class ShadowFilter extends Filter {
      * Радиус размытия тени.
      */
     private int blurRadius = 5;
+    /**
+     * Режим размытия тени ({@link GaussianBlurFilter#getMode()}).
+     */
+    private int blurMode = GaussianBlurFilter.CONVOLVE_MODE;
     /**
      * Цвет тени.
      */
@@ -114,6 +116,31 @@ public class ShadowFilter extends Filter {
         this.init = false;
     }
 
+    /**
+     * Получает режим размытия тени.
+     *
+     * @return режим размытия тени.
+     */
+    public int getBlurMode() {
+        return this.blurMode;
+    }
+
+    /**
+     * Устанавливает режим размытия тени: {@link GaussianBlurFilter#CONVOLVE_MODE},
+     * {@link GaussianBlurFilter#RECURSIVE_MODE} или {@link GaussianBlurFilter#BOX_MODE}. Для мягких теней обычно
+     * достаточно быстрого приближения {@link GaussianBlurFilter#BOX_MODE}.
+     *
+     * @param blurMode режим размытия тени.
+     */
+    public void setBlurMode(int blurMode) {
+        if (blurMode != GaussianBlurFilter.CONVOLVE_MODE && blurMode != GaussianBlurFilter.RECURSIVE_MODE
+                && blurMode != GaussianBlurFilter.BOX_MODE) {
+            throw new IllegalArgumentException("Illegal mode " + blurMode);
+        }
+        this.blurMode = blurMode;
+        this.init = false;
+    }
+
     /**
      * Получает цвет тени.
      *
@@ -152,6 +179,12 @@ public class ShadowFilter extends Filter {
         this.init = false;
     }
 
+    @Override
+    public void setParallel(boolean flag) {
+        super.setParallel(flag);
+        this.init = false;
+    }
+
     private void init() {
         boolean rchannel = this.isRedChannel();
         boolean gchannel = this.isGreenChannel();
@@ -170,10 +203,13 @@ public class ShadowFilter extends Filter {
                 TransformFilter.NEAREST_NEIGHBOUR_INTERPOLATION);
         this.blurFilter = new GaussianBlurFilter(this.blurRadius,
                 ConvolveFilter.CROP_EDGES);
+        this.blurFilter.setMode(this.blurMode);
 
         this.bandFilter.setChannels(rchannel, gchannel, bchannel, achannel, monochrome);
         this.offsetFilter.setChannels(rchannel, gchannel, bchannel, achannel, monochrome);
         this.blurFilter.setChannels(rchannel, gchannel, bchannel, achannel, monochrome);
+        this.bandFilter.setParallel(this.parallel);
+        this.blurFilter.setParallel(this.parallel);
         this.init = true;
     }
 
@@ -182,21 +218,22 @@ public class ShadowFilter extends Filter {
         if (!this.init) this.init();
 
         int size = width * height;
-        int[] shadow = new int[size];
-        int[] tmp = new int[size];
-
-        this.bandFilter.apply(in, shadow, width, height);
-        System.arraycopy(shadow, 0, tmp, 0, size);
-        this.offsetFilter.apply(tmp, shadow, width, height);
-        System.arraycopy(shadow, 0, tmp, 0, size);
-        this.blurFilter.apply(tmp, shadow, width, height);
-
-        for (int i = 0; i < size; i++) {
-            int a = Color.clamp((int) ((0xff & (in[i] >> 24)) + this.opacity * (0xff & (shadow[i] >> 24))));
-            int r = Color.clamp((int) ((0xff & (in[i] >> 16)) + this.opacity * (0xff & (shadow[i] >> 16))));
-            int g = Color.clamp((int) ((0xff & (in[i] >> 8)) + this.opacity * (0xff & (shadow[i] >> 8))));
-            int b = Color.clamp((int) ((0xff & in[i]) + this.opacity * (0xff & shadow[i])));
-            out[i] = (a << 24) | (r << 16) | (g << 8) | b;
+        BufferPool pool = BufferPool.getDefault();
+        // Оба массива полностью перезаписываются, поэтому обнулять их не нужно.
+        int[] shadow = pool.lease(size, false);
+        int[] tmp = pool.lease(size, false);
+
+        try {
+            this.bandFilter.apply(in, shadow, width, height);
+            System.arraycopy(shadow, 0, tmp, 0, size);
+            this.offsetFilter.apply(tmp, shadow, width, height);
+            System.arraycopy(shadow, 0, tmp, 0, size);
+            this.blurFilter.apply(tmp, shadow, width, height);
+
+            PixelKernels.getDefault().addScaled(in, shadow, out, 0, size, this.opacity);
+        } finally {
+            pool.release(tmp);
+            pool.release(shadow);
         }
     }
 
@@ -0,0 +1,110 @@
+/*
+ *
+ */
+package ru.ildev.image.filter;
+
+import java.util.Arrays;
+
+/**
+ * Гистограмма значений канала в скользящем окне, которая находит значение с заданным номером в отсортированном окне
+ * (алгоритм Хуанга). Гистограмма хранит не только количество значений каждого уровня, но и текущий уровень вместе с
+ * количеством значений ниже него. При сдвиге окна удаляются и добавляются лишь несколько значений, поэтому искомый
+ * уровень смещается ненамного, и его поиск начинается с прежнего уровня, а не с нуля.
+ *
+ * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
+ * @version 0.0.0
+ */
+final class SlidingHistogram {
+
+    /**
+     * Количество значений каждого уровня от 0 до 255.
+     */
+    private final int[] bins = new int[256];
+    /**
+     * Номер искомого значения в отсортированном окне, начиная с нуля.
+     */
+    private final int rank;
+    /**
+     * Текущий уровень.
+     */
+    private int level;
+    /**
+     * Количество значений ниже текущего уровня.
+     */
+    private int below;
+
+    /**
+     * Конструктор.
+     *
+     * @param rank номер искомого значения в отсортированном окне, начиная с нуля.
+     */
+    SlidingHistogram(int rank) {
+        this.rank = rank;
+    }
+
+    /**
+     * Удаляет из гистограммы все значения.
+     */
+    void clear() {
+        Arrays.fill(this.bins, 0);
+        this.level = 0;
+        this.below = 0;
+    }
+
+    /**
+     * Добавляет значение в гистограмму.
+     *
+     * @param value значение от 0 до 255.
+     */
+    void add(int value) {
+        this.bins[value]++;
+        if (value < this.level) this.below++;
+    }
+
+    /**
+     * Добавляет несколько одинаковых значений в гистограмму.
+     *
+     * @param value значение от 0 до 255.
+     * @param count количество значений.
+     */
+    void add(int value, int count) {
+        this.bins[value] += count;
+        if (value < this.level) this.below += count;
+    }
+
+    /**
+     * Удаляет значение из гистограммы. Значение должно быть добавлено в гистограмму раньше.
+     *
+     * @param value значение от 0 до 255.
+     */
+    void remove(int value) {
+        this.bins[value]--;
+        if (value < this.level) this.below--;
+    }
+
+    /**
+     * Находит значение с заданным номером в отсортированном окне. Количество значений в гистограмме должно быть больше
+     * номера.
+     *
+     * @return значение от 0 до 255.
+     */
+    int get() {
+        int[] bins = this.bins;
+        int level = this.level;
+        int below = this.below;
+
+        while (below > this.rank) {
+            level--;
+            below -= bins[level];
+        }
+        while (below + bins[level] <= this.rank) {
+            below += bins[level];
+            level++;
+        }
+
+        this.level = level;
+        this.below = below;
+        return level;
+    }
+
+}
@@ -0,0 +1,164 @@
+/*
+ *
+ */
+package ru.ildev.image.filter;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Класс многопоточной обработки изображений полосами строк. Изображение делится на полосы, каждая полоса
+ * обрабатывается методом {@link Filter#apply(int[], int[], int, int, int, int)} в пуле потоков {@link ForkJoinPool}.
+ * Все полосы читают общий входной массив, поэтому строки окрестности (halo) на границах полос не копируются, и
+ * результат совпадает с результатом однопоточной обработки. Радиус окрестности фильтра используется для выбора
+ * высоты полосы: чем он больше, тем больше строк каждая полоса повторно читает у соседних полос.
+ *
+ * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
+ * @version 0.0.0
+ */
+public final class TileExecutor {
+
+    /**
+     * Количество полос на один поток пула, нужно для балансировки нагрузки.
+     */
+    private static final int STRIPS_PER_THREAD = 4;
+
+    /**
+     * Пул потоков. Если он не установлен, то используется общий пул.
+     */
+    private static volatile ForkJoinPool pool = null;
+    /**
+     * Минимальная высота полосы.
+     */
+    private static volatile int minRows = 16;
+
+    private TileExecutor() {
+    }
+
+    /**
+     * Получает пул потоков обработки.
+     *
+     * @return пул потоков.
+     */
+    public static ForkJoinPool getPool() {
+        ForkJoinPool pool = TileExecutor.pool;
+        return pool == null ? ForkJoinPool.commonPool() : pool;
+    }
+
+    /**
+     * Устанавливает пул потоков обработки.
+     *
+     * @param pool пул потоков или {@code null}, чтобы использовать общий пул.
+     */
+    public static void setPool(ForkJoinPool pool) {
+        TileExecutor.pool = pool;
+    }
+
+    /**
+     * Получает минимальную высоту полосы.
+     *
+     * @return минимальную высоту полосы.
+     */
+    public static int getMinRows() {
+        return minRows;
+    }
+
+    /**
+     * Устанавливает минимальную высоту полосы.
+     *
+     * @param minRows минимальная высота полосы.
+     */
+    public static void setMinRows(int minRows) {
+        if (minRows <= 0) throw new IllegalArgumentException("minRows <= 0");
+        TileExecutor.minRows = minRows;
+    }
+
+    /**
+     * Применяет фильтр изображению полосами строк.
+     *
+     * @param filter фильтр.
+     * @param in     входной массив пикселей.
+     * @param out    выходной массив пикселей изображения.
+     * @param width  длина изображения.
+     * @param height высота изображения.
+     */
+    static void execute(Filter filter, int[] in, int[] out, int width, int height) {
+        execute(filter, in, out, width, height, 0, height);
+    }
+
+    /**
+     * Применяет фильтр строкам изображения от {@code fromY} до {@code toY} полосами строк.
+     *
+     * @param filter фильтр.
+     * @param in     входной массив пикселей.
+     * @param out    выходной массив пикселей изображения.
+     * @param width  длина изображения.
+     * @param height высота изображения.
+     * @param fromY  первая обрабатываемая строка.
+     * @param toY    строка, следующая за последней обрабатываемой.
+     */
+    static void execute(Filter filter, int[] in, int[] out, int width, int height, int fromY, int toY) {
+        if (in == out) throw new IllegalArgumentException("in == out");
+
+        int halo = filter.getHalo();
+        if (halo == Filter.UNBOUNDED_HALO) {
+            filter.apply(in, out, width, height, fromY, toY);
+            return;
+        }
+
+        ForkJoinPool pool = getPool();
+        int strips = pool.getParallelism() * STRIPS_PER_THREAD;
+        int rows = toY - fromY;
+        // Полоса должна быть заметно выше окрестности, иначе повторное чтение соседних строк съест выигрыш.
+        int stripRows = Math.max(Math.max(minRows, 4 * halo), (rows + strips - 1) / strips);
+
+        if (stripRows >= rows) {
+            filter.apply(in, out, width, height, fromY, toY);
+        } else {
+            pool.invoke(new Strip(filter, in, out, width, height, fromY, toY, stripRows));
+        }
+    }
+
+    /**
+     * Задача обработки полосы строк изображения.
+     */
+    private static final class Strip extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Filter filter;
+        private final int[] in;
+        private final int[] out;
+        private final int width;
+        private final int height;
+        private final int fromY;
+        private final int toY;
+        private final int rows;
+
+        Strip(Filter filter, int[] in, int[] out, int width, int height, int fromY, int toY, int rows) {
+            this.filter = filter;
+            this.in = in;
+            this.out = out;
+            this.width = width;
+            this.height = height;
+            this.fromY = fromY;
+            this.toY = toY;
+            this.rows = rows;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.toY - this.fromY <= this.rows) {
+                this.filter.apply(this.in, this.out, this.width, this.height, this.fromY, this.toY);
+            } else {
+                int middleY = (this.fromY + this.toY) >>> 1;
+                invokeAll(new Strip(this.filter, this.in, this.out, this.width, this.height, this.fromY, middleY,
+                                this.rows),
+                        new Strip(this.filter, this.in, this.out, this.width, this.height, middleY, this.toY,
+                                this.rows));
+            }
+        }
+
+    }
+
+}
@@ -13,7 +13,7 @@ import ru.ildev.math.MoreMath;
  * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
  * @version 0.0.1
  */
-public class TransferFilter extends ColorFilter {
+public class TransferFilter extends ColorFilter implements PlanarFilter {
 
     /**
      * Таблицы значений компонентов цветов.
@@ -151,9 +151,8 @@ public class TransferFilter extends ColorFilter {
     }
 
     @Override
-    public void apply(int[] in, int[] out, int width, int height) {
+    protected void prepare() {
         if (!this.initialized) this.initialize();
-        super.apply(in, out, width, height);
     }
 
     @Override
@@ -174,4 +173,63 @@ public class TransferFilter extends ColorFilter {
         }
     }
 
+    @Override
+    protected boolean applyPixels(PixelKernels kernels, int[] in, int[] out, int from, int to) {
+        // Монохромные значения могут выходить за пределы таблицы, поэтому они обрабатываются по одному.
+        if (this.isMonochrome()) return false;
+
+        kernels.lookup(in, out, from, to, this.isRedChannel() ? this.rTable : null,
+                this.isGreenChannel() ? this.gTable : null, this.isBlueChannel() ? this.bTable : null);
+        return true;
+    }
+
+    /**
+     * Проверяет, может ли фильтр обрабатывать плоскости каналов. Значения таблиц должны быть от 0 до 255, иначе
+     * результат в упакованных пикселях переходит в соседние каналы.
+     *
+     * @return {@code true}, если фильтр может обрабатывать плоскости.
+     */
+    @Override
+    public boolean isPlanar() {
+        if (this.isMonochrome()) return false;
+        this.prepare();
+        return isByteTable(this.rTable) && isByteTable(this.gTable) && isByteTable(this.bTable);
+    }
+
+    /**
+     * Проверяет, изменяет ли фильтр плоскость канала. Альфа канал не изменяется.
+     *
+     * @param channel канал.
+     * @return {@code true}, если фильтр изменяет плоскость канала.
+     */
+    @Override
+    public boolean isPlaneProcessed(int channel) {
+        return channel != PlanarImage.ALPHA && PlanarImage.isChannel(this, channel);
+    }
+
+    @Override
+    public void applyPlane(byte[] in, byte[] out, int width, int height, int channel) {
+        this.prepare();
+
+        int[] table = channel == PlanarImage.RED ? this.rTable
+                : channel == PlanarImage.GREEN ? this.gTable : this.bTable;
+        int size = width * height;
+        for (int i = 0; i < size; i++) {
+            out[i] = (byte) table[0xff & in[i]];
+        }
+    }
+
+    /**
+     * Проверяет, что все значения таблицы находятся в пределах от 0 до 255.
+     *
+     * @param table таблица.
+     * @return {@code true}, если все значения таблицы от 0 до 255.
+     */
+    private static boolean isByteTable(int[] table) {
+        for (int value : table) {
+            if (value < 0 || value > 255) return false;
+        }
+        return true;
+    }
+
 }
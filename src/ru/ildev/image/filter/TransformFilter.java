@@ -330,7 +330,7 @@ public class TransformFilter extends Filter {
                 } else if (this.edgeAction == ConvolveFilter.EXTEND_EDGES) {
                     xOff = MoreMath.clamp(srcX, 0, srcWidth - 1);
                 } else if (this.edgeAction == ConvolveFilter.WRAP_EDGES) {
-                    xOff = (srcX + srcWidth) % srcWidth;
+                    xOff = MoreMath.mod(srcX, srcWidth);
                 } else /*if(this.edgeAction == ConvolveFilter.CROP_EDGES)*/ {
                     out[index] = 0;
                     continue;
@@ -341,7 +341,7 @@ public class TransformFilter extends Filter {
                 } else if (this.edgeAction == ConvolveFilter.EXTEND_EDGES) {
                     yOff = MoreMath.clamp(srcY, 0, srcHeight - 1) * srcWidth;
                 } else if (this.edgeAction == ConvolveFilter.WRAP_EDGES) {
-                    yOff = (srcY + srcHeight) % srcHeight * srcWidth;
+                    yOff = MoreMath.mod(srcY, srcHeight) * srcWidth;
                 } else /*if(this.edgeAction == ConvolveFilter.CROP_EDGES)*/ {
                     out[index] = 0;
                     continue;
@@ -0,0 +1,344 @@
+/*
+ *
+ */
+package ru.ildev.image.filter;
+
+/**
+ * Класс развернутых циклов свертки строки изображения с матрицами 3x3 и 5x5. Значения под матрицей хранятся в
+ * локальных переменных, образующих скользящее окно: при переходе к следующему столбцу окно сдвигается на один столбец,
+ * и из массива читается только новый столбец. Значения матрицы также хранятся в локальных переменных, поэтому
+ * во внутреннем цикле нет обращений к матрице и вложенных циклов.
+ * <p>
+ * Суммы складываются в порядке обхода матрицы по строкам, как в общем цикле свертки, поэтому результаты совпадают.
+ * Нулевые значения матрицы не пропускаются: их произведения равны нулю и не меняют сумму. Методы обрабатывают только
+ * внутренние столбцы, для которых матрица не выходит за левый и правый края изображения, и строки изображения, в
+ * которых не пропускается ни одна строка матрицы.
+ * <p>
+ * Пиксели упакованных изображений читаются как {@code in[i] >> shift & mask}: для канала маска равна {@code 0xff}, а
+ * для монохромного изображения сдвиг равен нулю, а маска {@code -1}.
+ *
+ * @author Shafigin Ilyas (Шафигин Ильяс) <Ilyas74>
+ * @version 0.0.0
+ */
+final class UnrolledKernels {
+
+    private UnrolledKernels() {
+    }
+
+    /**
+     * Проверяет, обрабатывается ли строка изображения развернутым циклом.
+     *
+     * @param kw   ширина матрицы.
+     * @param kh   высота матрицы.
+     * @param rows смещения строк изображения под строками матрицы, -1 для пропускаемых строк.
+     * @return {@code true}, если матрица имеет размер 3x3 или 5x5 и ни одна строка не пропускается.
+     */
+    static boolean isUnrolled(int kw, int kh, int[] rows) {
+        if (kw != kh || kw != 3 && kw != 5) return false;
+        for (int j = 0; j < kh; j++) {
+            if (rows[j] < 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Сворачивает внутренние столбцы строки с матрицей с плавающей точкой размера {@code size}.
+     *
+     * @param in    входной массив пикселей.
+     * @param rows  смещения строк изображения под строками матрицы.
+     * @param from  первый столбец.
+     * @param count количество столбцов.
+     * @param shift сдвиг канала.
+     * @param mask  маска канала.
+     * @param m     матрица.
+     * @param size  размер матрицы, 3 или 5.
+     * @param sums  суммы столбцов.
+     */
+    static void convolve(int[] in, int[] rows, int from, int count, int shift, int mask, float[] m, int size,
+                         float[] sums) {
+        if (size == 3) convolve3x3(in, rows, from, count, shift, mask, m, sums);
+        else convolve5x5(in, rows, from, count, shift, mask, m, sums);
+    }
+
+    /**
+     * Сворачивает внутренние столбцы строки плоскости с матрицей с плавающей точкой размера {@code size}.
+     *
+     * @param in    входной массив плоскости.
+     * @param rows  смещения строк изображения под строками матрицы.
+     * @param from  первый столбец.
+     * @param count количество столбцов.
+     * @param m     матрица.
+     * @param size  размер матрицы, 3 или 5.
+     * @param sums  суммы столбцов.
+     */
+    static void convolve(byte[] in, int[] rows, int from, int count, float[] m, int size, float[] sums) {
+        if (size == 3) convolve3x3(in, rows, from, count, m, sums);
+        else convolve5x5(in, rows, from, count, m, sums);
+    }
+
+    /**
+     * Сворачивает внутренние столбцы строки плоскости с матрицей с целыми значениями размера {@code size}.
+     *
+     * @param in    входной массив плоскости.
+     * @param rows  смещения строк изображения под строками матрицы.
+     * @param from  первый столбец.
+     * @param count количество столбцов.
+     * @param m     матрица.
+     * @param size  размер матрицы, 3 или 5.
+     * @param sums  суммы столбцов.
+     */
+    static void convolve(byte[] in, int[] rows, int from, int count, int[] m, int size, int[] sums) {
+        if (size == 3) convolve3x3(in, rows, from, count, m, sums);
+        else convolve5x5(in, rows, from, count, m, sums);
+    }
+
+    /**
+     * Сворачивает внутренние столбцы строки с матрицей 3x3 с плавающей точкой.
+     *
+     * @param in    входной массив пикселей.
+     * @param rows  смещения строк изображения под строками матрицы.
+     * @param from  первый столбец.
+     * @param count количество столбцов.
+     * @param shift сдвиг канала.
+     * @param mask  маска канала.
+     * @param m     матрица.
+     * @param sums  суммы столбцов.
+     */
+    static void convolve3x3(int[] in, int[] rows, int from, int count, int shift, int mask, float[] m, float[] sums) {
+        float k0 = m[0], k1 = m[1], k2 = m[2];
+        float k3 = m[3], k4 = m[4], k5 = m[5];
+        float k6 = m[6], k7 = m[7], k8 = m[8];
+        int i0 = rows[0] + from - 1;
+        int i1 = rows[1] + from - 1;
+        int i2 = rows[2] + from - 1;
+        float a0 = in[i0] >> shift & mask, b0 = in[i0 + 1] >> shift & mask;
+        float a1 = in[i1] >> shift & mask, b1 = in[i1 + 1] >> shift & mask;
+        float a2 = in[i2] >> shift & mask, b2 = in[i2 + 1] >> shift & mask;
+
+        for (int n = 0; n < count; n++) {
+            float c0 = in[i0 + n + 2] >> shift & mask;
+            float c1 = in[i1 + n + 2] >> shift & mask;
+            float c2 = in[i2 + n + 2] >> shift & mask;
+            sums[n] = a0 * k0 + b0 * k1 + c0 * k2
+                    + a1 * k3 + b1 * k4 + c1 * k5
+                    + a2 * k6 + b2 * k7 + c2 * k8;
+            a0 = b0; b0 = c0;
+            a1 = b1; b1 = c1;
+            a2 = b2; b2 = c2;
+        }
+    }
+
+    /**
+     * Сворачивает внутренние столбцы строки плоскости с матрицей 3x3 с плавающей точкой.
+     *
+     * @param in    входной массив плоскости.
+     * @param rows  смещения строк изображения под строками матрицы.
+     * @param from  первый столбец.
+     * @param count количество столбцов.
+     * @param m     матрица.
+     * @param sums  суммы столбцов.
+     */
+    static void convolve3x3(byte[] in, int[] rows, int from, int count, float[] m, float[] sums) {
+        float k0 = m[0], k1 = m[1], k2 = m[2];
+        float k3 = m[3], k4 = m[4], k5 = m[5];
+        float k6 = m[6], k7 = m[7], k8 = m[8];
+        int i0 = rows[0] + from - 1;
+        int i1 = rows[1] + from - 1;
+        int i2 = rows[2] + from - 1;
+        float a0 = 0xff & in[i0], b0 = 0xff & in[i0 + 1];
+        float a1 = 0xff & in[i1], b1 = 0xff & in[i1 + 1];
+        float a2 = 0xff & in[i2], b2 = 0xff & in[i2 + 1];
+
+        for (int n = 0; n < count; n++) {
+            float c0 = 0xff & in[i0 + n + 2];
+            float c1 = 0xff & in[i1 + n + 2];
+            float c2 = 0xff & in[i2 + n + 2];
+            sums[n] = a0 * k0 + b0 * k1 + c0 * k2
+                    + a1 * k3 + b1 * k4 + c1 * k5
+                    + a2 * k6 + b2 * k7 + c2 * k8;
+            a0 = b0; b0 = c0;
+            a1 = b1; b1 = c1;
+            a2 = b2; b2 = c2;
+        }
+    }
+
+    /**
+     * Сворачивает внутренние столбцы строки плоскости с матрицей 3x3 с целыми значениями.
+     *
+     * @param in    входной массив плоскости.
+     * @param rows  смещения строк изображения под строками матрицы.
+     * @param from  первый столбец.
+     * @param count количество столбцов.
+     * @param m     матрица.
+     * @param sums  суммы столбцов.
+     */
+    static void convolve3x3(byte[] in, int[] rows, int from, int count, int[] m, int[] sums) {
+        int k0 = m[0], k1 = m[1], k2 = m[2];
+        int k3 = m[3], k4 = m[4], k5 = m[5];
+        int k6 = m[6], k7 = m[7], k8 = m[8];
+        int i0 = rows[0] + from - 1;
+        int i1 = rows[1] + from - 1;
+        int i2 = rows[2] + from - 1;
+        int a0 = 0xff & in[i0], b0 = 0xff & in[i0 + 1];
+        int a1 = 0xff & in[i1], b1 = 0xff & in[i1 + 1];
+        int a2 = 0xff & in[i2], b2 = 0xff & in[i2 + 1];
+
+        for (int n = 0; n < count; n++) {
+            int c0 = 0xff & in[i0 + n + 2];
+            int c1 = 0xff & in[i1 + n + 2];
+            int c2 = 0xff & in[i2 + n + 2];
+            sums[n] = a0 * k0 + b0 * k1 + c0 * k2
+                    + a1 * k3 + b1 * k4 + c1 * k5
+                    + a2 * k6 + b2 * k7 + c2 * k8;
+            a0 = b0; b0 = c0;
+            a1 = b1; b1 = c1;
+            a2 = b2; b2 = c2;
+        }
+    }
+
+    /**
+     * Сворачивает внутренние столбцы строки с матрицей 5x5 с плавающей точкой.
+     *
+     * @param in    входной массив пикселей.
+     * @param rows  смещения строк изображения под строками матрицы.
+     * @param from  первый столбец.
+     * @param count количество столбцов.
+     * @param shift сдвиг канала.
+     * @param mask  маска канала.
+     * @param m     матрица.
+     * @param sums  суммы столбцов.
+     */
+    static void convolve5x5(int[] in, int[] rows, int from, int count, int shift, int mask, float[] m, float[] sums) {
+        float k0 = m[0], k1 = m[1], k2 = m[2], k3 = m[3], k4 = m[4];
+        float k5 = m[5], k6 = m[6], k7 = m[7], k8 = m[8], k9 = m[9];
+        float k10 = m[10], k11 = m[11], k12 = m[12], k13 = m[13], k14 = m[14];
+        float k15 = m[15], k16 = m[16], k17 = m[17], k18 = m[18], k19 = m[19];
+        float k20 = m[20], k21 = m[21], k22 = m[22], k23 = m[23], k24 = m[24];
+        int i0 = rows[0] + from - 2;
+        int i1 = rows[1] + from - 2;
+        int i2 = rows[2] + from - 2;
+        int i3 = rows[3] + from - 2;
+        int i4 = rows[4] + from - 2;
+        float a0 = in[i0] >> shift & mask, b0 = in[i0 + 1] >> shift & mask, c0 = in[i0 + 2] >> shift & mask,
+                d0 = in[i0 + 3] >> shift & mask;
+        float a1 = in[i1] >> shift & mask, b1 = in[i1 + 1] >> shift & mask, c1 = in[i1 + 2] >> shift & mask,
+                d1 = in[i1 + 3] >> shift & mask;
+        float a2 = in[i2] >> shift & mask, b2 = in[i2 + 1] >> shift & mask, c2 = in[i2 + 2] >> shift & mask,
+                d2 = in[i2 + 3] >> shift & mask;
+        float a3 = in[i3] >> shift & mask, b3 = in[i3 + 1] >> shift & mask, c3 = in[i3 + 2] >> shift & mask,
+                d3 = in[i3 + 3] >> shift & mask;
+        float a4 = in[i4] >> shift & mask, b4 = in[i4 + 1] >> shift & mask, c4 = in[i4 + 2] >> shift & mask,
+                d4 = in[i4 + 3] >> shift & mask;
+
+        for (int n = 0; n < count; n++) {
+            float e0 = in[i0 + n + 4] >> shift & mask;
+            float e1 = in[i1 + n + 4] >> shift & mask;
+            float e2 = in[i2 + n + 4] >> shift & mask;
+            float e3 = in[i3 + n + 4] >> shift & mask;
+            float e4 = in[i4 + n + 4] >> shift & mask;
+            sums[n] = a0 * k0 + b0 * k1 + c0 * k2 + d0 * k3 + e0 * k4
+                    + a1 * k5 + b1 * k6 + c1 * k7 + d1 * k8 + e1 * k9
+                    + a2 * k10 + b2 * k11 + c2 * k12 + d2 * k13 + e2 * k14
+                    + a3 * k15 + b3 * k16 + c3 * k17 + d3 * k18 + e3 * k19
+                    + a4 * k20 + b4 * k21 + c4 * k22 + d4 * k23 + e4 * k24;
+            a0 = b0; b0 = c0; c0 = d0; d0 = e0;
+            a1 = b1; b1 = c1; c1 = d1; d1 = e1;
+            a2 = b2; b2 = c2; c2 = d2; d2 = e2;
+            a3 = b3; b3 = c3; c3 = d3; d3 = e3;
+            a4 = b4; b4 = c4; c4 = d4; d4 = e4;
+        }
+    }
+
+    /**
+     * Сворачивает внутренние столбцы строки плоскости с матрицей 5x5 с плавающей точкой.
+     *
+     * @param in    входной массив плоскости.
+     * @param rows  смещения строк изображения под строками матрицы.
+     * @param from  первый столбец.
+     * @param count количество столбцов.
+     * @param m     матрица.
+     * @param sums  суммы столбцов.
+     */
+    static void convolve5x5(byte[] in, int[] rows, int from, int count, float[] m, float[] sums) {
+        float k0 = m[0], k1 = m[1], k2 = m[2], k3 = m[3], k4 = m[4];
+        float k5 = m[5], k6 = m[6], k7 = m[7], k8 = m[8], k9 = m[9];
+        float k10 = m[10], k11 = m[11], k12 = m[12], k13 = m[13], k14 = m[14];
+        float k15 = m[15], k16 = m[16], k17 = m[17], k18 = m[18], k19 = m[19];
+        float k20 = m[20], k21 = m[21], k22 = m[22], k23 = m[23], k24 = m[24];
+        int i0 = rows[0] + from - 2;
+        int i1 = rows[1] + from - 2;
+        int i2 = rows[2] + from - 2;
+        int i3 = rows[3] + from - 2;
+        int i4 = rows[4] + from - 2;
+        float a0 = 0xff & in[i0], b0 = 0xff & in[i0 + 1], c0 = 0xff & in[i0 + 2], d0 = 0xff & in[i0 + 3];
+        float a1 = 0xff & in[i1], b1 = 0xff & in[i1 + 1], c1 = 0xff & in[i1 + 2], d1 = 0xff & in[i1 + 3];
+        float a2 = 0xff & in[i2], b2 = 0xff & in[i2 + 1], c2 = 0xff & in[i2 + 2], d2 = 0xff & in[i2 + 3];
+        float a3 = 0xff & in[i3], b3 = 0xff & in[i3 + 1], c3 = 0xff & in[i3 + 2], d3 = 0xff & in[i3 + 3];
+        float a4 = 0xff & in[i4], b4 = 0xff & in[i4 + 1], c4 = 0xff & in[i4 + 2], d4 = 0xff & in[i4 + 3];
+
+        for (int n = 0; n < count; n++) {
+            float e0 = 0xff & in[i0 + n + 4];
+            float e1 = 0xff & in[i1 + n + 4];
+            float e2 = 0xff & in[i2 + n + 4];
+            float e3 = 0xff & in[i3 + n + 4];
+            float e4 = 0xff & in[i4 + n + 4];
+            sums[n] = a0 * k0 + b0 * k1 + c0 * k2 + d0 * k3 + e0 * k4
+                    + a1 * k5 + b1 * k6 + c1 * k7 + d1 * k8 + e1 * k9
+                    + a2 * k10 + b2 * k11 + c2 * k12 + d2 * k13 + e2 * k14
+                    + a3 * k15 + b3 * k16 + c3 * k17 + d3 * k18 + e3 * k19
+                    + a4 * k20 + b4 * k21 + c4 * k22 + d4 * k23 + e4 * k24;
+            a0 = b0; b0 = c0; c0 = d0; d0 = e0;
+            a1 = b1; b1 = c1; c1 = d1; d1 = e1;
+            a2 = b2; b2 = c2; c2 = d2; d2 = e2;
+            a3 = b3; b3 = c3; c3 = d3; d3 = e3;
+            a4 = b4; b4 = c4; c4 = d4; d4 = e4;
+        }
+    }
+
+    /**
+     * Сворачивает внутренние столбцы строки плоскости с матрицей 5x5 с целыми значениями.
+     *
+     * @param in    входной массив плоскости.
+     * @param rows  смещения строк изображения под строками матрицы.
+     * @param from  первый столбец.
+     * @param count количество столбцов.
+     * @param m     матрица.
+     * @param sums  суммы столбцов.
+     */
+    static void convolve5x5(byte[] in, int[] rows, int from, int count, int[] m, int[] sums) {
+        int k0 = m[0], k1 = m[1], k2 = m[2], k3 = m[3], k4 = m[4];
+        int k5 = m[5], k6 = m[6], k7 = m[7], k8 = m[8], k9 = m[9];
+        int k10 = m[10], k11 = m[11], k12 = m[12], k13 = m[13], k14 = m[14];
+        int k15 = m[15], k16 = m[16], k17 = m[17], k18 = m[18], k19 = m[19];
+        int k20 = m[20], k21 = m[21], k22 = m[22], k23 = m[23], k24 = m[24];
+        int i0 = rows[0] + from - 2;
+        int i1 = rows[1] + from - 2;
+        int i2 = rows[2] + from - 2;
+        int i3 = rows[3] + from - 2;
+        int i4 = rows[4] + from - 2;
+        int a0 = 0xff & in[i0], b0 = 0xff & in[i0 + 1], c0 = 0xff & in[i0 + 2], d0 = 0xff & in[i0 + 3];
+        int a1 = 0xff & in[i1], b1 = 0xff & in[i1 + 1], c1 = 0xff & in[i1 + 2], d1 = 0xff & in[i1 + 3];
+        int a2 = 0xff & in[i2], b2 = 0xff & in[i2 + 1], c2 = 0xff & in[i2 + 2], d2 = 0xff & in[i2 + 3];
+        int a3 = 0xff & in[i3], b3 = 0xff & in[i3 + 1], c3 = 0xff & in[i3 + 2], d3 = 0xff & in[i3 + 3];
+        int a4 = 0xff & in[i4], b4 = 0xff & in[i4 + 1], c4 = 0xff & in[i4 + 2], d4 = 0xff & in[i4 + 3];
+
+        for (int n = 0; n < count; n++) {
+            int e0 = 0xff & in[i0 + n + 4];
+            int e1 = 0xff & in[i1 + n + 4];
+            int e2 = 0xff & in[i2 + n + 4];
+            int e3 = 0xff & in[i3 + n + 4];
+            int e4 = 0xff & in[i4 + n + 4];
+            sums[n] = a0 * k0 + b0 * k1 + c0 * k2 + d0 * k3 + e0 * k4
+                    + a1 * k5 + b1 * k6 + c1 * k7 + d1 * k8 + e1 * k9
+                    + a2 * k10 + b2 * k11 + c2 * k12 + d2 * k13 + e2 * k14
+                    + a3 * k15 + b3 * k16 + c3 * k17 + d3 * k18 + e3 * k19
+                    + a4 * k20 + b4 * k21 + c4 * k22 + d4 * k23 + e4 * k24;
+            a0 = b0; b0 = c0; c0 = d0; d0 = e0;
+            a1 = b1; b1 = c1; c1 = d1; d1 = e1;
+            a2 = b2; b2 = c2; c2 = d2; d2 = e2;
+            a3 = b3; b3 = c3; c3 = d3; d3 = e3;
+            a4 = b4; b4 = c4; c4 = d4; d4 = e4;
+        }
+    }
+
+}
@@ -65,18 +65,18 @@ public class UnsharpFilter extends GaussianBlurFilter {
     }
 
     @Override
-    public void apply(int[] in, int[] out, int width, int height) {
-        int[] out2 = new int[width * height];
-        super.apply(in, out2, width, height);
+    protected void apply(int[] in, int[] out, int width, int height, int fromY, int toY) {
+        // Размытое изображение записывается сразу в выходной массив и затем смешивается с исходным.
+        super.apply(in, out, width, height, fromY, toY);
 
         if (this.isMonochrome()) {
             float a = 1.0f * this.amount;
 
-            for (int y = 0; y < height; y++) {
+            for (int y = fromY; y < toY; y++) {
                 for (int x = 0; x < width; x++) {
                     int index = x + y * width;
                     int color1 = in[index];
-                    int color2 = out2[index];
+                    int color2 = out[index];
 
                     if (MoreMath.abs(color1 - color2) >= this.threshold) {
                         out[index] = Color.clamp((int) ((a + 1.0) * (color1 - color2) + color2));
@@ -87,31 +87,36 @@ public class UnsharpFilter extends GaussianBlurFilter {
             }
         } else {
             float a = 4.0f * this.amount;
+            PixelKernels.getDefault().sharpen(in, out, out, fromY * width, toY * width, a + 1.0, this.threshold);
+        }
+    }
 
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
-                    int index = x + y * width;
-                    int rgb1 = in[index];
-                    int a1 = 0xff & (rgb1 >> 24);
-                    int r1 = 0xff & (rgb1 >> 16);
-                    int g1 = 0xff & (rgb1 >> 8);
-                    int b1 = 0xff & rgb1;
-
-                    int rgb2 = out2[index];
-                    int a2 = 0xff & (rgb2 >> 24);
-                    int r2 = 0xff & (rgb2 >> 16);
-                    int g2 = 0xff & (rgb2 >> 8);
-                    int b2 = 0xff & rgb2;
-
-                    if (MoreMath.abs(a1 - a2) >= this.threshold) a1 = Color.clamp((int) ((a + 1.0) * (a1 - a2) + a2));
-                    if (MoreMath.abs(r1 - r2) >= this.threshold) r1 = Color.clamp((int) ((a + 1.0) * (r1 - r2) + r2));
-                    if (MoreMath.abs(g1 - g2) >= this.threshold) g1 = Color.clamp((int) ((a + 1.0) * (g1 - g2) + g2));
-                    if (MoreMath.abs(b1 - b2) >= this.threshold) b1 = Color.clamp((int) ((a + 1.0) * (b1 - b2) + b2));
-
-                    out[index] = (a1 << 24) | (r1 << 16) | (g1 << 8) | b1;
-                }
+    @Override
+    public void applyPlane(byte[] in, byte[] out, int width, int height, int channel) {
+        super.applyPlane(in, out, width, height, channel);
+
+        float a = 4.0f * this.amount;
+        int size = width * height;
+        for (int i = 0; i < size; i++) {
+            int c1 = 0xff & in[i];
+            int c2 = 0xff & out[i];
+
+            if (MoreMath.abs(c1 - c2) >= this.threshold) {
+                out[i] = (byte) Color.clamp((int) ((a + 1.0) * (c1 - c2) + c2));
+            } else {
+                out[i] = (byte) c1;
             }
         }
     }
 
+    /**
+     * Пиксели изменяются только при разнице с размытым изображением больше порога, поэтому фильтр не линейный.
+     *
+     * @return {@code false}.
+     */
+    @Override
+    public boolean isLinear() {
+        return false;
+    }
+
 }